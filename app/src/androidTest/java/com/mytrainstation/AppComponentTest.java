@@ -0,0 +1,119 @@
+package com.mytrainstation;
+
+import android.Manifest;
+import android.app.Activity;
+import android.content.pm.ActivityInfo;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.rule.GrantPermissionRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.test.runner.lifecycle.ActivityLifecycleMonitorRegistry;
+import android.support.test.runner.lifecycle.Stage;
+import android.system.ErrnoException;
+import android.system.Os;
+
+import com.mytrainstation.ui.TrainStationsActivity;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Locale;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Run tests against {@link AppComponent} by rotating {@link TrainStationsActivity}, which
+ * requests its objects on each creation (see {@link Injection}).
+ *
+ * @author JSCHENK
+ */
+@RunWith(AndroidJUnit4.class)
+public class AppComponentTest {
+
+	private static final Logger LOG = Logger.getLogger(AppComponentTest.class);
+
+	private static final int ROTATIONS = 50;
+	// idle threads of a cached pool might be replaced in the meantime
+	private static final int TOLERATED_THREADS = 4;
+	private static final int TOLERATED_SOCKETS = 2;
+
+	@Rule
+	public ActivityTestRule<TrainStationsActivity> mActivityRule = new ActivityTestRule<>(
+			TrainStationsActivity.class, false, true);
+
+	@Rule
+	public GrantPermissionRule mRuntimePermissionRule = GrantPermissionRule.grant(Manifest
+			.permission.ACCESS_FINE_LOCATION);
+
+	/**
+	 * Rotates the activity 50 times and tests that neither the number of threads nor the number
+	 * of open sockets grows, since all activities share the objects of the component.
+	 */
+	@Test
+	public void AppComponent_rotateActivity_keepsThreadAndSocketCountsFlat() {
+		AppComponent component = ((TrainStationApplication) mActivityRule.getActivity()
+				.getApplication()).getAppComponent();
+		// first rotations create the objects of the component
+		rotate(2);
+		int threads = countThreads();
+		int sockets = countSockets();
+
+		rotate(ROTATIONS);
+		LOG.info(String.format(Locale.getDefault(), "%s rotations: threads %s -> %s, sockets " +
+				"%s -> %s", ROTATIONS, threads, countThreads(), sockets, countSockets()));
+
+		Assert.assertThat(countThreads(), is(lessThanOrEqualTo(threads + TOLERATED_THREADS)));
+		Assert.assertThat(countSockets(), is(lessThanOrEqualTo(sockets + TOLERATED_SOCKETS)));
+		Assert.assertThat(Injection.provideImageLoader(mActivityRule.getActivity()
+				.getApplication()), is(sameInstance(component.getImageLoader())));
+		Assert.assertThat(component.isShutdown(), is(false));
+	}
+
+	private static void rotate(int times) {
+		for (int i = 0; i < times; i++) {
+			int orientation = i % 2 == 0 ? ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE :
+					ActivityInfo.SCREEN_ORIENTATION_PORTRAIT;
+			InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+					getResumedActivity().setRequestedOrientation(orientation));
+			InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+		}
+	}
+
+	private static Activity getResumedActivity() {
+		Collection<Activity> activities = ActivityLifecycleMonitorRegistry.getInstance()
+				.getActivitiesInStage(Stage.RESUMED);
+		Assert.assertThat(activities.size(), is(1));
+		return activities.iterator().next();
+	}
+
+	private static int countThreads() {
+		return Thread.getAllStackTraces().size();
+	}
+
+	/**
+	 * @return The number of file descriptors of this process that refer to a socket.
+	 */
+	private static int countSockets() {
+		File[] descriptors = new File("/proc/self/fd").listFiles();
+		int sockets = 0;
+		if (descriptors != null) {
+			for (File descriptor : descriptors) {
+				try {
+					if (Os.readlink(descriptor.getPath()).startsWith("socket:")) {
+						sockets++;
+					}
+				} catch (ErrnoException e) {
+					// descriptor was closed in the meantime
+				}
+			}
+		}
+		return sockets;
+	}
+}
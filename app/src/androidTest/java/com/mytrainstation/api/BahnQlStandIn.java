@@ -0,0 +1,261 @@
+package com.mytrainstation.api;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.mytrainstation.api.offline.StationCatalogue;
+import com.mytrainstation.model.TrainStation;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Local stand-in of the bahnql graphql endpoint that answers {@code NearByQuery} and
+ * {@code SearchQuery} from a {@link StationCatalogue}, e.g. of the
+ * {@link SyntheticStationGenerator}. Start it with a {@link MockWebServer}:
+ * <pre>
+ * server.setDispatcher(new BahnQlStandIn(catalogue, 42));
+ * </pre>
+ *
+ * Like the real endpoint, near by queries fail with 'Internal Error' if more than
+ * {@link #setMaxNearbyCount(int)} stations are requested at once. Search terms are matched
+ * against the names of all stations, results are limited to {@link #MAX_SEARCH_RESULTS}.
+ * Latency and the rate of failed requests (answered with status code 503) could be changed
+ * while the server is running.
+ *
+ * @author JSCHENK
+ */
+public class BahnQlStandIn extends Dispatcher {
+
+	/**
+	 * The maximum number of stations of a search result.
+	 */
+	public static final int MAX_SEARCH_RESULTS = 50;
+	private static final int DEFAULT_MAX_NEARBY_COUNT = 100;
+	private static final String FIELD_VARIABLES = "variables";
+	private static final String FIELD_SEARCH_TERM = "searchTerm";
+	private static final String PICTURE_URL = "https://api.railway-stations.org/photos/de/%d.jpg";
+
+	private final StationCatalogue mCatalogue;
+	// indices of the stations of each distinct name
+	private final Map<String, int[]> mStationsByName = new HashMap<>();
+	private final Random mRandom;
+	private final JsonParser mParser = new JsonParser();
+	private final ThreadLocal<StationCatalogue.SearchResult> mSearchResults = ThreadLocal
+			.withInitial(StationCatalogue.SearchResult::new);
+	private final AtomicLong mRequestCount = new AtomicLong();
+	private final AtomicLong mFailedCount = new AtomicLong();
+	private volatile long mLatencyMillis;
+	private volatile long mLatencyJitterMillis;
+	private volatile double mErrorRate;
+	private volatile int mMaxNearbyCount = DEFAULT_MAX_NEARBY_COUNT;
+
+	/**
+	 * Creates a stand-in that answers without latency and errors.
+	 *
+	 * @param catalogue
+	 * 		The stations to answer queries with.
+	 * @param seed
+	 * 		The seed of latencies and errors.
+	 */
+	public BahnQlStandIn(@NonNull StationCatalogue catalogue, long seed) {
+		mCatalogue = catalogue;
+		mRandom = new Random(seed);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < catalogue.size(); i++) {
+			counts.merge(catalogue.getName(i), 1, Integer::sum);
+		}
+		Map<String, Integer> positions = new HashMap<>();
+		for (Map.Entry<String, Integer> count : counts.entrySet()) {
+			mStationsByName.put(count.getKey(), new int[count.getValue()]);
+			positions.put(count.getKey(), 0);
+		}
+		for (int i = 0; i < catalogue.size(); i++) {
+			String name = catalogue.getName(i);
+			int position = positions.get(name);
+			mStationsByName.get(name)[position] = i;
+			positions.put(name, position + 1);
+		}
+	}
+
+	/**
+	 * @param latencyMillis
+	 * 		The minimum time until a response is sent.
+	 * @param jitterMillis
+	 * 		The maximum random time that is added to each latency.
+	 * @return This stand-in.
+	 */
+	@NonNull
+	public BahnQlStandIn setLatency(long latencyMillis, long jitterMillis) {
+		mLatencyMillis = latencyMillis;
+		mLatencyJitterMillis = jitterMillis;
+		return this;
+	}
+
+	/**
+	 * @param errorRate
+	 * 		The share of requests within 0 and 1 that will fail with status code 503.
+	 * @return This stand-in.
+	 */
+	@NonNull
+	public BahnQlStandIn setErrorRate(double errorRate) {
+		mErrorRate = errorRate;
+		return this;
+	}
+
+	/**
+	 * @param maxNearbyCount
+	 * 		The maximum number of stations of a near by query. Queries with a larger count fail
+	 * 		with 'Internal Error'.
+	 * @return This stand-in.
+	 */
+	@NonNull
+	public BahnQlStandIn setMaxNearbyCount(int maxNearbyCount) {
+		mMaxNearbyCount = maxNearbyCount;
+		return this;
+	}
+
+	/**
+	 * @return The number of received requests.
+	 */
+	public long getRequestCount() {
+		return mRequestCount.get();
+	}
+
+	/**
+	 * @return The number of requests that failed on purpose (see {@link #setErrorRate(double)}).
+	 */
+	public long getFailedCount() {
+		return mFailedCount.get();
+	}
+
+	@Override
+	public MockResponse dispatch(RecordedRequest request) {
+		mRequestCount.incrementAndGet();
+		long latencyMillis;
+		boolean fail;
+		synchronized (mRandom) {
+			long jitterMillis = mLatencyJitterMillis;
+			latencyMillis = mLatencyMillis + (jitterMillis > 0 ? (long) (mRandom.nextDouble() *
+					jitterMillis) : 0);
+			fail = mRandom.nextDouble() < mErrorRate;
+		}
+		MockResponse response;
+		if (fail) {
+			mFailedCount.incrementAndGet();
+			response = new MockResponse().setResponseCode(503);
+		} else {
+			try {
+				response = new MockResponse().setHeader("Content-Type", "application/json; " +
+						"charset=utf-8").setBody(answer(request.getBody().readUtf8()));
+			} catch (IOException | RuntimeException e) {
+				response = new MockResponse().setResponseCode(400).setBody(String.valueOf(e
+						.getMessage()));
+			}
+		}
+		return response.setBodyDelay(latencyMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@NonNull
+	private Buffer answer(@NonNull String requestBody) throws IOException {
+		JsonObject variables = mParser.parse(requestBody).getAsJsonObject().getAsJsonObject
+				(FIELD_VARIABLES);
+		if (variables.has(FIELD_SEARCH_TERM)) {
+			return writeResponse("search", "Searchable", search(variables.get(FIELD_SEARCH_TERM)
+					.getAsString()));
+		}
+		int count = variables.get("count").getAsInt();
+		if (count > mMaxNearbyCount) {
+			Buffer buffer = new Buffer();
+			buffer.writeUtf8("{\"errors\":[{\"message\":\"Internal Error\"}],\"data\":" +
+					"{\"nearby\":null}}");
+			return buffer;
+		}
+		int offset = variables.get("offset").getAsInt();
+		StationCatalogue.SearchResult result = mSearchResults.get();
+		mCatalogue.searchWithinRadius(variables.get("latitude").getAsDouble(), variables.get
+				("longitude").getAsDouble(), variables.get("radius").getAsInt(), offset + count,
+				result);
+		List<TrainStation> trainStations = new ArrayList<>();
+		for (int position = offset; position < result.size(); position++) {
+			trainStations.add(mCatalogue.toTrainStation(result.getIndex(position)));
+		}
+		return writeResponse("nearby", "Nearby", trainStations);
+	}
+
+	@NonNull
+	private List<TrainStation> search(@NonNull String searchTerm) {
+		String term = searchTerm.toLowerCase(Locale.GERMAN);
+		List<TrainStation> trainStations = new ArrayList<>();
+		for (Map.Entry<String, int[]> stations : mStationsByName.entrySet()) {
+			if (!stations.getKey().toLowerCase(Locale.GERMAN).contains(term)) {
+				continue;
+			}
+			for (int index : stations.getValue()) {
+				if (trainStations.size() == MAX_SEARCH_RESULTS) {
+					return trainStations;
+				}
+				trainStations.add(mCatalogue.toTrainStation(index));
+			}
+		}
+		return trainStations;
+	}
+
+	@NonNull
+	private static Buffer writeResponse(@NonNull String rootField, @NonNull String typeName,
+			@NonNull List<TrainStation> trainStations) throws IOException {
+		Buffer buffer = new Buffer();
+		try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(buffer.outputStream(),
+				StandardCharsets.UTF_8))) {
+			writer.beginObject().name("data").beginObject().name(rootField).beginObject();
+			writer.name("__typename").value(typeName);
+			writer.name("stations").beginArray();
+			for (TrainStation trainStation : trainStations) {
+				writer.beginObject();
+				writer.name("__typename").value("Station");
+				writer.name("primaryEvaId").value(trainStation.getId());
+				writer.name("name").value(trainStation.getName());
+				writer.name("hasWiFi").value(trainStation.hasWifi());
+				writer.name("hasParking").value(trainStation.hasParking());
+				writer.name("hasSteplessAccess").value(trainStation.hasSteplessAccess() ? "yes"
+						: "no");
+				// only some stations have a picture
+				if (trainStation.getId() % 3 == 0) {
+					writer.name("picture").beginObject()
+							.name("__typename").value("Picture")
+							.name("url").value(String.format(Locale.ROOT, PICTURE_URL,
+							trainStation.getId()))
+							.endObject();
+				} else {
+					writer.name("picture").nullValue();
+				}
+				writer.name("location").beginObject()
+						.name("__typename").value("Location")
+						.name("latitude").value(trainStation.getLatitude())
+						.name("longitude").value(trainStation.getLongitude())
+						.endObject();
+				writer.endObject();
+			}
+			writer.endArray();
+			writer.endObject().endObject().endObject();
+		}
+		return buffer;
+	}
+}
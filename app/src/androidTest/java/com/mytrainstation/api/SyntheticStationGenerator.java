@@ -0,0 +1,173 @@
+package com.mytrainstation.api;
+
+import android.support.annotation.NonNull;
+
+import com.mytrainstation.api.offline.StationCatalogue;
+import com.mytrainstation.util.GeoUtils;
+
+import java.util.Random;
+
+/**
+ * Generates a synthetic {@link StationCatalogue} of up to a million german train stations that
+ * are clustered like real ones: most stations are spread around cities, weighted by their size,
+ * while the remaining ones are scattered across the country.
+ *
+ * Names are combined from the name of the city (or a rural place) and a district suffix. All
+ * stations share these few distinct name instances, so even a large catalogue mostly consists of
+ * primitive arrays.
+ *
+ * @author JSCHENK
+ */
+public final class SyntheticStationGenerator {
+
+	/**
+	 * The maximum number of stations of a generated catalogue.
+	 */
+	public static final int MAX_STATION_COUNT = 1_000_000;
+	// names of the cities around which stations are clustered
+	private static final String[] CITIES = {"Berlin", "Hamburg", "München", "Köln", "Frankfurt",
+			"Stuttgart", "Düsseldorf", "Leipzig", "Dortmund", "Essen", "Bremen", "Dresden",
+			"Hannover", "Nürnberg", "Duisburg", "Bochum", "Wuppertal", "Bielefeld", "Bonn",
+			"Münster", "Mannheim", "Karlsruhe", "Augsburg", "Wiesbaden", "Kiel", "Rostock",
+			"Erfurt", "Magdeburg", "Freiburg", "Saarbrücken"};
+	private static final double[][] CITY_LOCATIONS = {{52.5251, 13.3694}, {53.5530, 10.0066},
+			{48.1402, 11.5583}, {50.9430, 6.9589}, {50.1071, 8.6638}, {48.7841, 9.1817},
+			{51.2199, 6.7943}, {51.3455, 12.3821}, {51.5176, 7.4592}, {51.4513, 7.0142},
+			{53.0832, 8.8133}, {51.0404, 13.7320}, {52.3768, 9.7410}, {49.4456, 11.0825},
+			{51.4295, 6.7756}, {51.4787, 7.2233}, {51.2543, 7.1502}, {52.0293, 8.5330},
+			{50.7320, 7.0970}, {51.9567, 7.6355}, {49.4795, 8.4700}, {48.9935, 8.4019},
+			{48.3653, 10.8859}, {50.0706, 8.2436}, {54.3146, 10.1318}, {54.0785, 12.1315},
+			{50.9726, 11.0383}, {52.1303, 11.6272}, {47.9977, 7.8412}, {49.2411, 6.9910}};
+	// roughly the number of inhabitants in thousands
+	private static final int[] CITY_WEIGHTS = {3645, 1841, 1471, 1085, 753, 634, 619, 587,
+			587, 583, 569, 554, 536, 518, 498, 365, 354, 333, 327, 314, 309, 312, 296, 278,
+			247, 208, 213, 238, 230, 180};
+	private static final String[] RURAL_PLACES = {"Neudorf", "Kirchheim", "Altenberg",
+			"Waldkirch", "Bergheim", "Rosenthal", "Lindenau", "Steinbach", "Mühlhausen",
+			"Hohenwart", "Buchholz", "Wiesenfeld"};
+	private static final String[] SUFFIXES = {" Hbf", " Süd", " Nord", " Ost", " West",
+			" Mitte", " Bf", " Flughafen", " Messe", " Hafen", "-Altstadt", "-Neustadt",
+			" Gewerbegebiet", " Klinikum", " Universität", " Stadion"};
+	// share of stations that aren't clustered around cities
+	private static final double RURAL_SHARE = 0.15;
+	// spread of the largest city, smaller cities spread with the root of their relative size
+	private static final double MAX_SPREAD_METERS = 12000;
+	private static final double MIN_LATITUDE = 47.3;
+	private static final double MAX_LATITUDE = 55.0;
+	private static final double MIN_LONGITUDE = 5.9;
+	private static final double MAX_LONGITUDE = 15.0;
+	private static final int FIRST_ID = 8000000;
+
+	private SyntheticStationGenerator() {
+	}
+
+	/**
+	 * @param stationCount
+	 * 		The number of stations to generate, at most {@link #MAX_STATION_COUNT}.
+	 * @param seed
+	 * 		The seed of the generator, equal seeds generate equal catalogues.
+	 * @return A new catalogue with passed number of stations, whose ids start with 8000000.
+	 */
+	@NonNull
+	public static StationCatalogue generate(int stationCount, long seed) {
+		if (stationCount < 0 || stationCount > MAX_STATION_COUNT) {
+			throw new IllegalArgumentException("Station count has to be within 0 and " +
+					MAX_STATION_COUNT + ": " + stationCount);
+		}
+		String[][] cityNames = combineNames(CITIES);
+		String[][] ruralNames = combineNames(RURAL_PLACES);
+		int totalWeight = 0;
+		for (int weight : CITY_WEIGHTS) {
+			totalWeight += weight;
+		}
+		Random random = new Random(seed);
+		StationCatalogue.Builder builder = new StationCatalogue.Builder();
+		for (int i = 0; i < stationCount; i++) {
+			double latitude;
+			double longitude;
+			String name;
+			if (random.nextDouble() < RURAL_SHARE) {
+				latitude = MIN_LATITUDE + random.nextDouble() * (MAX_LATITUDE - MIN_LATITUDE);
+				longitude = MIN_LONGITUDE + random.nextDouble() * (MAX_LONGITUDE -
+						MIN_LONGITUDE);
+				name = ruralNames[random.nextInt(RURAL_PLACES.length)][random.nextInt(SUFFIXES
+						.length)];
+			} else {
+				int city = pickCity(random.nextInt(totalWeight));
+				double spreadMeters = MAX_SPREAD_METERS * Math.sqrt(CITY_WEIGHTS[city] /
+						(double) CITY_WEIGHTS[0]);
+				// denser at the center of the city
+				latitude = CITY_LOCATIONS[city][0] + random.nextGaussian() * spreadMeters /
+						GeoUtils.METERS_PER_DEGREE;
+				longitude = CITY_LOCATIONS[city][1] + random.nextGaussian() * spreadMeters /
+						GeoUtils.metersPerDegreeLongitude(CITY_LOCATIONS[city][0]);
+				name = cityNames[city][random.nextInt(SUFFIXES.length)];
+			}
+			builder.add(FIRST_ID + i, name, latitude, longitude, random.nextBoolean(), random
+					.nextInt(3) > 0, random.nextInt(4) > 0);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return The number of cities around which stations are clustered.
+	 */
+	public static int getCityCount() {
+		return CITIES.length;
+	}
+
+	/**
+	 * @param index
+	 * 		The index of the city.
+	 * @return The name of the city, which is part of the names of its stations.
+	 */
+	@NonNull
+	public static String getCityName(int index) {
+		return CITIES[index];
+	}
+
+	/**
+	 * @param index
+	 * 		The index of the city.
+	 * @return The latitude of the city's center.
+	 */
+	public static double getCityLatitude(int index) {
+		return CITY_LOCATIONS[index][0];
+	}
+
+	/**
+	 * @param index
+	 * 		The index of the city.
+	 * @return The longitude of the city's center.
+	 */
+	public static double getCityLongitude(int index) {
+		return CITY_LOCATIONS[index][1];
+	}
+
+	/**
+	 * @return The city whose cumulated weight exceeds passed value.
+	 */
+	private static int pickCity(int value) {
+		for (int city = 0; city < CITY_WEIGHTS.length; city++) {
+			value -= CITY_WEIGHTS[city];
+			if (value < 0) {
+				return city;
+			}
+		}
+		return CITY_WEIGHTS.length - 1;
+	}
+
+	/**
+	 * @return The name of each combination of passed places and all suffixes.
+	 */
+	@NonNull
+	private static String[][] combineNames(@NonNull String[] places) {
+		String[][] names = new String[places.length][SUFFIXES.length];
+		for (int place = 0; place < places.length; place++) {
+			for (int suffix = 0; suffix < SUFFIXES.length; suffix++) {
+				names[place][suffix] = places[place] + SUFFIXES[suffix];
+			}
+		}
+		return names;
+	}
+}
@@ -0,0 +1,254 @@
+package com.mytrainstation.data;
+
+import android.arch.persistence.room.Room;
+import android.content.Context;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mytrainstation.api.BahnQlStandIn;
+import com.mytrainstation.api.SyntheticStationGenerator;
+import com.mytrainstation.api.TrainStationService;
+import com.mytrainstation.api.offline.StationCatalogue;
+import com.mytrainstation.db.TrainStationDatabase;
+import com.mytrainstation.db.TrainStationLocalCache;
+import com.mytrainstation.metrics.Counter;
+import com.mytrainstation.metrics.LatencyHistogram;
+import com.mytrainstation.metrics.MetricsRegistry;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Load driver that pushes concurrent searches of many simulated users through
+ * {@link TrainStationRepository} against a local {@link BahnQlStandIn} with a synthetic
+ * catalogue. Each user owns a repository, like an app process, and searches by location or
+ * search term one after another. All users share one service, database and http client.
+ *
+ * The load is configured with instrumentation arguments, e.g.
+ * {@code -e stationCount 1000000 -e users 64 -e durationSeconds 120 -e latencyMillis 150
+ * -e errorRate 0.05}. Throughput, p50/p99 latency of searches and error rates are logged.
+ *
+ * @author JSCHENK
+ */
+@RunWith(AndroidJUnit4.class)
+public class TrainStationRepositoryLoadBenchmark {
+
+	private static final Logger LOG = Logger.getLogger(TrainStationRepositoryLoadBenchmark
+			.class);
+
+	private static final int DEFAULT_STATION_COUNT = 100_000;
+	private static final int DEFAULT_USERS = 16;
+	private static final int DEFAULT_DURATION_SECONDS = 20;
+	private static final int DEFAULT_LATENCY_MILLIS = 80;
+	private static final double DEFAULT_ERROR_RATE = 0.02;
+	private static final long SEED = 42;
+	private static final int RADIUS_METERS = 2000;
+	// users search around cities, not within the scattered rural stations
+	private static final double LOCATION_SPREAD_DEGREES = 0.1;
+	private static final long SEARCH_TIMEOUT_MILLIS = 30_000;
+	private static final String[] SEARCH_SUFFIXES = {"", " hbf", " süd", " nord", " mitte",
+			" messe", " xyz"};
+
+	private int mStationCount;
+	private int mUsers;
+	private int mDurationSeconds;
+	private MockWebServer mServer;
+	private BahnQlStandIn mStandIn;
+	private TrainStationDatabase mDatabase;
+	private OkHttpClient mHttpClient;
+	private ExecutorService mChunkExecutor;
+	private ExecutorService mRequestExecutor;
+	private ExecutorService mCacheExecutor;
+	private ExecutorService mUserExecutor;
+	private TrainStationService mService;
+
+	/**
+	 * Generates the catalogue, starts the stand-in and initializes the shared service against
+	 * it.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		Bundle arguments = InstrumentationRegistry.getArguments();
+		mStationCount = Integer.parseInt(arguments.getString("stationCount", String.valueOf
+				(DEFAULT_STATION_COUNT)));
+		mUsers = Integer.parseInt(arguments.getString("users", String.valueOf(DEFAULT_USERS)));
+		mDurationSeconds = Integer.parseInt(arguments.getString("durationSeconds", String
+				.valueOf(DEFAULT_DURATION_SECONDS)));
+		long latencyMillis = Long.parseLong(arguments.getString("latencyMillis", String.valueOf
+				(DEFAULT_LATENCY_MILLIS)));
+		double errorRate = Double.parseDouble(arguments.getString("errorRate", String.valueOf
+				(DEFAULT_ERROR_RATE)));
+
+		StationCatalogue catalogue = SyntheticStationGenerator.generate(mStationCount, SEED);
+		mStandIn = new BahnQlStandIn(catalogue, SEED).setLatency(latencyMillis, latencyMillis)
+				.setErrorRate(errorRate);
+		mServer = new MockWebServer();
+		mServer.setDispatcher(mStandIn);
+		mServer.start();
+
+		Context context = InstrumentationRegistry.getTargetContext();
+		mDatabase = Room.inMemoryDatabaseBuilder(context, TrainStationDatabase.class).build();
+		mHttpClient = new OkHttpClient.Builder().build();
+		mChunkExecutor = Executors.newFixedThreadPool(TrainStationService.MAX_PARALLEL_CHUNKS);
+		mRequestExecutor = Executors.newCachedThreadPool();
+		// writes of all users run one after another, like on a single database connection
+		mCacheExecutor = Executors.newSingleThreadExecutor();
+		mUserExecutor = Executors.newFixedThreadPool(mUsers);
+		mService = new TrainStationService(context, mServer.url("/graphql").toString(),
+				mHttpClient, mChunkExecutor);
+		MetricsRegistry.getInstance().reset();
+	}
+
+	/**
+	 * Stops all users and the stand-in and closes the database.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		mUserExecutor.shutdownNow();
+		mRequestExecutor.shutdownNow();
+		mChunkExecutor.shutdownNow();
+		mCacheExecutor.shutdownNow();
+		mHttpClient.dispatcher().executorService().shutdown();
+		mHttpClient.connectionPool().evictAll();
+		mServer.shutdown();
+		mDatabase.close();
+	}
+
+	/**
+	 * Runs all users for the configured duration and logs throughput, latencies and error
+	 * rates. Tests that each search completed and that failures of the endpoint surfaced as
+	 * failed queries.
+	 */
+	@Test
+	public void TrainStationRepository_search_underConcurrentLoad() throws Exception {
+		MetricsRegistry registry = new MetricsRegistry();
+		LatencyHistogram latency = registry.histogram("search");
+		Counter timeouts = registry.counter("timeouts");
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(mDurationSeconds);
+
+		long start = System.nanoTime();
+		List<Future<?>> users = new ArrayList<>();
+		for (int user = 0; user < mUsers; user++) {
+			long seed = SEED + user;
+			users.add(mUserExecutor.submit(() -> {
+				runUser(new Random(seed), deadline, latency, timeouts);
+				return null;
+			}));
+		}
+		for (Future<?> user : users) {
+			user.get();
+		}
+		double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+		LatencyHistogram.Snapshot snapshot = latency.snapshot();
+		long failedQueries = MetricsRegistry.getInstance().counter("TrainStationService" +
+				".failedQueries").get();
+		long executedQueries = mService.getExecutedRequestCount();
+		LOG.info(String.format(Locale.getDefault(), "%s stations, %s users, %ss: %s searches " +
+						"(%.1f/s), latency p50=%.1fms p99=%.1fms max=%.1fms, %s requests to " +
+						"endpoint (%.1f/s), %s failed on purpose (%.2f%%), %s of %s queries " +
+						"failed (%.2f%%), %s timeouts", mStationCount, mUsers, mDurationSeconds,
+				snapshot.getCount(), snapshot.getCount() / seconds, millis(snapshot
+						.getPercentileNanos(50)), millis(snapshot.getPercentileNanos(99)),
+				millis(snapshot.getMaxNanos()), mStandIn.getRequestCount(), mStandIn
+						.getRequestCount() / seconds, mStandIn.getFailedCount(), percent
+						(mStandIn.getFailedCount(), mStandIn.getRequestCount()), failedQueries,
+				executedQueries, percent(failedQueries, executedQueries), timeouts.get()));
+		LOG.info(MetricsRegistry.getInstance().toJson());
+
+		Assert.assertThat(snapshot.getCount(), is(greaterThan(0L)));
+		Assert.assertThat(timeouts.get(), is(0L));
+		// a failed chunk fails its whole query, but a query isn't retried
+		Assert.assertThat(failedQueries, is(lessThanOrEqualTo(mStandIn.getFailedCount())));
+	}
+
+	/**
+	 * Searches one after another until passed deadline. Each search waits until the
+	 * repository published its result.
+	 */
+	private void runUser(Random random, long deadline, LatencyHistogram latency,
+			Counter timeouts) throws InterruptedException {
+		TrainStationLocalCache localCache = new TrainStationLocalCache(mDatabase
+				.getTrainStationDao(), mCacheExecutor);
+		LatestRequestScheduler scheduler = new LatestRequestScheduler(mRequestExecutor);
+		TrainStationRepository repository = new TrainStationRepository(mService, localCache,
+				scheduler);
+		// replaces the listener of the repository, whose LiveData isn't observed anyway
+		BusyState busyState = new BusyState();
+		scheduler.setOnBusyStateChangedListener(busyState::set);
+		while (System.nanoTime() < deadline) {
+			long start = latency.start();
+			int city = random.nextInt(SyntheticStationGenerator.getCityCount());
+			if (random.nextBoolean()) {
+				repository.searchTrainStationsByLocation(SyntheticStationGenerator
+						.getCityLatitude(city) + (random.nextDouble() - 0.5) *
+						LOCATION_SPREAD_DEGREES, SyntheticStationGenerator.getCityLongitude(city)
+						+ (random.nextDouble() - 0.5) * LOCATION_SPREAD_DEGREES, RADIUS_METERS);
+			} else {
+				repository.searchTrainStationsBySearchTerm(SyntheticStationGenerator.getCityName
+						(city) + SEARCH_SUFFIXES[random.nextInt(SEARCH_SUFFIXES.length)]);
+			}
+			if (busyState.awaitIdle(SEARCH_TIMEOUT_MILLIS)) {
+				latency.stop(start);
+			} else {
+				timeouts.increment();
+			}
+		}
+	}
+
+	private static double millis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	private static double percent(long part, long total) {
+		return total > 0 ? 100d * part / total : 0d;
+	}
+
+	/**
+	 * Busy state of the scheduler of a single user. The scheduler turns busy on the calling
+	 * thread of a search, so a search answered by the local cache is idle right away.
+	 */
+	private static class BusyState {
+
+		private boolean mBusy;
+
+		private synchronized void set(boolean busy) {
+			mBusy = busy;
+			notifyAll();
+		}
+
+		private synchronized boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + timeoutMillis;
+			while (mBusy) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return false;
+				}
+				wait(remaining);
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package com.mytrainstation.db;
+
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.Observer;
+import android.arch.paging.LivePagedListBuilder;
+import android.arch.paging.PagedList;
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.room.Room;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mytrainstation.model.TrainStation;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Compares write volume and {@link LiveData} emissions of
+ * {@link TrainStationDao#replaceQueryResult(QueryResult, List, int, int)} with deleting and
+ * inserting all train stations of a result for a search result of 1,000 train stations of which
+ * 5% change between two searches.
+ *
+ * @author JSCHENK
+ */
+@RunWith(AndroidJUnit4.class)
+public class TrainStationDaoBenchmark {
+
+	private static final Logger LOG = Logger.getLogger(TrainStationDaoBenchmark.class);
+
+	private static final int NUMBER_OF_STATIONS = 1000;
+	private static final int NUMBER_OF_SEARCHES = 20;
+	// 5% churn: 20 stations disappear, 20 appear and 10 change
+	private static final int REMOVED_PER_SEARCH = 20;
+	private static final int ADDED_PER_SEARCH = 20;
+	private static final int CHANGED_PER_SEARCH = 10;
+	private static final long EMISSION_SETTLE_MILLIS = 300;
+	private static final String FINGERPRINT = "SEARCH|dresden";
+	private static final int PAGE_SIZE = 20;
+
+	private TrainStationDatabase mDatabase;
+	private TrainStationDao mDao;
+	private LiveData<PagedList<TrainStation>> mTrainStations;
+	private Observer<PagedList<TrainStation>> mObserver;
+	private final AtomicInteger mEmissions = new AtomicInteger();
+	private final Random mRandom = new Random(42);
+	private int mNextId;
+
+	/**
+	 * Creates an in memory database and observes its train stations page by page like the UI
+	 * does.
+	 */
+	@Before
+	public void setUp() {
+		mDatabase = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getTargetContext(),
+				TrainStationDatabase.class).build();
+		mDao = mDatabase.getTrainStationDao();
+		mTrainStations = new LivePagedListBuilder<>(mDao.getTrainStationsByName(FINGERPRINT),
+				PAGE_SIZE).build();
+		mObserver = trainStations -> mEmissions.incrementAndGet();
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> mTrainStations
+				.observeForever(mObserver));
+	}
+
+	/**
+	 * Removes the observer and closes the database.
+	 */
+	@After
+	public void tearDown() {
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> mTrainStations
+				.removeObserver(mObserver));
+		mDatabase.close();
+	}
+
+	/**
+	 * Runs the same sequence of search results through both strategies and compares the number
+	 * of written rows and {@link LiveData} emissions.
+	 */
+	@Test
+	public void TrainStationDao_replaceQueryResult_writesLessRowsAndEmitsOncePerSearch() throws
+			Exception {
+		List<List<TrainStation>> searchResults = createSearchResults();
+
+		Result deleteAndInsert = run(searchResults, false);
+		Result replaceQueryResult = run(searchResults, true);
+		LOG.info(String.format(Locale.getDefault(), "delete+insert: %s", deleteAndInsert));
+		LOG.info(String.format(Locale.getDefault(), "replaceQueryResult: %s",
+				replaceQueryResult));
+
+		Assert.assertThat(mDao.getTrainStationsSnapshot(FINGERPRINT).size(),
+				is(NUMBER_OF_STATIONS));
+		// links and train stations of removed and added stations, changed train stations and
+		// the query result itself
+		Assert.assertThat(replaceQueryResult.mWrittenRows, is((long) NUMBER_OF_SEARCHES *
+				(2 * REMOVED_PER_SEARCH + 2 * ADDED_PER_SEARCH + CHANGED_PER_SEARCH + 1)));
+		Assert.assertThat(replaceQueryResult.mWrittenRows, is(lessThan(deleteAndInsert
+				.mWrittenRows)));
+		Assert.assertThat(replaceQueryResult.mEmissions, is(NUMBER_OF_SEARCHES));
+	}
+
+	private Result run(List<List<TrainStation>> searchResults, boolean replaceQueryResult)
+			throws Exception {
+		deleteAndInsert(searchResults.get(0));
+		awaitEmissions();
+
+		mEmissions.set(0);
+		long changesBefore = totalChanges();
+		long durationNanos = 0;
+		for (List<TrainStation> searchResult : searchResults.subList(1, searchResults.size())) {
+			long start = System.nanoTime();
+			if (replaceQueryResult) {
+				mDao.replaceQueryResult(new QueryResult(FINGERPRINT, System.currentTimeMillis()),
+						searchResult, Integer.MAX_VALUE, Integer.MAX_VALUE);
+			} else {
+				deleteAndInsert(searchResult);
+			}
+			durationNanos += System.nanoTime() - start;
+			// wait for emission of each search, like the UI would bind each result
+			awaitEmissions();
+		}
+		return new Result(totalChanges() - changesBefore, mEmissions.get(), durationNanos);
+	}
+
+	private void deleteAndInsert(List<TrainStation> searchResult) {
+		List<QueryResultStation> links = new ArrayList<>();
+		for (TrainStation trainStation : searchResult) {
+			links.add(new QueryResultStation(FINGERPRINT, trainStation.getId()));
+		}
+		// separate statements like the local cache did before
+		mDao.deleteQueryResultStations(FINGERPRINT);
+		mDao.deleteAll();
+		mDao.insertQueryResult(new QueryResult(FINGERPRINT, System.currentTimeMillis()));
+		mDao.insert(searchResult);
+		mDao.insertQueryResultStations(links);
+	}
+
+	/**
+	 * @return The initial search result followed by {@link #NUMBER_OF_SEARCHES} results with 5%
+	 * churn each.
+	 */
+	private List<List<TrainStation>> createSearchResults() {
+		List<List<TrainStation>> searchResults = new ArrayList<>();
+		List<TrainStation> current = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_STATIONS; i++) {
+			current.add(createTrainStation(mNextId++, false));
+		}
+		searchResults.add(current);
+		for (int search = 0; search < NUMBER_OF_SEARCHES; search++) {
+			List<TrainStation> next = new ArrayList<>(current);
+			for (int i = 0; i < REMOVED_PER_SEARCH; i++) {
+				next.remove(mRandom.nextInt(next.size()));
+			}
+			List<Integer> indices = new ArrayList<>();
+			for (int i = 0; i < next.size(); i++) {
+				indices.add(i);
+			}
+			Collections.shuffle(indices, mRandom);
+			for (int index : indices.subList(0, CHANGED_PER_SEARCH)) {
+				TrainStation trainStation = next.get(index);
+				next.set(index, createTrainStation(trainStation.getId(), !trainStation.hasWifi()));
+			}
+			for (int i = 0; i < ADDED_PER_SEARCH; i++) {
+				next.add(createTrainStation(mNextId++, false));
+			}
+			searchResults.add(next);
+			current = next;
+		}
+		return searchResults;
+	}
+
+	private TrainStation createTrainStation(int id, boolean hasWifi) {
+		return new TrainStation.Builder(id, "Station " + id)
+				.hasWifi(hasWifi)
+				.hasParking(id % 2 == 0)
+				.pictureUrl("http://123.de/" + id + ".jpg")
+				.build();
+	}
+
+	private long totalChanges() {
+		SupportSQLiteDatabase database = mDatabase.getOpenHelper().getWritableDatabase();
+		try (Cursor cursor = database.query("SELECT total_changes()")) {
+			cursor.moveToFirst();
+			return cursor.getLong(0);
+		}
+	}
+
+	/**
+	 * Waits until no further emission arrived within {@link #EMISSION_SETTLE_MILLIS}.
+	 */
+	private void awaitEmissions() throws InterruptedException {
+		int emissions;
+		do {
+			emissions = mEmissions.get();
+			Thread.sleep(EMISSION_SETTLE_MILLIS);
+			InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+		} while (emissions != mEmissions.get());
+	}
+
+	private static class Result {
+
+		private final long mWrittenRows;
+		private final int mEmissions;
+		private final long mDurationNanos;
+
+		private Result(long writtenRows, int emissions, long durationNanos) {
+			mWrittenRows = writtenRows;
+			mEmissions = emissions;
+			mDurationNanos = durationNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.getDefault(), "writtenRows=%s, emissions=%s, " +
+					"duration=%sms", mWrittenRows, mEmissions, mDurationNanos / 1000000);
+		}
+	}
+}
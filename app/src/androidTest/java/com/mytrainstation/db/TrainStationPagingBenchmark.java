@@ -0,0 +1,182 @@
+package com.mytrainstation.db;
+
+import android.arch.paging.PagedList;
+import android.arch.persistence.room.Room;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mytrainstation.model.TrainStation;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Compares the heap that is used to display a stored result of 1,000 and of 10,000 train
+ * stations, loaded page by page (see
+ * {@link TrainStationDao#getTrainStationsByDistance(String, double, double, int)}) and loaded
+ * into a single list like the local cache did before. Also checks which train stations are
+ * loaded by distance.
+ *
+ * @author JSCHENK
+ */
+@RunWith(AndroidJUnit4.class)
+public class TrainStationPagingBenchmark {
+
+	private static final Logger LOG = Logger.getLogger(TrainStationPagingBenchmark.class);
+
+	private static final int SMALL_RESULT = 1000;
+	private static final int LARGE_RESULT = 10000;
+	// the user scrolls through a few pages of the result
+	private static final int SCROLLED_ROWS = 100;
+	private static final long TOLERANCE_BYTES = 256 * 1024;
+	private static final double LATITUDE = 51.05;
+	private static final double LONGITUDE = 13.74;
+	// covers all generated train stations
+	private static final int RADIUS = 100000;
+	private static final String FINGERPRINT = "NEARBY|51.05|13.74|" + RADIUS + "|20";
+	private static final PagedList.Config CONFIG = new PagedList.Config.Builder()
+			.setPageSize(TrainStationLocalCache.PAGE_SIZE)
+			.setPrefetchDistance(TrainStationLocalCache.PAGE_SIZE)
+			.setEnablePlaceholders(false)
+			.build();
+
+	private TrainStationDatabase mDatabase;
+	private TrainStationDao mDao;
+	private final Random mRandom = new Random(42);
+
+	/**
+	 * Creates an in memory database.
+	 */
+	@Before
+	public void setUp() {
+		mDatabase = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getTargetContext(),
+				TrainStationDatabase.class).build();
+		mDao = mDatabase.getTrainStationDao();
+	}
+
+	/**
+	 * Closes the database.
+	 */
+	@After
+	public void tearDown() {
+		mDatabase.close();
+	}
+
+	/**
+	 * Stores both results and compares the heap that is retained by the displayed train
+	 * stations.
+	 */
+	@Test
+	public void TrainStationDao_getTrainStationsByDistance_keepsHeapFlatForLargeResults() {
+		Result small = measure(SMALL_RESULT);
+		Result large = measure(LARGE_RESULT);
+		LOG.info(String.format(Locale.getDefault(), "%s stations: %s", SMALL_RESULT, small));
+		LOG.info(String.format(Locale.getDefault(), "%s stations: %s", LARGE_RESULT, large));
+
+		// pages of both results retain the same heap, while a single list grows with the result
+		Assert.assertThat(large.mPagedBytes, is(lessThan(small.mPagedBytes + TOLERANCE_BYTES)));
+		Assert.assertThat(large.mPagedBytes, is(lessThan(large.mListBytes / 5)));
+	}
+
+	/**
+	 * Tests that a result ordered by the distance to a location only contains the train stations
+	 * within the radius around it, followed by the ones without location.
+	 */
+	@Test
+	public void TrainStationDao_getTrainStationsByDistance_skipsStationsBeyondRadius() {
+		List<TrainStation> trainStations = new ArrayList<>();
+		trainStations.add(new TrainStation.Builder(1, "Far").location(LATITUDE + 0.03,
+				LONGITUDE).build());
+		trainStations.add(new TrainStation.Builder(2, "Unknown").build());
+		trainStations.add(new TrainStation.Builder(3, "Near").location(LATITUDE + 0.01,
+				LONGITUDE).build());
+		trainStations.add(new TrainStation.Builder(4, "Here").location(LATITUDE, LONGITUDE)
+				.build());
+		mDao.replaceQueryResult(new QueryResult(FINGERPRINT, System.currentTimeMillis()),
+				trainStations, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+		// 0.01° of latitude are about 1.1 km, 0.03° about 3.3 km
+		PagedList<TrainStation> pagedList = new PagedList.Builder<>(mDao
+				.getTrainStationsByDistance(FINGERPRINT, LATITUDE, LONGITUDE, 2000).create(),
+				CONFIG)
+				.setNotifyExecutor(Runnable::run)
+				.setFetchExecutor(Runnable::run)
+				.build();
+		List<Integer> ids = new ArrayList<>();
+		for (TrainStation trainStation : pagedList) {
+			ids.add(trainStation.getId());
+		}
+		Assert.assertThat(ids, contains(4, 3, 2));
+	}
+
+	private Result measure(int numberOfStations) {
+		List<TrainStation> trainStations = new ArrayList<>();
+		for (int id = 0; id < numberOfStations; id++) {
+			trainStations.add(new TrainStation.Builder(id, "Station " + id)
+					.location(LATITUDE + mRandom.nextDouble() - 0.5, LONGITUDE + mRandom
+							.nextDouble() - 0.5)
+					.build());
+		}
+		mDao.replaceQueryResult(new QueryResult(FINGERPRINT, System.currentTimeMillis()),
+				trainStations, Integer.MAX_VALUE, Integer.MAX_VALUE);
+		trainStations.clear();
+
+		long before = usedHeap();
+		PagedList<TrainStation> pagedList = new PagedList.Builder<>(mDao
+				.getTrainStationsByDistance(FINGERPRINT, LATITUDE, LONGITUDE, RADIUS).create(),
+				CONFIG)
+				.setNotifyExecutor(Runnable::run)
+				.setFetchExecutor(Runnable::run)
+				.build();
+		for (int position = 0; position < SCROLLED_ROWS; position++) {
+			pagedList.loadAround(Math.min(position, pagedList.size() - 1));
+		}
+		long pagedBytes = usedHeap() - before;
+		Assert.assertThat(pagedList.size() < numberOfStations, is(true));
+
+		before = usedHeap();
+		List<TrainStation> list = mDao.getTrainStationsSnapshot(FINGERPRINT);
+		long listBytes = usedHeap() - before;
+		Assert.assertThat(list.size(), is(numberOfStations));
+		return new Result(pagedBytes, listBytes);
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			runtime.gc();
+			runtime.runFinalization();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static class Result {
+
+		private final long mPagedBytes;
+		private final long mListBytes;
+
+		private Result(long pagedBytes, long listBytes) {
+			mPagedBytes = pagedBytes;
+			mListBytes = listBytes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.getDefault(), "paged=+%sKB, list=+%sKB", mPagedBytes /
+					1024, mListBytes / 1024);
+		}
+	}
+}
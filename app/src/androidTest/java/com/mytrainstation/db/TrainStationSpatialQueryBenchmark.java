@@ -0,0 +1,156 @@
+package com.mytrainstation.db;
+
+import android.arch.persistence.room.Room;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mytrainstation.model.TrainStation;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Compares latency of radius and bounding box queries of {@link TrainStationDao} using the
+ * R*Tree of {@link TrainStationSpatialIndex} with a scan of table 'train_stations' for 10,000
+ * and 100,000 train stations spread over Germany.
+ *
+ * @author JSCHENK
+ */
+@RunWith(AndroidJUnit4.class)
+public class TrainStationSpatialQueryBenchmark {
+
+	private static final Logger LOG = Logger.getLogger(TrainStationSpatialQueryBenchmark.class);
+
+	private static final double MIN_LATITUDE = 47.3;
+	private static final double MAX_LATITUDE = 55.0;
+	private static final double MIN_LONGITUDE = 5.9;
+	private static final double MAX_LONGITUDE = 15.0;
+	private static final int NUMBER_OF_QUERIES = 200;
+	private static final int NUMBER_OF_WARMUP_QUERIES = 20;
+	private static final int RADIUS = 10000;
+	private static final double BOX_SIZE_DEGREES = 0.2;
+	private static final int LIMIT = 10;
+
+	private TrainStationDatabase mDatabase;
+	private TrainStationDao mDao;
+	private final Random mRandom = new Random(42);
+
+	/**
+	 * Creates an in memory database with spatial index.
+	 */
+	@Before
+	public void setUp() {
+		mDatabase = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getTargetContext(),
+				TrainStationDatabase.class)
+				.addCallback(TrainStationDatabase.CREATE_SPATIAL_INDEX)
+				.build();
+		mDao = mDatabase.getTrainStationDao();
+		Assume.assumeThat("rtree module is available", mDao.getSpatialIndexCount(), is(1));
+	}
+
+	/**
+	 * Closes the database.
+	 */
+	@After
+	public void tearDown() {
+		mDatabase.close();
+	}
+
+	/**
+	 * Runs the benchmark with 10,000 train stations.
+	 */
+	@Test
+	public void TrainStationDao_spatialQueries_fasterWithIndexFor10000Stations() {
+		run(10000);
+	}
+
+	/**
+	 * Runs the benchmark with 100,000 train stations.
+	 */
+	@Test
+	public void TrainStationDao_spatialQueries_fasterWithIndexFor100000Stations() {
+		run(100000);
+	}
+
+	private void run(int numberOfStations) {
+		insertTrainStations(numberOfStations);
+		double[][] locations = new double[NUMBER_OF_WARMUP_QUERIES + NUMBER_OF_QUERIES][];
+		for (int i = 0; i < locations.length; i++) {
+			locations[i] = new double[]{randomLatitude(), randomLongitude()};
+		}
+
+		long radiusIndex = measure(locations, true, true);
+		long radiusScan = measure(locations, true, false);
+		long boundsIndex = measure(locations, false, true);
+		long boundsScan = measure(locations, false, false);
+		LOG.info(String.format(Locale.getDefault(), "%s stations, median latency (us): radius " +
+						"index=%s scan=%s, bounds index=%s scan=%s", numberOfStations,
+				radiusIndex / 1000, radiusScan / 1000, boundsIndex / 1000, boundsScan / 1000));
+
+		for (double[] location : locations) {
+			Assert.assertThat(execute(location, true, true), is(execute(location, true, false)));
+			Assert.assertThat(execute(location, false, true), is(execute(location, false,
+					false)));
+		}
+		Assert.assertThat(radiusIndex, is(lessThan(radiusScan)));
+		Assert.assertThat(boundsIndex, is(lessThan(boundsScan)));
+	}
+
+	/**
+	 * @return Median latency of all queries except warmup in nanoseconds.
+	 */
+	private long measure(double[][] locations, boolean radius, boolean useIndex) {
+		long[] durations = new long[NUMBER_OF_QUERIES];
+		for (int i = 0; i < locations.length; i++) {
+			long start = System.nanoTime();
+			execute(locations[i], radius, useIndex);
+			if (i >= NUMBER_OF_WARMUP_QUERIES) {
+				durations[i - NUMBER_OF_WARMUP_QUERIES] = System.nanoTime() - start;
+			}
+		}
+		Arrays.sort(durations);
+		return durations[durations.length / 2];
+	}
+
+	private List<TrainStation> execute(double[] location, boolean radius, boolean useIndex) {
+		if (radius) {
+			return mDao.getTrainStations(TrainStationSpatialIndex.radiusQuery(location[0],
+					location[1], RADIUS, LIMIT, useIndex));
+		}
+		return mDao.getTrainStations(TrainStationSpatialIndex.boundsQuery(location[0],
+				location[1], location[0] + BOX_SIZE_DEGREES, location[1] + BOX_SIZE_DEGREES,
+				LIMIT, useIndex));
+	}
+
+	private void insertTrainStations(int numberOfStations) {
+		List<TrainStation> trainStations = new ArrayList<>(numberOfStations);
+		for (int id = 0; id < numberOfStations; id++) {
+			trainStations.add(new TrainStation.Builder(id, "Station " + id)
+					.location(randomLatitude(), randomLongitude())
+					.build());
+		}
+		mDao.insert(trainStations);
+	}
+
+	private double randomLatitude() {
+		return MIN_LATITUDE + mRandom.nextDouble() * (MAX_LATITUDE - MIN_LATITUDE);
+	}
+
+	private double randomLongitude() {
+		return MIN_LONGITUDE + mRandom.nextDouble() * (MAX_LONGITUDE - MIN_LONGITUDE);
+	}
+}
@@ -0,0 +1,239 @@
+package com.mytrainstation.ui.adapter;
+
+import android.Manifest;
+import android.arch.paging.PagedList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.rule.GrantPermissionRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.ViewGroup;
+import android.webkit.WebView;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+
+import com.mytrainstation.R;
+import com.mytrainstation.db.ListDataSource;
+import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.ui.TrainStationsActivity;
+import com.mytrainstation.ui.image.ImageLoader;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Compares memory usage (PSS of the app process) and bind time per row of
+ * {@link TrainStationsAdapter} using {@link ImageLoader} with the previous binding that loaded
+ * each picture into a {@link WebView}. Rows are attached to the window of
+ * {@link TrainStationsActivity}, so web views actually render their pictures.
+ *
+ * A real device is used instead of Robolectric, since Robolectric shadows {@link WebView} and
+ * wouldn't allocate any of its memory.
+ *
+ * @author JSCHENK
+ */
+@RunWith(AndroidJUnit4.class)
+public class TrainStationsAdapterBenchmark {
+
+	private static final Logger LOG = Logger.getLogger(TrainStationsAdapterBenchmark.class);
+
+	// rows that are visible on a typical screen
+	private static final int NUMBER_OF_ROWS = 10;
+	private static final int PICTURE_WIDTH = 1920;
+	private static final int PICTURE_HEIGHT = 1080;
+	private static final long SETTLE_MILLIS = 3000;
+	private static final String HTML_MIME_TYPE = "text/html";
+
+	@Rule
+	public ActivityTestRule<TrainStationsActivity> mActivityRule = new ActivityTestRule<>(
+			TrainStationsActivity.class, false, true);
+
+	@Rule
+	public GrantPermissionRule mRuntimePermissionRule = GrantPermissionRule.grant(Manifest
+			.permission.ACCESS_FINE_LOCATION);
+
+	private MockWebServer mServer;
+	private LinearLayout mContainer;
+	private final List<TrainStation> mTrainStations = new ArrayList<>();
+
+	/**
+	 * Starts a local server that serves a full hd picture for each train station and adds an
+	 * empty container to the activity.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		Bitmap bitmap = Bitmap.createBitmap(PICTURE_WIDTH, PICTURE_HEIGHT, Bitmap.Config
+				.ARGB_8888);
+		new Canvas(bitmap).drawColor(Color.DKGRAY);
+		ByteArrayOutputStream picture = new ByteArrayOutputStream();
+		bitmap.compress(Bitmap.CompressFormat.JPEG, 90, picture);
+		bitmap.recycle();
+
+		mServer = new MockWebServer();
+		mServer.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				return new MockResponse().setHeader("Content-Type", "image/jpeg").setBody(new
+						Buffer().write(picture.toByteArray()));
+			}
+		});
+		mServer.start();
+		for (int id = 0; id < NUMBER_OF_ROWS; id++) {
+			mTrainStations.add(new TrainStation.Builder(id, "Station " + id)
+					.pictureUrl(mServer.url("/photos/" + id + ".jpg").toString())
+					.build());
+		}
+
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+			mContainer = new LinearLayout(mActivityRule.getActivity());
+			mContainer.setOrientation(LinearLayout.VERTICAL);
+			mActivityRule.getActivity().addContentView(mContainer, new ViewGroup.LayoutParams
+					(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+		});
+	}
+
+	/**
+	 * Stops the local server.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		mServer.shutdown();
+	}
+
+	/**
+	 * Binds the same rows with web views and with {@link ImageLoader} and compares memory usage
+	 * and bind time per row.
+	 */
+	@Test
+	public void TrainStationsAdapter_onBindViewHolder_usesLessMemoryAndBindsFasterThanWebView() throws
+			Exception {
+		// image loader first, since memory of web views isn't released completely afterwards
+		Result imageLoader = measure(this::bindImageLoaderRows);
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+			for (int i = 0; i < mContainer.getChildCount(); i++) {
+				ImageView picture = mContainer.getChildAt(i).findViewById(R.id
+						.iv_train_station_picture);
+				Assert.assertThat(picture.getDrawable() != null, is(true));
+			}
+		});
+		Result webView = measure(this::bindWebViewRows);
+		LOG.info(String.format(Locale.getDefault(), "web view: %s", webView));
+		LOG.info(String.format(Locale.getDefault(), "image loader: %s", imageLoader));
+
+		Assert.assertThat(imageLoader.mPssKb, is(lessThan(webView.mPssKb)));
+		Assert.assertThat(imageLoader.mBindNanosPerRow, is(lessThan(webView.mBindNanosPerRow)));
+	}
+
+	private Result measure(Runnable bindRows) throws InterruptedException {
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> mContainer
+				.removeAllViews());
+		settle();
+		long pssBefore = Debug.getPss();
+
+		long[] bindNanos = new long[1];
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+			long start = System.nanoTime();
+			bindRows.run();
+			bindNanos[0] = System.nanoTime() - start;
+		});
+		// wait until pictures are loaded and rendered
+		settle();
+		return new Result(Debug.getPss() - pssBefore, bindNanos[0] / NUMBER_OF_ROWS);
+	}
+
+	private void settle() throws InterruptedException {
+		InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+		Thread.sleep(SETTLE_MILLIS);
+		Runtime.getRuntime().gc();
+		InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+	}
+
+	/**
+	 * Binds each row like {@link TrainStationsAdapter} did before, with a web view per picture.
+	 */
+	private void bindWebViewRows() {
+		int width = mActivityRule.getActivity().getResources().getDimensionPixelSize(R.dimen
+				.lists_two_line_item_image_width);
+		int height = mActivityRule.getActivity().getResources().getDimensionPixelSize(R.dimen
+				.lists_two_line_item_image_height);
+		for (TrainStation trainStation : mTrainStations) {
+			WebView webView = new WebView(mActivityRule.getActivity());
+			webView.setLayoutParams(new LinearLayout.LayoutParams(width, height));
+			String html = "<html><body><img src=\"" + trainStation.getPictureUrl() + "\" " +
+					"width=\"100%\"\"/></body></html>";
+			webView.loadData(html, HTML_MIME_TYPE, null);
+			mContainer.addView(webView);
+		}
+	}
+
+	private void bindImageLoaderRows() {
+		ImageLoader imageLoader = new ImageLoader(new OkHttpClient.Builder().build(), Executors
+				.newFixedThreadPool(3), 8 * 1024 * 1024, null);
+		TrainStationsAdapter adapter = new TrainStationsAdapter(imageLoader);
+		// the first list is applied immediately
+		adapter.submitList(toPagedList(mTrainStations));
+		for (int position = 0; position < adapter.getItemCount(); position++) {
+			TrainStationsAdapter.ViewHolder viewHolder = adapter.createViewHolder(mContainer, 0);
+			adapter.bindViewHolder(viewHolder, position);
+			mContainer.addView(viewHolder.itemView);
+		}
+	}
+
+	/**
+	 * @return A paged list that loads all passed train stations at once, like the list that was
+	 * displayed before.
+	 */
+	private static PagedList<TrainStation> toPagedList(List<TrainStation> trainStations) {
+		PagedList.Config config = new PagedList.Config.Builder()
+				.setPageSize(Math.max(1, trainStations.size()))
+				.setInitialLoadSizeHint(Math.max(1, trainStations.size()))
+				.setEnablePlaceholders(false)
+				.build();
+		return new PagedList.Builder<>(new ListDataSource<>(trainStations), config)
+				.setNotifyExecutor(Runnable::run)
+				.setFetchExecutor(Runnable::run)
+				.build();
+	}
+
+	private static class Result {
+
+		private final long mPssKb;
+		private final long mBindNanosPerRow;
+
+		private Result(long pssKb, long bindNanosPerRow) {
+			mPssKb = pssKb;
+			mBindNanosPerRow = bindNanosPerRow;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.getDefault(), "pss=+%sKB, bind=%sus/row", mPssKb,
+					mBindNanosPerRow / 1000);
+		}
+	}
+}
@@ -0,0 +1,275 @@
+package com.mytrainstation.ui.adapter;
+
+import android.Manifest;
+import android.arch.paging.PagedList;
+import android.content.Context;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.rule.GrantPermissionRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Printer;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.FrameLayout;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import com.mytrainstation.R;
+import com.mytrainstation.db.ListDataSource;
+import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.ui.TrainStationsActivity;
+import com.mytrainstation.ui.image.ImageLoader;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+import okhttp3.OkHttpClient;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Compares the number of bound rows and the time spent on the main thread when a list of 500
+ * train stations changes by a few stations, for {@link TrainStationsAdapter} and for the
+ * previous list view adapter that replaced all of its items on each update.
+ *
+ * Item animations are disabled, since the list view didn't animate updates either.
+ *
+ * @author JSCHENK
+ */
+@RunWith(AndroidJUnit4.class)
+public class TrainStationsAdapterDiffBenchmark {
+
+	private static final Logger LOG = Logger.getLogger(TrainStationsAdapterDiffBenchmark.class);
+
+	private static final int NUMBER_OF_STATIONS = 500;
+	private static final long POLL_MILLIS = 20;
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	@Rule
+	public ActivityTestRule<TrainStationsActivity> mActivityRule = new ActivityTestRule<>(
+			TrainStationsActivity.class, false, true);
+
+	@Rule
+	public GrantPermissionRule mRuntimePermissionRule = GrantPermissionRule.grant(Manifest
+			.permission.ACCESS_FINE_LOCATION);
+
+	private FrameLayout mContainer;
+	private final List<TrainStation> mTrainStations = new ArrayList<>();
+	private final List<TrainStation> mChangedTrainStations = new ArrayList<>();
+	private final ImageLoader mImageLoader = new ImageLoader(new OkHttpClient.Builder().build(),
+			Executors.newSingleThreadExecutor(), 1024 * 1024, null);
+
+	/**
+	 * Creates 500 train stations and a copy with a few changed, removed and inserted stations
+	 * within and below the visible rows, and adds an empty container to the activity.
+	 */
+	@Before
+	public void setUp() {
+		for (int id = 0; id < NUMBER_OF_STATIONS; id++) {
+			mTrainStations.add(new TrainStation.Builder(id, "Station " + id).hasWifi(id % 2 == 0)
+					.build());
+		}
+		mChangedTrainStations.addAll(mTrainStations);
+		mChangedTrainStations.set(2, new TrainStation.Builder(2, "Station 2").hasWifi(false)
+				.hasParking(true).build());
+		mChangedTrainStations.remove(300);
+		mChangedTrainStations.remove(5);
+		mChangedTrainStations.add(1, new TrainStation.Builder(1001, "Station 1001").build());
+		mChangedTrainStations.add(400, new TrainStation.Builder(1002, "Station 1002").build());
+		mChangedTrainStations.add(new TrainStation.Builder(1003, "Station 1003").build());
+
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+			mContainer = new FrameLayout(mActivityRule.getActivity());
+			mActivityRule.getActivity().addContentView(mContainer, new ViewGroup.LayoutParams
+					(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+		});
+	}
+
+	/**
+	 * Applies the same update to both adapters and compares bound rows and main thread time.
+	 */
+	@Test
+	public void TrainStationsAdapter_submitList_bindsOnlyChangedRowsWithLessMainThreadTime()
+			throws InterruptedException {
+		CountingAdapter adapter = new CountingAdapter(mImageLoader);
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+			RecyclerView recyclerView = new RecyclerView(mActivityRule.getActivity());
+			recyclerView.setLayoutManager(new LinearLayoutManager(mActivityRule.getActivity()));
+			recyclerView.setItemAnimator(null);
+			recyclerView.setAdapter(adapter);
+			adapter.submitList(toPagedList(mTrainStations));
+			mContainer.addView(recyclerView);
+		});
+		Result recyclerView = measure(() -> adapter.submitList(toPagedList(mChangedTrainStations)),
+				() -> adapter.getItemCount() == mChangedTrainStations.size(), () -> adapter
+						.mBindCount);
+
+		ListViewAdapter listViewAdapter = new ListViewAdapter(mActivityRule.getActivity());
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+			mContainer.removeAllViews();
+			ListView listView = new ListView(mActivityRule.getActivity());
+			listView.setAdapter(listViewAdapter);
+			listViewAdapter.submitList(mTrainStations);
+			mContainer.addView(listView);
+		});
+		Result listView = measure(() -> listViewAdapter.submitList(mChangedTrainStations), () ->
+				listViewAdapter.getCount() == mChangedTrainStations.size(), () ->
+				listViewAdapter.mBindCount);
+
+		LOG.info(String.format(Locale.getDefault(), "list view: %s", listView));
+		LOG.info(String.format(Locale.getDefault(), "recycler view: %s", recyclerView));
+		Assert.assertThat(recyclerView.mBindCount, is(lessThan(listView.mBindCount)));
+		Assert.assertThat(recyclerView.mMainThreadNanos, is(lessThan(listView.mMainThreadNanos)));
+	}
+
+	private Result measure(Runnable update, BooleanSupplier applied, IntSupplier bindCount)
+			throws InterruptedException {
+		InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+		MainThreadTimer timer = new MainThreadTimer();
+		int[] bindsBefore = new int[1];
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+			bindsBefore[0] = bindCount.getAsInt();
+			Looper.getMainLooper().setMessageLogging(timer);
+		});
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(update);
+
+		boolean[] done = new boolean[1];
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (!done[0] && System.currentTimeMillis() < deadline) {
+			Thread.sleep(POLL_MILLIS);
+			InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> done[0] = applied
+					.getAsBoolean());
+		}
+		Assert.assertThat(done[0], is(true));
+		// wait for the layout of changed rows
+		InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+		int[] binds = new int[1];
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+			Looper.getMainLooper().setMessageLogging(null);
+			binds[0] = bindCount.getAsInt() - bindsBefore[0];
+		});
+		return new Result(binds[0], timer.mTotalNanos);
+	}
+
+	/**
+	 * @return A paged list that loads all passed train stations at once, like the list that was
+	 * displayed before.
+	 */
+	private static PagedList<TrainStation> toPagedList(List<TrainStation> trainStations) {
+		PagedList.Config config = new PagedList.Config.Builder()
+				.setPageSize(Math.max(1, trainStations.size()))
+				.setInitialLoadSizeHint(Math.max(1, trainStations.size()))
+				.setEnablePlaceholders(false)
+				.build();
+		return new PagedList.Builder<>(new ListDataSource<>(trainStations), config)
+				.setNotifyExecutor(Runnable::run)
+				.setFetchExecutor(Runnable::run)
+				.build();
+	}
+
+	/**
+	 * Sums up the time of all messages that were dispatched by the main looper.
+	 */
+	private static class MainThreadTimer implements Printer {
+
+		private long mStart;
+		private volatile long mTotalNanos;
+
+		@Override
+		public void println(String message) {
+			if (message.startsWith(">>>>>")) {
+				mStart = System.nanoTime();
+			} else if (message.startsWith("<<<<<") && mStart != 0) {
+				mTotalNanos += System.nanoTime() - mStart;
+				mStart = 0;
+			}
+		}
+	}
+
+	private static class CountingAdapter extends TrainStationsAdapter {
+
+		private int mBindCount;
+
+		private CountingAdapter(@NonNull ImageLoader imageLoader) {
+			super(imageLoader);
+		}
+
+		@Override
+		public void onBindViewHolder(@NonNull ViewHolder viewHolder, int position) {
+			mBindCount++;
+			super.onBindViewHolder(viewHolder, position);
+		}
+	}
+
+	/**
+	 * Binds rows like {@link TrainStationsAdapter} did before, as items of a list view.
+	 */
+	private static class ListViewAdapter extends ArrayAdapter<TrainStation> {
+
+		private int mBindCount;
+
+		private ListViewAdapter(@NonNull Context context) {
+			super(context, 0, new ArrayList<>());
+		}
+
+		@NonNull
+		@Override
+		public View getView(int position, View convertView, @NonNull ViewGroup parent) {
+			mBindCount++;
+			if (convertView == null) {
+				convertView = LayoutInflater.from(getContext()).inflate(R.layout
+						.train_station_list_item, parent, false);
+			}
+			TrainStation trainStation = getItem(position);
+			TextView name = convertView.findViewById(R.id.tv_train_station_name);
+			name.setText(trainStation != null ? trainStation.getName() : null);
+			convertView.findViewById(R.id.iv_train_station_has_wifi).setVisibility(trainStation
+					!= null && trainStation.hasWifi() ? View.VISIBLE : View.INVISIBLE);
+			convertView.findViewById(R.id.iv_train_station_has_parking).setVisibility
+					(trainStation != null && trainStation.hasParking() ? View.VISIBLE : View
+							.INVISIBLE);
+			return convertView;
+		}
+
+		private void submitList(@NonNull List<TrainStation> trainStations) {
+			clear();
+			addAll(trainStations);
+			notifyDataSetChanged();
+		}
+	}
+
+	private static class Result {
+
+		private final int mBindCount;
+		private final long mMainThreadNanos;
+
+		private Result(int bindCount, long mainThreadNanos) {
+			mBindCount = bindCount;
+			mMainThreadNanos = mainThreadNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.getDefault(), "binds=%s, main thread=%sus", mBindCount,
+					mMainThreadNanos / 1000);
+		}
+	}
+}
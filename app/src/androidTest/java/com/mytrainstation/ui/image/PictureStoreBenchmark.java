@@ -0,0 +1,242 @@
+package com.mytrainstation.ui.image;
+
+import android.arch.persistence.room.Room;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.mytrainstation.R;
+import com.mytrainstation.db.TrainStationDatabase;
+import com.mytrainstation.model.TrainStation;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Compares disk usage and cold-load latency of pictures stored by {@link PictureStore} with
+ * fetching them again from their url. Train stations share a few distinct full hd pictures
+ * under their own urls, which are served by a local server that is throttled to a mobile
+ * connection.
+ *
+ * @author JSCHENK
+ */
+@RunWith(AndroidJUnit4.class)
+public class PictureStoreBenchmark {
+
+	private static final Logger LOG = Logger.getLogger(PictureStoreBenchmark.class);
+
+	private static final int NUMBER_OF_STATIONS = 60;
+	private static final int NUMBER_OF_PICTURES = 12;
+	private static final int PICTURE_WIDTH = 1920;
+	private static final int PICTURE_HEIGHT = 1080;
+	// roughly 1.3 MB/s and a round trip of 50 ms
+	private static final long THROTTLE_BYTES_PER_PERIOD = 128 * 1024;
+	private static final long THROTTLE_PERIOD_MILLIS = 100;
+	private static final long RESPONSE_DELAY_MILLIS = 50;
+	private static final long QUOTA_BYTES = 10 * 1024 * 1024;
+
+	private TrainStationDatabase mDatabase;
+	private File mDirectory;
+	private PictureStore mPictureStore;
+	private MockWebServer mServer;
+	private final OkHttpClient mHttpClient = new OkHttpClient.Builder().build();
+	private final List<byte[]> mPictures = new ArrayList<>();
+	private final List<TrainStation> mTrainStations = new ArrayList<>();
+	private int mWidth;
+	private int mHeight;
+
+	/**
+	 * Creates an in memory database with train stations and starts a local server that serves
+	 * their pictures.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		Context context = InstrumentationRegistry.getTargetContext();
+		mWidth = context.getResources().getDimensionPixelSize(R.dimen
+				.lists_two_line_item_image_width);
+		mHeight = context.getResources().getDimensionPixelSize(R.dimen
+				.lists_two_line_item_image_height);
+		Random random = new Random(42);
+		for (int i = 0; i < NUMBER_OF_PICTURES; i++) {
+			mPictures.add(createPicture(random));
+		}
+
+		mServer = new MockWebServer();
+		mServer.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				int station = Integer.parseInt(request.getPath().replaceAll("\\D", ""));
+				return new MockResponse().setHeader("Content-Type", "image/jpeg")
+						.setBody(new Buffer().write(mPictures.get(station % NUMBER_OF_PICTURES)))
+						.setBodyDelay(RESPONSE_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+						.throttleBody(THROTTLE_BYTES_PER_PERIOD, THROTTLE_PERIOD_MILLIS,
+								TimeUnit.MILLISECONDS);
+			}
+		});
+		mServer.start();
+
+		mDatabase = Room.inMemoryDatabaseBuilder(context, TrainStationDatabase.class).build();
+		for (int id = 0; id < NUMBER_OF_STATIONS; id++) {
+			mTrainStations.add(new TrainStation.Builder(id, "Station " + id)
+					.pictureUrl(mServer.url("/photos/" + id + ".jpg").toString())
+					.build());
+		}
+		mDatabase.getTrainStationDao().insert(mTrainStations);
+		mDirectory = new File(context.getCacheDir(), "picture_store_benchmark");
+		mPictureStore = new PictureStore(mDatabase.getResourceDao(), mDirectory, QUOTA_BYTES);
+	}
+
+	/**
+	 * Stops the local server, closes the database and deletes stored pictures.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		mServer.shutdown();
+		mDatabase.close();
+		File[] files = mDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				Assert.assertThat(file.delete(), is(true));
+			}
+		}
+	}
+
+	/**
+	 * Stores the pictures of all train stations and compares disk usage and median latency of
+	 * decoding them from disk with fetching and decoding them again.
+	 */
+	@Test
+	public void PictureStore_open_usesLessDiskAndLoadsFasterThanRefetch() throws IOException {
+		long[] refetch = new long[NUMBER_OF_STATIONS];
+		long originalBytes = 0;
+		for (int i = 0; i < NUMBER_OF_STATIONS; i++) {
+			long start = System.nanoTime();
+			byte[] picture = fetch(mTrainStations.get(i).getPictureUrl());
+			Assert.assertThat(BitmapDecoder.decodeSampled(picture, mWidth, mHeight) != null,
+					is(true));
+			refetch[i] = System.nanoTime() - start;
+			originalBytes += picture.length;
+			Assert.assertThat(mPictureStore.store(mTrainStations.get(i).getPictureUrl(),
+					picture), is(true));
+		}
+
+		long[] coldLoad = new long[NUMBER_OF_STATIONS];
+		for (int i = 0; i < NUMBER_OF_STATIONS; i++) {
+			long start = System.nanoTime();
+			try (FileInputStream stream = mPictureStore.open(mTrainStations.get(i)
+					.getPictureUrl())) {
+				Assert.assertThat(stream != null, is(true));
+				Assert.assertThat(BitmapDecoder.decodeSampled(stream.getFD(), mWidth, mHeight)
+						!= null, is(true));
+			}
+			coldLoad[i] = System.nanoTime() - start;
+		}
+
+		long diskUsage = mPictureStore.getDiskUsage();
+		File[] files = mDirectory.listFiles();
+		LOG.info(String.format(Locale.getDefault(), "%s stations, %s pictures: disk usage " +
+						"%sKB (%s files) vs. %sKB fetched, median latency cold load=%sus " +
+						"refetch=%sus", NUMBER_OF_STATIONS, NUMBER_OF_PICTURES, diskUsage / 1024,
+				files != null ? files.length : 0, originalBytes / 1024, median(coldLoad) / 1000,
+				median(refetch) / 1000));
+
+		Assert.assertThat(files != null ? files.length : 0, is(NUMBER_OF_PICTURES));
+		// all thumbnails take less space than a few of the original pictures
+		Assert.assertThat(diskUsage, is(lessThan(originalBytes / 10)));
+		Assert.assertThat(median(coldLoad), is(lessThan(median(refetch))));
+	}
+
+	/**
+	 * Tests that {@link PictureStore#collectGarbage()} will delete pictures that aren't linked
+	 * anymore as well as least recently accessed pictures if the quota is exceeded.
+	 */
+	@Test
+	public void PictureStore_collectGarbage_deletesOrphanedPicturesAndKeepsQuota() throws
+			IOException {
+		for (int i = 0; i < NUMBER_OF_PICTURES; i++) {
+			String pictureUrl = mTrainStations.get(i).getPictureUrl();
+			Assert.assertThat(mPictureStore.store(pictureUrl, fetch(pictureUrl)), is(true));
+		}
+		long diskUsage = mPictureStore.getDiskUsage();
+		mDatabase.getTrainStationDao().deleteAll();
+		Assert.assertThat(mPictureStore.collectGarbage(), is(diskUsage));
+		Assert.assertThat(mPictureStore.getDiskUsage(), is(0L));
+
+		mDatabase.getTrainStationDao().insert(mTrainStations);
+		PictureStore pictureStore = new PictureStore(mDatabase.getResourceDao(), mDirectory,
+				diskUsage / 2);
+		for (int i = 0; i < NUMBER_OF_PICTURES; i++) {
+			String pictureUrl = mTrainStations.get(i).getPictureUrl();
+			pictureStore.store(pictureUrl, fetch(pictureUrl));
+		}
+		Assert.assertThat(pictureStore.getDiskUsage() <= diskUsage / 2, is(true));
+		// the last picture is never evicted by its own write
+		Assert.assertThat(pictureStore.open(mTrainStations.get(NUMBER_OF_PICTURES - 1)
+				.getPictureUrl()) != null, is(true));
+	}
+
+	private byte[] fetch(String url) throws IOException {
+		try (Response response = mHttpClient.newCall(new Request.Builder().url(url).build())
+				.execute()) {
+			return response.body().bytes();
+		}
+	}
+
+	private static long median(long[] durations) {
+		long[] sorted = Arrays.copyOf(durations, durations.length);
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	/**
+	 * @return A full hd jpeg with some random shapes, so it is compressed like a photo.
+	 */
+	private static byte[] createPicture(Random random) {
+		Bitmap bitmap = Bitmap.createBitmap(PICTURE_WIDTH, PICTURE_HEIGHT, Bitmap.Config
+				.ARGB_8888);
+		Canvas canvas = new Canvas(bitmap);
+		canvas.drawColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+		Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		for (int i = 0; i < 200; i++) {
+			paint.setColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt
+					(256)));
+			canvas.drawCircle(random.nextInt(PICTURE_WIDTH), random.nextInt(PICTURE_HEIGHT),
+					20 + random.nextInt(200), paint);
+		}
+		ByteArrayOutputStream picture = new ByteArrayOutputStream();
+		bitmap.compress(Bitmap.CompressFormat.JPEG, 90, picture);
+		bitmap.recycle();
+		return picture.toByteArray();
+	}
+}
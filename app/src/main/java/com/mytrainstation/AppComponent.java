@@ -0,0 +1,167 @@
+package com.mytrainstation;
+
+import android.app.Application;
+import android.support.annotation.NonNull;
+
+import com.mytrainstation.api.TrainStationService;
+import com.mytrainstation.data.LatestRequestScheduler;
+import com.mytrainstation.data.PriorityTaskScheduler;
+import com.mytrainstation.data.TrainStationRepository;
+import com.mytrainstation.db.TrainStationDatabase;
+import com.mytrainstation.db.TrainStationLocalCache;
+import com.mytrainstation.logging.FastLogger;
+import com.mytrainstation.ui.image.ImageLoader;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Application scoped object graph that is owned by {@link TrainStationApplication}. Holds a
+ * single http client with its connection pool, the shared {@link PriorityTaskScheduler} and all
+ * objects that depend on them, so they are created once per process instead of once per
+ * activity (see {@link Injection}) and could be shut down in order.
+ *
+ * @author JSCHENK
+ */
+public class AppComponent {
+
+	private static final FastLogger LOG = FastLogger.getLogger(AppComponent.class);
+
+	// pending writes of the local cache should be completed before database is closed
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 2;
+	private static final int SCHEDULER_WORKERS = 4;
+
+	private final Application mApplication;
+	private final String mServerUrl;
+	private final OkHttpClient mHttpClient;
+	private final PriorityTaskScheduler mTaskScheduler;
+	// bounded and separate, since chunks are awaited by tasks of the scheduler
+	private final ExecutorService mChunkExecutor;
+
+	private TrainStationRepository mTrainStationRepository;
+	private ImageLoader mImageLoader;
+	private boolean mShutdown;
+
+	/**
+	 * Sends queries to the graphql endpoint of the build (see
+	 * {@link BuildConfig#GRAPHQL_SERVER_URL}).
+	 *
+	 * @param application
+	 * 		The application context that will be used to initialize all objects of the graph.
+	 */
+	public AppComponent(@NonNull Application application) {
+		this(application, BuildConfig.GRAPHQL_SERVER_URL);
+	}
+
+	/**
+	 * @param application
+	 * 		The application context that will be used to initialize all objects of the graph.
+	 * @param serverUrl
+	 * 		The url of the graphql endpoint, e.g. of a local stand-in for load tests.
+	 */
+	public AppComponent(@NonNull Application application, @NonNull String serverUrl) {
+		mApplication = application;
+		mServerUrl = serverUrl;
+		mHttpClient = new OkHttpClient.Builder().build();
+		mTaskScheduler = new PriorityTaskScheduler(SCHEDULER_WORKERS);
+		mChunkExecutor = Executors.newFixedThreadPool(TrainStationService.MAX_PARALLEL_CHUNKS);
+	}
+
+	/**
+	 * @return The http client that is shared by all requests of the app.
+	 */
+	@NonNull
+	public OkHttpClient getHttpClient() {
+		return mHttpClient;
+	}
+
+	/**
+	 * @return The scheduler that runs all background work of the app by priority.
+	 */
+	@NonNull
+	public PriorityTaskScheduler getTaskScheduler() {
+		return mTaskScheduler;
+	}
+
+	/**
+	 * @return The repository of train stations. Will be created on first call.
+	 * @throws IllegalStateException
+	 * 		If component was already shut down.
+	 */
+	@NonNull
+	public synchronized TrainStationRepository getTrainStationRepository() {
+		checkNotShutdown();
+		if (mTrainStationRepository == null) {
+			TrainStationService service = new TrainStationService(mApplication, mServerUrl,
+					mHttpClient, mChunkExecutor);
+			// methods on the local data source run one after another
+			TrainStationLocalCache localCache = new TrainStationLocalCache(TrainStationDatabase
+					.getInstance(mApplication).getTrainStationDao(), mTaskScheduler.newQueue
+					(PriorityTaskScheduler.Priority.BACKGROUND_REFRESH, true));
+			mTrainStationRepository = new TrainStationRepository(service, localCache, new
+					LatestRequestScheduler(mTaskScheduler));
+		}
+		return mTrainStationRepository;
+	}
+
+	/**
+	 * @return The loader of train station pictures. Will be created on first call.
+	 * @throws IllegalStateException
+	 * 		If component was already shut down.
+	 */
+	@NonNull
+	public synchronized ImageLoader getImageLoader() {
+		checkNotShutdown();
+		if (mImageLoader == null) {
+			mImageLoader = ImageLoader.create(mApplication, mHttpClient, mTaskScheduler.newQueue
+					(PriorityTaskScheduler.Priority.MAINTENANCE, true));
+		}
+		return mImageLoader;
+	}
+
+	/**
+	 * Shuts down the graph: running requests and picture loads are cancelled, idle connections
+	 * are closed and the database is closed after pending writes were completed. Objects of the
+	 * graph must not be used afterwards.
+	 */
+	public synchronized void shutdown() {
+		if (mShutdown) {
+			return;
+		}
+		mShutdown = true;
+		mChunkExecutor.shutdownNow();
+		if (mImageLoader != null) {
+			mImageLoader.shutdown();
+		}
+		mHttpClient.dispatcher().cancelAll();
+		mHttpClient.dispatcher().executorService().shutdown();
+		mHttpClient.connectionPool().evictAll();
+		mTaskScheduler.shutdown();
+		try {
+			if (!mTaskScheduler.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				LOG.warn("Pending writes of local cache weren't completed in time");
+				mTaskScheduler.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			mTaskScheduler.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		TrainStationDatabase.getInstance(mApplication).close();
+	}
+
+	/**
+	 * @return True, if {@link #shutdown()} was called, otherwise false.
+	 */
+	public synchronized boolean isShutdown() {
+		return mShutdown;
+	}
+
+	private void checkNotShutdown() {
+		if (mShutdown) {
+			throw new IllegalStateException("Component was already shut down");
+		}
+	}
+}
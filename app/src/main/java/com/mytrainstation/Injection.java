@@ -4,56 +4,58 @@ import android.app.Application;
 import android.arch.lifecycle.ViewModelProvider;
 import android.support.annotation.NonNull;
 
-import com.mytrainstation.api.TrainStationService;
 import com.mytrainstation.api.location.LocationProvider;
 import com.mytrainstation.data.TrainStationRepository;
-import com.mytrainstation.db.TrainStationDatabase;
 import com.mytrainstation.db.TrainStationLocalCache;
 import com.mytrainstation.ui.ViewModelFactory;
-
-import java.util.concurrent.Executors;
+import com.mytrainstation.ui.image.ImageLoader;
 
 /**
  * Class that handles object creation.
  * Like this, objects can be passed as parameters in the constructors and then replaced for
- * testing, where needed.
+ * testing, where needed. Objects that hold clients, databases or thread pools are taken from
+ * the application scoped {@link AppComponent}, so they aren't created again on each
+ * configuration change.
  *
  * @author JSCHENK
  */
 public class Injection {
 
-	private static TrainStationLocalCache provideTrainStationLocalCache(
-			@NonNull Application application) {
-		return new TrainStationLocalCache(TrainStationDatabase.getInstance(application)
-				.getTrainStationDao(), Executors.newSingleThreadExecutor());
-	}
-
-	private static TrainStationRepository provideTrainStationRepository(
-			@NonNull Application application) {
-		return new TrainStationRepository(new TrainStationService(application),
-				provideTrainStationLocalCache(application));
+	private static AppComponent provideAppComponent(@NonNull Application application) {
+		return ((TrainStationApplication) application).getAppComponent();
 	}
 
 	private static LocationProvider provideLocationProvider(@NonNull Application application) {
 		return new LocationProvider(application);
 	}
 
+	/**
+	 * @param application
+	 * 		The application that owns the loader.
+	 * @return The loader of train station pictures that is shared by all activities.
+	 */
+	public static ImageLoader provideImageLoader(@NonNull Application application) {
+		return provideAppComponent(application).getImageLoader();
+	}
+
 	/**
 	 * Provides the {@link ViewModelProvider.Factory} that is then used to get a reference to
 	 * {@link android.arch.lifecycle.ViewModel} objects.
 	 *
 	 * @param application
-	 * 		The application context that will be used to initialize repository (see
-	 * 		{@link TrainStationRepository}), local cache (see {@link TrainStationLocalCache}) and
-	 * 		location provider (see {@link LocationProvider}).
+	 * 		The application context that will be used to retrieve the shared repository (see
+	 * 		{@link TrainStationRepository}) with its local cache (see
+	 * 		{@link TrainStationLocalCache}) and to initialize location provider (see
+	 * 		{@link LocationProvider}).
 	 * @return A {@link android.arch.lifecycle.ViewModelProvider.Factory} that could be used to
 	 * initialize {@link android.arch.lifecycle.ViewModel} via
 	 * {@link android.arch.lifecycle.ViewModelProvider#get(Class)}.
 	 */
 	public static ViewModelProvider.Factory provideViewModelFactory(
 			@NonNull Application application) {
-		return new ViewModelFactory(application, provideTrainStationRepository(application),
-				provideLocationProvider(application));
+		AppComponent appComponent = provideAppComponent(application);
+		return new ViewModelFactory(application, appComponent.getTrainStationRepository(),
+				provideLocationProvider(application), appComponent.getTaskScheduler());
 	}
 
 }
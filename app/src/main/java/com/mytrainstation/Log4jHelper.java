@@ -1,17 +1,29 @@
 package com.mytrainstation;
 
+import com.mytrainstation.logging.AsyncRingBufferAppender;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.FileAppender;
 import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 
 import de.mindpipe.android.logging.log4j.LogConfigurator;
 
 /**
- * Helper class to configure log4j for application.
+ * Helper class to configure log4j for application. The log file is written asynchronously by
+ * an {@link AsyncRingBufferAppender}, so logging threads don't wait for file I/O.
  *
  * @author JSCHENK
  */
 public class Log4jHelper {
 
 	private final static LogConfigurator _logConfigurator = new LogConfigurator();
+	// number of pending log events until further events below level ERROR are dropped
+	private final static int ASYNC_CAPACITY = 1024;
 
 	/**
 	 * @param fileName
@@ -40,6 +52,27 @@ public class Log4jHelper {
 		_logConfigurator.setRootLevel(level);
 		// configure
 		_logConfigurator.configure();
+		writeFilesAsync();
+	}
+
+	/**
+	 * Waits until all pending log events are written to the log file, e.g. before the process
+	 * dies.
+	 *
+	 * @param timeoutMillis
+	 * 		The maximum time to wait in milliseconds.
+	 * @return True, if all events were written in time, otherwise false.
+	 */
+	public static boolean flush(long timeoutMillis) {
+		boolean flushed = true;
+		Enumeration appenders = Logger.getRootLogger().getAllAppenders();
+		while (appenders.hasMoreElements()) {
+			Object appender = appenders.nextElement();
+			if (appender instanceof AsyncRingBufferAppender) {
+				flushed &= ((AsyncRingBufferAppender) appender).flush(timeoutMillis);
+			}
+		}
+		return flushed;
 	}
 
 	/**
@@ -57,10 +90,32 @@ public class Log4jHelper {
 		try {
 			_logConfigurator.setRootLevel(Level.toLevel(level));
 			_logConfigurator.configure();
+			writeFilesAsync();
 		} catch (Exception e) {
 			// cannot determine if logging is possible.
 			// _logConfigurator.configure() will throw exception if internal
 			// storage is not mounted.
 		}
 	}
+
+	/**
+	 * Replaces the file appenders of the root logger that were added by the configurator with
+	 * asynchronous ones. Previous appenders were closed by the configurator.
+	 */
+	private static void writeFilesAsync() {
+		Logger root = Logger.getRootLogger();
+		List<Appender> fileAppenders = new ArrayList<>();
+		Enumeration appenders = root.getAllAppenders();
+		while (appenders.hasMoreElements()) {
+			Object appender = appenders.nextElement();
+			if (appender instanceof FileAppender) {
+				fileAppenders.add((Appender) appender);
+			}
+		}
+		for (Appender fileAppender : fileAppenders) {
+			root.removeAppender(fileAppender);
+			root.addAppender(new AsyncRingBufferAppender(fileAppender, ASYNC_CAPACITY,
+					AsyncRingBufferAppender.OverflowPolicy.DROP));
+		}
+	}
 }
@@ -2,24 +2,45 @@ package com.mytrainstation;
 
 import android.app.Application;
 
+import com.mytrainstation.logging.FastLogger;
+
 import org.apache.log4j.Level;
-import org.apache.log4j.Logger;
 
 /**
- * Custom application that will configure log4j to enable logging for whole application.
+ * Custom application that will configure log4j to enable logging for whole application and
+ * that owns the application scoped object graph (see {@link AppComponent}).
  *
  * @author JSCHENK
  */
 public class TrainStationApplication extends Application {
 
-	private static final Logger LOG = Logger.getLogger(TrainStationApplication.class);
+	private static final FastLogger LOG = FastLogger.getLogger(TrainStationApplication.class);
+
+	// time to write pending log events before the process dies of an uncaught exception
+	private static final long CRASH_FLUSH_TIMEOUT_MILLIS = 500;
 
 	private GlobalUncaughtExceptionHandler _globalExceptionHandler;
+	private AppComponent mAppComponent;
 
 	@Override
 	public void onCreate() {
 		super.onCreate();
 		configureLog4j();
+		mAppComponent = new AppComponent(this);
+	}
+
+	@Override
+	public void onTerminate() {
+		// only called within emulated processes, a real process is just killed
+		mAppComponent.shutdown();
+		super.onTerminate();
+	}
+
+	/**
+	 * @return The application scoped object graph that is shared by all activities.
+	 */
+	public AppComponent getAppComponent() {
+		return mAppComponent;
 	}
 
 	private String getInternalLogFilePath() {
@@ -63,6 +84,7 @@ public class TrainStationApplication extends Application {
 				Log4jHelper.setRootLevel(Level.ERROR_INT);
 			}
 			LOG.error("UncaughtException!", ex);
+			Log4jHelper.flush(CRASH_FLUSH_TIMEOUT_MILLIS);
 			_defaultExceptionHandler.uncaughtException(thread, ex);
 		}
 
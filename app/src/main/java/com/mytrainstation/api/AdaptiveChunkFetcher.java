@@ -0,0 +1,237 @@
+package com.mytrainstation.api;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import com.mytrainstation.logging.FastLogger;
+import com.mytrainstation.model.TrainStation;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches pages of near by train stations in chunks that the graphql endpoint is able to
+ * answer. The endpoint fails with 'Internal Error' if too many stations are requested at once,
+ * so the largest count that succeeded and the smallest count that failed are learned and
+ * requests above the limit are split into sub-count chunks (see
+ * {@link TrainStationQuery#withPage(int, int)}). Chunks are fetched in parallel on a bounded
+ * executor and merged in order of their offset, stations within several chunks are only kept
+ * once.
+ *
+ * Only failures the endpoint answered with (see {@link GraphQlException}) will lead to smaller
+ * chunks, all other failures are passed to the caller. The learned limit is forgotten after a
+ * while, so a raised limit of the endpoint will be found again.
+ *
+ * @author JSCHENK
+ */
+public class AdaptiveChunkFetcher {
+
+	private static final FastLogger LOG = FastLogger.getLogger(AdaptiveChunkFetcher.class);
+
+	// probe the limit of the endpoint again from time to time, it might have been raised
+	private static final int RELEARN_AFTER_CHUNKS = 100;
+
+	/**
+	 * A blocking request of a single chunk.
+	 */
+	public interface ChunkRequest {
+
+		/**
+		 * @param query
+		 * 		The query of the chunk.
+		 * @param handle
+		 * 		The handle of the whole page, could be used to cancel the request.
+		 * @return The train stations of the chunk.
+		 * @throws IOException
+		 * 		If the chunk couldn't be fetched.
+		 */
+		@WorkerThread
+		@NonNull
+		List<TrainStation> fetch(@NonNull TrainStationQuery query, @NonNull RequestHandle handle)
+				throws IOException;
+	}
+
+	private final ChunkRequest mRequest;
+	private final ExecutorService mExecutor;
+	private final AtomicLong mChunkCount = new AtomicLong();
+	private final AtomicLong mFailedChunkCount = new AtomicLong();
+	private int mLargestSucceededCount;
+	private int mSmallestFailedCount = Integer.MAX_VALUE;
+	private int mSucceededSinceFailure;
+
+	/**
+	 * @param request
+	 * 		The request of a single chunk.
+	 * @param executor
+	 * 		The bounded executor to fetch chunks on. Its number of threads limits the number of
+	 * 		chunks in flight.
+	 */
+	public AdaptiveChunkFetcher(@NonNull ChunkRequest request, @NonNull ExecutorService executor) {
+		mRequest = request;
+		mExecutor = executor;
+	}
+
+	/**
+	 * Fetches passed page in as few chunks as the endpoint is able to answer. Blocks until all
+	 * chunks were fetched.
+	 *
+	 * @param query
+	 * 		The near by query of the page.
+	 * @param handle
+	 * 		The handle that could be used to cancel all chunks.
+	 * @return The train stations of the page in order of their chunks, without duplicates.
+	 * @throws IOException
+	 * 		If a chunk failed for another reason than its count, if even a single station
+	 * 		couldn't be fetched or if passed handle was cancelled.
+	 */
+	@WorkerThread
+	@NonNull
+	public List<TrainStation> fetch(@NonNull TrainStationQuery query,
+			@NonNull RequestHandle handle) throws IOException {
+		TreeMap<Integer, List<TrainStation>> chunks = new TreeMap<>();
+		List<TrainStationQuery> pending = split(query);
+		// chunks of a failed chunk are fetched within the next round with the learned count
+		while (!pending.isEmpty()) {
+			Map<TrainStationQuery, Future<List<TrainStation>>> round = new LinkedHashMap<>();
+			for (TrainStationQuery chunk : pending) {
+				round.put(chunk, mExecutor.submit(() -> mRequest.fetch(chunk, handle)));
+			}
+			mChunkCount.addAndGet(round.size());
+			pending = new ArrayList<>();
+			for (Map.Entry<TrainStationQuery, Future<List<TrainStation>>> entry : round
+					.entrySet()) {
+				TrainStationQuery chunk = entry.getKey();
+				try {
+					chunks.put(chunk.getOffset(), await(entry.getValue()));
+					onSucceeded(chunk.getCount());
+				} catch (GraphQlException e) {
+					mFailedChunkCount.incrementAndGet();
+					if (handle.isCancelled() || chunk.getCount() == 1) {
+						cancel(round);
+						throw e;
+					}
+					onFailed(chunk.getCount());
+					LOG.atInfo().arg(chunk).arg(getChunkSize(chunk.getCount())).log("Failure " +
+							"on fetching {}, splitting into chunks of {}");
+					pending.addAll(split(chunk));
+				} catch (IOException | RuntimeException e) {
+					mFailedChunkCount.incrementAndGet();
+					cancel(round);
+					throw e;
+				}
+			}
+		}
+
+		Map<Integer, TrainStation> trainStations = new LinkedHashMap<>();
+		for (List<TrainStation> chunk : chunks.values()) {
+			for (TrainStation trainStation : chunk) {
+				trainStations.putIfAbsent(trainStation.getId(), trainStation);
+			}
+		}
+		return new ArrayList<>(trainStations.values());
+	}
+
+	/**
+	 * @param requestedCount
+	 * 		The number of train stations that should be requested.
+	 * @return The count of the chunks to request passed number of train stations with. Passed
+	 * count as long as no count failed, afterwards a count between the largest succeeded and
+	 * smallest failed count, so the limit of the endpoint is found by bisection.
+	 */
+	public synchronized int getChunkSize(int requestedCount) {
+		if (mSmallestFailedCount == Integer.MAX_VALUE) {
+			return requestedCount;
+		}
+		int probe = mLargestSucceededCount + (mSmallestFailedCount - mLargestSucceededCount) / 2;
+		return Math.max(1, Math.min(requestedCount, probe));
+	}
+
+	/**
+	 * @return The largest count of a chunk that was answered by the endpoint.
+	 */
+	public synchronized int getLargestSucceededCount() {
+		return mLargestSucceededCount;
+	}
+
+	/**
+	 * @return The smallest count of a chunk that the endpoint failed for or
+	 * {@link Integer#MAX_VALUE} if no chunk failed yet.
+	 */
+	public synchronized int getSmallestFailedCount() {
+		return mSmallestFailedCount;
+	}
+
+	/**
+	 * @return The number of chunks that were requested.
+	 */
+	public long getChunkCount() {
+		return mChunkCount.get();
+	}
+
+	/**
+	 * @return The number of chunks that failed.
+	 */
+	public long getFailedChunkCount() {
+		return mFailedChunkCount.get();
+	}
+
+	private synchronized void onSucceeded(int count) {
+		mLargestSucceededCount = Math.max(mLargestSucceededCount, count);
+		if (mLargestSucceededCount >= mSmallestFailedCount
+				|| ++mSucceededSinceFailure >= RELEARN_AFTER_CHUNKS) {
+			mSmallestFailedCount = Integer.MAX_VALUE;
+			mSucceededSinceFailure = 0;
+		}
+	}
+
+	private synchronized void onFailed(int count) {
+		mSmallestFailedCount = Math.min(mSmallestFailedCount, count);
+		mLargestSucceededCount = Math.min(mLargestSucceededCount, count - 1);
+		mSucceededSinceFailure = 0;
+	}
+
+	@NonNull
+	private List<TrainStationQuery> split(@NonNull TrainStationQuery query) {
+		int chunkSize = getChunkSize(query.getCount());
+		List<TrainStationQuery> chunks = new ArrayList<>();
+		int end = query.getOffset() + query.getCount();
+		for (int offset = query.getOffset(); offset < end; offset += chunkSize) {
+			chunks.add(query.withPage(offset, Math.min(chunkSize, end - offset)));
+		}
+		return chunks;
+	}
+
+	@NonNull
+	private static List<TrainStation> await(@NonNull Future<List<TrainStation>> future) throws
+			IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for chunk");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static void cancel(@NonNull Map<?, Future<List<TrainStation>>> round) {
+		for (Future<List<TrainStation>> future : round.values()) {
+			future.cancel(true);
+		}
+	}
+}
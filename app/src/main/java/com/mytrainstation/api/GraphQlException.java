@@ -0,0 +1,36 @@
+package com.mytrainstation.api;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Signals that the graphql endpoint answered a query with errors instead of data, e.g. with
+ * 'Internal Error' for larger counts of {@link queries.NearByQuery}.
+ *
+ * @author JSCHENK
+ */
+public class GraphQlException extends IOException {
+
+	private final List<String> mErrors;
+
+	/**
+	 * @param errors
+	 * 		The messages of the errors within the response.
+	 */
+	public GraphQlException(@NonNull List<String> errors) {
+		super("Response contains errors: " + errors);
+		mErrors = Collections.unmodifiableList(new ArrayList<>(errors));
+	}
+
+	/**
+	 * @return The messages of the errors within the response.
+	 */
+	@NonNull
+	public List<String> getErrors() {
+		return mErrors;
+	}
+}
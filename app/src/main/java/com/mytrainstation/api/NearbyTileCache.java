@@ -0,0 +1,331 @@
+package com.mytrainstation.api;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mytrainstation.logging.FastLogger;
+import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.util.Clock;
+import com.mytrainstation.util.GeoHash;
+import com.mytrainstation.util.GeoUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory cache for results of near by searches. Coordinates are snapped to geohash tiles, so
+ * every search within the same area could be answered by the cached result of an earlier search
+ * instead of sending a new request to the graphql endpoint.
+ *
+ * A cached result is reused if its search location is not more than
+ * {@link #getMaxOffsetRatio()} of the search radius away from the requested location. Entries
+ * expire after a configurable time to live and the least recently used entries are evicted as
+ * soon as the estimated size of all entries exceeds the byte budget.
+ *
+ * @author JSCHENK
+ */
+public class NearbyTileCache {
+
+	private static final FastLogger LOG = FastLogger.getLogger(NearbyTileCache.class);
+
+	/**
+	 * Default time to live of cache entries (5 minutes).
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 5 * 60 * 1000;
+	/**
+	 * Default byte budget of all cache entries (512 KB).
+	 */
+	public static final long DEFAULT_MAX_BYTES = 512 * 1024;
+	/**
+	 * Default ratio of the search radius a location may differ from the cached one.
+	 */
+	public static final double DEFAULT_MAX_OFFSET_RATIO = 0.25d;
+
+	private static final int MAX_TILE_PRECISION = 9;
+	private static final int ENTRY_OVERHEAD_BYTES = 96;
+	private static final int STATION_OVERHEAD_BYTES = 64;
+
+	private final long mTimeToLiveMillis;
+	private final long mMaxBytes;
+	private final double mMaxOffsetRatio;
+	private final Clock mClock;
+	private final LinkedHashMap<TileKey, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+	private long mCurrentBytes;
+	private long mHitCount;
+	private long mMissCount;
+	private long mEvictionCount;
+
+	/**
+	 * Creates a cache with {@link #DEFAULT_TIME_TO_LIVE_MILLIS}, {@link #DEFAULT_MAX_BYTES} and
+	 * {@link #DEFAULT_MAX_OFFSET_RATIO}.
+	 */
+	public NearbyTileCache() {
+		this(DEFAULT_TIME_TO_LIVE_MILLIS, DEFAULT_MAX_BYTES, DEFAULT_MAX_OFFSET_RATIO,
+				Clock.SYSTEM);
+	}
+
+	/**
+	 * @param timeToLiveMillis
+	 * 		The time after that cached results expire.
+	 * @param maxBytes
+	 * 		The maximum estimated size of all cached results.
+	 * @param maxOffsetRatio
+	 * 		The ratio of the search radius a location may differ from the location of a cached
+	 * 		result to be answered by it.
+	 * @param clock
+	 * 		The clock that is used to determine expiration of results.
+	 */
+	public NearbyTileCache(long timeToLiveMillis, long maxBytes, double maxOffsetRatio,
+			@NonNull Clock clock) {
+		mTimeToLiveMillis = timeToLiveMillis;
+		mMaxBytes = maxBytes;
+		mMaxOffsetRatio = maxOffsetRatio;
+		mClock = clock;
+	}
+
+	/**
+	 * @param latitude
+	 * 		Latitude value of current location.
+	 * @param longitude
+	 * 		Longitude value of current location.
+	 * @param radius
+	 * 		The search radius in metres.
+	 * @param count
+	 * 		The maximum number of requested train stations.
+	 * @return The cached result of a search near by passed location or {@code null} if there is
+	 * no valid result.
+	 */
+	@Nullable
+	public synchronized List<TrainStation> get(double latitude, double longitude, int radius,
+			int count) {
+		int precision = getTilePrecision(latitude, radius);
+		if (precision > 0) {
+			double tileHeight = GeoHash.getTileHeightDegrees(precision);
+			double tileWidth = GeoHash.getTileWidthDegrees(precision);
+			double maxOffset = radius * mMaxOffsetRatio;
+			long now = mClock.currentTimeMillis();
+			// a valid entry could be located within the own tile or one of its neighbours
+			for (int latitudeStep = -1; latitudeStep <= 1; latitudeStep++) {
+				for (int longitudeStep = -1; longitudeStep <= 1; longitudeStep++) {
+					TileKey key = new TileKey(GeoHash.encode(latitude + latitudeStep * tileHeight,
+							longitude + longitudeStep * tileWidth, precision), radius, count);
+					Entry entry = mEntries.get(key);
+					if (entry == null) {
+						continue;
+					}
+					if (now - entry.mCreatedMillis > mTimeToLiveMillis) {
+						remove(key);
+					} else if (GeoUtils.distanceMeters(latitude, longitude, entry.mLatitude,
+							entry.mLongitude) <= maxOffset) {
+						mHitCount++;
+						return entry.mTrainStations;
+					}
+				}
+			}
+		}
+		mMissCount++;
+		return null;
+	}
+
+	/**
+	 * Stores the result of a search near by passed location.
+	 *
+	 * @param latitude
+	 * 		Latitude value of the searched location.
+	 * @param longitude
+	 * 		Longitude value of the searched location.
+	 * @param radius
+	 * 		The search radius in metres.
+	 * @param count
+	 * 		The maximum number of requested train stations.
+	 * @param trainStations
+	 * 		The result of the search.
+	 */
+	public synchronized void put(double latitude, double longitude, int radius, int count,
+			@NonNull List<TrainStation> trainStations) {
+		int precision = getTilePrecision(latitude, radius);
+		if (precision <= 0) {
+			return;
+		}
+		TileKey key = new TileKey(GeoHash.encode(latitude, longitude, precision), radius, count);
+		Entry entry = new Entry(latitude, longitude, mClock.currentTimeMillis(),
+				Collections.unmodifiableList(new ArrayList<>(trainStations)),
+				estimateBytes(trainStations));
+		remove(key);
+		if (entry.mBytes > mMaxBytes) {
+			return;
+		}
+		mEntries.put(key, entry);
+		mCurrentBytes += entry.mBytes;
+		evictToBudget();
+	}
+
+	/**
+	 * Removes all cached results.
+	 */
+	public synchronized void clear() {
+		mEntries.clear();
+		mCurrentBytes = 0;
+	}
+
+	private void remove(@NonNull TileKey key) {
+		Entry entry = mEntries.remove(key);
+		if (entry != null) {
+			mCurrentBytes -= entry.mBytes;
+		}
+	}
+
+	private void evictToBudget() {
+		Iterator<Map.Entry<TileKey, Entry>> iterator = mEntries.entrySet().iterator();
+		while (mCurrentBytes > mMaxBytes && iterator.hasNext()) {
+			Map.Entry<TileKey, Entry> eldest = iterator.next();
+			mCurrentBytes -= eldest.getValue().mBytes;
+			iterator.remove();
+			mEvictionCount++;
+			LOG.atDebug().arg(eldest.getKey().mGeoHash).log("Evicted tile {} from cache.");
+		}
+	}
+
+	/**
+	 * Determines the finest geohash precision whose tiles are not smaller than the maximum
+	 * offset, so every valid entry is located within the own or a neighbouring tile.
+	 */
+	private int getTilePrecision(double latitude, int radius) {
+		double maxOffset = radius * mMaxOffsetRatio;
+		if (maxOffset <= 0) {
+			return 0;
+		}
+		for (int precision = MAX_TILE_PRECISION; precision > 0; precision--) {
+			double tileHeight = GeoHash.getTileHeightDegrees(precision) * GeoUtils
+					.METERS_PER_DEGREE;
+			double tileWidth = GeoHash.getTileWidthDegrees(precision) * GeoUtils
+					.metersPerDegreeLongitude(latitude);
+			if (Math.min(tileHeight, tileWidth) >= maxOffset) {
+				return precision;
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * @param trainStations
+	 * 		The train stations whose size should be estimated.
+	 * @return The estimated number of bytes that are retained by passed list.
+	 */
+	static long estimateBytes(@NonNull List<TrainStation> trainStations) {
+		long bytes = ENTRY_OVERHEAD_BYTES;
+		for (TrainStation trainStation : trainStations) {
+			bytes += STATION_OVERHEAD_BYTES;
+			bytes += trainStation.getName() != null ? 2 * trainStation.getName().length() : 0;
+			bytes += trainStation.getPictureUrl() != null ? 2 * trainStation.getPictureUrl()
+					.length() : 0;
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return The time after that cached results expire.
+	 */
+	public long getTimeToLiveMillis() {
+		return mTimeToLiveMillis;
+	}
+
+	/**
+	 * @return The ratio of the search radius a location may differ from a cached one.
+	 */
+	public double getMaxOffsetRatio() {
+		return mMaxOffsetRatio;
+	}
+
+	/**
+	 * @return The estimated size of all cached results.
+	 */
+	public synchronized long getCurrentBytes() {
+		return mCurrentBytes;
+	}
+
+	/**
+	 * @return The number of lookups that were answered by a cached result.
+	 */
+	public synchronized long getHitCount() {
+		return mHitCount;
+	}
+
+	/**
+	 * @return The number of lookups without valid cached result.
+	 */
+	public synchronized long getMissCount() {
+		return mMissCount;
+	}
+
+	/**
+	 * @return The number of results that were evicted to stay within byte budget.
+	 */
+	public synchronized long getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	/**
+	 * @return The ratio of lookups that were answered by a cached result.
+	 */
+	public synchronized double getHitRatio() {
+		long lookups = mHitCount + mMissCount;
+		return lookups > 0 ? (double) mHitCount / lookups : 0d;
+	}
+
+	private static final class TileKey {
+
+		private final String mGeoHash;
+		private final int mRadius;
+		private final int mCount;
+
+		private TileKey(@NonNull String geoHash, int radius, int count) {
+			mGeoHash = geoHash;
+			mRadius = radius;
+			mCount = count;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			TileKey tileKey = (TileKey) o;
+			return mRadius == tileKey.mRadius && mCount == tileKey.mCount && mGeoHash.equals
+					(tileKey.mGeoHash);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = mGeoHash.hashCode();
+			result = 31 * result + mRadius;
+			result = 31 * result + mCount;
+			return result;
+		}
+	}
+
+	private static final class Entry {
+
+		private final double mLatitude;
+		private final double mLongitude;
+		private final long mCreatedMillis;
+		private final List<TrainStation> mTrainStations;
+		private final long mBytes;
+
+		private Entry(double latitude, double longitude, long createdMillis,
+				@NonNull List<TrainStation> trainStations, long bytes) {
+			mLatitude = latitude;
+			mLongitude = longitude;
+			mCreatedMillis = createdMillis;
+			mTrainStations = trainStations;
+			mBytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package com.mytrainstation.api;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.mytrainstation.logging.FastLogger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single-flight layer for blocking requests. Concurrent calls with equal keys share one
+ * execution and all receive its result. Calls with different keys are queued and executed one
+ * after another in the order they arrived, so no call will be dropped.
+ *
+ * Each call could be cancelled with help of its {@link RequestHandle}. The shared execution
+ * will be cancelled as soon as all calls that wait for it were cancelled.
+ *
+ * @param <K>
+ * 		The type of the key that identifies identical requests.
+ * @param <V>
+ * 		The type of the result of a request.
+ * @author JSCHENK
+ */
+public class RequestCoalescer<K, V> {
+
+	private static final FastLogger LOG = FastLogger.getLogger(RequestCoalescer.class);
+
+	/**
+	 * A request that could be executed by {@link RequestCoalescer}.
+	 *
+	 * @param <V>
+	 * 		The type of the result of the request.
+	 */
+	public interface Request<V> {
+
+		/**
+		 * @param handle
+		 * 		The handle of the shared execution. Will be cancelled if no caller is
+		 * 		interested in the result anymore.
+		 * @return The result of the request.
+		 */
+		V execute(@NonNull RequestHandle handle);
+	}
+
+	private final Map<K, Flight> mInFlight = new HashMap<>();
+	// fair lock to execute queued requests in order of their arrival
+	private final ReentrantLock mExecutionLock = new ReentrantLock(true);
+	private final AtomicLong mExecutedCount = new AtomicLong();
+	private final AtomicLong mCoalescedCount = new AtomicLong();
+
+	/**
+	 * Executes passed request on the calling thread or waits for the result of an identical
+	 * request that is already in flight or queued.
+	 *
+	 * @param key
+	 * 		The key that identifies the request.
+	 * @param handle
+	 * 		The handle that could be used to cancel this call. The received bytes of the shared
+	 * 		execution will be added to the handle of the call that started it. Could be
+	 * 		{@code null} if call won't be cancelled.
+	 * @param request
+	 * 		The request to execute if no identical request is in flight.
+	 * @return The result of the request.
+	 * @throws CancellationException
+	 * 		If passed handle was cancelled before the result was available.
+	 */
+	@WorkerThread
+	public V execute(@NonNull K key, @Nullable RequestHandle handle, @NonNull Request<V> request) {
+		RequestHandle callerHandle = handle != null ? handle : new RequestHandle();
+		Flight flight;
+		boolean startsFlight;
+		synchronized (mInFlight) {
+			flight = mInFlight.get(key);
+			// a cancelled flight won't deliver any result, so it couldn't be joined
+			startsFlight = flight == null || flight.mHandle.isCancelled();
+			if (startsFlight) {
+				flight = new Flight();
+				mInFlight.put(key, flight);
+			} else {
+				mCoalescedCount.incrementAndGet();
+				LOG.atDebug().arg(key).log("Join request {} that is already in flight.");
+			}
+			flight.mWaiters++;
+		}
+
+		CompletableFuture<V> callerResult = new CompletableFuture<>();
+		Flight joinedFlight = flight;
+		flight.mResult.whenComplete((result, throwable) -> {
+			if (throwable != null) {
+				callerResult.completeExceptionally(throwable);
+			} else {
+				callerResult.complete(result);
+			}
+		});
+		Runnable cancelListener = () -> {
+			callerResult.cancel(false);
+			leave(joinedFlight);
+		};
+		callerHandle.addOnCancelListener(cancelListener);
+		try {
+			if (startsFlight) {
+				run(key, flight, request);
+			}
+			return getResult(callerResult);
+		} finally {
+			callerHandle.removeOnCancelListener(cancelListener);
+			if (startsFlight) {
+				callerHandle.addReceivedBytes(flight.mHandle.getReceivedBytes());
+			}
+		}
+	}
+
+	private void run(@NonNull K key, @NonNull Flight flight, @NonNull Request<V> request) {
+		mExecutionLock.lock();
+		try {
+			if (flight.mHandle.isCancelled()) {
+				// every caller was cancelled while request was queued
+				flight.mResult.cancel(false);
+			} else {
+				mExecutedCount.incrementAndGet();
+				flight.mResult.complete(request.execute(flight.mHandle));
+			}
+		} catch (RuntimeException e) {
+			flight.mResult.completeExceptionally(e);
+		} finally {
+			synchronized (mInFlight) {
+				if (mInFlight.get(key) == flight) {
+					mInFlight.remove(key);
+				}
+			}
+			mExecutionLock.unlock();
+		}
+	}
+
+	private void leave(@NonNull Flight flight) {
+		boolean cancelFlight;
+		synchronized (mInFlight) {
+			cancelFlight = --flight.mWaiters == 0 && !flight.mResult.isDone();
+		}
+		if (cancelFlight) {
+			flight.mHandle.cancel();
+		}
+	}
+
+	private V getResult(@NonNull CompletableFuture<V> result) {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for request.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * @return The number of requests that were actually executed.
+	 */
+	public long getExecutedCount() {
+		return mExecutedCount.get();
+	}
+
+	/**
+	 * @return The number of requests that joined an identical request instead of being executed.
+	 */
+	public long getCoalescedCount() {
+		return mCoalescedCount.get();
+	}
+
+	private class Flight {
+
+		private final CompletableFuture<V> mResult = new CompletableFuture<>();
+		private final RequestHandle mHandle = new RequestHandle();
+		// guarded by mInFlight
+		private int mWaiters;
+	}
+}
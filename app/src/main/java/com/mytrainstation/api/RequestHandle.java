@@ -0,0 +1,83 @@
+package com.mytrainstation.api;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handle of a request to the graphql endpoint. Could be used to cancel the request and
+ * provides the number of bytes that were received for it.
+ *
+ * @author JSCHENK
+ */
+public class RequestHandle {
+
+	private final List<Runnable> mCancelListeners = new ArrayList<>();
+	private final AtomicLong mReceivedBytes = new AtomicLong();
+	private boolean mCancelled;
+
+	/**
+	 * Cancels the request. All registered cancel listeners will be notified once.
+	 */
+	public void cancel() {
+		List<Runnable> listeners;
+		synchronized (this) {
+			if (mCancelled) {
+				return;
+			}
+			mCancelled = true;
+			listeners = new ArrayList<>(mCancelListeners);
+			mCancelListeners.clear();
+		}
+		for (Runnable listener : listeners) {
+			listener.run();
+		}
+	}
+
+	/**
+	 * @return True, if {@link #cancel()} was called, otherwise false.
+	 */
+	public synchronized boolean isCancelled() {
+		return mCancelled;
+	}
+
+	/**
+	 * @param listener
+	 * 		The listener to be notified if request will be cancelled. Will be run immediately if
+	 * 		request is already cancelled.
+	 */
+	public void addOnCancelListener(@NonNull Runnable listener) {
+		synchronized (this) {
+			if (!mCancelled) {
+				mCancelListeners.add(listener);
+				return;
+			}
+		}
+		listener.run();
+	}
+
+	/**
+	 * @param listener
+	 * 		The listener that shouldn't be notified anymore.
+	 */
+	public synchronized void removeOnCancelListener(@NonNull Runnable listener) {
+		mCancelListeners.remove(listener);
+	}
+
+	/**
+	 * @param bytes
+	 * 		Number of bytes that were additionally received for the request.
+	 */
+	public void addReceivedBytes(long bytes) {
+		mReceivedBytes.addAndGet(bytes);
+	}
+
+	/**
+	 * @return The number of bytes that were received for the request.
+	 */
+	public long getReceivedBytes() {
+		return mReceivedBytes.get();
+	}
+}
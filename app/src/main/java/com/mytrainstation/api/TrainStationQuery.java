@@ -0,0 +1,293 @@
+package com.mytrainstation.api;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.apollographql.apollo.api.Query;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+
+import queries.NearByQuery;
+import queries.SearchQuery;
+
+/**
+ * Immutable description of a request to the graphql endpoint. The query variables are normalized
+ * on creation, so two instances are equal whenever they would lead to the same response. This
+ * allows to use {@link TrainStationQuery} as key for in-flight requests. The search term is only
+ * normalized for the comparison, the endpoint receives it as it was entered.
+ *
+ * @author JSCHENK
+ */
+public final class TrainStationQuery {
+
+	/**
+	 * Coordinates are rounded to this number of decimal places (~1 metre).
+	 */
+	private static final double COORDINATE_SCALE = 100000d;
+
+	/**
+	 * The type of the graphql query.
+	 */
+	public enum Type {
+		/**
+		 * Query for train stations near by a location (see {@link NearByQuery}).
+		 */
+		NEARBY,
+		/**
+		 * Query for train stations by search term (see {@link SearchQuery}).
+		 */
+		SEARCH
+	}
+
+	private final Type mType;
+	private final double mLatitude;
+	private final double mLongitude;
+	private final int mRadius;
+	private final int mCount;
+	private final int mOffset;
+	private final String mSearchTerm;
+	private final String mNormalizedSearchTerm;
+
+	private TrainStationQuery(@NonNull Type type, double latitude, double longitude, int radius,
+			int count, int offset, @Nullable String searchTerm,
+			@Nullable String normalizedSearchTerm) {
+		mType = type;
+		mLatitude = latitude;
+		mLongitude = longitude;
+		mRadius = radius;
+		mCount = count;
+		mOffset = offset;
+		mSearchTerm = searchTerm;
+		mNormalizedSearchTerm = normalizedSearchTerm;
+	}
+
+	/**
+	 * @param latitude
+	 * 		Latitude value of current location.
+	 * @param longitude
+	 * 		Longitude value of current location.
+	 * @param radius
+	 * 		{@link com.mytrainstation.model.TrainStation}s should be located within passed radius.
+	 * @param count
+	 * 		The maximum number of train stations to request, i.e. the size of a page.
+	 * @return A normalized query for the first page of train stations near by passed location.
+	 */
+	@NonNull
+	public static TrainStationQuery nearBy(double latitude, double longitude, int radius,
+			int count) {
+		return new TrainStationQuery(Type.NEARBY, round(latitude), round(longitude), radius,
+				count, 0, null, null);
+	}
+
+	/**
+	 * @param searchTerm
+	 * 		The search term to be included in train stations name.
+	 * @return A query for train stations by passed search term. It equals all queries whose term
+	 * only differs by surrounding and repeated whitespaces or by case.
+	 */
+	@NonNull
+	public static TrainStationQuery search(@NonNull String searchTerm) {
+		String normalizedTerm = searchTerm.trim().replaceAll("\\s+", " ")
+				.toLowerCase(Locale.GERMAN);
+		return new TrainStationQuery(Type.SEARCH, 0, 0, 0, 0, 0, searchTerm, normalizedTerm);
+	}
+
+	/**
+	 * @param offset
+	 * 		The number of train stations to skip.
+	 * @return A query for the page of train stations that starts at passed offset. Pages belong
+	 * to the same result, so they share the fingerprint of this query. Only supported for
+	 * {@link Type#NEARBY}, the search of the graphql endpoint can't be paged.
+	 */
+	@NonNull
+	public TrainStationQuery withOffset(int offset) {
+		return withPage(offset, mCount);
+	}
+
+	/**
+	 * @param offset
+	 * 		The number of train stations to skip.
+	 * @param count
+	 * 		The maximum number of train stations to request.
+	 * @return A query for passed range of train stations near by the same location, e.g. to
+	 * fetch a large page in smaller chunks. Only supported for {@link Type#NEARBY}.
+	 */
+	@NonNull
+	public TrainStationQuery withPage(int offset, int count) {
+		if (mType != Type.NEARBY) {
+			throw new UnsupportedOperationException("Only near by queries could be paged.");
+		}
+		return new TrainStationQuery(mType, mLatitude, mLongitude, mRadius, count, offset,
+				mSearchTerm, mNormalizedSearchTerm);
+	}
+
+	private static double round(double coordinate) {
+		return Math.round(coordinate * COORDINATE_SCALE) / COORDINATE_SCALE;
+	}
+
+	/**
+	 * @return The type of the query.
+	 */
+	@NonNull
+	public Type getType() {
+		return mType;
+	}
+
+	/**
+	 * @return The normalized latitude. Only set for {@link Type#NEARBY}.
+	 */
+	public double getLatitude() {
+		return mLatitude;
+	}
+
+	/**
+	 * @return The normalized longitude. Only set for {@link Type#NEARBY}.
+	 */
+	public double getLongitude() {
+		return mLongitude;
+	}
+
+	/**
+	 * @return The search radius. Only set for {@link Type#NEARBY}.
+	 */
+	public int getRadius() {
+		return mRadius;
+	}
+
+	/**
+	 * @return The maximum number of requested train stations. Only set for {@link Type#NEARBY}.
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * @return The number of train stations to skip. Only set for further pages of
+	 * {@link Type#NEARBY}.
+	 */
+	public int getOffset() {
+		return mOffset;
+	}
+
+	/**
+	 * @return The search term as it was entered. Only set for {@link Type#SEARCH}.
+	 */
+	@Nullable
+	public String getSearchTerm() {
+		return mSearchTerm;
+	}
+
+	/**
+	 * @return The trimmed and lower cased search term, that identifies the query. Only set for
+	 * {@link Type#SEARCH}.
+	 */
+	@Nullable
+	public String getNormalizedSearchTerm() {
+		return mNormalizedSearchTerm;
+	}
+
+	/**
+	 * @return A stable string that identifies all queries that lead to the same result, e.g.
+	 * to persist their results. All pages of a result share the same fingerprint.
+	 */
+	@NonNull
+	public String getFingerprint() {
+		if (mType == Type.NEARBY) {
+			return String.format(Locale.ROOT, "%s|%s|%s|%s|%s", mType, mLatitude, mLongitude,
+					mRadius, mCount);
+		}
+		return String.format(Locale.ROOT, "%s|%s", mType, mNormalizedSearchTerm);
+	}
+
+	/**
+	 * @return The json body of a http request to the graphql endpoint that contains the query
+	 * document and its variables.
+	 */
+	@NonNull
+	String toRequestBody() {
+		StringWriter body = new StringWriter();
+		try (JsonWriter writer = new JsonWriter(body)) {
+			writer.beginObject();
+			writer.name("query").value(toGraphQlQuery().queryDocument());
+			writer.name("variables").beginObject();
+			if (mType == Type.NEARBY) {
+				writer.name("latitude").value(mLatitude);
+				writer.name("longitude").value(mLongitude);
+				writer.name("radius").value(mRadius);
+				writer.name("count").value(mCount);
+				writer.name("offset").value(mOffset);
+			} else {
+				writer.name("searchTerm").value(mSearchTerm);
+			}
+			writer.endObject();
+			writer.endObject();
+		} catch (IOException e) {
+			// StringWriter won't throw any IOException
+			throw new IllegalStateException(e);
+		}
+		return body.toString();
+	}
+
+	/**
+	 * @return The graphql query that was generated by apollo from the query document.
+	 */
+	@NonNull
+	private Query<?, ?, ?> toGraphQlQuery() {
+		if (mType == Type.NEARBY) {
+			return NearByQuery.builder()
+					.latitude(mLatitude)
+					.longitude(mLongitude)
+					.radius(mRadius)
+					.count(mCount)
+					.offset(mOffset)
+					.build();
+		}
+		return SearchQuery.builder().searchTerm(mSearchTerm).build();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		TrainStationQuery that = (TrainStationQuery) o;
+		return mType == that.mType
+				&& Double.compare(that.mLatitude, mLatitude) == 0
+				&& Double.compare(that.mLongitude, mLongitude) == 0
+				&& mRadius == that.mRadius
+				&& mCount == that.mCount
+				&& mOffset == that.mOffset
+				&& (mNormalizedSearchTerm != null ? mNormalizedSearchTerm.equals(
+				that.mNormalizedSearchTerm) : that.mNormalizedSearchTerm == null);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = mType.hashCode();
+		long temp = Double.doubleToLongBits(mLatitude);
+		result = 31 * result + (int) (temp ^ (temp >>> 32));
+		temp = Double.doubleToLongBits(mLongitude);
+		result = 31 * result + (int) (temp ^ (temp >>> 32));
+		result = 31 * result + mRadius;
+		result = 31 * result + mCount;
+		result = 31 * result + mOffset;
+		result = 31 * result + (mNormalizedSearchTerm != null ? mNormalizedSearchTerm.hashCode()
+				: 0);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		if (mType == Type.NEARBY) {
+			return String.format(Locale.getDefault(), "%s [latitude=%s, longitude=%s, radius=%s, " +
+					"count=%s, offset=%s]", mType, mLatitude, mLongitude, mRadius, mCount, mOffset);
+		}
+		return String.format(Locale.getDefault(), "%s [searchTerm=%s]", mType, mSearchTerm);
+	}
+}
@@ -1,60 +1,149 @@
 package com.mytrainstation.api;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.support.annotation.WorkerThread;
 
-import com.apollographql.apollo.ApolloClient;
-import com.apollographql.apollo.api.Operation;
-import com.apollographql.apollo.api.Query;
-import com.apollographql.apollo.exception.ApolloException;
+import com.mytrainstation.api.offline.OfflineTrainStationService;
+import com.mytrainstation.logging.FastLogger;
+import com.mytrainstation.metrics.Counter;
+import com.mytrainstation.metrics.LatencyHistogram;
+import com.mytrainstation.metrics.MetricsRegistry;
 import com.mytrainstation.model.TrainStation;
 import com.mytrainstation.ui.settings.SettingsFragment;
 import com.mytrainstation.util.PreferenceUtils;
 
-import org.apache.log4j.Logger;
-
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import okhttp3.Call;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
-import queries.NearByQuery;
-import queries.SearchQuery;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
 
 /**
  * Handles requests to graphql endpoint to search for {@link TrainStation}s near by provided
- * latitude, longitude and radius.
+ * latitude, longitude and radius. If offline mode is enabled within app settings and the offline
+ * catalogue is available, near by searches will be answered by {@link OfflineTrainStationService}
+ * instead.
  *
  * @author JSCHENK
  */
-public class TrainStationService {
+public class TrainStationService implements TrainStationSource {
 
-	private static final Logger LOG = Logger.getLogger(TrainStationService.class);
+	private static final FastLogger LOG = FastLogger.getLogger(TrainStationService.class);
 
-	private static final String BASE_URL = "https://developer.deutschebahn" +
-			".com/free1bahnql/graphql";
 	private static final int MAX_NUMBER_STATIONS = 10;
+	/**
+	 * The maximum number of chunks of a large page that are fetched in parallel.
+	 */
+	public static final int MAX_PARALLEL_CHUNKS = 4;
+	private static final MediaType JSON_MEDIA_TYPE = MediaType.parse("application/json; " +
+			"charset=utf-8");
+	private static final LatencyHistogram QUERY_LATENCY = MetricsRegistry.getInstance()
+			.histogram("TrainStationService.executeQuery");
+	private static final Counter FAILED_QUERIES = MetricsRegistry.getInstance().counter
+			("TrainStationService.failedQueries");
+	private static final Counter RECEIVED_BYTES = MetricsRegistry.getInstance().counter
+			("TrainStationService.receivedBytes");
+	private static final Counter TILE_CACHE_HITS = MetricsRegistry.getInstance().counter
+			("NearbyTileCache.hits");
+	private static final Counter TILE_CACHE_MISSES = MetricsRegistry.getInstance().counter
+			("NearbyTileCache.misses");
 
-	private ApolloClient mAppolloClient;
+	private final OkHttpClient mHttpClient;
+	private final String mServerUrl;
 	private final Context mContext;
+	private final RequestCoalescer<TrainStationQuery, List<TrainStation>> mRequestCoalescer =
+			new RequestCoalescer<>();
+	// further pages are prefetched, so they are queued apart from interactive searches
+	private final RequestCoalescer<TrainStationQuery, List<TrainStation>> mPageCoalescer =
+			new RequestCoalescer<>();
+	private final NearbyTileCache mNearbyTileCache;
+	@Nullable
+	private final SharedPreferences mPreferences;
+	private final OfflineTrainStationService mOfflineSource;
+	private final AdaptiveChunkFetcher mChunkFetcher;
 
 	/**
-	 * Default constructor that will initialize automatically underlying {@link ApolloClient}.
+	 * Initializes its own {@link OkHttpClient} and chunk executor.
 	 *
 	 * @param context
 	 * 		The context that will be used to retrieve preferences.
+	 * @param serverUrl
+	 * 		The url of the graphql endpoint.
 	 */
-	public TrainStationService(@NonNull Context context) {
-		mContext = context;
-		initClient();
+	@VisibleForTesting
+	public TrainStationService(@NonNull Context context, @NonNull String serverUrl) {
+		this(context, serverUrl, new OkHttpClient.Builder().build(), Executors
+				.newFixedThreadPool(MAX_PARALLEL_CHUNKS));
 	}
 
-	private void initClient() {
-		mAppolloClient = ApolloClient.builder()
-				.serverUrl(BASE_URL)
-				.okHttpClient(new OkHttpClient.Builder().build())
-				.build();
+	/**
+	 * @param context
+	 * 		The context that will be used to retrieve preferences.
+	 * @param serverUrl
+	 * 		The url of the graphql endpoint, e.g. of a stand-in for load tests.
+	 * @param httpClient
+	 * 		The shared client to send queries with.
+	 * @param chunkExecutor
+	 * 		The bounded executor to fetch chunks of large pages on (see
+	 * 		{@link AdaptiveChunkFetcher}).
+	 */
+	public TrainStationService(@NonNull Context context, @NonNull String serverUrl,
+			@NonNull OkHttpClient httpClient, @NonNull ExecutorService chunkExecutor) {
+		this(context, serverUrl, httpClient, chunkExecutor, null, new NearbyTileCache());
+	}
+
+	/**
+	 * @param context
+	 * 		The context of the offline catalogue and the default preferences.
+	 * @param serverUrl
+	 * 		The url of the graphql endpoint.
+	 * @param httpClient
+	 * 		The shared client to send queries with.
+	 * @param chunkExecutor
+	 * 		The bounded executor to fetch chunks of large pages on.
+	 * @param preferences
+	 * 		The preferences to read the page size and offline mode from or {@code null} to read
+	 * 		the default preferences of passed context, e.g. within JVM tests without them.
+	 * @param nearbyTileCache
+	 * 		The cache to answer near by searches within already searched areas with, e.g. with
+	 * 		a virtual clock.
+	 */
+	@VisibleForTesting
+	public TrainStationService(@NonNull Context context, @NonNull String serverUrl,
+			@NonNull OkHttpClient httpClient, @NonNull ExecutorService chunkExecutor,
+			@Nullable SharedPreferences preferences, @NonNull NearbyTileCache nearbyTileCache) {
+		mContext = context;
+		mServerUrl = serverUrl;
+		mPreferences = preferences;
+		mNearbyTileCache = nearbyTileCache;
+		mOfflineSource = new OfflineTrainStationService(context);
+		// queries are sent without apollo runtime, so responses could be streamed directly into
+		// train stations (see TrainStationServiceUtil)
+		mHttpClient = httpClient;
+		mChunkFetcher = new AdaptiveChunkFetcher(this::fetch, chunkExecutor);
 	}
 
 	/**
@@ -65,20 +154,14 @@ public class TrainStationService {
 	 * @param radius
 	 * 		{@link TrainStation}s should be located within passed radius.
 	 * @return A possible list of {@link TrainStation}s that are near by passed location and
-	 * within given radius.
+	 * within given radius. Will be answered by {@link NearbyTileCache} if an earlier search
+	 * within the same area is still valid.
 	 */
 	@WorkerThread
 	@NonNull
+	@Override
 	public List<TrainStation> searchTrainStations(double latitude, double longitude, int radius) {
-		int maxDisplayedItems = PreferenceUtils.getPreferenceValue(mContext, SettingsFragment
-				.PREFERENCE_KEY_MAX_DISPLAYED_ITEMS, MAX_NUMBER_STATIONS);
-		NearByQuery nearByQuery = NearByQuery.builder()
-				.latitude(latitude)
-				.longitude(longitude)
-				.radius(radius)
-				.count(maxDisplayedItems)
-				.build();
-		return executeQuery(nearByQuery);
+		return searchTrainStations(createNearByQuery(latitude, longitude, radius), null);
 	}
 
 	/**
@@ -89,19 +172,246 @@ public class TrainStationService {
 	@WorkerThread
 	@NonNull
 	public List<TrainStation> searchTrainStations(@NonNull String searchTerm) {
-		return executeQuery(SearchQuery.builder().searchTerm(searchTerm).build());
+		return searchTrainStations(TrainStationQuery.search(searchTerm), null);
+	}
+
+	/**
+	 * @param latitude
+	 * 		Latitude value of current location.
+	 * @param longitude
+	 * 		Longitude value of current location.
+	 * @param radius
+	 * 		{@link TrainStation}s should be located within passed radius.
+	 * @return A query for the first page of train stations near by passed location. The size of
+	 * a page is set within app settings.
+	 */
+	@WorkerThread
+	@NonNull
+	public TrainStationQuery createNearByQuery(double latitude, double longitude, int radius) {
+		int maxDisplayedItems = PreferenceUtils.getPreferenceValue(getPreferences(),
+				SettingsFragment.PREFERENCE_KEY_MAX_DISPLAYED_ITEMS, MAX_NUMBER_STATIONS);
+		return TrainStationQuery.nearBy(latitude, longitude, radius, maxDisplayedItems);
 	}
 
+	/**
+	 * @param query
+	 * 		The query to execute.
+	 * @param handle
+	 * 		The handle that could be used to cancel the request and that will provide the number
+	 * 		of received bytes. Could be {@code null} if request won't be cancelled.
+	 * @return A possible list of {@link TrainStation}s that match passed query. Near by queries
+	 * will be answered by offline catalogue if offline mode is enabled and available or by
+	 * {@link NearbyTileCache} if an earlier search within the same area is still valid. Both only
+	 * answer the first page, further pages are always requested from the graphql endpoint. An
+	 * empty list if the request failed. See {@link #isApproximate(List)} for answers of the near
+	 * by tile cache.
+	 * @throws CancellationException
+	 * 		If passed handle was cancelled before the result was available.
+	 */
+	@WorkerThread
 	@NonNull
-	private <D extends Operation.Data, T, V extends Operation.Variables> List<TrainStation>
-	executeQuery(@NonNull Query<D, T, V> query) {
-		List<TrainStation> result = new ArrayList<>();
+	public List<TrainStation> searchTrainStations(@NonNull TrainStationQuery query,
+			@Nullable RequestHandle handle) {
 		try {
-			result = TrainStationServiceUtil.parseResponse(mAppolloClient.query(query).execute());
-		} catch (ApolloException e) {
-			LOG.error(String.format(Locale.getDefault(), "Failure on executing %s", query.name()));
+			return searchTrainStationsOrThrow(query, handle);
+		} catch (UncheckedIOException e) {
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Like {@link #searchTrainStations(TrainStationQuery, RequestHandle)}, but a failed request
+	 * is thrown instead of being answered with an empty list. An empty list means that there are
+	 * no (further) train stations, e.g. after the last page of a result. Further pages are
+	 * queued apart from first pages, so prefetching them won't delay interactive searches.
+	 *
+	 * @param query
+	 * 		The query to execute.
+	 * @param handle
+	 * 		The handle that could be used to cancel the request and that will provide the number
+	 * 		of received bytes. Could be {@code null} if request won't be cancelled.
+	 * @return A possible list of {@link TrainStation}s that match passed query.
+	 * @throws CancellationException
+	 * 		If passed handle was cancelled before the result was available.
+	 * @throws UncheckedIOException
+	 * 		If the request failed.
+	 */
+	@WorkerThread
+	@NonNull
+	public List<TrainStation> searchTrainStationsOrThrow(@NonNull TrainStationQuery query,
+			@Nullable RequestHandle handle) {
+		if (query.getType() != TrainStationQuery.Type.NEARBY) {
+			return search(query, handle);
+		}
+		if (PreferenceUtils.isPreferenceEnabled(getPreferences(), SettingsFragment
+				.PREFERENCE_KEY_OFFLINE_MODE, false) && mOfflineSource.isAvailable()) {
+			// the offline catalogue only answers the first page of nearest stations
+			return query.getOffset() == 0 ? mOfflineSource.searchTrainStations(query
+					.getLatitude(), query.getLongitude(), query.getRadius()) : new ArrayList<>();
+		}
+		if (query.getOffset() > 0) {
+			return search(query, handle);
+		}
+		List<TrainStation> cachedTrainStations = mNearbyTileCache.get(query.getLatitude(), query
+				.getLongitude(), query.getRadius(), query.getCount());
+		if (cachedTrainStations != null) {
+			TILE_CACHE_HITS.increment();
+			return new ApproximateResult(cachedTrainStations);
 		}
-		return result;
+		TILE_CACHE_MISSES.increment();
+		List<TrainStation> trainStations = search(query, handle);
+		if (!trainStations.isEmpty()) {
+			mNearbyTileCache.put(query.getLatitude(), query.getLongitude(), query.getRadius(),
+					query.getCount(), trainStations);
+		}
+		return trainStations;
+	}
+
+	/**
+	 * @param trainStations
+	 * 		A result of {@link #searchTrainStations(TrainStationQuery, RequestHandle)}.
+	 * @return True, if passed result was answered by {@link NearbyTileCache} with the result of
+	 * a location up to {@link NearbyTileCache#getMaxOffsetRatio()} of the radius away. It isn't
+	 * the first page of the queried location, so further pages can't be requested by offset.
+	 */
+	public boolean isApproximate(@NonNull List<TrainStation> trainStations) {
+		return trainStations instanceof ApproximateResult;
 	}
 
+	/**
+	 * @return The cache that answers near by searches within already searched areas.
+	 */
+	@NonNull
+	public NearbyTileCache getNearbyTileCache() {
+		return mNearbyTileCache;
+	}
+
+	/**
+	 * @return The fetcher that splits near by queries into chunks the graphql endpoint is able
+	 * to answer.
+	 */
+	@NonNull
+	public AdaptiveChunkFetcher getChunkFetcher() {
+		return mChunkFetcher;
+	}
+
+	/**
+	 * @return The number of queries that were actually sent to graphql endpoint.
+	 */
+	public long getExecutedRequestCount() {
+		return mRequestCoalescer.getExecutedCount() + mPageCoalescer.getExecutedCount();
+	}
+
+	/**
+	 * @return The number of queries that were answered by an identical query in flight.
+	 */
+	public long getCoalescedRequestCount() {
+		return mRequestCoalescer.getCoalescedCount() + mPageCoalescer.getCoalescedCount();
+	}
+
+	@NonNull
+	private SharedPreferences getPreferences() {
+		return mPreferences != null ? mPreferences : PreferenceManager
+				.getDefaultSharedPreferences(mContext);
+	}
+
+	@NonNull
+	private List<TrainStation> search(@NonNull TrainStationQuery query,
+			@Nullable RequestHandle handle) {
+		RequestCoalescer<TrainStationQuery, List<TrainStation>> coalescer = query.getOffset() >
+				0 ? mPageCoalescer : mRequestCoalescer;
+		return coalescer.execute(query, handle, flightHandle -> executeQuery(query,
+				flightHandle));
+	}
+
+	@NonNull
+	private List<TrainStation> executeQuery(@NonNull TrainStationQuery query,
+			@NonNull RequestHandle handle) {
+		long start = QUERY_LATENCY.start();
+		try {
+			// large near by pages might exceed the count the endpoint is able to answer
+			return query.getType() == TrainStationQuery.Type.NEARBY ? mChunkFetcher.fetch(query,
+					handle) : fetch(query, handle);
+		} catch (IOException | IllegalStateException | NumberFormatException e) {
+			FAILED_QUERIES.increment();
+			if (handle.isCancelled()) {
+				LOG.atInfo().arg(query).log("Cancelled executing {}");
+			} else {
+				LOG.atError().arg(query).cause(e).log("Failure on executing {}");
+			}
+			throw e instanceof IOException ? new UncheckedIOException((IOException) e) : new
+					UncheckedIOException(new IOException(e));
+		} finally {
+			QUERY_LATENCY.stop(start);
+		}
+	}
+
+	/**
+	 * Sends passed query to graphql endpoint on the calling thread.
+	 *
+	 * @param query
+	 * 		The query to send.
+	 * @param handle
+	 * 		The handle that could be used to cancel the request and that will provide the number
+	 * 		of received bytes.
+	 * @return A possible list of {@link TrainStation}s that match passed query.
+	 * @throws GraphQlException
+	 * 		If the endpoint answered with errors instead of train stations.
+	 * @throws IOException
+	 * 		If the request failed or was cancelled.
+	 */
+	@VisibleForTesting
+	@WorkerThread
+	@NonNull
+	List<TrainStation> fetch(@NonNull TrainStationQuery query, @NonNull RequestHandle handle)
+			throws IOException {
+		Request request = new Request.Builder()
+				.url(mServerUrl)
+				.post(RequestBody.create(JSON_MEDIA_TYPE, query.toRequestBody()))
+				.build();
+		Call call = mHttpClient.newCall(request);
+		handle.addOnCancelListener(call::cancel);
+		try (Response response = call.execute()) {
+			ResponseBody body = response.body();
+			if (!response.isSuccessful() || body == null) {
+				throw new IOException(String.format(Locale.getDefault(), "Failure on executing " +
+						"%s (status code %s)", query, response.code()));
+			}
+			return TrainStationServiceUtil.parseResponseOrThrow(openReader(body, handle));
+		}
+	}
+
+	/**
+	 * @return A reader of passed response body that adds all read bytes to passed handle.
+	 */
+	@NonNull
+	private static Reader openReader(@NonNull ResponseBody body,
+			@NonNull RequestHandle handle) {
+		MediaType contentType = body.contentType();
+		Charset charset = contentType != null ? contentType.charset(StandardCharsets.UTF_8) :
+				StandardCharsets.UTF_8;
+		ForwardingSource countingSource = new ForwardingSource(body.source()) {
+			@Override
+			public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+				long read = super.read(sink, byteCount);
+				if (read > 0) {
+					handle.addReceivedBytes(read);
+					RECEIVED_BYTES.add(read);
+				}
+				return read;
+			}
+		};
+		return new InputStreamReader(Okio.buffer(countingSource).inputStream(), charset);
+	}
+
+	/**
+	 * A copy of a result of {@link NearbyTileCache} that answers a search near by another
+	 * location.
+	 */
+	private static class ApproximateResult extends ArrayList<TrainStation> {
+
+		private ApproximateResult(@NonNull List<TrainStation> trainStations) {
+			super(trainStations);
+		}
+	}
 }
@@ -1,89 +1,278 @@
 package com.mytrainstation.api;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
-import com.apollographql.apollo.ApolloCall;
-import com.apollographql.apollo.api.Error;
-import com.apollographql.apollo.api.Response;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.mytrainstation.logging.FastLogger;
+import com.mytrainstation.metrics.Counter;
+import com.mytrainstation.metrics.LatencyHistogram;
+import com.mytrainstation.metrics.MetricsRegistry;
 import com.mytrainstation.model.TrainStation;
 import com.mytrainstation.util.BooleanUtils;
 
-import org.apache.log4j.Logger;
-
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
-import queries.NearByQuery;
-import queries.SearchQuery;
-
 /**
- * Service util class to parse {@link Response}s from
- * {@link com.apollographql.apollo.ApolloClient} while executing graphql queries.
+ * Service util class to parse responses of the graphql endpoint while executing graphql
+ * queries.
+ *
+ * The response is read as stream of json tokens, so each station is directly mapped to a
+ * {@link TrainStation} without materializing the whole response. Responses of
+ * {@link queries.NearByQuery} ({@code data.nearby.stations}) and {@link queries.SearchQuery}
+ * ({@code data.search.stations}) share the same structure below their root field, so both are
+ * handled by the same code path.
  *
  * @author JSCHENK
  */
 public class TrainStationServiceUtil {
 
-	private static final Logger LOG = Logger.getLogger(TrainStationServiceUtil.class);
+	private static final FastLogger LOG = FastLogger.getLogger(TrainStationServiceUtil.class);
+
+	// includes the time to receive a streamed response body
+	private static final LatencyHistogram PARSE_LATENCY = MetricsRegistry.getInstance()
+			.histogram("TrainStationServiceUtil.parseResponse");
+	private static final Counter PARSED_STATIONS = MetricsRegistry.getInstance().counter
+			("TrainStationServiceUtil.parsedStations");
+
+	private static final String FIELD_DATA = "data";
+	private static final String FIELD_ERRORS = "errors";
+	private static final String FIELD_MESSAGE = "message";
+	private static final String FIELD_STATIONS = "stations";
+	private static final String FIELD_PRIMARY_EVA_ID = "primaryEvaId";
+	private static final String FIELD_NAME = "name";
+	private static final String FIELD_HAS_WIFI = "hasWiFi";
+	private static final String FIELD_HAS_PARKING = "hasParking";
+	private static final String FIELD_HAS_STEPLESS_ACCESS = "hasSteplessAccess";
+	private static final String FIELD_PICTURE = "picture";
+	private static final String FIELD_URL = "url";
+	private static final String FIELD_LOCATION = "location";
+	private static final String FIELD_LATITUDE = "latitude";
+	private static final String FIELD_LONGITUDE = "longitude";
+
+	/**
+	 * @param response
+	 * 		The json response of the graphql endpoint.
+	 * @return A possible list of {@link TrainStation}s that could be initialized with help of
+	 * response data.
+	 * @throws IOException
+	 * 		If response couldn't be read or isn't valid json.
+	 */
+	@NonNull
+	public static List<TrainStation> parseResponse(@NonNull Reader response) throws IOException {
+		return parse(response, new ArrayList<>());
+	}
 
 	/**
+	 * Like {@link #parseResponse(Reader)}, but fails if the endpoint answered with errors
+	 * instead of data, e.g. with 'Internal Error' for larger counts of
+	 * {@link queries.NearByQuery}.
+	 *
 	 * @param response
-	 * 		The response that provided by {@link ApolloCall#execute()}
-	 * @param <T>
-	 * 		The type of the response data.
+	 * 		The json response of the graphql endpoint.
 	 * @return A possible list of {@link TrainStation}s that could be initialized with help of
 	 * response data.
+	 * @throws GraphQlException
+	 * 		If response contains errors and no train station.
+	 * @throws IOException
+	 * 		If response couldn't be read or isn't valid json.
 	 */
 	@NonNull
-	public static <T> List<TrainStation> parseResponse(@NonNull Response<T> response) {
-		List<TrainStation> trainStations = new ArrayList<>();
-		if (response.hasErrors() && response.errors().size() > 0) {
-			LOG.info("Response contain errors.");
-			for (Error error : response.errors()) {
-				LOG.info(error.message());
+	public static List<TrainStation> parseResponseOrThrow(@NonNull Reader response) throws
+			IOException {
+		List<String> errors = new ArrayList<>();
+		List<TrainStation> trainStations = parse(response, errors);
+		if (trainStations.isEmpty() && !errors.isEmpty()) {
+			throw new GraphQlException(errors);
+		}
+		return trainStations;
+	}
+
+	@NonNull
+	private static List<TrainStation> parse(@NonNull Reader response,
+			@NonNull List<String> errors) throws IOException {
+		long start = PARSE_LATENCY.start();
+		try {
+			List<TrainStation> trainStations = new ArrayList<>();
+			JsonReader reader = new JsonReader(response);
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (FIELD_DATA.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+					readData(reader, trainStations);
+				} else if (FIELD_ERRORS.equals(name) && reader.peek() == JsonToken
+						.BEGIN_ARRAY) {
+					readErrors(reader, errors);
+				} else {
+					reader.skipValue();
+				}
 			}
+			reader.endObject();
+			PARSED_STATIONS.add(trainStations.size());
+			return trainStations;
+		} finally {
+			// failed or cancelled responses are measured as well
+			PARSE_LATENCY.stop(start);
 		}
-		T data = response.data();
-		if (data != null) {
-			if (data instanceof NearByQuery.Data) {
-				NearByQuery.Nearby nearby = ((NearByQuery.Data) data).nearby();
-				for (NearByQuery.Station station : nearby.stations()) {
-					Integer evaId = station.primaryEvaId();
-					if (evaId != null) {
-						Boolean hasSteplessAccess = BooleanUtils.tryParseYesNoString(station
-								.hasSteplessAccess());
-						NearByQuery.Picture picture = station.picture();
-						trainStations.add(
-								new TrainStation.Builder(evaId, station.name())
-										.hasParking(station.hasParking())
-										.hasWifi(station.hasWiFi())
-										.hasSteplessAccess(hasSteplessAccess != null ?
-												hasSteplessAccess : false)
-										.pictureUrl(picture != null ? picture.url() : null)
-										.build());
+	}
+
+	private static void readData(@NonNull JsonReader reader,
+			@NonNull List<TrainStation> trainStations) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			// root field is either 'nearby' or 'search'
+			reader.nextName();
+			if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+				readStationContainer(reader, trainStations);
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	private static void readStationContainer(@NonNull JsonReader reader,
+			@NonNull List<TrainStation> trainStations) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (FIELD_STATIONS.equals(reader.nextName()) && reader.peek() == JsonToken
+					.BEGIN_ARRAY) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					TrainStation trainStation = readStation(reader);
+					if (trainStation != null) {
+						trainStations.add(trainStation);
 					}
 				}
-			} else if (data instanceof SearchQuery.Data) {
-				SearchQuery.Search search = ((SearchQuery.Data) data).search();
-				for (SearchQuery.Station station : search.stations()) {
-					Integer evaId = station.primaryEvaId();
-					if (evaId != null) {
-						Boolean hasSteplessAccess = BooleanUtils.tryParseYesNoString(station
-								.hasSteplessAccess());
-						SearchQuery.Picture picture = station.picture();
-						trainStations.add(
-								new TrainStation.Builder(evaId, station.name())
-										.hasParking(station.hasParking())
-										.hasWifi(station.hasWiFi())
-										.hasSteplessAccess(hasSteplessAccess != null ?
-												hasSteplessAccess : false)
-										.pictureUrl(picture != null ? picture.url() : null)
-										.build());
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	@Nullable
+	private static TrainStation readStation(@NonNull JsonReader reader) throws IOException {
+		if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+			reader.skipValue();
+			return null;
+		}
+		boolean hasEvaId = false;
+		int evaId = 0;
+		String name = null;
+		boolean hasWifi = false;
+		boolean hasParking = false;
+		boolean hasSteplessAccess = false;
+		String pictureUrl = null;
+		double latitude = Double.NaN;
+		double longitude = Double.NaN;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String field = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.skipValue();
+				continue;
+			}
+			switch (field) {
+				case FIELD_PRIMARY_EVA_ID:
+					evaId = reader.nextInt();
+					hasEvaId = true;
+					break;
+				case FIELD_NAME:
+					name = reader.nextString();
+					break;
+				case FIELD_HAS_WIFI:
+					hasWifi = reader.nextBoolean();
+					break;
+				case FIELD_HAS_PARKING:
+					hasParking = reader.nextBoolean();
+					break;
+				case FIELD_HAS_STEPLESS_ACCESS:
+					Boolean steplessAccess = BooleanUtils.tryParseYesNoString(reader.nextString());
+					hasSteplessAccess = steplessAccess != null ? steplessAccess : false;
+					break;
+				case FIELD_PICTURE:
+					pictureUrl = readPictureUrl(reader);
+					break;
+				case FIELD_LOCATION:
+					reader.beginObject();
+					while (reader.hasNext()) {
+						String locationField = reader.nextName();
+						if (reader.peek() != JsonToken.NUMBER) {
+							reader.skipValue();
+						} else if (FIELD_LATITUDE.equals(locationField)) {
+							latitude = reader.nextDouble();
+						} else if (FIELD_LONGITUDE.equals(locationField)) {
+							longitude = reader.nextDouble();
+						} else {
+							reader.skipValue();
+						}
 					}
+					reader.endObject();
+					break;
+				default:
+					reader.skipValue();
+					break;
+			}
+		}
+		reader.endObject();
+		if (!hasEvaId) {
+			return null;
+		}
+		TrainStation.Builder builder = new TrainStation.Builder(evaId, name)
+				.hasParking(hasParking)
+				.hasWifi(hasWifi)
+				.hasSteplessAccess(hasSteplessAccess)
+				.pictureUrl(pictureUrl);
+		if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+			builder.location(latitude, longitude);
+		}
+		return builder.build();
+	}
+
+	@Nullable
+	private static String readPictureUrl(@NonNull JsonReader reader) throws IOException {
+		String url = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (FIELD_URL.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+				url = reader.nextString();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return url;
+	}
+
+	private static void readErrors(@NonNull JsonReader reader, @NonNull List<String> errors)
+			throws IOException {
+		LOG.info("Response contain errors.");
+		reader.beginArray();
+		while (reader.hasNext()) {
+			if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+				reader.skipValue();
+				continue;
+			}
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (FIELD_MESSAGE.equals(reader.nextName()) && reader.peek() == JsonToken
+						.STRING) {
+					String message = reader.nextString();
+					LOG.info(message);
+					errors.add(message);
+				} else {
+					reader.skipValue();
 				}
 			}
+			reader.endObject();
 		}
-		return trainStations;
+		reader.endArray();
 	}
 
 }
@@ -0,0 +1,32 @@
+package com.mytrainstation.api;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import com.mytrainstation.model.TrainStation;
+
+import java.util.List;
+
+/**
+ * Source of {@link TrainStation}s near by a location, either the graphql endpoint (see
+ * {@link TrainStationService}) or the offline station catalogue (see
+ * {@link com.mytrainstation.api.offline.OfflineTrainStationService}).
+ *
+ * @author JSCHENK
+ */
+public interface TrainStationSource {
+
+	/**
+	 * @param latitude
+	 * 		Latitude value of current location.
+	 * @param longitude
+	 * 		Longitude value of current location.
+	 * @param radius
+	 * 		{@link TrainStation}s should be located within passed radius.
+	 * @return A possible list of {@link TrainStation}s that are near by passed location and
+	 * within given radius.
+	 */
+	@WorkerThread
+	@NonNull
+	List<TrainStation> searchTrainStations(double latitude, double longitude, int radius);
+}
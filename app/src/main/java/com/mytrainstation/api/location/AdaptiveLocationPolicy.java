@@ -0,0 +1,256 @@
+package com.mytrainstation.api.location;
+
+import android.location.LocationManager;
+import android.support.annotation.NonNull;
+
+import com.mytrainstation.util.GeoUtils;
+
+import java.util.Locale;
+
+/**
+ * Adapts location updates to the speed of the user and the search radius. A new location is
+ * only of interest after the user moved a share of the search radius, so the interval of gps
+ * fixes is scaled to the time it takes to cover that distance at the estimated speed. If the
+ * user doesn't move, gps is only polled rarely and fixes of other apps are received by the
+ * passive provider instead.
+ *
+ * The speed is estimated from the displacement of recent fixes, reduced by their accuracy, so
+ * jitter of a standing user isn't taken as movement. Doesn't depend on android framework, so it
+ * could be replayed with recorded fixes on the JVM.
+ *
+ * @author JSCHENK
+ */
+public class AdaptiveLocationPolicy {
+
+	/**
+	 * Search radius until one is set.
+	 */
+	public static final int DEFAULT_SEARCH_RADIUS_METERS = 2000;
+	/**
+	 * Interval of gps fixes while the user doesn't move.
+	 */
+	public static final long STATIONARY_INTERVAL_MILLIS = 2 * 60 * 1000;
+	// a result still contains most stations near by a location within half of the search radius
+	private static final double DISTANCE_RATIO = 0.5d;
+	private static final float MIN_DISTANCE_METERS = 100;
+	private static final float MAX_DISTANCE_METERS = 5000;
+	// fixes per distance, so the distance is exceeded by half of it at most
+	private static final int FIXES_PER_DISTANCE = 2;
+	private static final long MIN_INTERVAL_MILLIS = 5 * 1000;
+	private static final long MAX_INTERVAL_MILLIS = STATIONARY_INTERVAL_MILLIS;
+	private static final long SPEED_WINDOW_MILLIS = 60 * 1000;
+	private static final double STATIONARY_SPEED_METERS_PER_SECOND = 0.5d;
+	// an interval isn't changed unless it differs by this factor, to avoid re-registrations
+	private static final double INTERVAL_HYSTERESIS = 1.5d;
+	private static final int HISTORY_SIZE = 8;
+
+	// ring buffer of the latest received fixes
+	private final long[] mTimes = new long[HISTORY_SIZE];
+	private final double[] mLatitudes = new double[HISTORY_SIZE];
+	private final double[] mLongitudes = new double[HISTORY_SIZE];
+	private final float[] mAccuracies = new float[HISTORY_SIZE];
+	private int mSize;
+	private int mNewest = -1;
+	private int mSearchRadius;
+	private double mSpeed = Double.NaN;
+	private boolean mHasDelivered;
+	private double mDeliveredLatitude;
+	private double mDeliveredLongitude;
+	@NonNull
+	private Request mRequest = new Request(LocationManager.GPS_PROVIDER, LocationProvider
+			.MIN_TIME_BETWEEN_LOCATION_UPDATES_MILLIS);
+
+	/**
+	 * @param searchRadius
+	 * 		The current search radius in metres.
+	 */
+	public AdaptiveLocationPolicy(int searchRadius) {
+		mSearchRadius = searchRadius;
+	}
+
+	/**
+	 * @param searchRadius
+	 * 		The new search radius in metres, which scales the distance between delivered fixes.
+	 * @return True, if the request changed and location updates have to be requested again.
+	 */
+	public boolean setSearchRadius(int searchRadius) {
+		mSearchRadius = searchRadius;
+		return updateRequest();
+	}
+
+	/**
+	 * Passes a fix that was received by the location manager.
+	 *
+	 * @param timeMillis
+	 * 		The time of the fix in milliseconds.
+	 * @param latitude
+	 * 		The latitude of the fix.
+	 * @param longitude
+	 * 		The longitude of the fix.
+	 * @param accuracy
+	 * 		The accuracy of the fix in metres.
+	 * @return True, if the fix should be delivered to the listener, because the user moved at
+	 * least {@link #getMinDistanceMeters()} since the last delivered fix.
+	 */
+	public boolean onLocationChanged(long timeMillis, double latitude, double longitude,
+			float accuracy) {
+		if (mSize > 0 && timeMillis <= mTimes[mNewest]) {
+			// out of order fixes, e.g. of the passive provider, don't tell anything about speed
+			return false;
+		}
+		mNewest = (mNewest + 1) % HISTORY_SIZE;
+		mTimes[mNewest] = timeMillis;
+		mLatitudes[mNewest] = latitude;
+		mLongitudes[mNewest] = longitude;
+		mAccuracies[mNewest] = accuracy;
+		mSize = Math.min(mSize + 1, HISTORY_SIZE);
+		mSpeed = estimateSpeed();
+		updateRequest();
+
+		if (mHasDelivered && GeoUtils.distanceMeters(mDeliveredLatitude, mDeliveredLongitude,
+				latitude, longitude) < getMinDistanceMeters()) {
+			return false;
+		}
+		mHasDelivered = true;
+		mDeliveredLatitude = latitude;
+		mDeliveredLongitude = longitude;
+		return true;
+	}
+
+	/**
+	 * @return The speed in metres per second over the oldest fix within
+	 * {@link #SPEED_WINDOW_MILLIS}, but at least the previous one, or {@code NaN} if there is
+	 * only a single fix.
+	 */
+	private double estimateSpeed() {
+		if (mSize < 2) {
+			return Double.NaN;
+		}
+		int reference = (mNewest - 1 + HISTORY_SIZE) % HISTORY_SIZE;
+		for (int age = 2; age < mSize; age++) {
+			int index = (mNewest - age + HISTORY_SIZE) % HISTORY_SIZE;
+			if (mTimes[mNewest] - mTimes[index] > SPEED_WINDOW_MILLIS) {
+				break;
+			}
+			reference = index;
+		}
+		double displacement = GeoUtils.distanceMeters(mLatitudes[reference],
+				mLongitudes[reference], mLatitudes[mNewest], mLongitudes[mNewest]) -
+				mAccuracies[reference] - mAccuracies[mNewest];
+		return Math.max(0d, displacement) * 1000 / (mTimes[mNewest] - mTimes[reference]);
+	}
+
+	/**
+	 * @return True, if the request changed.
+	 */
+	private boolean updateRequest() {
+		Request request;
+		if (Double.isNaN(mSpeed)) {
+			return false;
+		} else if (mSpeed < STATIONARY_SPEED_METERS_PER_SECOND) {
+			request = new Request(LocationManager.PASSIVE_PROVIDER, STATIONARY_INTERVAL_MILLIS);
+		} else {
+			long intervalMillis = (long) (getMinDistanceMeters() * 1000 / (mSpeed *
+					FIXES_PER_DISTANCE));
+			intervalMillis = Math.max(MIN_INTERVAL_MILLIS, Math.min(MAX_INTERVAL_MILLIS,
+					intervalMillis));
+			if (!mRequest.isPassive()) {
+				double ratio = (double) intervalMillis / mRequest.mIntervalMillis;
+				if (ratio < INTERVAL_HYSTERESIS && ratio > 1 / INTERVAL_HYSTERESIS) {
+					return false;
+				}
+			}
+			request = new Request(LocationManager.GPS_PROVIDER, intervalMillis);
+		}
+		if (request.equals(mRequest)) {
+			return false;
+		}
+		mRequest = request;
+		return true;
+	}
+
+	/**
+	 * @return The distance the user has to move until a fix will be delivered again.
+	 */
+	public float getMinDistanceMeters() {
+		return (float) Math.max(MIN_DISTANCE_METERS, Math.min(MAX_DISTANCE_METERS, mSearchRadius
+				* DISTANCE_RATIO));
+	}
+
+	/**
+	 * @return The estimated speed in metres per second or {@code NaN} if not enough fixes were
+	 * received.
+	 */
+	public double getSpeedMetersPerSecond() {
+		return mSpeed;
+	}
+
+	/**
+	 * @return The location updates that should be requested from the location manager.
+	 */
+	@NonNull
+	public Request getRequest() {
+		return mRequest;
+	}
+
+	/**
+	 * Location updates to request from the location manager.
+	 */
+	public static final class Request {
+
+		private final String mProvider;
+		private final long mIntervalMillis;
+
+		private Request(@NonNull String provider, long intervalMillis) {
+			mProvider = provider;
+			mIntervalMillis = intervalMillis;
+		}
+
+		/**
+		 * @return The provider to receive fixes from.
+		 */
+		@NonNull
+		public String getProvider() {
+			return mProvider;
+		}
+
+		/**
+		 * @return True, if fixes of other apps should be received by the passive provider,
+		 * while gps is only polled each {@link #getIntervalMillis()} to notice movement.
+		 */
+		public boolean isPassive() {
+			return LocationManager.PASSIVE_PROVIDER.equals(mProvider);
+		}
+
+		/**
+		 * @return The minimum time between two gps fixes.
+		 */
+		public long getIntervalMillis() {
+			return mIntervalMillis;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Request request = (Request) o;
+			return mIntervalMillis == request.mIntervalMillis && mProvider.equals(request
+					.mProvider);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * mProvider.hashCode() + Long.hashCode(mIntervalMillis);
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "Request [provider=%s, interval=%sms]", mProvider,
+					mIntervalMillis);
+		}
+	}
+}
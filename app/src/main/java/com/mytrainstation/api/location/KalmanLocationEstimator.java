@@ -0,0 +1,172 @@
+package com.mytrainstation.api.location;
+
+import com.mytrainstation.util.GeoUtils;
+
+/**
+ * Smooths fixes with a constant velocity kalman filter, with the accuracy of each fix as its
+ * measurement noise. Jitter of a standing user is averaged out, while the estimate of a moving
+ * user follows with the estimated velocity instead of lagging behind.
+ *
+ * North and east are filtered independently in metres relative to the current estimate, which
+ * is moved to the filtered position after each update. The state is held in primitive fields,
+ * so an update doesn't allocate.
+ *
+ * @author JSCHENK
+ */
+public class KalmanLocationEstimator implements LocationEstimator {
+
+	/**
+	 * Default standard deviation of the acceleration of the user in m/s². Halves the jitter of a
+	 * standing user, while the estimate of a car turning at 15 m/s is off by less than 100 m.
+	 */
+	public static final double DEFAULT_ACCELERATION_METERS_PER_SECOND_SQUARED = 0.5;
+	// the estimate starts again, since the velocity after such a gap doesn't tell anything
+	private static final long MAX_GAP_MILLIS = 5 * 60 * 1000;
+	// standard deviation of the unknown velocity of the first fix, about a fast train
+	private static final double INITIAL_VELOCITY_METERS_PER_SECOND = 50;
+	private static final float MIN_ACCURACY_METERS = 1;
+
+	private final double mAccelerationVariance;
+	private final Axis mNorth = new Axis();
+	private final Axis mEast = new Axis();
+	private long mTimeMillis;
+	private double mLatitude = Double.NaN;
+	private double mLongitude = Double.NaN;
+
+	/**
+	 * Creates an estimator with {@link #DEFAULT_ACCELERATION_METERS_PER_SECOND_SQUARED}.
+	 */
+	public KalmanLocationEstimator() {
+		this(DEFAULT_ACCELERATION_METERS_PER_SECOND_SQUARED);
+	}
+
+	/**
+	 * @param acceleration
+	 * 		The standard deviation of the acceleration of the user in m/s². Higher values follow
+	 * 		changes of speed and direction faster, but smooth less.
+	 */
+	public KalmanLocationEstimator(double acceleration) {
+		if (!(acceleration > 0)) {
+			throw new IllegalArgumentException("Acceleration has to be positive: " +
+					acceleration);
+		}
+		mAccelerationVariance = acceleration * acceleration;
+	}
+
+	@Override
+	public void update(long timeMillis, double latitude, double longitude, float accuracy) {
+		double variance = Math.max(MIN_ACCURACY_METERS, accuracy);
+		variance *= variance;
+		if (!hasEstimate() || timeMillis - mTimeMillis > MAX_GAP_MILLIS) {
+			mTimeMillis = timeMillis;
+			mLatitude = latitude;
+			mLongitude = longitude;
+			mNorth.reset(variance);
+			mEast.reset(variance);
+			return;
+		}
+		// delayed fixes are taken as current ones
+		double seconds = Math.max(0, timeMillis - mTimeMillis) / 1000d;
+		mTimeMillis = Math.max(mTimeMillis, timeMillis);
+		double metersPerDegreeLongitude = GeoUtils.metersPerDegreeLongitude(mLatitude);
+
+		mNorth.predict(seconds, mAccelerationVariance);
+		mEast.predict(seconds, mAccelerationVariance);
+		mNorth.update((latitude - mLatitude) * GeoUtils.METERS_PER_DEGREE, variance);
+		mEast.update((longitude - mLongitude) * metersPerDegreeLongitude, variance);
+
+		mLatitude += mNorth.mPosition / GeoUtils.METERS_PER_DEGREE;
+		mLongitude += mEast.mPosition / metersPerDegreeLongitude;
+		mNorth.mPosition = 0;
+		mEast.mPosition = 0;
+	}
+
+	@Override
+	public boolean hasEstimate() {
+		return !Double.isNaN(mLatitude);
+	}
+
+	@Override
+	public double getLatitude() {
+		return mLatitude;
+	}
+
+	@Override
+	public double getLongitude() {
+		return mLongitude;
+	}
+
+	@Override
+	public float getAccuracy() {
+		if (!hasEstimate()) {
+			return Float.NaN;
+		}
+		return (float) Math.sqrt(Math.max(mNorth.mPositionVariance, mEast.mPositionVariance));
+	}
+
+	/**
+	 * @return The estimated speed in metres per second or {@code NaN} if there is no estimate.
+	 */
+	public double getSpeedMetersPerSecond() {
+		if (!hasEstimate()) {
+			return Double.NaN;
+		}
+		return Math.hypot(mNorth.mVelocity, mEast.mVelocity);
+	}
+
+	@Override
+	public void reset() {
+		mLatitude = Double.NaN;
+		mLongitude = Double.NaN;
+	}
+
+	/**
+	 * Position relative to the current estimate and velocity along one axis, with their
+	 * symmetric 2x2 covariance.
+	 */
+	private static final class Axis {
+
+		private double mPosition;
+		private double mVelocity;
+		private double mPositionVariance;
+		private double mCovariance;
+		private double mVelocityVariance;
+
+		private void reset(double positionVariance) {
+			mPosition = 0;
+			mVelocity = 0;
+			mPositionVariance = positionVariance;
+			mCovariance = 0;
+			mVelocityVariance = INITIAL_VELOCITY_METERS_PER_SECOND *
+					INITIAL_VELOCITY_METERS_PER_SECOND;
+		}
+
+		/**
+		 * Moves the state by its velocity and adds the uncertainty of an unknown acceleration.
+		 */
+		private void predict(double seconds, double accelerationVariance) {
+			double seconds2 = seconds * seconds;
+			mPosition += mVelocity * seconds;
+			mPositionVariance += seconds * (2 * mCovariance + seconds * mVelocityVariance) +
+					accelerationVariance * seconds2 * seconds2 / 4;
+			mCovariance += seconds * mVelocityVariance + accelerationVariance * seconds2 *
+					seconds / 2;
+			mVelocityVariance += accelerationVariance * seconds2;
+		}
+
+		/**
+		 * Corrects the state by a measured position with passed variance.
+		 */
+		private void update(double position, double variance) {
+			double innovationVariance = mPositionVariance + variance;
+			double positionGain = mPositionVariance / innovationVariance;
+			double velocityGain = mCovariance / innovationVariance;
+			double innovation = position - mPosition;
+			mPosition += positionGain * innovation;
+			mVelocity += velocityGain * innovation;
+			mVelocityVariance -= velocityGain * mCovariance;
+			mPositionVariance *= 1 - positionGain;
+			mCovariance *= 1 - positionGain;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package com.mytrainstation.api.location;
+
+/**
+ * Estimates the location by the latest fix without any smoothing.
+ *
+ * @author JSCHENK
+ */
+public class LatestFixEstimator implements LocationEstimator {
+
+	private double mLatitude = Double.NaN;
+	private double mLongitude = Double.NaN;
+	private float mAccuracy = Float.NaN;
+
+	@Override
+	public void update(long timeMillis, double latitude, double longitude, float accuracy) {
+		mLatitude = latitude;
+		mLongitude = longitude;
+		mAccuracy = accuracy;
+	}
+
+	@Override
+	public boolean hasEstimate() {
+		return !Double.isNaN(mLatitude);
+	}
+
+	@Override
+	public double getLatitude() {
+		return mLatitude;
+	}
+
+	@Override
+	public double getLongitude() {
+		return mLongitude;
+	}
+
+	@Override
+	public float getAccuracy() {
+		return mAccuracy;
+	}
+
+	@Override
+	public void reset() {
+		mLatitude = Double.NaN;
+		mLongitude = Double.NaN;
+		mAccuracy = Float.NaN;
+	}
+}
@@ -0,0 +1,52 @@
+package com.mytrainstation.api.location;
+
+/**
+ * Estimates the location of the user from a sequence of fixes, e.g. to smooth the jitter of
+ * gps fixes before train stations near by are searched. Doesn't depend on android framework, so
+ * estimators could be replayed and benchmarked on the JVM. Implementations don't need to be
+ * thread safe.
+ *
+ * @author JSCHENK
+ */
+public interface LocationEstimator {
+
+	/**
+	 * Passes a new fix to the estimator.
+	 *
+	 * @param timeMillis
+	 * 		The time of the fix in milliseconds.
+	 * @param latitude
+	 * 		The latitude of the fix.
+	 * @param longitude
+	 * 		The longitude of the fix.
+	 * @param accuracy
+	 * 		The accuracy of the fix in metres.
+	 */
+	void update(long timeMillis, double latitude, double longitude, float accuracy);
+
+	/**
+	 * @return True, if at least one fix was passed since creation or the last
+	 * {@link #reset()}.
+	 */
+	boolean hasEstimate();
+
+	/**
+	 * @return The estimated latitude or {@code NaN} if there is no estimate.
+	 */
+	double getLatitude();
+
+	/**
+	 * @return The estimated longitude or {@code NaN} if there is no estimate.
+	 */
+	double getLongitude();
+
+	/**
+	 * @return The accuracy of the estimate in metres or {@code NaN} if there is no estimate.
+	 */
+	float getAccuracy();
+
+	/**
+	 * Discards all passed fixes, e.g. if location updates were stopped.
+	 */
+	void reset();
+}
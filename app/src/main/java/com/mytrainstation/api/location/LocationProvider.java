@@ -6,39 +6,53 @@ import android.content.Context;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
+import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.mytrainstation.logging.FastLogger;
 import com.mytrainstation.permissions.PermissionUtils;
 import com.mytrainstation.ui.settings.SettingsFragment;
 import com.mytrainstation.util.PreferenceUtils;
 
-import org.apache.log4j.Logger;
-
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles requests to {@link LocationManager} and delegate location updates to registered
  * {@link LocationListener}s if permission of {@link Manifest.permission#ACCESS_FINE_LOCATION} is
  * granted.
  *
+ * If adaptive location updates are enabled within app settings, the interval of updates is
+ * adapted to the speed of the user and the search radius by {@link AdaptiveLocationPolicy}
+ * instead of the fixed minimum time and distance.
+ *
  * @author JSCHENK
  */
 public class LocationProvider {
 
-	private static final Logger LOG = Logger.getLogger(LocationProvider.class);
+	private static final FastLogger LOG = FastLogger.getLogger(LocationProvider.class);
 
 	private static final String DEFAULT_LOCATION_PROVIDER = LocationManager.GPS_PROVIDER;
-	private static final int MIN_TIME_BETWEEN_LOCATION_UPDATES_MILLIS = 10000;
-	private static final int MIN_DISTANCE_BETWEEN_LOCATION_UPDATES_METERS = 200;
+	/**
+	 * Default minimum time between location updates, unless set within app settings.
+	 */
+	public static final int MIN_TIME_BETWEEN_LOCATION_UPDATES_MILLIS = 10000;
+	/**
+	 * Default minimum distance between location updates, unless set within app settings.
+	 */
+	public static final int MIN_DISTANCE_BETWEEN_LOCATION_UPDATES_METERS = 200;
 
 	private final Context mContext;
 	private final LocationManager mLocationManager;
 	private List<LocationListener> mListeners = Collections.synchronizedList(new
 			ArrayList<LocationListener>());
+	private final Map<LocationListener, AdaptiveListener> mAdaptiveListeners = new
+			ConcurrentHashMap<>();
+	private volatile int mSearchRadius = AdaptiveLocationPolicy.DEFAULT_SEARCH_RADIUS_METERS;
 
 	/**
 	 * @param context
@@ -55,21 +69,31 @@ public class LocationProvider {
 	 * 		The listener to retrieve callbacks if new location was determined.
 	 * @param locationProviders
 	 * 		Specify this if you want to use specific location provider,
-	 * 		otherwise {@link #DEFAULT_LOCATION_PROVIDER} will be used. Could be omit.
+	 * 		otherwise {@link #DEFAULT_LOCATION_PROVIDER} will be used. Could be omit. Updates of
+	 * 		specific location providers are never adapted.
 	 */
 	@SuppressLint("MissingPermission")
 	public void startListeningForLocationUpdates(@NonNull LocationListener locationListener,
 			String... locationProviders) {
-		if (mListeners.contains(locationListener)) {
+		if (mListeners.contains(locationListener) || mAdaptiveListeners.containsKey
+				(locationListener)) {
 			LOG.warn("Listener already added. Return without request location updates.");
 			return;
 		}
 		if (!PermissionUtils.isPermissionAlreadyGranted(mContext, Manifest.permission
 				.ACCESS_FINE_LOCATION)) {
-			if (LOG.isInfoEnabled()) {
-				LOG.info(String.format(Locale.getDefault(), "Permission %s not granted. Can't " +
-						"request location updates.", Manifest.permission.ACCESS_FINE_LOCATION));
-			}
+			LOG.atInfo().arg(Manifest.permission.ACCESS_FINE_LOCATION).log("Permission {} not " +
+					"granted. Can't request location updates.");
+			return;
+		}
+
+		if ((locationProviders == null || locationProviders.length == 0) && PreferenceUtils
+				.isPreferenceEnabled(mContext, SettingsFragment
+						.PREFERENCE_KEY_ADAPTIVE_LOCATION_UPDATES, false)) {
+			AdaptiveListener adaptiveListener = new AdaptiveListener(locationListener, new
+					AdaptiveLocationPolicy(mSearchRadius));
+			mAdaptiveListeners.put(locationListener, adaptiveListener);
+			adaptiveListener.requestLocationUpdates();
 			return;
 		}
 
@@ -111,10 +135,8 @@ public class LocationProvider {
 	private Location getLastKnownLocation(@NonNull String locationProvider) {
 		if (!PermissionUtils.isPermissionAlreadyGranted(mContext, Manifest.permission
 				.ACCESS_FINE_LOCATION)) {
-			if (LOG.isInfoEnabled()) {
-				LOG.info(String.format(Locale.getDefault(), "Permission %s not granted. Can't " +
-						"request location updates.", Manifest.permission.ACCESS_FINE_LOCATION));
-			}
+			LOG.atInfo().arg(Manifest.permission.ACCESS_FINE_LOCATION).log("Permission {} not " +
+					"granted. Can't request location updates.");
 			return null;
 		}
 		return mLocationManager.getLastKnownLocation(locationProvider);
@@ -127,8 +149,115 @@ public class LocationProvider {
 	 * 		The {@link LocationListener} to remove.
 	 */
 	public void stopListeningForLocationUpdates(@NonNull LocationListener locationListener) {
+		AdaptiveListener adaptiveListener = mAdaptiveListeners.remove(locationListener);
+		if (adaptiveListener != null) {
+			adaptiveListener.removeUpdates();
+		}
 		mLocationManager.removeUpdates(locationListener);
 		mListeners.remove(locationListener);
 	}
 
+	/**
+	 * Passes the search radius to adaptive location updates, since fixes are only of interest
+	 * after the user moved a share of it. Has to be called on the thread that started listening,
+	 * which receives the location updates.
+	 *
+	 * @param searchRadius
+	 * 		The current search radius in metres.
+	 */
+	public void setSearchRadius(int searchRadius) {
+		mSearchRadius = searchRadius;
+		for (AdaptiveListener adaptiveListener : mAdaptiveListeners.values()) {
+			if (adaptiveListener.mPolicy.setSearchRadius(searchRadius)) {
+				adaptiveListener.requestLocationUpdates();
+			}
+		}
+	}
+
+	/**
+	 * Receives fixes for a listener with adaptive location updates, delivers the ones its
+	 * {@link AdaptiveLocationPolicy} lets pass and requests location updates again whenever the
+	 * policy changes its request. Fixes of other apps are received by a separate listener of the
+	 * passive provider while the user doesn't move.
+	 */
+	private class AdaptiveListener implements LocationListener {
+
+		private final LocationListener mLocationListener;
+		private final AdaptiveLocationPolicy mPolicy;
+		private final LocationListener mPassiveListener = new LocationListener() {
+			@Override
+			public void onLocationChanged(Location location) {
+				AdaptiveListener.this.onLocationChanged(location);
+			}
+
+			@Override
+			public void onStatusChanged(String provider, int status, Bundle extras) {
+
+			}
+
+			@Override
+			public void onProviderEnabled(String provider) {
+
+			}
+
+			@Override
+			public void onProviderDisabled(String provider) {
+
+			}
+		};
+
+		private AdaptiveListener(@NonNull LocationListener locationListener,
+				@NonNull AdaptiveLocationPolicy policy) {
+			mLocationListener = locationListener;
+			mPolicy = policy;
+		}
+
+		@SuppressLint("MissingPermission")
+		private void requestLocationUpdates() {
+			removeUpdates();
+			AdaptiveLocationPolicy.Request request = mPolicy.getRequest();
+			LOG.atInfo().arg(request).arg(mPolicy.getSpeedMetersPerSecond()).log("Request " +
+					"adaptive location updates {} at speed={} m/s");
+			if (request.isPassive()) {
+				mLocationManager.requestLocationUpdates(LocationManager.PASSIVE_PROVIDER, 0, 0,
+						mPassiveListener);
+			}
+			// distance is filtered by the policy, so fixes of a standing user are still received
+			mLocationManager.requestLocationUpdates(DEFAULT_LOCATION_PROVIDER, request
+					.getIntervalMillis(), 0, this);
+		}
+
+		private void removeUpdates() {
+			mLocationManager.removeUpdates(mPassiveListener);
+			mLocationManager.removeUpdates(this);
+		}
+
+		@Override
+		public void onLocationChanged(Location location) {
+			AdaptiveLocationPolicy.Request request = mPolicy.getRequest();
+			boolean deliver = mPolicy.onLocationChanged(location.getTime(), location
+					.getLatitude(), location.getLongitude(), location.getAccuracy());
+			if (!request.equals(mPolicy.getRequest())) {
+				requestLocationUpdates();
+			}
+			if (deliver) {
+				mLocationListener.onLocationChanged(location);
+			}
+		}
+
+		@Override
+		public void onStatusChanged(String provider, int status, Bundle extras) {
+			mLocationListener.onStatusChanged(provider, status, extras);
+		}
+
+		@Override
+		public void onProviderEnabled(String provider) {
+			mLocationListener.onProviderEnabled(provider);
+		}
+
+		@Override
+		public void onProviderDisabled(String provider) {
+			mLocationListener.onProviderDisabled(provider);
+		}
+	}
 }
@@ -0,0 +1,72 @@
+package com.mytrainstation.api.location;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Decides whether a location fix is better than the current best fix by timeliness, accuracy
+ * and provider. Doesn't depend on android framework, so it could be used for recorded fixes and
+ * benchmarked on the JVM (see {@link LocationUtil#isBetterLocation}).
+ *
+ * @author JSCHENK
+ */
+public class LocationRanking {
+
+	private static final int TWO_MINUTES = 1000 * 60 * 2;
+	private static final int SIGNIFICANTLY_LESS_ACCURATE_METERS = 200;
+
+	/**
+	 * @param timeMillis
+	 * 		The time of the new fix in milliseconds.
+	 * @param accuracy
+	 * 		The accuracy of the new fix in meters.
+	 * @param provider
+	 * 		The provider of the new fix.
+	 * @param currentTimeMillis
+	 * 		The time of the current best fix in milliseconds.
+	 * @param currentAccuracy
+	 * 		The accuracy of the current best fix in meters.
+	 * @param currentProvider
+	 * 		The provider of the current best fix.
+	 * @return True, if the new fix should replace the current best fix, otherwise false.
+	 */
+	public static boolean isBetterFix(long timeMillis, float accuracy, @Nullable String provider,
+			long currentTimeMillis, float currentAccuracy, @Nullable String currentProvider) {
+		// Check whether the new location fix is newer or older
+		long timeDelta = timeMillis - currentTimeMillis;
+		boolean isSignificantlyNewer = timeDelta > TWO_MINUTES;
+		boolean isSignificantlyOlder = timeDelta < -TWO_MINUTES;
+		boolean isNewer = timeDelta > 0;
+
+		// If it's been more than two minutes since the current location, use the new location
+		// because the user has likely moved
+		if (isSignificantlyNewer) {
+			return true;
+			// If the new location is more than two minutes older, it must be worse
+		} else if (isSignificantlyOlder) {
+			return false;
+		}
+
+		// Check whether the new location fix is more or less accurate
+		int accuracyDelta = (int) (accuracy - currentAccuracy);
+		boolean isLessAccurate = accuracyDelta > 0;
+		boolean isMoreAccurate = accuracyDelta < 0;
+		boolean isSignificantlyLessAccurate = accuracyDelta > SIGNIFICANTLY_LESS_ACCURATE_METERS;
+
+		// Check if the old and new location are from the same provider
+		boolean isFromSameProvider = isSameProvider(provider, currentProvider);
+
+		// Determine location quality using a combination of timeliness and accuracy
+		return isMoreAccurate || isNewer && !isLessAccurate || isNewer &&
+				!isSignificantlyLessAccurate && isFromSameProvider;
+	}
+
+	/**
+	 * Checks whether two providers are the same
+	 */
+	private static boolean isSameProvider(String provider1, String provider2) {
+		if (provider1 == null) {
+			return provider2 == null;
+		}
+		return provider1.equals(provider2);
+	}
+}
@@ -5,14 +5,13 @@ import android.support.annotation.Nullable;
 
 /**
  * Util class that provides functionality to handle operations with {@link Location}s, such as
- * checking whether new location is better location than last provided.
+ * checking whether new location is better location than last provided (see
+ * {@link LocationRanking}).
  *
  * @author JSCHENK
  */
 public class LocationUtil {
 
-	private static final int TWO_MINUTES = 1000 * 60 * 2;
-
 	/**
 	 * Determines whether one Location reading is better than the current location fix.
 	 *
@@ -33,44 +32,9 @@ public class LocationUtil {
 			return true;
 		}
 
-		// Check whether the new location fix is newer or older
-		long timeDelta = location.getTime() - currentBestLocation.getTime();
-		boolean isSignificantlyNewer = timeDelta > TWO_MINUTES;
-		boolean isSignificantlyOlder = timeDelta < -TWO_MINUTES;
-		boolean isNewer = timeDelta > 0;
-
-		// If it's been more than two minutes since the current location, use the new location
-		// because the user has likely moved
-		if (isSignificantlyNewer) {
-			return true;
-			// If the new location is more than two minutes older, it must be worse
-		} else if (isSignificantlyOlder) {
-			return false;
-		}
-
-		// Check whether the new location fix is more or less accurate
-		int accuracyDelta = (int) (location.getAccuracy() - currentBestLocation.getAccuracy());
-		boolean isLessAccurate = accuracyDelta > 0;
-		boolean isMoreAccurate = accuracyDelta < 0;
-		boolean isSignificantlyLessAccurate = accuracyDelta > 200;
-
-		// Check if the old and new location are from the same provider
-		boolean isFromSameProvider = isSameProvider(location.getProvider(),
+		return LocationRanking.isBetterFix(location.getTime(), location.getAccuracy(), location
+				.getProvider(), currentBestLocation.getTime(), currentBestLocation.getAccuracy(),
 				currentBestLocation.getProvider());
-
-		// Determine location quality using a combination of timeliness and accuracy
-		return isMoreAccurate || isNewer && !isLessAccurate || isNewer &&
-				!isSignificantlyLessAccurate && isFromSameProvider;
-	}
-
-	/**
-	 * Checks whether two providers are the same
-	 */
-	private static boolean isSameProvider(String provider1, String provider2) {
-		if (provider1 == null) {
-			return provider2 == null;
-		}
-		return provider1.equals(provider2);
 	}
 
 }
@@ -0,0 +1,144 @@
+package com.mytrainstation.api.offline;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
+
+import com.mytrainstation.api.TrainStationSource;
+import com.mytrainstation.logging.FastLogger;
+import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.ui.settings.SettingsFragment;
+import com.mytrainstation.util.PreferenceUtils;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Searches for {@link TrainStation}s near by a location within the offline
+ * {@link StationCatalogue}, so no request to the graphql endpoint is needed. The catalogue will
+ * be loaded from asset {@link #CATALOGUE_ASSET} on first search. The asset isn't part of the
+ * sources, so the offline mode is only offered if it was added to the build (see
+ * {@link #isCatalogueAvailable(Context)}).
+ *
+ * @author JSCHENK
+ */
+public class OfflineTrainStationService implements TrainStationSource {
+
+	private static final FastLogger LOG = FastLogger.getLogger(OfflineTrainStationService.class);
+
+	/**
+	 * Name of the asset that contains the station catalogue (see {@link StationCatalogueReader}).
+	 */
+	public static final String CATALOGUE_ASSET = "station_catalogue.csv";
+	private static final int MAX_NUMBER_STATIONS = 10;
+
+	@Nullable
+	private final Context mContext;
+	private StationCatalogue mCatalogue;
+	private Boolean mCatalogueAvailable;
+	private final int mMaxNumberStations;
+	private final StationCatalogue.SearchResult mSearchResult = new StationCatalogue
+			.SearchResult();
+
+	/**
+	 * @param context
+	 * 		The context that will be used to load the catalogue and to retrieve preferences.
+	 */
+	public OfflineTrainStationService(@NonNull Context context) {
+		mContext = context;
+		mMaxNumberStations = MAX_NUMBER_STATIONS;
+	}
+
+	/**
+	 * @param catalogue
+	 * 		The catalogue to search within.
+	 * @param maxNumberStations
+	 * 		The maximum number of train stations of a search result.
+	 */
+	@VisibleForTesting
+	public OfflineTrainStationService(@NonNull StationCatalogue catalogue,
+			int maxNumberStations) {
+		mContext = null;
+		mCatalogue = catalogue;
+		mCatalogueAvailable = true;
+		mMaxNumberStations = maxNumberStations;
+	}
+
+	@WorkerThread
+	@NonNull
+	@Override
+	public synchronized List<TrainStation> searchTrainStations(double latitude,
+			double longitude, int radius) {
+		StationCatalogue catalogue = getCatalogue();
+		catalogue.searchWithinRadius(latitude, longitude, radius, getMaxNumberStations(),
+				mSearchResult);
+		List<TrainStation> trainStations = new ArrayList<>(mSearchResult.size());
+		for (int i = 0; i < mSearchResult.size(); i++) {
+			trainStations.add(catalogue.toTrainStation(mSearchResult.getIndex(i)));
+		}
+		return trainStations;
+	}
+
+	/**
+	 * @return True, if the catalogue could be searched, otherwise false.
+	 */
+	public synchronized boolean isAvailable() {
+		if (mCatalogueAvailable == null) {
+			mCatalogueAvailable = mContext != null && isCatalogueAvailable(mContext);
+		}
+		return mCatalogueAvailable;
+	}
+
+	/**
+	 * @param context
+	 * 		The context whose assets should contain the catalogue.
+	 * @return True, if asset {@link #CATALOGUE_ASSET} is shipped with the app, otherwise false.
+	 */
+	public static boolean isCatalogueAvailable(@NonNull Context context) {
+		try {
+			String[] assets = context.getAssets().list("");
+			return assets != null && Arrays.asList(assets).contains(CATALOGUE_ASSET);
+		} catch (IOException e) {
+			LOG.atError().cause(e).log("Failure on listing assets");
+			return false;
+		}
+	}
+
+	private int getMaxNumberStations() {
+		if (mContext == null) {
+			return mMaxNumberStations;
+		}
+		return PreferenceUtils.getPreferenceValue(mContext, SettingsFragment
+				.PREFERENCE_KEY_MAX_DISPLAYED_ITEMS, mMaxNumberStations);
+	}
+
+	/**
+	 * @return The catalogue, that will be loaded if not done yet. An empty catalogue if it
+	 * couldn't be loaded.
+	 */
+	@NonNull
+	private StationCatalogue getCatalogue() {
+		if (mCatalogue == null && mContext != null) {
+			try (Reader reader = new InputStreamReader(mContext.getAssets().open
+					(CATALOGUE_ASSET), StandardCharsets.UTF_8)) {
+				long start = System.nanoTime();
+				mCatalogue = StationCatalogueReader.read(reader);
+				LOG.atInfo().arg(mCatalogue.size()).arg(mCatalogue.estimateMemoryBytes() / 1024)
+						.arg((System.nanoTime() - start) / 1000000).log("Loaded {} stations " +
+						"(~{} KB) within {} ms.");
+			} catch (IOException e) {
+				LOG.atError().arg(CATALOGUE_ASSET).cause(e).log("Failure on loading station " +
+						"catalogue {}");
+				mCatalogue = new StationCatalogue.Builder().build();
+			}
+		}
+		return mCatalogue;
+	}
+}
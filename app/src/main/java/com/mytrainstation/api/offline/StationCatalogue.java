@@ -0,0 +1,451 @@
+package com.mytrainstation.api.offline;
+
+import android.support.annotation.NonNull;
+
+import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.util.GeoUtils;
+
+import java.util.Arrays;
+
+/**
+ * Immutable catalogue of all train stations that could be searched without any request to the
+ * graphql endpoint.
+ *
+ * Stations are stored as struct of arrays (one primitive array per property) and are sorted by
+ * the cell of a regular latitude/longitude grid, so the stations of one cell are stored next to
+ * each other. Radius and k-nearest queries only visit the cells that could contain a result and
+ * write their hits into a reusable {@link SearchResult}, so no object per station is created on
+ * the query path. {@link TrainStation}s are only created for the final result (see
+ * {@link #toTrainStation(int)}).
+ *
+ * Longitudes are not wrapped at the antimeridian, which is fine for a catalogue of european
+ * stations.
+ *
+ * @author JSCHENK
+ */
+public final class StationCatalogue {
+
+	/**
+	 * Size of a grid cell in degrees (~5.5 km in north-south direction).
+	 */
+	static final double CELL_SIZE_DEGREES = 0.05;
+	private static final int ROWS = (int) Math.round(180 / CELL_SIZE_DEGREES);
+	private static final int COLUMNS = (int) Math.round(360 / CELL_SIZE_DEGREES);
+
+	private static final byte FLAG_WIFI = 1;
+	private static final byte FLAG_PARKING = 1 << 1;
+	private static final byte FLAG_STEPLESS_ACCESS = 1 << 2;
+
+	private final int[] mIds;
+	private final String[] mNames;
+	private final double[] mLatitudes;
+	private final double[] mLongitudes;
+	private final byte[] mFlags;
+	// sorted keys of all non empty cells and the index of their first station
+	private final int[] mCellKeys;
+	private final int[] mCellStarts;
+	// bounds of all non empty cells
+	private final int mMinRow;
+	private final int mMaxRow;
+	private final int mMinColumn;
+	private final int mMaxColumn;
+
+	private StationCatalogue(@NonNull int[] ids, @NonNull String[] names,
+			@NonNull double[] latitudes, @NonNull double[] longitudes, @NonNull byte[] flags,
+			@NonNull int[] cellKeys, @NonNull int[] cellStarts) {
+		mIds = ids;
+		mNames = names;
+		mLatitudes = latitudes;
+		mLongitudes = longitudes;
+		mFlags = flags;
+		mCellKeys = cellKeys;
+		mCellStarts = cellStarts;
+		int minRow = ROWS;
+		int maxRow = -1;
+		int minColumn = COLUMNS;
+		int maxColumn = -1;
+		for (int key : cellKeys) {
+			minRow = Math.min(minRow, key / COLUMNS);
+			maxRow = Math.max(maxRow, key / COLUMNS);
+			minColumn = Math.min(minColumn, key % COLUMNS);
+			maxColumn = Math.max(maxColumn, key % COLUMNS);
+		}
+		mMinRow = minRow;
+		mMaxRow = maxRow;
+		mMinColumn = minColumn;
+		mMaxColumn = maxColumn;
+	}
+
+	/**
+	 * @return The number of stations within catalogue.
+	 */
+	public int size() {
+		return mIds.length;
+	}
+
+	/**
+	 * @param index
+	 * 		The index of the station within catalogue.
+	 * @return The primary EVA id of the station.
+	 */
+	public int getId(int index) {
+		return mIds[index];
+	}
+
+	/**
+	 * @param index
+	 * 		The index of the station within catalogue.
+	 * @return The name of the station.
+	 */
+	@NonNull
+	public String getName(int index) {
+		return mNames[index];
+	}
+
+	/**
+	 * @param index
+	 * 		The index of the station within catalogue.
+	 * @return The latitude of the station.
+	 */
+	public double getLatitude(int index) {
+		return mLatitudes[index];
+	}
+
+	/**
+	 * @param index
+	 * 		The index of the station within catalogue.
+	 * @return The longitude of the station.
+	 */
+	public double getLongitude(int index) {
+		return mLongitudes[index];
+	}
+
+	/**
+	 * @param index
+	 * 		The index of the station within catalogue.
+	 * @return A new {@link TrainStation} with the properties of the station.
+	 */
+	@NonNull
+	public TrainStation toTrainStation(int index) {
+		byte flags = mFlags[index];
+		return new TrainStation.Builder(mIds[index], mNames[index])
+				.hasWifi((flags & FLAG_WIFI) != 0)
+				.hasParking((flags & FLAG_PARKING) != 0)
+				.hasSteplessAccess((flags & FLAG_STEPLESS_ACCESS) != 0)
+				.location(mLatitudes[index], mLongitudes[index])
+				.build();
+	}
+
+	/**
+	 * Searches for the nearest stations within passed radius.
+	 *
+	 * @param latitude
+	 * 		Latitude value of the location.
+	 * @param longitude
+	 * 		Longitude value of the location.
+	 * @param radiusMeters
+	 * 		Stations should be located within passed radius.
+	 * @param maxCount
+	 * 		The maximum number of stations to find.
+	 * @param result
+	 * 		The result that will be cleared and filled with the found stations ordered by their
+	 * 		distance.
+	 */
+	public void searchWithinRadius(double latitude, double longitude, double radiusMeters,
+			int maxCount, @NonNull SearchResult result) {
+		result.reset(maxCount, radiusMeters);
+		if (maxCount <= 0) {
+			return;
+		}
+		double latitudeDelta = radiusMeters / GeoUtils.METERS_PER_DEGREE;
+		double maxAbsLatitude = Math.min(90d, Math.abs(latitude) + latitudeDelta);
+		double metersPerDegreeLongitude = GeoUtils.metersPerDegreeLongitude(maxAbsLatitude);
+		double longitudeDelta = metersPerDegreeLongitude > 1d ? radiusMeters /
+				metersPerDegreeLongitude : 180d;
+		int rowFrom = row(latitude - latitudeDelta);
+		int rowTo = row(latitude + latitudeDelta);
+		int columnFrom = column(longitude - longitudeDelta);
+		int columnTo = column(longitude + longitudeDelta);
+		for (int row = rowFrom; row <= rowTo; row++) {
+			scanCells(row, columnFrom, columnTo, latitude, longitude, result);
+		}
+	}
+
+	/**
+	 * Searches for the k nearest stations regardless of their distance.
+	 *
+	 * @param latitude
+	 * 		Latitude value of the location.
+	 * @param longitude
+	 * 		Longitude value of the location.
+	 * @param k
+	 * 		The number of stations to find.
+	 * @param result
+	 * 		The result that will be cleared and filled with the found stations ordered by their
+	 * 		distance.
+	 */
+	public void searchNearest(double latitude, double longitude, int k,
+			@NonNull SearchResult result) {
+		result.reset(Math.min(k, mIds.length), Double.POSITIVE_INFINITY);
+		if (k <= 0 || mIds.length == 0) {
+			return;
+		}
+		int centerRow = row(latitude);
+		int centerColumn = column(longitude);
+		// rings before the first non empty cell and after the last one could be skipped
+		int minRing = Math.max(Math.max(mMinRow - centerRow, centerRow - mMaxRow), Math.max
+				(mMinColumn - centerColumn, centerColumn - mMaxColumn));
+		int maxRing = Math.max(Math.max(Math.abs(centerRow - mMinRow), Math.abs(centerRow -
+				mMaxRow)), Math.max(Math.abs(centerColumn - mMinColumn), Math.abs(centerColumn -
+				mMaxColumn)));
+		for (int ring = Math.max(0, minRing); ring <= maxRing; ring++) {
+			int rowFrom = centerRow - ring;
+			int rowTo = centerRow + ring;
+			for (int row = Math.max(mMinRow, rowFrom); row <= Math.min(mMaxRow, rowTo); row++) {
+				if (row == rowFrom || row == rowTo) {
+					scanCells(row, centerColumn - ring, centerColumn + ring, latitude, longitude,
+							result);
+				} else {
+					scanCells(row, centerColumn - ring, centerColumn - ring, latitude, longitude,
+							result);
+					scanCells(row, centerColumn + ring, centerColumn + ring, latitude, longitude,
+							result);
+				}
+			}
+			// all stations within the distance covered by scanned rings were found
+			if (result.isFull() && result.getMaxDistance() <= coveredMeters(latitude, ring)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return The minimum distance from the location to any cell outside of passed ring.
+	 */
+	private static double coveredMeters(double latitude, int ring) {
+		double ringDegrees = ring * CELL_SIZE_DEGREES;
+		double maxAbsLatitude = Math.min(90d, Math.abs(latitude) + ringDegrees +
+				CELL_SIZE_DEGREES);
+		double cellMeters = Math.min(GeoUtils.METERS_PER_DEGREE, GeoUtils
+				.metersPerDegreeLongitude(maxAbsLatitude)) * CELL_SIZE_DEGREES;
+		return ring * cellMeters;
+	}
+
+	private void scanCells(int row, int columnFrom, int columnTo, double latitude,
+			double longitude, @NonNull SearchResult result) {
+		if (row < 0 || row >= ROWS) {
+			return;
+		}
+		int firstKey = row * COLUMNS + Math.max(0, columnFrom);
+		int lastKey = row * COLUMNS + Math.min(COLUMNS - 1, columnTo);
+		if (firstKey > lastKey) {
+			return;
+		}
+		int cell = Arrays.binarySearch(mCellKeys, firstKey);
+		if (cell < 0) {
+			cell = -cell - 1;
+		}
+		for (; cell < mCellKeys.length && mCellKeys[cell] <= lastKey; cell++) {
+			for (int index = mCellStarts[cell]; index < mCellStarts[cell + 1]; index++) {
+				double distance = GeoUtils.distanceMeters(latitude, longitude, mLatitudes[index],
+						mLongitudes[index]);
+				result.offer(index, distance);
+			}
+		}
+	}
+
+	private static int row(double latitude) {
+		int row = (int) Math.floor((latitude + 90d) / CELL_SIZE_DEGREES);
+		return Math.max(0, Math.min(ROWS - 1, row));
+	}
+
+	private static int column(double longitude) {
+		int column = (int) Math.floor((longitude + 180d) / CELL_SIZE_DEGREES);
+		return Math.max(0, Math.min(COLUMNS - 1, column));
+	}
+
+	private static int cellKey(double latitude, double longitude) {
+		return row(latitude) * COLUMNS + column(longitude);
+	}
+
+	/**
+	 * @return The estimated number of bytes that are retained by this catalogue, including the
+	 * station names.
+	 */
+	public long estimateMemoryBytes() {
+		// array header (16 bytes) plus elements, references are assumed to be compressed
+		long bytes = 16L + 4L * mIds.length
+				+ 16L + 4L * mNames.length
+				+ 16L + 8L * mLatitudes.length
+				+ 16L + 8L * mLongitudes.length
+				+ 16L + mFlags.length
+				+ 16L + 4L * mCellKeys.length
+				+ 16L + 4L * mCellStarts.length;
+		for (String name : mNames) {
+			// string object plus its value array with one byte per latin-1 character
+			bytes += 24L + 16L + name.length();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Reusable result of a query. Keeps the nearest stations that were offered, ordered by their
+	 * distance.
+	 */
+	public static final class SearchResult {
+
+		private int[] mIndices = new int[16];
+		private double[] mDistances = new double[16];
+		private int mSize;
+		private int mMaxCount;
+		private double mRadiusMeters;
+
+		/**
+		 * @return The number of found stations.
+		 */
+		public int size() {
+			return mSize;
+		}
+
+		/**
+		 * @param position
+		 * 		The position within result.
+		 * @return The index of the station within catalogue.
+		 */
+		public int getIndex(int position) {
+			return mIndices[position];
+		}
+
+		/**
+		 * @param position
+		 * 		The position within result.
+		 * @return The distance of the station to the searched location in metres.
+		 */
+		public double getDistance(int position) {
+			return mDistances[position];
+		}
+
+		private void reset(int maxCount, double radiusMeters) {
+			mSize = 0;
+			mMaxCount = maxCount;
+			mRadiusMeters = radiusMeters;
+			if (mIndices.length < maxCount) {
+				mIndices = new int[maxCount];
+				mDistances = new double[maxCount];
+			}
+		}
+
+		private boolean isFull() {
+			return mSize == mMaxCount;
+		}
+
+		private double getMaxDistance() {
+			return mSize > 0 ? mDistances[mSize - 1] : Double.POSITIVE_INFINITY;
+		}
+
+		private void offer(int index, double distance) {
+			if (distance > mRadiusMeters || (isFull() && distance >= mDistances[mSize - 1])) {
+				return;
+			}
+			// insertion sort, results are small compared to the number of scanned stations
+			int position = isFull() ? mSize - 1 : mSize++;
+			while (position > 0 && mDistances[position - 1] > distance) {
+				mIndices[position] = mIndices[position - 1];
+				mDistances[position] = mDistances[position - 1];
+				position--;
+			}
+			mIndices[position] = index;
+			mDistances[position] = distance;
+		}
+	}
+
+	/**
+	 * Collects stations into growing primitive arrays and builds the immutable catalogue.
+	 */
+	public static final class Builder {
+
+		private int[] mIds = new int[1024];
+		private String[] mNames = new String[1024];
+		private double[] mLatitudes = new double[1024];
+		private double[] mLongitudes = new double[1024];
+		private byte[] mFlags = new byte[1024];
+		private int mSize;
+
+		/**
+		 * @param id
+		 * 		The primary EVA id of the station.
+		 * @param name
+		 * 		The name of the station.
+		 * @param latitude
+		 * 		The latitude of the station.
+		 * @param longitude
+		 * 		The longitude of the station.
+		 * @param hasWifi
+		 * 		True, if station provides wifi, otherwise false.
+		 * @param hasParking
+		 * 		True, if station provides parking, otherwise false.
+		 * @param hasSteplessAccess
+		 * 		True, if station has stepless access, otherwise false.
+		 * @return This instance of {@link Builder}.
+		 */
+		@NonNull
+		public Builder add(int id, @NonNull String name, double latitude, double longitude,
+				boolean hasWifi, boolean hasParking, boolean hasSteplessAccess) {
+			if (mSize == mIds.length) {
+				int capacity = mSize * 2;
+				mIds = Arrays.copyOf(mIds, capacity);
+				mNames = Arrays.copyOf(mNames, capacity);
+				mLatitudes = Arrays.copyOf(mLatitudes, capacity);
+				mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+				mFlags = Arrays.copyOf(mFlags, capacity);
+			}
+			mIds[mSize] = id;
+			mNames[mSize] = name;
+			mLatitudes[mSize] = latitude;
+			mLongitudes[mSize] = longitude;
+			mFlags[mSize] = (byte) ((hasWifi ? FLAG_WIFI : 0) | (hasParking ? FLAG_PARKING : 0)
+					| (hasSteplessAccess ? FLAG_STEPLESS_ACCESS : 0));
+			mSize++;
+			return this;
+		}
+
+		/**
+		 * @return A new {@link StationCatalogue} with all added stations, sorted by grid cell.
+		 */
+		@NonNull
+		public StationCatalogue build() {
+			// sort by cell key, packed with the original index into one long per station
+			long[] order = new long[mSize];
+			for (int i = 0; i < mSize; i++) {
+				order[i] = ((long) cellKey(mLatitudes[i], mLongitudes[i]) << 32) | i;
+			}
+			Arrays.sort(order);
+
+			int[] ids = new int[mSize];
+			String[] names = new String[mSize];
+			double[] latitudes = new double[mSize];
+			double[] longitudes = new double[mSize];
+			byte[] flags = new byte[mSize];
+			int[] cellKeys = new int[mSize];
+			int[] cellStarts = new int[mSize + 1];
+			int cells = 0;
+			for (int i = 0; i < mSize; i++) {
+				int key = (int) (order[i] >>> 32);
+				int source = (int) order[i];
+				ids[i] = mIds[source];
+				names[i] = mNames[source];
+				latitudes[i] = mLatitudes[source];
+				longitudes[i] = mLongitudes[source];
+				flags[i] = mFlags[source];
+				if (cells == 0 || cellKeys[cells - 1] != key) {
+					cellKeys[cells] = key;
+					cellStarts[cells] = i;
+					cells++;
+				}
+			}
+			cellStarts[cells] = mSize;
+			return new StationCatalogue(ids, names, latitudes, longitudes, flags, Arrays.copyOf
+					(cellKeys, cells), Arrays.copyOf(cellStarts, cells + 1));
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.mytrainstation.api.offline;
+
+import android.support.annotation.NonNull;
+
+import com.mytrainstation.logging.FastLogger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+
+/**
+ * Reads a {@link StationCatalogue} from semicolon separated lines of the form
+ * {@code id;name;latitude;longitude;wifi;parking;steplessAccess}, where the amenity flags are
+ * {@code 1} or {@code 0}. Empty lines and lines starting with {@code #} are ignored.
+ *
+ * @author JSCHENK
+ */
+public class StationCatalogueReader {
+
+	private static final FastLogger LOG = FastLogger.getLogger(StationCatalogueReader.class);
+
+	private static final int NUMBER_OF_COLUMNS = 7;
+
+	/**
+	 * @param reader
+	 * 		The reader that provides the catalogue. Won't be closed.
+	 * @return A new {@link StationCatalogue} with all valid lines. Invalid lines will be skipped.
+	 * @throws IOException
+	 * 		If catalogue couldn't be read.
+	 */
+	@NonNull
+	public static StationCatalogue read(@NonNull Reader reader) throws IOException {
+		StationCatalogue.Builder builder = new StationCatalogue.Builder();
+		BufferedReader lines = new BufferedReader(reader);
+		String line;
+		int lineNumber = 0;
+		while ((line = lines.readLine()) != null) {
+			lineNumber++;
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] columns = line.split(";", -1);
+			if (columns.length != NUMBER_OF_COLUMNS) {
+				LOG.atWarn().arg(lineNumber).arg(columns.length).log("Skip line {} of station " +
+						"catalogue with {} columns.");
+				continue;
+			}
+			try {
+				builder.add(Integer.parseInt(columns[0]), columns[1], Double.parseDouble
+						(columns[2]), Double.parseDouble(columns[3]), "1".equals(columns[4]), "1"
+						.equals(columns[5]), "1".equals(columns[6]));
+			} catch (NumberFormatException e) {
+				LOG.atWarn().arg(lineNumber).cause(e).log("Skip invalid line {} of station " +
+						"catalogue.");
+			}
+		}
+		return builder.build();
+	}
+}
@@ -0,0 +1,150 @@
+package com.mytrainstation.data;
+
+import android.support.annotation.NonNull;
+
+import com.mytrainstation.api.TrainStationQuery;
+import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.util.GeoUtils;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Area around the location of a stored near by result, where the result is still valid for the
+ * user. The result contains all train stations within its covered radius: the search radius if
+ * the last page was received, otherwise the distance of its farthest train station. While the
+ * user stays within a share of the covered radius (see {@link #getRadius()}), all train stations
+ * within the remaining safety margin around the user are contained as well, so the result only
+ * has to be ordered by the distance to the user again instead of being requested.
+ *
+ * Immutable, a received page results in a new region (see {@link #extend(List, boolean)}).
+ *
+ * @author JSCHENK
+ */
+public final class CoverageRegion {
+
+	/**
+	 * Share of the radius of the region, where the user is near by its boundary and the result
+	 * of the next location should be prefetched.
+	 */
+	public static final double PREFETCH_RATIO = 0.75d;
+
+	private final TrainStationQuery mQuery;
+	private final double mCoveredRadius;
+	private final double mCoverageRatio;
+
+	private CoverageRegion(@NonNull TrainStationQuery query, double coveredRadius,
+			double coverageRatio) {
+		mQuery = query;
+		mCoveredRadius = coveredRadius;
+		mCoverageRatio = coverageRatio;
+	}
+
+	/**
+	 * @param query
+	 * 		The near by query of the result.
+	 * @param trainStations
+	 * 		The train stations of the first page of the result.
+	 * @param complete
+	 * 		True, if the first page was the last one.
+	 * @param coverageRatio
+	 * 		The share of the covered radius that is taken as region, the rest is the safety
+	 * 		margin.
+	 * @return The region of passed result.
+	 */
+	@NonNull
+	public static CoverageRegion create(@NonNull TrainStationQuery query,
+			@NonNull List<TrainStation> trainStations, boolean complete, double coverageRatio) {
+		return new CoverageRegion(query, 0, coverageRatio).extend(trainStations, complete);
+	}
+
+	/**
+	 * @param trainStations
+	 * 		The train stations of a further page of the result.
+	 * @param complete
+	 * 		True, if the page was the last one.
+	 * @return The region of the result including passed page.
+	 */
+	@NonNull
+	public CoverageRegion extend(@NonNull List<TrainStation> trainStations, boolean complete) {
+		double coveredRadius = mCoveredRadius;
+		if (complete) {
+			coveredRadius = mQuery.getRadius();
+		} else {
+			// pages are ordered by distance, so no train station is missing up to the farthest
+			for (TrainStation trainStation : trainStations) {
+				if (trainStation.hasLocation()) {
+					coveredRadius = Math.max(coveredRadius, GeoUtils.distanceMeters(mQuery
+							.getLatitude(), mQuery.getLongitude(), trainStation.getLatitude(),
+							trainStation.getLongitude()));
+				}
+			}
+			coveredRadius = Math.min(coveredRadius, mQuery.getRadius());
+		}
+		return new CoverageRegion(mQuery, coveredRadius, mCoverageRatio);
+	}
+
+	/**
+	 * @return The near by query of the result.
+	 */
+	@NonNull
+	public TrainStationQuery getQuery() {
+		return mQuery;
+	}
+
+	/**
+	 * @return The radius around the location of the query within that the result contains all
+	 * train stations, in metres.
+	 */
+	public double getCoveredRadius() {
+		return mCoveredRadius;
+	}
+
+	/**
+	 * @return The radius of the region in metres.
+	 */
+	public double getRadius() {
+		return mCoveredRadius * mCoverageRatio;
+	}
+
+	/**
+	 * @param latitude
+	 * 		Latitude value of current location.
+	 * @param longitude
+	 * 		Longitude value of current location.
+	 * @return The distance of passed location to the location of the query in metres.
+	 */
+	public double distanceMeters(double latitude, double longitude) {
+		return GeoUtils.distanceMeters(mQuery.getLatitude(), mQuery.getLongitude(), latitude,
+				longitude);
+	}
+
+	/**
+	 * @param latitude
+	 * 		Latitude value of current location.
+	 * @param longitude
+	 * 		Longitude value of current location.
+	 * @return True, if the result is valid for passed location.
+	 */
+	public boolean contains(double latitude, double longitude) {
+		return distanceMeters(latitude, longitude) <= getRadius();
+	}
+
+	/**
+	 * @param latitude
+	 * 		Latitude value of current location.
+	 * @param longitude
+	 * 		Longitude value of current location.
+	 * @return True, if passed location is beyond {@link #PREFETCH_RATIO} of the radius, so the
+	 * user might leave the region soon.
+	 */
+	public boolean isNearBoundary(double latitude, double longitude) {
+		return distanceMeters(latitude, longitude) > getRadius() * PREFETCH_RATIO;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "CoverageRegion [query=%s, coveredRadius=%.0f, " +
+				"radius=%.0f]", mQuery, mCoveredRadius, getRadius());
+	}
+}
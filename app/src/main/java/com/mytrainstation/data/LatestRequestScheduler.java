@@ -0,0 +1,334 @@
+package com.mytrainstation.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.mytrainstation.api.RequestHandle;
+import com.mytrainstation.logging.FastLogger;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules requests so that always the newest request wins. Each {@link Lane} runs at most one
+ * request that is still of interest: submitting a new request cancels the request of the same
+ * lane that is still in flight. Results of requests are only published if no newer request of
+ * any lane was published before, so the published state always matches the last input. Results
+ * of background lanes only extend stored results, so they are published unless cancelled.
+ *
+ * @author JSCHENK
+ */
+public class LatestRequestScheduler {
+
+	private static final FastLogger LOG = FastLogger.getLogger(LatestRequestScheduler.class);
+
+	/**
+	 * Lanes of independent requests. Requests of one lane supersede each other.
+	 */
+	public enum Lane {
+		/**
+		 * Searches for train stations near by current location.
+		 */
+		LOCATION(false, PriorityTaskScheduler.Priority.INTERACTIVE),
+		/**
+		 * Searches for train stations by search term.
+		 */
+		SEARCH_TERM(false, PriorityTaskScheduler.Priority.INTERACTIVE),
+		/**
+		 * Requests of further pages of the displayed result.
+		 */
+		NEXT_PAGE(true, PriorityTaskScheduler.Priority.PREFETCH),
+		/**
+		 * Requests of results that aren't displayed yet, e.g. near by the location the user is
+		 * about to reach.
+		 */
+		PREFETCH(true, PriorityTaskScheduler.Priority.PREFETCH);
+
+		private final boolean mBackground;
+		private final PriorityTaskScheduler.Priority mPriority;
+
+		/**
+		 * @param background
+		 * 		True, if requests of the lane only extend the published state. They won't change
+		 * 		the busy state, won't outdate results of other lanes and aren't outdated by them.
+		 * @param priority
+		 * 		The priority of requests of the lane if they run on a shared
+		 * 		{@link PriorityTaskScheduler}.
+		 */
+		Lane(boolean background, @NonNull PriorityTaskScheduler.Priority priority) {
+			mBackground = background;
+			mPriority = priority;
+		}
+	}
+
+	/**
+	 * A blocking request that could be cancelled with help of its {@link RequestHandle}.
+	 *
+	 * @param <T>
+	 * 		The type of the result of the request.
+	 */
+	public interface Task<T> {
+
+		/**
+		 * @param handle
+		 * 		The handle that will be cancelled as soon as the request is superseded.
+		 * @return The result of the request.
+		 */
+		@WorkerThread
+		T execute(@NonNull RequestHandle handle);
+	}
+
+	/**
+	 * Receives the result of the newest request.
+	 *
+	 * @param <T>
+	 * 		The type of the result.
+	 */
+	public interface Publisher<T> {
+
+		/**
+		 * @param result
+		 * 		The result of the newest request.
+		 */
+		void publish(T result);
+	}
+
+	/**
+	 * Listener that will be notified if scheduler starts or stops executing requests.
+	 */
+	public interface OnBusyStateChangedListener {
+
+		/**
+		 * @param busy
+		 * 		True, if at least one request is running, otherwise false.
+		 */
+		void onBusyStateChanged(boolean busy);
+	}
+
+	private final Map<Lane, Executor> mExecutors = new EnumMap<>(Lane.class);
+	private final Map<Lane, Job> mCurrentJobs = new EnumMap<>(Lane.class);
+	// guarded by mCurrentJobs
+	private long mSequence;
+	private long mLastPublishedSequence;
+	private int mRunningJobs;
+	@Nullable
+	private OnBusyStateChangedListener mBusyStateListener;
+
+	private final AtomicLong mCompletedCount = new AtomicLong();
+	private final AtomicLong mCancelledCount = new AtomicLong();
+	private final AtomicLong mDiscardedCount = new AtomicLong();
+	private final AtomicLong mWastedBytes = new AtomicLong();
+
+	/**
+	 * @param executor
+	 * 		The executor to run requests on. Should be able to run requests of different lanes
+	 * 		in parallel, so that a superseded request doesn't block its successor.
+	 */
+	public LatestRequestScheduler(@NonNull Executor executor) {
+		for (Lane lane : Lane.values()) {
+			mExecutors.put(lane, executor);
+		}
+	}
+
+	/**
+	 * @param scheduler
+	 * 		The shared scheduler to run requests on, each lane with its own priority.
+	 */
+	public LatestRequestScheduler(@NonNull PriorityTaskScheduler scheduler) {
+		for (Lane lane : Lane.values()) {
+			mExecutors.put(lane, scheduler.newQueue(lane.mPriority, false));
+		}
+	}
+
+	/**
+	 * @param listener
+	 * 		The listener to be notified if scheduler starts or stops executing requests. Could be
+	 * 		{@code null} to remove current listener.
+	 */
+	public void setOnBusyStateChangedListener(@Nullable OnBusyStateChangedListener listener) {
+		synchronized (mCurrentJobs) {
+			mBusyStateListener = listener;
+		}
+	}
+
+	/**
+	 * Publishes an already available result immediately, e.g. a cached one. The request of the
+	 * same lane that is still in flight will be cancelled, unless it was submitted with an equal
+	 * key. In that case it may still publish its result afterwards.
+	 *
+	 * @param lane
+	 * 		The lane of the result.
+	 * @param key
+	 * 		The key that identifies the request of the result.
+	 * @param publication
+	 * 		Publishes the result. Will be run on the calling thread.
+	 */
+	public void publish(@NonNull Lane lane, @NonNull Object key, @NonNull Runnable publication) {
+		Job supersededJob;
+		synchronized (mCurrentJobs) {
+			supersededJob = mCurrentJobs.get(lane);
+			mLastPublishedSequence = ++mSequence;
+			publication.run();
+			if (supersededJob != null && supersededJob.mKey.equals(key)) {
+				// running request may refresh the published result
+				supersededJob.mSequence = ++mSequence;
+				return;
+			}
+			mCurrentJobs.remove(lane);
+		}
+		cancel(supersededJob, key);
+	}
+
+	/**
+	 * Submits passed request. The request of the same lane that is still in flight will be
+	 * cancelled, unless it was submitted with an equal key. In that case the running request
+	 * already delivers the requested result and passed request will be ignored.
+	 *
+	 * @param lane
+	 * 		The lane of the request.
+	 * @param key
+	 * 		The key that identifies identical requests.
+	 * @param task
+	 * 		The request to execute.
+	 * @param publisher
+	 * 		Receives the result, if request is still the newest one on completion.
+	 * @param <T>
+	 * 		The type of the result of the request.
+	 */
+	public <T> void submit(@NonNull Lane lane, @NonNull Object key, @NonNull Task<T> task,
+			@NonNull Publisher<T> publisher) {
+		Job job;
+		Job supersededJob;
+		synchronized (mCurrentJobs) {
+			supersededJob = mCurrentJobs.get(lane);
+			if (supersededJob != null && supersededJob.mKey.equals(key)) {
+				LOG.atDebug().arg(key).log("Ignore {}, identical request is still running.");
+				// running request becomes the newest one again
+				supersededJob.mSequence = ++mSequence;
+				return;
+			}
+			job = new Job(lane, key, ++mSequence);
+			mCurrentJobs.put(lane, job);
+			if (!lane.mBackground && mRunningJobs++ == 0) {
+				notifyBusyStateChanged(true);
+			}
+		}
+		cancel(supersededJob, key);
+		try {
+			mExecutors.get(lane).execute(() -> run(job, task, publisher));
+		} catch (RejectedExecutionException e) {
+			LOG.atError().arg(key).cause(e).log("Request {} was rejected.");
+			finish(job, false, null, publisher);
+		}
+	}
+
+	private void cancel(@Nullable Job supersededJob, @NonNull Object key) {
+		if (supersededJob != null) {
+			LOG.atDebug().arg(supersededJob.mKey).arg(key).log("Cancel {}, superseded by {}.");
+			mCancelledCount.incrementAndGet();
+			supersededJob.mHandle.cancel();
+		}
+	}
+
+	private <T> void run(@NonNull Job job, @NonNull Task<T> task,
+			@NonNull Publisher<T> publisher) {
+		T result = null;
+		boolean completed = false;
+		try {
+			if (!job.mHandle.isCancelled()) {
+				result = task.execute(job.mHandle);
+				completed = true;
+			}
+		} catch (CancellationException e) {
+			LOG.atInfo().arg(job.mKey).log("Request {} was cancelled.");
+		} catch (RuntimeException e) {
+			LOG.atError().arg(job.mKey).cause(e).log("Failure on executing {}");
+		} finally {
+			finish(job, completed, result, publisher);
+		}
+	}
+
+	private <T> void finish(@NonNull Job job, boolean completed, @Nullable T result,
+			@NonNull Publisher<T> publisher) {
+		synchronized (mCurrentJobs) {
+			if (mCurrentJobs.get(job.mLane) == job) {
+				mCurrentJobs.remove(job.mLane);
+			}
+			// publish within lock, so an older result couldn't overtake a newer one
+			if (completed && !job.mHandle.isCancelled() && (job.mLane.mBackground
+					|| job.mSequence >= mLastPublishedSequence)) {
+				if (!job.mLane.mBackground) {
+					mLastPublishedSequence = job.mSequence;
+				}
+				mCompletedCount.incrementAndGet();
+				publisher.publish(result);
+			} else {
+				if (completed && !job.mHandle.isCancelled()) {
+					// outdated by a newer request of another lane
+					mDiscardedCount.incrementAndGet();
+				}
+				mWastedBytes.addAndGet(job.mHandle.getReceivedBytes());
+			}
+			if (!job.mLane.mBackground && --mRunningJobs == 0) {
+				notifyBusyStateChanged(false);
+			}
+		}
+	}
+
+	private void notifyBusyStateChanged(boolean busy) {
+		if (mBusyStateListener != null) {
+			mBusyStateListener.onBusyStateChanged(busy);
+		}
+	}
+
+	/**
+	 * @return The number of requests whose results were published.
+	 */
+	public long getCompletedCount() {
+		return mCompletedCount.get();
+	}
+
+	/**
+	 * @return The number of requests that were cancelled because they were superseded by a newer
+	 * request of the same lane.
+	 */
+	public long getCancelledCount() {
+		return mCancelledCount.get();
+	}
+
+	/**
+	 * @return The number of requests that completed but whose results were discarded because a
+	 * newer request of another lane was published before.
+	 */
+	public long getDiscardedCount() {
+		return mDiscardedCount.get();
+	}
+
+	/**
+	 * @return The number of bytes that were received for requests whose results were never
+	 * published.
+	 */
+	public long getWastedBytes() {
+		return mWastedBytes.get();
+	}
+
+	private static class Job {
+
+		private final Lane mLane;
+		private final Object mKey;
+		// guarded by mCurrentJobs
+		private long mSequence;
+		private final RequestHandle mHandle = new RequestHandle();
+
+		private Job(@NonNull Lane lane, @NonNull Object key, long sequence) {
+			mLane = lane;
+			mKey = key;
+			mSequence = sequence;
+		}
+	}
+}
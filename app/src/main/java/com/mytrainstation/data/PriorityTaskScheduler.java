@@ -0,0 +1,483 @@
+package com.mytrainstation.data;
+
+import android.support.annotation.NonNull;
+
+import com.mytrainstation.logging.FastLogger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared pool of worker threads that runs tasks by {@link Priority}: a free worker always takes
+ * the oldest runnable task of the most important lane. One worker is reserved for
+ * {@link Priority#INTERACTIVE} tasks, so user visible work never waits for a saturated
+ * background lane. Each lane has a bounded queue, tasks beyond its capacity are rejected.
+ *
+ * Tasks are submitted through {@link TaskQueue}s, which could run their tasks one after another
+ * and which could be cancelled as a whole as soon as their owner's lifecycle ends. Queue depth
+ * and wait time of each lane are recorded (see {@link #getStats(Priority)}).
+ *
+ * @author JSCHENK
+ */
+public class PriorityTaskScheduler {
+
+	private static final FastLogger LOG = FastLogger.getLogger(PriorityTaskScheduler.class);
+
+	/**
+	 * Lanes of tasks, ordered by their importance.
+	 */
+	public enum Priority {
+		/**
+		 * Work the user waits for, e.g. handing over a search.
+		 */
+		INTERACTIVE(64),
+		/**
+		 * Refreshes of displayed data, e.g. storing a result within the local cache.
+		 */
+		BACKGROUND_REFRESH(256),
+		/**
+		 * Work the user might need soon, e.g. requesting the next page of a result.
+		 */
+		PREFETCH(32),
+		/**
+		 * Housekeeping without any deadline, e.g. deleting orphaned pictures.
+		 */
+		MAINTENANCE(16);
+
+		private final int mCapacity;
+
+		/**
+		 * @param capacity
+		 * 		The maximum number of queued tasks of the lane.
+		 */
+		Priority(int capacity) {
+			mCapacity = capacity;
+		}
+
+		/**
+		 * @return The maximum number of queued tasks of the lane.
+		 */
+		public int getCapacity() {
+			return mCapacity;
+		}
+	}
+
+	private final Object mLock = new Object();
+	// guarded by mLock
+	private final Map<Priority, Lane> mLanes = new EnumMap<>(Priority.class);
+	private final List<Thread> mWorkers = new ArrayList<>();
+	private int mRunningTasks;
+	private boolean mShutdown;
+
+	/**
+	 * @param numberOfWorkers
+	 * 		The number of worker threads, at least 2. One of them only runs
+	 * 		{@link Priority#INTERACTIVE} tasks.
+	 */
+	public PriorityTaskScheduler(int numberOfWorkers) {
+		if (numberOfWorkers < 2) {
+			throw new IllegalArgumentException("At least 2 workers are required.");
+		}
+		for (Priority priority : Priority.values()) {
+			mLanes.put(priority, new Lane());
+		}
+		for (int i = 0; i < numberOfWorkers; i++) {
+			Thread worker = new Thread(this::work, String.format(Locale.ROOT,
+					"PriorityTaskScheduler-%s", i));
+			worker.setDaemon(true);
+			mWorkers.add(worker);
+		}
+		for (Thread worker : mWorkers) {
+			worker.start();
+		}
+	}
+
+	/**
+	 * @param priority
+	 * 		The lane of all tasks of the queue.
+	 * @param serial
+	 * 		True, if tasks of the queue should run one after another in order of their
+	 * 		submission, otherwise false.
+	 * @return A new queue to submit tasks with.
+	 */
+	@NonNull
+	public TaskQueue newQueue(@NonNull Priority priority, boolean serial) {
+		return new TaskQueue(priority, serial);
+	}
+
+	/**
+	 * @param priority
+	 * 		The lane to retrieve statistics of.
+	 * @return A snapshot of the statistics of passed lane.
+	 */
+	@NonNull
+	public LaneStats getStats(@NonNull Priority priority) {
+		synchronized (mLock) {
+			return new LaneStats(mLanes.get(priority));
+		}
+	}
+
+	/**
+	 * Rejects further tasks. Queued tasks will still be run.
+	 */
+	public void shutdown() {
+		synchronized (mLock) {
+			mShutdown = true;
+			mLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Rejects further tasks, cancels all queued tasks and interrupts running ones.
+	 */
+	public void shutdownNow() {
+		List<Task> tasks = new ArrayList<>();
+		synchronized (mLock) {
+			mShutdown = true;
+			for (Lane lane : mLanes.values()) {
+				tasks.addAll(lane.mQueue);
+			}
+			mLock.notifyAll();
+		}
+		for (Task task : tasks) {
+			task.cancel(true);
+		}
+		for (Thread worker : mWorkers) {
+			worker.interrupt();
+		}
+	}
+
+	/**
+	 * Waits until all workers finished after {@link #shutdown()}.
+	 *
+	 * @param timeout
+	 * 		The maximum time to wait.
+	 * @param unit
+	 * 		The unit of passed timeout.
+	 * @return True, if all workers finished, otherwise false.
+	 * @throws InterruptedException
+	 * 		If calling thread was interrupted while waiting.
+	 */
+	public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws
+			InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Thread worker : mWorkers) {
+			long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			if (remainingMillis <= 0) {
+				return !isAlive();
+			}
+			worker.join(remainingMillis);
+		}
+		return !isAlive();
+	}
+
+	private boolean isAlive() {
+		for (Thread worker : mWorkers) {
+			if (worker.isAlive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void enqueue(@NonNull Task task) {
+		synchronized (mLock) {
+			Lane lane = mLanes.get(task.mQueue.mPriority);
+			if (mShutdown || lane.mQueue.size() >= task.mQueue.mPriority.mCapacity) {
+				lane.mRejectedCount++;
+				throw new RejectedExecutionException(String.format(Locale.getDefault(), "%s " +
+						"rejected (queue depth %s, shut down %s)", task.mQueue.mPriority, lane
+						.mQueue.size(), mShutdown));
+			}
+			lane.mQueue.add(task);
+			lane.mMaxQueueDepth = Math.max(lane.mMaxQueueDepth, lane.mQueue.size());
+			task.mQueue.mTasks.add(task);
+			mLock.notifyAll();
+		}
+	}
+
+	private void work() {
+		while (true) {
+			Task task;
+			synchronized (mLock) {
+				while ((task = next()) == null) {
+					if (mShutdown && isEmpty()) {
+						return;
+					}
+					try {
+						mLock.wait();
+					} catch (InterruptedException e) {
+						// cancelled task, workers only leave after shutdown
+					}
+				}
+			}
+			try {
+				task.run();
+			} finally {
+				// interrupt of a cancelled task must not hit the next task
+				Thread.interrupted();
+				synchronized (mLock) {
+					Lane lane = mLanes.get(task.mQueue.mPriority);
+					lane.mRunningCount--;
+					lane.mCompletedCount++;
+					mRunningTasks--;
+					task.mQueue.mRunning = false;
+					task.mQueue.mTasks.remove(task);
+					mLock.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The oldest runnable task of the most important lane or {@code null} if no task
+	 * could be run by the calling worker.
+	 */
+	private Task next() {
+		for (Priority priority : Priority.values()) {
+			// keep a worker free for interactive tasks
+			if (priority != Priority.INTERACTIVE && mRunningTasks + 1 >= mWorkers.size()) {
+				return null;
+			}
+			Lane lane = mLanes.get(priority);
+			Iterator<Task> iterator = lane.mQueue.iterator();
+			while (iterator.hasNext()) {
+				Task task = iterator.next();
+				// the oldest task of a serial queue waits for its predecessor
+				if (task.mQueue.mSerial && task.mQueue.mRunning) {
+					continue;
+				}
+				iterator.remove();
+				long waitNanos = System.nanoTime() - task.mSubmitNanos;
+				lane.mTotalWaitNanos += waitNanos;
+				lane.mMaxWaitNanos = Math.max(lane.mMaxWaitNanos, waitNanos);
+				lane.mStartedCount++;
+				lane.mRunningCount++;
+				mRunningTasks++;
+				task.mQueue.mRunning = true;
+				return task;
+			}
+		}
+		return null;
+	}
+
+	private boolean isEmpty() {
+		for (Lane lane : mLanes.values()) {
+			if (!lane.mQueue.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Submits tasks of a single lane to the scheduler. Could be passed as {@link Executor} to
+	 * classes that shouldn't know about priorities.
+	 */
+	public final class TaskQueue implements Executor {
+
+		private final Priority mPriority;
+		private final boolean mSerial;
+		// guarded by mLock
+		private final Set<Task> mTasks = new HashSet<>();
+		private boolean mRunning;
+		private boolean mCancelled;
+
+		private TaskQueue(@NonNull Priority priority, boolean serial) {
+			mPriority = priority;
+			mSerial = serial;
+		}
+
+		/**
+		 * Queues passed task. Will be ignored if queue was already cancelled.
+		 *
+		 * @param command
+		 * 		The task to run.
+		 * @throws RejectedExecutionException
+		 * 		If the lane of the queue is full or scheduler was shut down.
+		 */
+		@Override
+		public void execute(@NonNull Runnable command) {
+			synchronized (mLock) {
+				if (mCancelled) {
+					LOG.atDebug().arg(mPriority).log("Ignore task of cancelled {} queue");
+					return;
+				}
+			}
+			enqueue(new Task(this, command));
+		}
+
+		/**
+		 * Cancels all queued tasks, interrupts the running ones and ignores further tasks, e.g.
+		 * as soon as the lifecycle of the queue's owner ended.
+		 */
+		public void cancel() {
+			List<Task> tasks;
+			synchronized (mLock) {
+				mCancelled = true;
+				tasks = new ArrayList<>(mTasks);
+			}
+			for (Task task : tasks) {
+				task.cancel(true);
+			}
+		}
+
+		/**
+		 * @return The lane of all tasks of the queue.
+		 */
+		@NonNull
+		public Priority getPriority() {
+			return mPriority;
+		}
+	}
+
+	private final class Task extends FutureTask<Void> {
+
+		private final TaskQueue mQueue;
+		private final long mSubmitNanos = System.nanoTime();
+
+		private Task(@NonNull TaskQueue queue, @NonNull Runnable command) {
+			super(command, null);
+			mQueue = queue;
+		}
+
+		@Override
+		protected void done() {
+			if (isCancelled()) {
+				synchronized (mLock) {
+					Lane lane = mLanes.get(mQueue.mPriority);
+					if (lane.mQueue.remove(this)) {
+						lane.mCancelledCount++;
+						mQueue.mTasks.remove(this);
+					}
+				}
+				return;
+			}
+			try {
+				get();
+			} catch (ExecutionException e) {
+				LOG.atError().arg(mQueue.mPriority).cause(e.getCause()).log("Failure on " +
+						"running {} task");
+			} catch (InterruptedException | CancellationException e) {
+				// task is already done
+			}
+		}
+	}
+
+	private static class Lane {
+
+		private final ArrayDeque<Task> mQueue = new ArrayDeque<>();
+		private int mMaxQueueDepth;
+		private int mRunningCount;
+		private long mStartedCount;
+		private long mCompletedCount;
+		private long mRejectedCount;
+		private long mCancelledCount;
+		private long mTotalWaitNanos;
+		private long mMaxWaitNanos;
+	}
+
+	/**
+	 * Snapshot of the statistics of a lane.
+	 */
+	public static final class LaneStats {
+
+		private final int mQueueDepth;
+		private final int mMaxQueueDepth;
+		private final int mRunningCount;
+		private final long mCompletedCount;
+		private final long mRejectedCount;
+		private final long mCancelledCount;
+		private final long mAverageWaitNanos;
+		private final long mMaxWaitNanos;
+
+		private LaneStats(@NonNull Lane lane) {
+			mQueueDepth = lane.mQueue.size();
+			mMaxQueueDepth = lane.mMaxQueueDepth;
+			mRunningCount = lane.mRunningCount;
+			mCompletedCount = lane.mCompletedCount;
+			mRejectedCount = lane.mRejectedCount;
+			mCancelledCount = lane.mCancelledCount;
+			mAverageWaitNanos = lane.mStartedCount > 0 ? lane.mTotalWaitNanos / lane
+					.mStartedCount : 0;
+			mMaxWaitNanos = lane.mMaxWaitNanos;
+		}
+
+		/**
+		 * @return The number of tasks that wait to be run.
+		 */
+		public int getQueueDepth() {
+			return mQueueDepth;
+		}
+
+		/**
+		 * @return The largest number of tasks that waited at once.
+		 */
+		public int getMaxQueueDepth() {
+			return mMaxQueueDepth;
+		}
+
+		/**
+		 * @return The number of tasks that are running.
+		 */
+		public int getRunningCount() {
+			return mRunningCount;
+		}
+
+		/**
+		 * @return The number of tasks that were run.
+		 */
+		public long getCompletedCount() {
+			return mCompletedCount;
+		}
+
+		/**
+		 * @return The number of tasks that were rejected because the lane was full.
+		 */
+		public long getRejectedCount() {
+			return mRejectedCount;
+		}
+
+		/**
+		 * @return The number of tasks that were cancelled before they were run.
+		 */
+		public long getCancelledCount() {
+			return mCancelledCount;
+		}
+
+		/**
+		 * @return The average time between submission and start of a task.
+		 */
+		public long getAverageWaitNanos() {
+			return mAverageWaitNanos;
+		}
+
+		/**
+		 * @return The longest time between submission and start of a task.
+		 */
+		public long getMaxWaitNanos() {
+			return mMaxWaitNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.getDefault(), "depth=%s (max %s), running=%s, " +
+							"completed=%s, rejected=%s, cancelled=%s, wait=%sus (max %sus)",
+					mQueueDepth, mMaxQueueDepth, mRunningCount, mCompletedCount, mRejectedCount,
+					mCancelledCount, mAverageWaitNanos / 1000, mMaxWaitNanos / 1000);
+		}
+	}
+}
@@ -2,28 +2,86 @@ package com.mytrainstation.data;
 
 import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.MutableLiveData;
+import android.arch.paging.PagedList;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 
+import com.mytrainstation.api.TrainStationQuery;
 import com.mytrainstation.api.TrainStationService;
+import com.mytrainstation.data.LatestRequestScheduler.Lane;
+import com.mytrainstation.db.QueryResult;
 import com.mytrainstation.db.TrainStationLocalCache;
+import com.mytrainstation.metrics.Counter;
+import com.mytrainstation.metrics.LatencyHistogram;
+import com.mytrainstation.metrics.MetricsRegistry;
 import com.mytrainstation.model.TrainStation;
 
-import org.apache.log4j.Logger;
-
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Repository class that works with local and remote data sources.
+ * Repository class that works with local and remote data sources. A new search supersedes the
+ * search of the same kind that is still in progress, so the local cache always displays the
+ * result of the last search (see {@link LatestRequestScheduler}).
+ *
+ * A stored result of a previous search is displayed immediately. It will only be refreshed in
+ * background if it became stale (stale-while-revalidate).
+ *
+ * Search terms are matched against the names of stored train stations first. The graphql
+ * endpoint is only requested if no stored train station matches.
+ *
+ * Results near by a location are requested page by page. The next page is requested as soon as
+ * the last stored train station of the displayed result was loaded, until the endpoint answers
+ * with a page that isn't full. A failed page will be requested again on next display of the
+ * result.
+ *
+ * A {@link CoverageRegion} is tracked for each stored near by result. While the user stays
+ * within it, the result is still valid and could be displayed again ordered by the distance to
+ * the user (see {@link #findCoverageRegion(double, double, int)}). Before the user leaves it,
+ * the result of the new location could be prefetched in background (see
+ * {@link #prefetchTrainStationsByLocation(CoverageRegion, double, double)}).
  *
  * @author JSCHENK
  */
 public class TrainStationRepository {
 
-	private static final Logger LOG = Logger.getLogger(TrainStationRepository.class);
+	/**
+	 * Default share of the covered radius of a result that is taken as its coverage region.
+	 */
+	public static final double DEFAULT_COVERAGE_RATIO = 0.5d;
+	private static final int MAX_COVERAGE_REGIONS = 50;
+
+	// time until a search was answered by the local cache or the endpoint, superseded searches
+	// aren't recorded
+	private static final LatencyHistogram REQUEST_LATENCY = MetricsRegistry.getInstance()
+			.histogram("TrainStationRepository.requestAndSaveData");
+	private static final Counter FRESH_RESULTS = MetricsRegistry.getInstance().counter
+			("TrainStationRepository.freshCachedResults");
+	private static final Counter STALE_RESULTS = MetricsRegistry.getInstance().counter
+			("TrainStationRepository.staleCachedResults");
+	private static final Counter MISSING_RESULTS = MetricsRegistry.getInstance().counter
+			("TrainStationRepository.missingCachedResults");
 
 	private final TrainStationService mService;
 	private final TrainStationLocalCache mCache;
+	private final LatestRequestScheduler mScheduler;
+	// coverage regions of the recently used near by results by fingerprint, the local cache
+	// doesn't store more results anyway
+	private final Map<String, CoverageRegion> mCoverageRegions = Collections.synchronizedMap(
+			new LinkedHashMap<String, CoverageRegion>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CoverageRegion> eldest) {
+					return size() > MAX_COVERAGE_REGIONS;
+				}
+			});
+	private final double mCoverageRatio;
+	// fingerprint of the region the user is about to leave, while the next result is prefetched
+	private final AtomicReference<String> mPrefetchingRegion = new AtomicReference<>();
 
 	private MutableLiveData<Boolean> mIsRequestInProgress;
 
@@ -33,13 +91,40 @@ public class TrainStationRepository {
 	 * 		within given search radius.
 	 * @param localCache
 	 * 		The local cache where to insert search results.
+	 * @param scheduler
+	 * 		The scheduler that executes searches and cancels superseded ones.
+	 */
+	public TrainStationRepository(
+			@NonNull TrainStationService service,
+			@NonNull TrainStationLocalCache localCache,
+			@NonNull LatestRequestScheduler scheduler) {
+		this(service, localCache, scheduler, DEFAULT_COVERAGE_RATIO);
+	}
+
+	/**
+	 * @param service
+	 * 		The service that could be used to request train stations near by current location and
+	 * 		within given search radius.
+	 * @param localCache
+	 * 		The local cache where to insert search results.
+	 * @param scheduler
+	 * 		The scheduler that executes searches and cancels superseded ones.
+	 * @param coverageRatio
+	 * 		The share of the covered radius of a result that is taken as its coverage region, 0
+	 * 		disables coverage regions.
 	 */
 	public TrainStationRepository(
 			@NonNull TrainStationService service,
-			@NonNull TrainStationLocalCache localCache) {
+			@NonNull TrainStationLocalCache localCache,
+			@NonNull LatestRequestScheduler scheduler,
+			double coverageRatio) {
+		mCoverageRatio = coverageRatio;
 		mService = service;
 		mCache = localCache;
+		mScheduler = scheduler;
 		mIsRequestInProgress = new MutableLiveData<>();
+		mScheduler.setOnBusyStateChangedListener(mIsRequestInProgress::postValue);
+		mCache.setOnEndOfResultListener(this::requestNextPage);
 	}
 
 	/**
@@ -61,49 +146,254 @@ public class TrainStationRepository {
 	@WorkerThread
 	public void searchTrainStationsByLocation(double latitude, double longitude,
 			int radius) {
-		requestAndSaveData(latitude, longitude, radius);
+		requestAndSaveData(Lane.LOCATION, mService.createNearByQuery(latitude, longitude, radius),
+				false);
+	}
+
+	/**
+	 * Requests the result near by passed location in background without displaying it, unless
+	 * a fresh result is already stored. Once stored, its {@link CoverageRegion} will be found by
+	 * {@link #findCoverageRegion(double, double, int)}. Only one result is prefetched for each
+	 * region the user is about to leave, further locations within it are ignored until its
+	 * request finished.
+	 *
+	 * @param region
+	 * 		The region that contains passed location near by its boundary.
+	 * @param latitude
+	 * 		Latitude value of current location.
+	 * @param longitude
+	 * 		Longitude value of current location.
+	 */
+	@WorkerThread
+	public void prefetchTrainStationsByLocation(@NonNull CoverageRegion region, double latitude,
+			double longitude) {
+		String regionFingerprint = region.getQuery().getFingerprint();
+		if (regionFingerprint.equals(mPrefetchingRegion.get())) {
+			return;
+		}
+		TrainStationQuery query = mService.createNearByQuery(latitude, longitude, region
+				.getQuery().getRadius());
+		QueryResult cachedResult = mCache.getQueryResult(query);
+		if (cachedResult != null && !mCache.isStale(cachedResult)) {
+			return;
+		}
+		mPrefetchingRegion.set(regionFingerprint);
+		mScheduler.submit(Lane.PREFETCH, query, handle -> {
+			try {
+				return mService.searchTrainStations(query, handle);
+			} finally {
+				mPrefetchingRegion.compareAndSet(regionFingerprint, null);
+			}
+		}, trainStations -> {
+			// a failed prefetch will be requested again once the user needs the result
+			if (!trainStations.isEmpty()) {
+				mCache.store(query, trainStations, trackFirstPage(query, trainStations));
+			}
+		});
 	}
 
 	/**
+	 * @param latitude
+	 * 		Latitude value of current location.
+	 * @param longitude
+	 * 		Longitude value of current location.
+	 * @param radius
+	 * 		The current search radius.
+	 * @return The coverage region of a fresh stored result of passed radius that contains passed
+	 * location, the one with the nearest location if there are several, or {@code null} if there
+	 * is none.
+	 */
+	@WorkerThread
+	@Nullable
+	public CoverageRegion findCoverageRegion(double latitude, double longitude, int radius) {
+		List<CoverageRegion> candidates = new ArrayList<>();
+		synchronized (mCoverageRegions) {
+			for (CoverageRegion region : mCoverageRegions.values()) {
+				if (region.getQuery().getRadius() == radius && region.contains(latitude,
+						longitude)) {
+					candidates.add(region);
+				}
+			}
+		}
+		Collections.sort(candidates, (first, second) -> Double.compare(first.distanceMeters(
+				latitude, longitude), second.distanceMeters(latitude, longitude)));
+		for (CoverageRegion region : candidates) {
+			// result might not be written yet or was already evicted by the local cache
+			QueryResult queryResult = mCache.getQueryResult(region.getQuery());
+			if (queryResult != null && !mCache.isStale(queryResult)) {
+				// marks the region as recently used, so it is evicted last
+				mCoverageRegions.get(region.getQuery().getFingerprint());
+				return region;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Displays the stored result of passed region ordered by the distance to passed location.
+	 * No request will be sent to the graphql endpoint.
+	 *
+	 * @param region
+	 * 		The region that contains passed location (see
+	 * 		{@link #findCoverageRegion(double, double, int)}).
+	 * @param latitude
+	 * 		Latitude value of current location.
+	 * @param longitude
+	 * 		Longitude value of current location.
+	 */
+	@WorkerThread
+	public void displayTrainStationsByLocation(@NonNull CoverageRegion region, double latitude,
+			double longitude) {
+		TrainStationQuery query = region.getQuery();
+		mScheduler.publish(Lane.LOCATION, query, () -> mCache.display(query, latitude,
+				longitude));
+	}
+
+	/**
+	 * Requests the result of passed search term, unless a fresh one is stored. Without any
+	 * stored result, stored train stations of previous searches that match passed search term
+	 * are displayed until the result is received.
+	 *
 	 * @param searchTerm
 	 * 		The search term to be included in train stations name.
 	 */
 	@WorkerThread
 	public void searchTrainStationsBySearchTerm(@NonNull String searchTerm) {
-		requestAndSaveData(searchTerm);
+		TrainStationQuery query = TrainStationQuery.search(searchTerm);
+		// local matches only contain train stations of previous searches, so they are just
+		// displayed until the result of the search term is received
+		boolean isDisplayed = false;
+		if (mCache.getQueryResult(query) == null) {
+			List<TrainStation> matches = mCache.findTrainStations(searchTerm);
+			if (!matches.isEmpty()) {
+				mScheduler.publish(Lane.SEARCH_TERM, query, () -> mCache.display(matches));
+				isDisplayed = true;
+			}
+		}
+		requestAndSaveData(Lane.SEARCH_TERM, query, isDisplayed);
 	}
 
 	/**
-	 * @return A list of all available {@link TrainStation}s that are currently in cache.
+	 * Displays the stored train stations whose name matches passed (partial) search term, e.g.
+	 * on each keystroke. No request will be sent to the graphql endpoint.
+	 *
+	 * @param searchTerm
+	 * 		The (partial) search term to be included in train stations name.
 	 */
-	public LiveData<List<TrainStation>> getTrainStations() {
+	@WorkerThread
+	public void filterTrainStationsBySearchTerm(@NonNull String searchTerm) {
+		List<TrainStation> matches = mCache.findTrainStations(searchTerm);
+		mScheduler.publish(Lane.SEARCH_TERM, TrainStationQuery.search(searchTerm), () -> mCache
+				.display(matches));
+	}
+
+	/**
+	 * @return A paged list of the {@link TrainStation}s of the displayed result.
+	 */
+	public LiveData<PagedList<TrainStation>> getTrainStations() {
 		return mCache.getTrainStations();
 	}
 
-	private synchronized void requestAndSaveData(double latitude, double longitude, int radius) {
-		if (prepareRequest()) {
-			finishRequest(mService.searchTrainStations(latitude, longitude, radius));
-		}
+	/**
+	 * @return The scheduler that executes searches, e.g. to retrieve its metrics.
+	 */
+	@NonNull
+	public LatestRequestScheduler getScheduler() {
+		return mScheduler;
 	}
 
-	private synchronized void requestAndSaveData(@NonNull String searchTerm) {
-		if (prepareRequest()) {
-			finishRequest(mService.searchTrainStations(searchTerm));
+	/**
+	 * Displays the stored result of passed query and requests it, unless the stored result is
+	 * fresh.
+	 *
+	 * @param lane
+	 * 		The lane of the request.
+	 * @param query
+	 * 		The query to request.
+	 * @param isDisplayed
+	 * 		True, if train stations of passed query are already displayed without a stored
+	 * 		result, e.g. local matches, which are kept if the request fails.
+	 */
+	@WorkerThread
+	private void requestAndSaveData(@NonNull Lane lane, @NonNull TrainStationQuery query,
+			boolean isDisplayed) {
+		long start = REQUEST_LATENCY.start();
+		QueryResult cachedResult = mCache.getQueryResult(query);
+		if (cachedResult != null) {
+			mScheduler.publish(lane, query, () -> mCache.display(query));
+			if (!mCache.isStale(cachedResult)) {
+				FRESH_RESULTS.increment();
+				REQUEST_LATENCY.stop(start);
+				return;
+			}
+			STALE_RESULTS.increment();
+		} else {
+			MISSING_RESULTS.increment();
 		}
+		mScheduler.submit(lane, query, handle -> mService.searchTrainStations(query, handle),
+				trainStations -> {
+					REQUEST_LATENCY.stop(start);
+					// an empty result might be caused by a failure, so it won't be stored and
+					// a stale result will be kept
+					if (!trainStations.isEmpty()) {
+						mCache.insert(query, trainStations, trackFirstPage(query,
+								trainStations));
+					} else if (cachedResult == null && !isDisplayed) {
+						mCache.display(query);
+					}
+				});
 	}
 
-	private void finishRequest(List<TrainStation> trainStations) {
-		mCache.insert(trainStations);
-		mIsRequestInProgress.postValue(false);
+	/**
+	 * Tracks the coverage region of a near by result. A refreshed result starts with its first
+	 * page again. An approximate first page of the near by tile cache neither covers the
+	 * location of passed query nor can it be paged (see
+	 * {@link TrainStationService#isApproximate(List)}), so it is stored as complete result
+	 * without any coverage region.
+	 *
+	 * @param query
+	 * 		The query of the result.
+	 * @param trainStations
+	 * 		The first page of the result.
+	 * @return True, if passed first page is the complete result of passed query.
+	 */
+	private boolean trackFirstPage(@NonNull TrainStationQuery query,
+			@NonNull List<TrainStation> trainStations) {
+		if (mService.isApproximate(trainStations)) {
+			mCoverageRegions.remove(query.getFingerprint());
+			return true;
+		}
+		boolean complete = trainStations.size() < query.getCount();
+		if (query.getType() == TrainStationQuery.Type.NEARBY && mCoverageRatio > 0) {
+			mCoverageRegions.put(query.getFingerprint(), CoverageRegion.create(query,
+					trainStations, complete, mCoverageRatio));
+		}
+		return complete;
 	}
 
-	private synchronized boolean prepareRequest() {
-		Boolean requestInProgress = mIsRequestInProgress.getValue();
-		if (requestInProgress != null && requestInProgress) {
-			LOG.warn("Request already in progress. Return without do anything.");
-			return false;
+	/**
+	 * Requests the page of passed result that follows its stored train stations. The local cache
+	 * only calls this until the last page was stored. Results of a search term can't be paged.
+	 *
+	 * @param query
+	 * 		The query of the displayed result.
+	 * @param storedCount
+	 * 		The number of train stations of the stored result.
+	 */
+	@WorkerThread
+	private void requestNextPage(@NonNull TrainStationQuery query, int storedCount) {
+		if (query.getType() != TrainStationQuery.Type.NEARBY) {
+			return;
 		}
-		mIsRequestInProgress.postValue(true);
-		return true;
+		TrainStationQuery nextPage = query.withOffset(storedCount);
+		// a failed page isn't published, so it will be requested again on next display of the
+		// result, while an empty page is the end of the result
+		mScheduler.submit(Lane.NEXT_PAGE, nextPage, handle -> mService
+				.searchTrainStationsOrThrow(nextPage, handle), trainStations -> {
+			boolean complete = trainStations.size() < nextPage.getCount();
+			mCoverageRegions.computeIfPresent(query.getFingerprint(), (fingerprint, region) ->
+					region.extend(trainStations, complete));
+			mCache.append(query, trainStations, complete);
+		});
 	}
 }
@@ -0,0 +1,64 @@
+package com.mytrainstation.db;
+
+import android.arch.paging.DataSource;
+import android.arch.paging.PositionalDataSource;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Source of a paged list whose items are already held in memory, e.g. train stations that were
+ * matched locally (see {@link TrainStationLocalCache#findTrainStations(String)}). Allows to
+ * display them like a stored result.
+ *
+ * @param <T>
+ * 		The type of the items.
+ * @author JSCHENK
+ */
+public class ListDataSource<T> extends PositionalDataSource<T> {
+
+	private final List<T> mItems;
+
+	/**
+	 * @param items
+	 * 		The items of the source. Will be copied.
+	 */
+	public ListDataSource(@NonNull List<T> items) {
+		mItems = Collections.unmodifiableList(new ArrayList<>(items));
+	}
+
+	/**
+	 * @param items
+	 * 		The items of all created sources.
+	 * @param <T>
+	 * 		The type of the items.
+	 * @return A factory that creates sources of passed items.
+	 */
+	@NonNull
+	public static <T> DataSource.Factory<Integer, T> factory(@NonNull List<T> items) {
+		List<T> copy = new ArrayList<>(items);
+		return new DataSource.Factory<Integer, T>() {
+			@Override
+			public DataSource<Integer, T> create() {
+				return new ListDataSource<>(copy);
+			}
+		};
+	}
+
+	@Override
+	public void loadInitial(@NonNull LoadInitialParams params,
+			@NonNull LoadInitialCallback<T> callback) {
+		int position = computeInitialLoadPosition(params, mItems.size());
+		int loadSize = computeInitialLoadSize(params, position, mItems.size());
+		callback.onResult(mItems.subList(position, position + loadSize), position, mItems.size());
+	}
+
+	@Override
+	public void loadRange(@NonNull LoadRangeParams params, @NonNull LoadRangeCallback<T> callback) {
+		int start = Math.min(params.startPosition, mItems.size());
+		int end = Math.min(params.startPosition + params.loadSize, mItems.size());
+		callback.onResult(mItems.subList(start, end));
+	}
+}
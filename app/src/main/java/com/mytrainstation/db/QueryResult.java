@@ -0,0 +1,132 @@
+package com.mytrainstation.db;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Index;
+import android.arch.persistence.room.PrimaryKey;
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Persisted result of a search request. The train stations of the result are linked via
+ * {@link QueryResultStation}s.
+ *
+ * @author JSCHENK
+ */
+@Entity(tableName = "query_results", indices = {@Index("last_accessed")})
+public class QueryResult {
+
+	@PrimaryKey
+	@NonNull
+	@ColumnInfo(name = "fingerprint")
+	private String mFingerprint = "";
+	@ColumnInfo(name = "fetched_at")
+	private long mFetchedAt;
+	@ColumnInfo(name = "last_accessed")
+	private long mLastAccessed;
+	@ColumnInfo(name = "complete")
+	private boolean mComplete;
+
+	/**
+	 * Default constructor that will be used by room library.
+	 */
+	public QueryResult() {
+	}
+
+	/**
+	 * @param fingerprint
+	 * 		The fingerprint of the query (see
+	 * 		{@link com.mytrainstation.api.TrainStationQuery#getFingerprint()}).
+	 * @param fetchedAt
+	 * 		The time in milliseconds when the result was received from graphql endpoint.
+	 */
+	public QueryResult(@NonNull String fingerprint, long fetchedAt) {
+		this(fingerprint, fetchedAt, false);
+	}
+
+	/**
+	 * @param fingerprint
+	 * 		The fingerprint of the query (see
+	 * 		{@link com.mytrainstation.api.TrainStationQuery#getFingerprint()}).
+	 * @param fetchedAt
+	 * 		The time in milliseconds when the result was received from graphql endpoint.
+	 * @param complete
+	 * 		True, if the last page of the result was received.
+	 */
+	public QueryResult(@NonNull String fingerprint, long fetchedAt, boolean complete) {
+		mFingerprint = fingerprint;
+		mFetchedAt = fetchedAt;
+		mLastAccessed = fetchedAt;
+		mComplete = complete;
+	}
+
+	/**
+	 * @return The fingerprint of the query.
+	 */
+	@NonNull
+	public String getFingerprint() {
+		return mFingerprint;
+	}
+
+	/**
+	 * @param fingerprint
+	 * 		The fingerprint of the query.
+	 */
+	public void setFingerprint(@NonNull String fingerprint) {
+		mFingerprint = fingerprint;
+	}
+
+	/**
+	 * @return The time in milliseconds when the result was received from graphql endpoint.
+	 */
+	public long getFetchedAt() {
+		return mFetchedAt;
+	}
+
+	/**
+	 * @param fetchedAt
+	 * 		The time in milliseconds when the result was received from graphql endpoint.
+	 */
+	public void setFetchedAt(long fetchedAt) {
+		mFetchedAt = fetchedAt;
+	}
+
+	/**
+	 * @return The time in milliseconds when the result was displayed the last time.
+	 */
+	public long getLastAccessed() {
+		return mLastAccessed;
+	}
+
+	/**
+	 * @param lastAccessed
+	 * 		The time in milliseconds when the result was displayed the last time.
+	 */
+	public void setLastAccessed(long lastAccessed) {
+		mLastAccessed = lastAccessed;
+	}
+
+	/**
+	 * @return True, if the last page of the result was received, so no further page has to be
+	 * requested.
+	 */
+	public boolean isComplete() {
+		return mComplete;
+	}
+
+	/**
+	 * @param complete
+	 * 		True, if the last page of the result was received.
+	 */
+	public void setComplete(boolean complete) {
+		mComplete = complete;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.getDefault(), "QueryResult [fingerprint=%s, fetchedAt=%s, " +
+				"lastAccessed=%s, complete=%s]", mFingerprint, mFetchedAt, mLastAccessed,
+				mComplete);
+	}
+}
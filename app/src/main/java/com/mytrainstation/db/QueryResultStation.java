@@ -0,0 +1,71 @@
+package com.mytrainstation.db;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Index;
+import android.support.annotation.NonNull;
+
+/**
+ * Links a {@link QueryResult} to one of its {@link com.mytrainstation.model.TrainStation}s. A
+ * train station is stored only once, even if it is part of several results.
+ *
+ * @author JSCHENK
+ */
+@Entity(tableName = "query_result_stations", primaryKeys = {"fingerprint", "station_id"},
+		indices = {@Index("station_id")})
+public class QueryResultStation {
+
+	@NonNull
+	@ColumnInfo(name = "fingerprint")
+	private String mFingerprint = "";
+	@ColumnInfo(name = "station_id")
+	private int mStationId;
+
+	/**
+	 * Default constructor that will be used by room library.
+	 */
+	public QueryResultStation() {
+	}
+
+	/**
+	 * @param fingerprint
+	 * 		The fingerprint of the query whose result contains the train station.
+	 * @param stationId
+	 * 		The id of the train station.
+	 */
+	public QueryResultStation(@NonNull String fingerprint, int stationId) {
+		mFingerprint = fingerprint;
+		mStationId = stationId;
+	}
+
+	/**
+	 * @return The fingerprint of the query whose result contains the train station.
+	 */
+	@NonNull
+	public String getFingerprint() {
+		return mFingerprint;
+	}
+
+	/**
+	 * @param fingerprint
+	 * 		The fingerprint of the query whose result contains the train station.
+	 */
+	public void setFingerprint(@NonNull String fingerprint) {
+		mFingerprint = fingerprint;
+	}
+
+	/**
+	 * @return The id of the train station.
+	 */
+	public int getStationId() {
+		return mStationId;
+	}
+
+	/**
+	 * @param stationId
+	 * 		The id of the train station.
+	 */
+	public void setStationId(int stationId) {
+		mStationId = stationId;
+	}
+}
@@ -0,0 +1,145 @@
+package com.mytrainstation.db;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Index;
+import android.arch.persistence.room.PrimaryKey;
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Stored picture that is addressed by the hash of its content, so a picture that is shared by
+ * several {@link com.mytrainstation.model.TrainStation}s is stored only once. Train stations
+ * link their picture by foreign key (see
+ * {@link com.mytrainstation.model.TrainStation#getPictureHash()}).
+ *
+ * The encoded thumbnail itself is kept within a file named by its hash instead of a blob
+ * column, so it could be streamed from disk without copying it into memory first.
+ *
+ * @author JSCHENK
+ */
+@Entity(tableName = "resource_table", indices = {@Index("last_accessed")})
+public class Resource {
+
+	@PrimaryKey
+	@NonNull
+	@ColumnInfo(name = "hash")
+	private String mHash = "";
+	@ColumnInfo(name = "size")
+	private long mSize;
+	@ColumnInfo(name = "width")
+	private int mWidth;
+	@ColumnInfo(name = "height")
+	private int mHeight;
+	@ColumnInfo(name = "last_accessed")
+	private long mLastAccessed;
+
+	/**
+	 * Default constructor that will be used by room library.
+	 */
+	public Resource() {
+	}
+
+	/**
+	 * @param hash
+	 * 		The hex encoded SHA-256 hash of the original picture.
+	 * @param size
+	 * 		The size of the stored thumbnail in bytes.
+	 * @param width
+	 * 		The width of the stored thumbnail in pixels.
+	 * @param height
+	 * 		The height of the stored thumbnail in pixels.
+	 * @param lastAccessed
+	 * 		The time in milliseconds when the picture was stored or loaded the last time.
+	 */
+	public Resource(@NonNull String hash, long size, int width, int height, long lastAccessed) {
+		mHash = hash;
+		mSize = size;
+		mWidth = width;
+		mHeight = height;
+		mLastAccessed = lastAccessed;
+	}
+
+	/**
+	 * @return The hex encoded SHA-256 hash of the original picture.
+	 */
+	@NonNull
+	public String getHash() {
+		return mHash;
+	}
+
+	/**
+	 * @param hash
+	 * 		The hex encoded SHA-256 hash of the original picture.
+	 */
+	public void setHash(@NonNull String hash) {
+		mHash = hash;
+	}
+
+	/**
+	 * @return The size of the stored thumbnail in bytes.
+	 */
+	public long getSize() {
+		return mSize;
+	}
+
+	/**
+	 * @param size
+	 * 		The size of the stored thumbnail in bytes.
+	 */
+	public void setSize(long size) {
+		mSize = size;
+	}
+
+	/**
+	 * @return The width of the stored thumbnail in pixels.
+	 */
+	public int getWidth() {
+		return mWidth;
+	}
+
+	/**
+	 * @param width
+	 * 		The width of the stored thumbnail in pixels.
+	 */
+	public void setWidth(int width) {
+		mWidth = width;
+	}
+
+	/**
+	 * @return The height of the stored thumbnail in pixels.
+	 */
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * @param height
+	 * 		The height of the stored thumbnail in pixels.
+	 */
+	public void setHeight(int height) {
+		mHeight = height;
+	}
+
+	/**
+	 * @return The time in milliseconds when the picture was stored or loaded the last time.
+	 */
+	public long getLastAccessed() {
+		return mLastAccessed;
+	}
+
+	/**
+	 * @param lastAccessed
+	 * 		The time in milliseconds when the picture was stored or loaded the last time.
+	 */
+	public void setLastAccessed(long lastAccessed) {
+		mLastAccessed = lastAccessed;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.getDefault(), "Resource [hash=%s, size=%s, width=%s, " +
+				"height=%s, lastAccessed=%s]", mHash, mSize, mWidth, mHeight, mLastAccessed);
+	}
+}
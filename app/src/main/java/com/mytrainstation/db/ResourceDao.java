@@ -0,0 +1,111 @@
+package com.mytrainstation.db;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
+import android.arch.persistence.room.Query;
+import android.arch.persistence.room.Transaction;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Data access object for stored pictures ({@link Resource}s) and their links from
+ * {@link com.mytrainstation.model.TrainStation}s.
+ *
+ * @author JSCHENK
+ */
+@Dao
+public abstract class ResourceDao {
+
+	/**
+	 * @param hash
+	 * 		The hash of the picture.
+	 * @return The stored picture or {@code null} if it isn't stored.
+	 */
+	@Nullable
+	@Query("SELECT * FROM resource_table WHERE hash = :hash")
+	public abstract Resource getResource(String hash);
+
+	/**
+	 * @param pictureUrl
+	 * 		The url of the picture.
+	 * @return The hash of the stored picture that is linked by a train station with passed
+	 * picture url or {@code null} if it isn't stored.
+	 */
+	@Nullable
+	@Query("SELECT picture_hash FROM train_stations WHERE picture_url = :pictureUrl AND " +
+			"picture_hash IS NOT NULL LIMIT 1")
+	public abstract String getPictureHash(String pictureUrl);
+
+	/**
+	 * @param hash
+	 * 		The hash of the picture.
+	 * @param lastAccessed
+	 * 		The time in milliseconds when the picture was loaded.
+	 */
+	@Query("UPDATE resource_table SET last_accessed = :lastAccessed WHERE hash = :hash")
+	public abstract void updateLastAccessed(String hash, long lastAccessed);
+
+	/**
+	 * @return The size of all stored pictures in bytes.
+	 */
+	@Query("SELECT COALESCE(SUM(size), 0) FROM resource_table")
+	public abstract long getTotalSize();
+
+	/**
+	 * @return All stored pictures that are not linked by any train station.
+	 */
+	@Query("SELECT * FROM resource_table WHERE hash NOT IN (SELECT picture_hash FROM " +
+			"train_stations WHERE picture_hash IS NOT NULL)")
+	public abstract List<Resource> getOrphanedResources();
+
+	/**
+	 * @return The stored picture that wasn't loaded for the longest time or {@code null} if no
+	 * picture is stored.
+	 */
+	@Nullable
+	@Query("SELECT * FROM resource_table ORDER BY last_accessed ASC LIMIT 1")
+	public abstract Resource getLeastRecentlyAccessedResource();
+
+	/**
+	 * Deletes a stored picture. Train stations that link it will be unlinked by their foreign
+	 * key.
+	 *
+	 * @param hash
+	 * 		The hash of the picture.
+	 */
+	@Query("DELETE FROM resource_table WHERE hash = :hash")
+	public abstract void deleteResource(String hash);
+
+	/**
+	 * A stored picture mustn't be replaced, since deleting it would unlink its train stations.
+	 */
+	@Insert(onConflict = OnConflictStrategy.IGNORE)
+	abstract void insertResource(Resource resource);
+
+	/**
+	 * Only train stations that don't link passed picture yet are updated, so observers of train
+	 * stations aren't notified if nothing changed.
+	 */
+	@Query("UPDATE train_stations SET picture_hash = :hash WHERE picture_url = :pictureUrl AND " +
+			"(picture_hash IS NULL OR picture_hash != :hash)")
+	abstract int linkPicture(String pictureUrl, String hash);
+
+	/**
+	 * Stores a picture and links it from all train stations with passed picture url within a
+	 * single transaction, so the picture is never orphaned in between.
+	 *
+	 * @param resource
+	 * 		The stored picture.
+	 * @param pictureUrl
+	 * 		The url the picture was fetched from.
+	 * @return The number of train stations that were linked to the picture.
+	 */
+	@Transaction
+	public int insertAndLink(@NonNull Resource resource, @NonNull String pictureUrl) {
+		insertResource(resource);
+		return linkPicture(pictureUrl, resource.getHash());
+	}
+}
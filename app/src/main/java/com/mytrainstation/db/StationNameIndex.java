@@ -0,0 +1,206 @@
+package com.mytrainstation.db;
+
+import android.support.annotation.NonNull;
+
+import com.mytrainstation.model.TrainStation;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable in-memory inverted index over the names of {@link TrainStation}s that supports
+ * prefix matching of each word, so it could be queried on each keystroke of a search term.
+ *
+ * Names and search terms are normalized by {@link #normalize(String)}, so german umlauts match
+ * their transliteration as well as their base letter, e.g. "München", "Muenchen" and "munchen"
+ * are equal.
+ *
+ * @author JSCHENK
+ */
+public final class StationNameIndex {
+
+	private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+	private static final Pattern TRANSLITERATED_UMLAUTS = Pattern.compile("([aou])e");
+	private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	private static final int SCORE_PREFIX_MATCH = 1;
+	private static final int SCORE_EXACT_MATCH = 2;
+	private static final int SCORE_NAME_PREFIX = 4;
+
+	private final TrainStation[] mTrainStations;
+	private final String[] mNormalizedNames;
+	// sorted distinct words of all names and the indices of the stations that contain them
+	private final String[] mWords;
+	private final int[][] mPostings;
+
+	private StationNameIndex(TrainStation[] trainStations, String[] normalizedNames,
+			String[] words, int[][] postings) {
+		mTrainStations = trainStations;
+		mNormalizedNames = normalizedNames;
+		mWords = words;
+		mPostings = postings;
+	}
+
+	/**
+	 * @param trainStations
+	 * 		The train stations that should be searchable by their name.
+	 * @return A new index of passed train stations. Stations without name will be skipped.
+	 */
+	@NonNull
+	public static StationNameIndex build(@NonNull List<TrainStation> trainStations) {
+		List<TrainStation> indexed = new ArrayList<>(trainStations.size());
+		List<String> normalizedNames = new ArrayList<>(trainStations.size());
+		Map<String, List<Integer>> postings = new HashMap<>();
+		for (TrainStation trainStation : trainStations) {
+			if (trainStation.getName() == null) {
+				continue;
+			}
+			String normalizedName = normalize(trainStation.getName());
+			int index = indexed.size();
+			indexed.add(trainStation);
+			normalizedNames.add(normalizedName);
+			for (String word : words(normalizedName)) {
+				List<Integer> stations = postings.get(word);
+				if (stations == null) {
+					stations = new ArrayList<>();
+					postings.put(word, stations);
+				}
+				// a name might contain a word twice
+				if (stations.isEmpty() || stations.get(stations.size() - 1) != index) {
+					stations.add(index);
+				}
+			}
+		}
+
+		String[] words = postings.keySet().toArray(new String[0]);
+		Arrays.sort(words);
+		int[][] postingArrays = new int[words.length][];
+		for (int i = 0; i < words.length; i++) {
+			List<Integer> stations = postings.get(words[i]);
+			postingArrays[i] = new int[stations.size()];
+			for (int j = 0; j < stations.size(); j++) {
+				postingArrays[i][j] = stations.get(j);
+			}
+		}
+		return new StationNameIndex(indexed.toArray(new TrainStation[0]), normalizedNames
+				.toArray(new String[0]), words, postingArrays);
+	}
+
+	/**
+	 * Normalizes passed text to lower case words separated by a single space. Diacritics are
+	 * removed, 'ß' is replaced by "ss" and transliterated umlauts ("ae", "oe", "ue") are
+	 * replaced by their base letter.
+	 *
+	 * @param text
+	 * 		The text to normalize.
+	 * @return The normalized text.
+	 */
+	@NonNull
+	public static String normalize(@NonNull String text) {
+		String normalized = Normalizer.normalize(text.toLowerCase(Locale.GERMAN), Normalizer
+				.Form.NFD);
+		normalized = COMBINING_MARKS.matcher(normalized).replaceAll("");
+		normalized = normalized.replace("ß", "ss");
+		normalized = TRANSLITERATED_UMLAUTS.matcher(normalized).replaceAll("$1");
+		return SEPARATORS.matcher(normalized).replaceAll(" ").trim();
+	}
+
+	/**
+	 * Searches for train stations whose name contains a word starting with each word of passed
+	 * search term. Stations are ranked by exact word matches first, then by whether their name
+	 * starts with the search term and finally by the length of their name.
+	 *
+	 * @param searchTerm
+	 * 		The (partial) search term.
+	 * @param limit
+	 * 		The maximum number of train stations.
+	 * @return The best matching train stations, ordered by their rank.
+	 */
+	@NonNull
+	public List<TrainStation> search(@NonNull String searchTerm, int limit) {
+		String normalizedTerm = normalize(searchTerm);
+		if (normalizedTerm.isEmpty() || limit <= 0) {
+			return new ArrayList<>();
+		}
+		String[] terms = words(normalizedTerm);
+		// number of matched terms and accumulated score per station
+		int[] matchedTerms = new int[mTrainStations.length];
+		int[] scores = new int[mTrainStations.length];
+		for (int term = 0; term < terms.length; term++) {
+			String prefix = terms[term];
+			// words are sorted, so an exact match is visited before other words of the prefix
+			for (int word = lowerBound(prefix); word < mWords.length && mWords[word].startsWith
+					(prefix); word++) {
+				int score = mWords[word].length() == prefix.length() ? SCORE_EXACT_MATCH :
+						SCORE_PREFIX_MATCH;
+				for (int station : mPostings[word]) {
+					if (matchedTerms[station] == term) {
+						matchedTerms[station] = term + 1;
+						scores[station] += score;
+					}
+				}
+			}
+		}
+
+		int[] best = new int[Math.min(limit, mTrainStations.length)];
+		int size = 0;
+		for (int station = 0; station < mTrainStations.length; station++) {
+			if (matchedTerms[station] != terms.length) {
+				continue;
+			}
+			if (mNormalizedNames[station].startsWith(normalizedTerm)) {
+				scores[station] += SCORE_NAME_PREFIX;
+			}
+			if (size == best.length && !isRankedBefore(station, best[size - 1], scores)) {
+				continue;
+			}
+			int position = size < best.length ? size++ : size - 1;
+			while (position > 0 && isRankedBefore(station, best[position - 1], scores)) {
+				best[position] = best[position - 1];
+				position--;
+			}
+			best[position] = station;
+		}
+
+		List<TrainStation> trainStations = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			trainStations.add(mTrainStations[best[i]]);
+		}
+		return trainStations;
+	}
+
+	/**
+	 * @return The number of indexed train stations.
+	 */
+	public int size() {
+		return mTrainStations.length;
+	}
+
+	private boolean isRankedBefore(int station, int other, int[] scores) {
+		if (scores[station] != scores[other]) {
+			return scores[station] > scores[other];
+		}
+		int lengthDifference = mNormalizedNames[station].length() - mNormalizedNames[other]
+				.length();
+		if (lengthDifference != 0) {
+			return lengthDifference < 0;
+		}
+		return mNormalizedNames[station].compareTo(mNormalizedNames[other]) < 0;
+	}
+
+	private int lowerBound(@NonNull String prefix) {
+		int index = Arrays.binarySearch(mWords, prefix);
+		return index >= 0 ? index : -index - 1;
+	}
+
+	@NonNull
+	private static String[] words(@NonNull String normalizedText) {
+		return normalizedText.isEmpty() ? new String[0] : normalizedText.split(" ");
+	}
+}
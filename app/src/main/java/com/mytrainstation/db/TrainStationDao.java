@@ -1,39 +1,405 @@
 package com.mytrainstation.db;
 
-import android.arch.lifecycle.LiveData;
+import android.arch.paging.DataSource;
+import android.arch.persistence.db.SupportSQLiteQuery;
 import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Insert;
 import android.arch.persistence.room.OnConflictStrategy;
 import android.arch.persistence.room.Query;
+import android.arch.persistence.room.RawQuery;
+import android.arch.persistence.room.Transaction;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.util.GeoUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
- * Data access object for {@link TrainStation}s.
+ * Data access object for {@link TrainStation}s and the {@link QueryResult}s they belong to.
  *
  * @author JSCHENK
  */
 @Dao
-public interface TrainStationDao {
+public abstract class TrainStationDao {
+
+	/**
+	 * SQLite limits the number of host parameters of a single statement to 999.
+	 */
+	private static final int MAX_IDS_PER_STATEMENT = 500;
+
+	private volatile Boolean mSpatialIndexAvailable;
 
 	/**
 	 * @param trainStations
 	 * 		A list of all available {@link TrainStation} that should be stored within database.
 	 */
 	@Insert(onConflict = OnConflictStrategy.REPLACE)
-	void insert(List<TrainStation> trainStations);
+	public abstract void insert(List<TrainStation> trainStations);
 
 	/**
 	 * Deletes all entries within table 'train_stations'.
 	 */
 	@Query("DELETE FROM train_stations")
-	void deleteAll();
+	public abstract void deleteAll();
 
 	/**
-	 * @return A list of all available {@link TrainStation} that are stored within database.
+	 * @return All stored {@link TrainStation}s.
 	 */
 	@Query("SELECT * FROM train_stations")
-	LiveData<List<TrainStation>> getTrainStations();
+	public abstract List<TrainStation> getAllTrainStations();
+
+	/**
+	 * @param ids
+	 * 		The ids of the requested {@link TrainStation}s.
+	 * @return All stored {@link TrainStation}s with passed ids.
+	 */
+	@Query("SELECT * FROM train_stations WHERE id IN (:ids)")
+	abstract List<TrainStation> getTrainStationsByIds(List<Integer> ids);
+
+	/**
+	 * Deletes all train stations that are not part of any {@link QueryResult}.
+	 */
+	@Query("DELETE FROM train_stations WHERE id NOT IN (SELECT station_id FROM " +
+			"query_result_stations)")
+	abstract void deleteUnlinkedTrainStations();
+
+	/**
+	 * @param fingerprint
+	 * 		The fingerprint of the query.
+	 * @return A snapshot of all {@link TrainStation}s of the result of passed query.
+	 */
+	@Query("SELECT train_stations.* FROM train_stations INNER JOIN query_result_stations ON " +
+			"train_stations.id = query_result_stations.station_id WHERE " +
+			"query_result_stations.fingerprint = :fingerprint ORDER BY train_stations.id")
+	public abstract List<TrainStation> getTrainStationsSnapshot(String fingerprint);
+
+	/**
+	 * @param fingerprint
+	 * 		The fingerprint of the query.
+	 * @return A source that loads the {@link TrainStation}s of the result of passed query page
+	 * by page, ordered by their name.
+	 */
+	@Query("SELECT train_stations.* FROM train_stations INNER JOIN query_result_stations ON " +
+			"train_stations.id = query_result_stations.station_id WHERE " +
+			"query_result_stations.fingerprint = :fingerprint ORDER BY train_stations.name " +
+			"COLLATE NOCASE, train_stations.id")
+	public abstract DataSource.Factory<Integer, TrainStation> getTrainStationsByName(
+			String fingerprint);
+
+	/**
+	 * @param fingerprint
+	 * 		The fingerprint of the query.
+	 * @param latitude
+	 * 		Latitude of the center.
+	 * @param longitude
+	 * 		Longitude of the center.
+	 * @param radius
+	 * 		The maximum distance to the center in meters.
+	 * @return A source that loads the {@link TrainStation}s of the result of passed query within
+	 * passed radius around the center page by page, ordered by their distance to the center.
+	 * Train stations without location are loaded last.
+	 */
+	@NonNull
+	public DataSource.Factory<Integer, TrainStation> getTrainStationsByDistance(
+			String fingerprint, double latitude, double longitude, int radius) {
+		double cos = Math.cos(Math.toRadians(latitude));
+		double radiusDegrees = radius / GeoUtils.METERS_PER_DEGREE;
+		return getTrainStationsByDistance(fingerprint, latitude, longitude, cos * cos,
+				radiusDegrees * radiusDegrees);
+	}
+
+	// squared distance in degrees of latitude, longitude is scaled by cos²(latitude)
+	@Query("SELECT train_stations.* FROM train_stations INNER JOIN query_result_stations ON " +
+			"train_stations.id = query_result_stations.station_id WHERE " +
+			"query_result_stations.fingerprint = :fingerprint AND (train_stations.latitude IS " +
+			"NULL OR (train_stations.latitude - :latitude) * (train_stations.latitude - " +
+			":latitude) + (train_stations.longitude - :longitude) * (train_stations.longitude - " +
+			":longitude) * :longitudeScale <= :maxSquaredDistance) ORDER BY " +
+			"train_stations.latitude IS NULL, (train_stations.latitude - :latitude) * " +
+			"(train_stations.latitude - :latitude) + (train_stations.longitude - :longitude) * " +
+			"(train_stations.longitude - :longitude) * :longitudeScale, train_stations.id")
+	abstract DataSource.Factory<Integer, TrainStation> getTrainStationsByDistance(
+			String fingerprint, double latitude, double longitude, double longitudeScale,
+			double maxSquaredDistance);
+
+	/**
+	 * @param fingerprint
+	 * 		The fingerprint of the query.
+	 * @return The number of {@link TrainStation}s of the stored result of passed query.
+	 */
+	@Query("SELECT COUNT(*) FROM query_result_stations WHERE fingerprint = :fingerprint")
+	public abstract int getQueryResultSize(String fingerprint);
+
+	/**
+	 * @param fingerprint
+	 * 		The fingerprint of the query.
+	 * @return The stored result of passed query or {@code null} if it is not stored.
+	 */
+	@Nullable
+	@Query("SELECT * FROM query_results WHERE fingerprint = :fingerprint")
+	public abstract QueryResult getQueryResult(String fingerprint);
+
+	/**
+	 * @param fingerprint
+	 * 		The fingerprint of the query.
+	 * @param lastAccessed
+	 * 		The time in milliseconds when the result was displayed.
+	 */
+	@Query("UPDATE query_results SET last_accessed = :lastAccessed WHERE fingerprint = " +
+			":fingerprint")
+	public abstract void updateLastAccessed(String fingerprint, long lastAccessed);
+
+	/**
+	 * @param minLatitude
+	 * 		Southern bound of the box.
+	 * @param minLongitude
+	 * 		Western bound of the box.
+	 * @param maxLatitude
+	 * 		Northern bound of the box.
+	 * @param maxLongitude
+	 * 		Eastern bound of the box.
+	 * @param limit
+	 * 		The maximum number of {@link TrainStation}s.
+	 * @return All stored {@link TrainStation}s within passed box, ordered by their distance to
+	 * the center of the box.
+	 */
+	@NonNull
+	public List<TrainStation> getTrainStationsWithinBounds(double minLatitude,
+			double minLongitude, double maxLatitude, double maxLongitude, int limit) {
+		return getTrainStations(TrainStationSpatialIndex.boundsQuery(minLatitude, minLongitude,
+				maxLatitude, maxLongitude, limit, isSpatialIndexAvailable()));
+	}
+
+	/**
+	 * @param latitude
+	 * 		Latitude of the center.
+	 * @param longitude
+	 * 		Longitude of the center.
+	 * @param radius
+	 * 		The radius in metres.
+	 * @param limit
+	 * 		The maximum number of {@link TrainStation}s.
+	 * @return All stored {@link TrainStation}s within passed radius, ordered by their distance
+	 * to the center.
+	 */
+	@NonNull
+	public List<TrainStation> getTrainStationsWithinRadius(double latitude, double longitude,
+			int radius, int limit) {
+		return getTrainStations(TrainStationSpatialIndex.radiusQuery(latitude, longitude,
+				radius, limit, isSpatialIndexAvailable()));
+	}
+
+	/**
+	 * @param query
+	 * 		A query that selects all columns of table 'train_stations'.
+	 * @return The {@link TrainStation}s of the query.
+	 */
+	@RawQuery
+	abstract List<TrainStation> getTrainStations(SupportSQLiteQuery query);
+
+	@Query("SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = '" +
+			TrainStationSpatialIndex.TABLE_NAME + "'")
+	abstract int getSpatialIndexCount();
+
+	private boolean isSpatialIndexAvailable() {
+		if (mSpatialIndexAvailable == null) {
+			mSpatialIndexAvailable = getSpatialIndexCount() > 0;
+		}
+		return mSpatialIndexAvailable;
+	}
+
+	@Insert(onConflict = OnConflictStrategy.REPLACE)
+	abstract void insertQueryResult(QueryResult queryResult);
+
+	@Query("SELECT COUNT(*) FROM query_results")
+	abstract int getQueryResultCount();
+
+	@Query("SELECT COUNT(*) FROM query_result_stations")
+	abstract int getQueryResultStationCount();
+
+	@Query("SELECT fingerprint FROM query_results WHERE fingerprint != :keptFingerprint ORDER " +
+			"BY last_accessed ASC LIMIT 1")
+	abstract String getLeastRecentlyAccessedFingerprint(String keptFingerprint);
+
+	@Query("DELETE FROM query_results WHERE fingerprint = :fingerprint")
+	abstract void deleteQueryResult(String fingerprint);
+
+	@Query("UPDATE query_results SET complete = 1 WHERE fingerprint = :fingerprint")
+	abstract void markComplete(String fingerprint);
+
+	@Query("SELECT station_id FROM query_result_stations WHERE fingerprint = :fingerprint")
+	abstract List<Integer> getLinkedStationIds(String fingerprint);
+
+	@Insert(onConflict = OnConflictStrategy.REPLACE)
+	abstract void insertQueryResultStations(List<QueryResultStation> queryResultStations);
+
+	@Query("DELETE FROM query_result_stations WHERE fingerprint = :fingerprint AND station_id " +
+			"IN (:stationIds)")
+	abstract void deleteQueryResultStations(String fingerprint, List<Integer> stationIds);
+
+	@Query("DELETE FROM query_result_stations WHERE fingerprint = :fingerprint")
+	abstract void deleteQueryResultStations(String fingerprint);
+
+	/**
+	 * Stores passed train stations as result of a query within a single transaction. Only new
+	 * or changed train stations and links will be written, so sources of
+	 * {@link #getTrainStationsByName(String)} will be invalidated at most once and not at all if
+	 * nothing changed. Least recently accessed results will be evicted afterwards if passed
+	 * limits are exceeded.
+	 *
+	 * @param queryResult
+	 * 		The result of the query.
+	 * @param trainStations
+	 * 		A list of all {@link TrainStation}s of the result.
+	 * @param maxQueryResults
+	 * 		The maximum number of results that should be kept.
+	 * @param maxLinkedStations
+	 * 		The maximum number of train stations over all results that should be kept.
+	 * @return The difference of the result, i.e. the removed, changed and newly linked train
+	 * stations. An empty difference means that the stored train stations of the result didn't
+	 * change.
+	 */
+	@Transaction
+	@NonNull
+	public TrainStationDiff replaceQueryResult(@NonNull QueryResult queryResult,
+			@NonNull List<TrainStation> trainStations, int maxQueryResults,
+			int maxLinkedStations) {
+		String fingerprint = queryResult.getFingerprint();
+		insertQueryResult(queryResult);
+
+		List<Integer> ids = new ArrayList<>();
+		for (TrainStation trainStation : trainStations) {
+			ids.add(trainStation.getId());
+		}
+		TrainStationDiff diff = writeTrainStations(ids, trainStations);
+
+		Set<Integer> linkedIds = new HashSet<>(getLinkedStationIds(fingerprint));
+		Set<Integer> newIds = new HashSet<>(ids);
+		List<Integer> unlinkedIds = new ArrayList<>();
+		for (Integer id : linkedIds) {
+			if (!newIds.contains(id)) {
+				unlinkedIds.add(id);
+			}
+		}
+		for (List<Integer> chunk : chunks(unlinkedIds)) {
+			deleteQueryResultStations(fingerprint, chunk);
+		}
+		List<TrainStation> linkedTrainStations = link(fingerprint, linkedIds, trainStations);
+
+		evict(fingerprint, maxQueryResults, maxLinkedStations);
+		deleteUnlinkedTrainStations();
+		return diff.withLinks(unlinkedIds, linkedTrainStations);
+	}
+
+	/**
+	 * Adds passed train stations to the stored result of a query within a single transaction,
+	 * e.g. a further page of the result. Linked train stations are kept and only new or changed
+	 * train stations and links will be written. Least recently accessed results will be evicted
+	 * afterwards if passed limits are exceeded.
+	 *
+	 * @param fingerprint
+	 * 		The fingerprint of the query.
+	 * @param trainStations
+	 * 		The {@link TrainStation}s that should be added to the result.
+	 * @param complete
+	 * 		True, if passed train stations are the last page of the result.
+	 * @param maxQueryResults
+	 * 		The maximum number of results that should be kept.
+	 * @param maxLinkedStations
+	 * 		The maximum number of train stations over all results that should be kept.
+	 * @return The difference of the result, i.e. the changed and newly linked train stations.
+	 * Nothing will be written if the result isn't stored (anymore).
+	 */
+	@Transaction
+	@NonNull
+	public TrainStationDiff appendToQueryResult(@NonNull String fingerprint,
+			@NonNull List<TrainStation> trainStations, boolean complete, int maxQueryResults,
+			int maxLinkedStations) {
+		if (getQueryResult(fingerprint) == null) {
+			return TrainStationDiff.calculate(Collections.emptyList(), Collections.emptyList());
+		}
+		if (complete) {
+			markComplete(fingerprint);
+		}
+		List<Integer> ids = new ArrayList<>();
+		for (TrainStation trainStation : trainStations) {
+			ids.add(trainStation.getId());
+		}
+		TrainStationDiff diff = writeTrainStations(ids, trainStations);
+
+		Set<Integer> linkedIds = new HashSet<>(getLinkedStationIds(fingerprint));
+		List<TrainStation> linkedTrainStations = link(fingerprint, linkedIds, trainStations);
+
+		evict(fingerprint, maxQueryResults, maxLinkedStations);
+		deleteUnlinkedTrainStations();
+		return diff.withLinks(Collections.emptyList(), linkedTrainStations);
+	}
+
+	/**
+	 * Links passed train stations to the result of a query, unless they are linked already.
+	 *
+	 * @return The newly linked train stations.
+	 */
+	@NonNull
+	private List<TrainStation> link(@NonNull String fingerprint, @NonNull Set<Integer> linkedIds,
+			@NonNull List<TrainStation> trainStations) {
+		List<QueryResultStation> links = new ArrayList<>();
+		List<TrainStation> linkedTrainStations = new ArrayList<>();
+		Set<Integer> newIds = new HashSet<>();
+		for (TrainStation trainStation : trainStations) {
+			if (!linkedIds.contains(trainStation.getId()) && newIds.add(trainStation.getId())) {
+				links.add(new QueryResultStation(fingerprint, trainStation.getId()));
+				linkedTrainStations.add(trainStation);
+			}
+		}
+		if (!links.isEmpty()) {
+			insertQueryResultStations(links);
+		}
+		return linkedTrainStations;
+	}
+
+	/**
+	 * Writes passed train stations with passed ids if they are new or changed.
+	 */
+	@NonNull
+	private TrainStationDiff writeTrainStations(@NonNull List<Integer> ids,
+			@NonNull List<TrainStation> trainStations) {
+		List<TrainStation> storedTrainStations = new ArrayList<>();
+		for (List<Integer> chunk : chunks(ids)) {
+			storedTrainStations.addAll(getTrainStationsByIds(chunk));
+		}
+		TrainStationDiff diff = TrainStationDiff.calculate(storedTrainStations, trainStations);
+		if (!diff.getChangedTrainStations().isEmpty()) {
+			insert(diff.getChangedTrainStations());
+		}
+		return diff;
+	}
+
+	private void evict(@NonNull String keptFingerprint, int maxQueryResults,
+			int maxLinkedStations) {
+		while (getQueryResultCount() > maxQueryResults
+				|| getQueryResultStationCount() > maxLinkedStations) {
+			String fingerprint = getLeastRecentlyAccessedFingerprint(keptFingerprint);
+			if (fingerprint == null) {
+				return;
+			}
+			deleteQueryResultStations(fingerprint);
+			deleteQueryResult(fingerprint);
+		}
+	}
+
+	@NonNull
+	private static List<List<Integer>> chunks(@NonNull List<Integer> ids) {
+		List<List<Integer>> chunks = new ArrayList<>();
+		for (int start = 0; start < ids.size(); start += MAX_IDS_PER_STATEMENT) {
+			chunks.add(ids.subList(start, Math.min(start + MAX_IDS_PER_STATEMENT, ids.size())));
+		}
+		return chunks;
+	}
 }
@@ -1,10 +1,13 @@
 package com.mytrainstation.db;
 
+import android.arch.persistence.db.SupportSQLiteDatabase;
 import android.arch.persistence.room.Database;
 import android.arch.persistence.room.Room;
 import android.arch.persistence.room.RoomDatabase;
+import android.arch.persistence.room.migration.Migration;
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
 
 import com.mytrainstation.model.TrainStation;
 
@@ -12,9 +15,94 @@ import com.mytrainstation.model.TrainStation;
  * Abstract database class that will used by room libary to persist any search results of
  * {@link TrainStation}s.
  */
-@Database(entities = {TrainStation.class}, version = 1, exportSchema = false)
+@Database(entities = {TrainStation.class, QueryResult.class, QueryResultStation.class,
+		Resource.class}, version = 5, exportSchema = false)
 public abstract class TrainStationDatabase extends RoomDatabase {
 
+	/**
+	 * Adds results per query. Train stations of version 1 only contain the last search result
+	 * that is not linked to any query, so they will be removed.
+	 */
+	@VisibleForTesting
+	static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+		@Override
+		public void migrate(@NonNull SupportSQLiteDatabase database) {
+			database.execSQL("CREATE TABLE IF NOT EXISTS `query_results` (`fingerprint` TEXT NOT " +
+					"NULL, `fetched_at` INTEGER NOT NULL, `last_accessed` INTEGER NOT NULL, " +
+					"PRIMARY KEY(`fingerprint`))");
+			database.execSQL("CREATE  INDEX `index_query_results_last_accessed` ON " +
+					"`query_results` (`last_accessed`)");
+			database.execSQL("CREATE TABLE IF NOT EXISTS `query_result_stations` (`fingerprint` " +
+					"TEXT NOT NULL, `station_id` INTEGER NOT NULL, PRIMARY KEY(`fingerprint`, " +
+					"`station_id`))");
+			database.execSQL("CREATE  INDEX `index_query_result_stations_station_id` ON " +
+					"`query_result_stations` (`station_id`)");
+			database.execSQL("DELETE FROM `train_stations`");
+		}
+	};
+
+	/**
+	 * Adds the location of train stations and its spatial index (see
+	 * {@link TrainStationSpatialIndex}). Locations of stored train stations are unknown until
+	 * they are requested again.
+	 */
+	@VisibleForTesting
+	static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+		@Override
+		public void migrate(@NonNull SupportSQLiteDatabase database) {
+			database.execSQL("ALTER TABLE `train_stations` ADD COLUMN `latitude` REAL");
+			database.execSQL("ALTER TABLE `train_stations` ADD COLUMN `longitude` REAL");
+			TrainStationSpatialIndex.create(database);
+		}
+	};
+
+	/**
+	 * Adds stored pictures (see {@link Resource}) and their links from train stations. A column
+	 * with foreign key could be added without recreating the table, which would drop the
+	 * triggers of the spatial index.
+	 */
+	@VisibleForTesting
+	static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+		@Override
+		public void migrate(@NonNull SupportSQLiteDatabase database) {
+			database.execSQL("CREATE TABLE IF NOT EXISTS `resource_table` (`hash` TEXT NOT NULL, " +
+					"`size` INTEGER NOT NULL, `width` INTEGER NOT NULL, `height` INTEGER NOT " +
+					"NULL, `last_accessed` INTEGER NOT NULL, PRIMARY KEY(`hash`))");
+			database.execSQL("CREATE  INDEX `index_resource_table_last_accessed` ON " +
+					"`resource_table` (`last_accessed`)");
+			database.execSQL("ALTER TABLE `train_stations` ADD COLUMN `picture_hash` TEXT " +
+					"REFERENCES `resource_table`(`hash`) ON UPDATE NO ACTION ON DELETE SET NULL");
+			database.execSQL("CREATE  INDEX `index_train_stations_picture_url` ON " +
+					"`train_stations` (`picture_url`)");
+			database.execSQL("CREATE  INDEX `index_train_stations_picture_hash` ON " +
+					"`train_stations` (`picture_hash`)");
+		}
+	};
+
+	/**
+	 * Stores whether the last page of a result was received. Stored results are requested page
+	 * by page again, until a page isn't full.
+	 */
+	@VisibleForTesting
+	static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+		@Override
+		public void migrate(@NonNull SupportSQLiteDatabase database) {
+			database.execSQL("ALTER TABLE `query_results` ADD COLUMN `complete` INTEGER NOT NULL " +
+					"DEFAULT 0");
+		}
+	};
+
+	/**
+	 * Creates the spatial index of a new database, which isn't created by migrations.
+	 */
+	@VisibleForTesting
+	static final Callback CREATE_SPATIAL_INDEX = new Callback() {
+		@Override
+		public void onCreate(@NonNull SupportSQLiteDatabase database) {
+			TrainStationSpatialIndex.create(database);
+		}
+	};
+
 	private static TrainStationDatabase INSTANCE;
 
 	/**
@@ -22,6 +110,11 @@ public abstract class TrainStationDatabase extends RoomDatabase {
 	 */
 	public abstract TrainStationDao getTrainStationDao();
 
+	/**
+	 * @return DAO object to store pictures of {@link TrainStation}s.
+	 */
+	public abstract ResourceDao getResourceDao();
+
 	/**
 	 * Get singleton instance of {@link TrainStationDatabase} that will be used to persist search
 	 * results of {@link TrainStation}s.
@@ -36,7 +129,11 @@ public abstract class TrainStationDatabase extends RoomDatabase {
 			synchronized (TrainStationDatabase.class) {
 				if (INSTANCE == null) {
 					INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-							TrainStationDatabase.class, "train_stations_database").build();
+							TrainStationDatabase.class, "train_stations_database")
+							.addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4,
+									MIGRATION_4_5)
+							.addCallback(CREATE_SPATIAL_INDEX)
+							.build();
 				}
 			}
 		}
@@ -0,0 +1,131 @@
+package com.mytrainstation.db;
+
+import android.support.annotation.NonNull;
+
+import com.mytrainstation.model.TrainStation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Difference between the stored {@link TrainStation}s and a new search result, matched by
+ * their primary EVA id (see {@link TrainStation#getId()}).
+ *
+ * @author JSCHENK
+ */
+public final class TrainStationDiff {
+
+	private final List<Integer> mRemovedIds;
+	private final List<TrainStation> mChangedTrainStations;
+
+	private TrainStationDiff(@NonNull List<Integer> removedIds,
+			@NonNull List<TrainStation> changedTrainStations) {
+		mRemovedIds = Collections.unmodifiableList(removedIds);
+		mChangedTrainStations = Collections.unmodifiableList(changedTrainStations);
+	}
+
+	/**
+	 * @param storedTrainStations
+	 * 		The {@link TrainStation}s that are currently stored within database.
+	 * @param newTrainStations
+	 * 		The {@link TrainStation}s that should be stored instead. If an id is contained more
+	 * 		than once, the last occurrence wins. New train stations will keep the stored picture
+	 * 		(see {@link TrainStation#getPictureHash()}) if their picture url didn't change.
+	 * @return The difference that transforms stored train stations into the new ones.
+	 */
+	@NonNull
+	public static TrainStationDiff calculate(@NonNull List<TrainStation> storedTrainStations,
+			@NonNull List<TrainStation> newTrainStations) {
+		Map<Integer, TrainStation> stored = new LinkedHashMap<>();
+		for (TrainStation trainStation : storedTrainStations) {
+			stored.put(trainStation.getId(), trainStation);
+		}
+		Map<Integer, TrainStation> updated = new LinkedHashMap<>();
+		for (TrainStation trainStation : newTrainStations) {
+			updated.put(trainStation.getId(), trainStation);
+		}
+
+		List<Integer> removedIds = new ArrayList<>();
+		for (Integer id : stored.keySet()) {
+			if (!updated.containsKey(id)) {
+				removedIds.add(id);
+			}
+		}
+		List<TrainStation> changedTrainStations = new ArrayList<>();
+		for (TrainStation trainStation : updated.values()) {
+			TrainStation storedTrainStation = stored.get(trainStation.getId());
+			// pictures are linked after a search result is stored, so it's unknown within results
+			if (storedTrainStation != null && trainStation.getPictureHash() == null && Objects
+					.equals(trainStation.getPictureUrl(), storedTrainStation.getPictureUrl())) {
+				trainStation.setPictureHash(storedTrainStation.getPictureHash());
+			}
+			if (!trainStation.equals(storedTrainStation)) {
+				changedTrainStations.add(trainStation);
+			}
+		}
+		return new TrainStationDiff(removedIds, changedTrainStations);
+	}
+
+	/**
+	 * @param unlinkedIds
+	 * 		The ids of train stations that were removed from a stored result.
+	 * @param linkedTrainStations
+	 * 		The train stations that were added to a stored result.
+	 * @return The difference of a stored result, that additionally contains passed changes of
+	 * its links, even if the linked train stations themselves didn't change.
+	 */
+	@NonNull
+	TrainStationDiff withLinks(@NonNull List<Integer> unlinkedIds,
+			@NonNull List<TrainStation> linkedTrainStations) {
+		if (unlinkedIds.isEmpty() && linkedTrainStations.isEmpty()) {
+			return this;
+		}
+		List<Integer> removedIds = new ArrayList<>(mRemovedIds);
+		removedIds.addAll(unlinkedIds);
+		Map<Integer, TrainStation> changed = new LinkedHashMap<>();
+		for (TrainStation trainStation : mChangedTrainStations) {
+			changed.put(trainStation.getId(), trainStation);
+		}
+		for (TrainStation trainStation : linkedTrainStations) {
+			if (!changed.containsKey(trainStation.getId())) {
+				changed.put(trainStation.getId(), trainStation);
+			}
+		}
+		return new TrainStationDiff(removedIds, new ArrayList<>(changed.values()));
+	}
+
+	/**
+	 * @return The ids of stored train stations that are not contained within new ones.
+	 */
+	@NonNull
+	public List<Integer> getRemovedIds() {
+		return mRemovedIds;
+	}
+
+	/**
+	 * @return The new train stations that are either not stored yet or differ from the stored
+	 * ones.
+	 */
+	@NonNull
+	public List<TrainStation> getChangedTrainStations() {
+		return mChangedTrainStations;
+	}
+
+	/**
+	 * @return True, if stored train stations already match the new ones, otherwise false.
+	 */
+	public boolean isEmpty() {
+		return mRemovedIds.isEmpty() && mChangedTrainStations.isEmpty();
+	}
+
+	/**
+	 * @return The number of rows that have to be written to apply this difference.
+	 */
+	public int getWriteCount() {
+		return mRemovedIds.size() + mChangedTrainStations.size();
+	}
+}
@@ -1,29 +1,97 @@
 package com.mytrainstation.db;
 
 import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.arch.lifecycle.Transformations;
+import android.arch.paging.DataSource;
+import android.arch.paging.LivePagedListBuilder;
+import android.arch.paging.PagedList;
 import android.support.annotation.NonNull;
-import android.text.TextUtils;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
 
+import com.mytrainstation.api.TrainStationQuery;
+import com.mytrainstation.logging.FastLogger;
+import com.mytrainstation.metrics.Counter;
+import com.mytrainstation.metrics.LatencyHistogram;
+import com.mytrainstation.metrics.MetricsRegistry;
 import com.mytrainstation.model.TrainStation;
-
-import org.apache.log4j.Logger;
+import com.mytrainstation.util.Clock;
 
 import java.util.List;
-import java.util.Locale;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class that handles the DAO local data source. This ensures that methods are triggered on the
  * correct executor.
  *
+ * Results are stored per query (see {@link TrainStationQuery#getFingerprint()}), so a previous
+ * search could be displayed again without any request. A stored result becomes stale after
+ * {@link #STALE_AFTER_MILLIS} and least recently displayed results will be evicted if more than
+ * {@link #MAX_QUERY_RESULTS} results or {@link #MAX_LINKED_STATIONS} train stations are stored.
+ *
+ * Names of all stored train stations are kept within a {@link StationNameIndex}, so search
+ * terms could be matched locally without any request.
+ *
+ * The displayed result is loaded page by page (see {@link #PAGE_SIZE}), so memory usage doesn't
+ * depend on the size of the result. Results near by a location are ordered by distance, results
+ * of a search term by name. The {@link OnEndOfResultListener} will be notified as soon as the
+ * last stored train station of a result is displayed, so further pages could be requested,
+ * unless the last page of the result was already stored (see {@link QueryResult#isComplete()}).
+ * A new paged list is only created if another result or order is displayed, while changes of
+ * the displayed result are emitted by room on invalidation of its source.
+ *
  * @author JSCHENK
  */
 public class TrainStationLocalCache {
 
-	private static final Logger LOG = Logger.getLogger(TrainStationLocalCache.class);
+	private static final FastLogger LOG = FastLogger.getLogger(TrainStationLocalCache.class);
+
+	static final long STALE_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(10);
+	static final int MAX_QUERY_RESULTS = 50;
+	static final int MAX_LINKED_STATIONS = 2000;
+	static final int MAX_LOCAL_MATCHES = 50;
+	static final int PAGE_SIZE = 20;
+	private static final PagedList.Config PAGED_LIST_CONFIG = new PagedList.Config.Builder()
+			.setPageSize(PAGE_SIZE)
+			.setPrefetchDistance(PAGE_SIZE)
+			.setEnablePlaceholders(false)
+			.build();
+	// time to write a result, without the time it waited for the executor
+	private static final LatencyHistogram INSERT_LATENCY = MetricsRegistry.getInstance()
+			.histogram("TrainStationLocalCache.insert");
+	private static final Counter WRITTEN_STATIONS = MetricsRegistry.getInstance().counter
+			("TrainStationLocalCache.writtenStations");
+
+	/**
+	 * Listener that will be notified if the last stored train station of a displayed result was
+	 * loaded, while its last page wasn't stored yet.
+	 */
+	public interface OnEndOfResultListener {
+
+		/**
+		 * Will be called on the executor of the cache.
+		 *
+		 * @param query
+		 * 		The query of the displayed result.
+		 * @param storedCount
+		 * 		The number of train stations of the stored result.
+		 */
+		@WorkerThread
+		void onEndOfResult(@NonNull TrainStationQuery query, int storedCount);
+	}
 
 	private final TrainStationDao mTrainStationDao;
 	private final Executor mExecutor;
+	private final Clock mClock;
+	private final MutableLiveData<DisplayedResult> mDisplayedResult = new MutableLiveData<>();
+	private final LiveData<PagedList<TrainStation>> mTrainStations;
+	private volatile StationNameIndex mNameIndex;
+	@Nullable
+	private volatile DisplayedResult mDisplayed;
+	@Nullable
+	private volatile OnEndOfResultListener mOnEndOfResultListener;
 
 	/**
 	 * @param trainStationDao
@@ -33,32 +101,293 @@ public class TrainStationLocalCache {
 	 */
 	public TrainStationLocalCache(@NonNull TrainStationDao trainStationDao,
 			@NonNull Executor executor) {
+		this(trainStationDao, executor, Clock.SYSTEM);
+	}
+
+	/**
+	 * @param trainStationDao
+	 * 		The DAO local data source.
+	 * @param executor
+	 * 		The executor to run methods on data source.
+	 * @param clock
+	 * 		The clock that determines the age of stored results.
+	 */
+	public TrainStationLocalCache(@NonNull TrainStationDao trainStationDao,
+			@NonNull Executor executor, @NonNull Clock clock) {
 		mTrainStationDao = trainStationDao;
 		mExecutor = executor;
+		mClock = clock;
+		mTrainStations = Transformations.switchMap(mDisplayedResult, result -> new
+				LivePagedListBuilder<>(result.mSource, PAGED_LIST_CONFIG)
+				.setBoundaryCallback(result)
+				.build());
 	}
 
 	/**
-	 * Insert passed train stations into database with help of {@link #mExecutor}.
+	 * @param listener
+	 * 		The listener to be notified if the end of a displayed result was loaded. Could be
+	 * 		{@code null} to remove current listener.
+	 */
+	public void setOnEndOfResultListener(@Nullable OnEndOfResultListener listener) {
+		mOnEndOfResultListener = listener;
+	}
+
+	/**
+	 * Store passed train stations as result of passed query with help of {@link #mExecutor} and
+	 * display them afterwards. Only the difference to the stored train stations will be written
+	 * within a single transaction (see
+	 * {@link TrainStationDao#replaceQueryResult(QueryResult, List, int, int)}), so a displayed
+	 * result won't be emitted again if nothing changed.
+	 *
+	 * @param query
+	 * 		The query whose result should be stored.
+	 * @param trainStations
+	 * 		List of {@link TrainStation} that should be stored within database.
+	 * @param complete
+	 * 		True, if passed train stations are the complete result, so no further page has to
+	 * 		be requested.
+	 */
+	public void insert(@NonNull TrainStationQuery query, List<TrainStation> trainStations,
+			boolean complete) {
+		mExecutor.execute(() -> {
+			replace(query, trainStations, complete);
+			displayStoredResult(query, query.getLatitude(), query.getLongitude());
+		});
+	}
+
+	/**
+	 * Store passed train stations as result of passed query with help of {@link #mExecutor}
+	 * without displaying them, e.g. a prefetched result the user is about to need (see
+	 * {@link #insert(TrainStationQuery, List, boolean)}).
 	 *
+	 * @param query
+	 * 		The query whose result should be stored.
 	 * @param trainStations
 	 * 		List of {@link TrainStation} that should be stored within database.
+	 * @param complete
+	 * 		True, if passed train stations are the complete result, so no further page has to
+	 * 		be requested.
+	 */
+	public void store(@NonNull TrainStationQuery query, @NonNull List<TrainStation>
+			trainStations, boolean complete) {
+		mExecutor.execute(() -> replace(query, trainStations, complete));
+	}
+
+	/**
+	 * Adds passed train stations to the stored result of passed query with help of
+	 * {@link #mExecutor}, e.g. a further page of the result (see
+	 * {@link TrainStationDao#appendToQueryResult(String, List, boolean, int, int)}). A displayed
+	 * result will be updated by its paged list.
+	 *
+	 * @param query
+	 * 		The query whose result should be extended.
+	 * @param trainStations
+	 * 		List of {@link TrainStation} that should be added to the result, might be empty if
+	 * 		the previous page was the last one.
+	 * @param complete
+	 * 		True, if passed train stations are the last page of the result.
 	 */
-	public void insert(List<TrainStation> trainStations) {
+	public void append(@NonNull TrainStationQuery query, @NonNull List<TrainStation>
+			trainStations, boolean complete) {
 		mExecutor.execute(() -> {
-			if (LOG.isDebugEnabled()) {
-				LOG.debug(String.format(Locale.getDefault(), "Insert %s into local database.",
-						TextUtils.join("|", trainStations)));
+			TrainStationDiff diff = mTrainStationDao.appendToQueryResult(query.getFingerprint(),
+					trainStations, complete, MAX_QUERY_RESULTS, MAX_LINKED_STATIONS);
+			LOG.atDebug().arg(trainStations.size()).arg(query).arg(diff.getChangedTrainStations()
+					.size()).log("Appended {} train stations to {}, wrote {}.");
+			if (!diff.isEmpty()) {
+				mNameIndex = StationNameIndex.build(mTrainStationDao.getAllTrainStations());
 			}
-			mTrainStationDao.deleteAll();
-			mTrainStationDao.insert(trainStations);
 		});
 	}
 
 	/**
-	 * @return Snapshot of train stations that were found within last search request.
+	 * Display the stored result of passed query with help of {@link #mExecutor}. An empty list
+	 * will be displayed if no result is stored.
+	 *
+	 * @param query
+	 * 		The query whose result should be displayed.
+	 */
+	public void display(@NonNull TrainStationQuery query) {
+		display(query, query.getLatitude(), query.getLongitude());
+	}
+
+	/**
+	 * Display the stored result of passed query with help of {@link #mExecutor}, ordered by the
+	 * distance to passed location instead of the location of the query, e.g. if the user moved
+	 * within the region the result is still valid for. Only the train stations within the search
+	 * radius around passed location are displayed.
+	 *
+	 * @param query
+	 * 		The query whose result should be displayed.
+	 * @param latitude
+	 * 		Latitude value of the location to order by.
+	 * @param longitude
+	 * 		Longitude value of the location to order by.
+	 */
+	public void display(@NonNull TrainStationQuery query, double latitude, double longitude) {
+		mExecutor.execute(() -> {
+			mTrainStationDao.updateLastAccessed(query.getFingerprint(), mClock
+					.currentTimeMillis());
+			displayStoredResult(query, latitude, longitude);
+		});
+	}
+
+	/**
+	 * Display passed train stations that were found locally, e.g. by
+	 * {@link #findTrainStations(String)}.
+	 *
+	 * @param trainStations
+	 * 		The train stations that should be displayed.
 	 */
-	public LiveData<List<TrainStation>> getTrainStations() {
-		return mTrainStationDao.getTrainStations();
+	public void display(@NonNull List<TrainStation> trainStations) {
+		DisplayedResult displayed = new DisplayedResult(null, 0, 0, ListDataSource.factory(
+				trainStations));
+		mDisplayed = displayed;
+		mDisplayedResult.postValue(displayed);
+	}
+
+	/**
+	 * Searches the names of all stored train stations for passed (partial) search term. The
+	 * index of names will be built on first search.
+	 *
+	 * @param searchTerm
+	 * 		The search term.
+	 * @return Up to {@link #MAX_LOCAL_MATCHES} stored train stations ordered by their rank (see
+	 * {@link StationNameIndex#search(String, int)}).
+	 */
+	@WorkerThread
+	@NonNull
+	public List<TrainStation> findTrainStations(@NonNull String searchTerm) {
+		StationNameIndex nameIndex = mNameIndex;
+		if (nameIndex == null) {
+			nameIndex = StationNameIndex.build(mTrainStationDao.getAllTrainStations());
+			mNameIndex = nameIndex;
+		}
+		return nameIndex.search(searchTerm, MAX_LOCAL_MATCHES);
+	}
+
+	/**
+	 * @param query
+	 * 		The query whose stored result is requested.
+	 * @return The stored result of passed query or {@code null} if none is stored.
+	 */
+	@WorkerThread
+	@Nullable
+	public QueryResult getQueryResult(@NonNull TrainStationQuery query) {
+		return mTrainStationDao.getQueryResult(query.getFingerprint());
+	}
+
+	/**
+	 * @param queryResult
+	 * 		A stored result.
+	 * @return True, if passed result is older than {@link #STALE_AFTER_MILLIS} and should be
+	 * refreshed, otherwise false.
+	 */
+	public boolean isStale(@NonNull QueryResult queryResult) {
+		return mClock.currentTimeMillis() - queryResult.getFetchedAt() > STALE_AFTER_MILLIS;
+	}
+
+	/**
+	 * @return Paged list of train stations that were found for the displayed query.
+	 */
+	public LiveData<PagedList<TrainStation>> getTrainStations() {
+		return mTrainStations;
+	}
+
+	private void replace(@NonNull TrainStationQuery query, @NonNull List<TrainStation>
+			trainStations, boolean complete) {
+		long start = INSERT_LATENCY.start();
+		LOG.atDebug().arg(trainStations.size()).arg(query).log("Insert {} train stations of {} " +
+				"into local database.");
+		TrainStationDiff diff = mTrainStationDao.replaceQueryResult(new QueryResult(query
+				.getFingerprint(), mClock.currentTimeMillis(), complete), trainStations,
+				MAX_QUERY_RESULTS, MAX_LINKED_STATIONS);
+		LOG.atDebug().arg(diff.getChangedTrainStations().size()).log("Wrote {} train " +
+				"stations.");
+		WRITTEN_STATIONS.add(diff.getChangedTrainStations().size());
+		if (!diff.isEmpty()) {
+			// evicted results might have removed further train stations
+			mNameIndex = StationNameIndex.build(mTrainStationDao.getAllTrainStations());
+		}
+		INSERT_LATENCY.stop(start);
+	}
+
+	private void displayStoredResult(@NonNull TrainStationQuery query, double latitude,
+			double longitude) {
+		DisplayedResult displayed = mDisplayed;
+		if (displayed != null && displayed.isShowing(query, latitude, longitude)) {
+			// room invalidates the displayed source if the stored result changes
+			return;
+		}
+		DataSource.Factory<Integer, TrainStation> source;
+		if (query.getType() == TrainStationQuery.Type.NEARBY) {
+			// the user might have moved away from the location of the query, train stations
+			// beyond the search radius aren't near by anymore
+			source = mTrainStationDao.getTrainStationsByDistance(query.getFingerprint(),
+					latitude, longitude, query.getRadius());
+		} else {
+			source = mTrainStationDao.getTrainStationsByName(query.getFingerprint());
+		}
+		displayed = new DisplayedResult(query, latitude, longitude, source);
+		mDisplayed = displayed;
+		mDisplayedResult.postValue(displayed);
+	}
+
+	/**
+	 * Source of the displayed train stations, that notifies {@link #mOnEndOfResultListener} if
+	 * its last train station was loaded.
+	 */
+	private class DisplayedResult extends PagedList.BoundaryCallback<TrainStation> {
+
+		@Nullable
+		private final TrainStationQuery mQuery;
+		private final double mLatitude;
+		private final double mLongitude;
+		@NonNull
+		private final DataSource.Factory<Integer, TrainStation> mSource;
+
+		/**
+		 * @param query
+		 * 		The query of the result or {@code null} if the train stations were found locally.
+		 * @param latitude
+		 * 		Latitude value of the location the train stations are ordered by.
+		 * @param longitude
+		 * 		Longitude value of the location the train stations are ordered by.
+		 * @param source
+		 * 		The source of the train stations.
+		 */
+		private DisplayedResult(@Nullable TrainStationQuery query, double latitude,
+				double longitude, @NonNull DataSource.Factory<Integer, TrainStation> source) {
+			mQuery = query;
+			mLatitude = latitude;
+			mLongitude = longitude;
+			mSource = source;
+		}
+
+		/**
+		 * @return True, if this is the stored result of passed query in the same order.
+		 */
+		private boolean isShowing(@NonNull TrainStationQuery query, double latitude,
+				double longitude) {
+			return query.equals(mQuery) && Double.compare(latitude, mLatitude) == 0 && Double
+					.compare(longitude, mLongitude) == 0;
+		}
+
+		@Override
+		public void onItemAtEndLoaded(@NonNull TrainStation itemAtEnd) {
+			OnEndOfResultListener listener = mOnEndOfResultListener;
+			if (mQuery != null && listener != null) {
+				mExecutor.execute(() -> {
+					// an evicted result will be requested again with its first page
+					QueryResult queryResult = mTrainStationDao.getQueryResult(mQuery
+							.getFingerprint());
+					if (queryResult != null && !queryResult.isComplete()) {
+						listener.onEndOfResult(mQuery, mTrainStationDao.getQueryResultSize(mQuery
+								.getFingerprint()));
+					}
+				});
+			}
+		}
 	}
 
 }
@@ -0,0 +1,184 @@
+package com.mytrainstation.db;
+
+import android.arch.persistence.db.SimpleSQLiteQuery;
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteQuery;
+import android.database.SQLException;
+import android.support.annotation.NonNull;
+
+import com.mytrainstation.logging.FastLogger;
+import com.mytrainstation.util.GeoUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spatial index of table 'train_stations' as SQLite R*Tree virtual table, that is kept in sync
+ * by triggers. Room neither knows virtual tables nor triggers, so they are created by
+ * {@link #create(SupportSQLiteDatabase)} and queried via {@link TrainStationDao} raw queries.
+ *
+ * Not every SQLite build of android devices contains the rtree module. Queries fall back to a
+ * scan of table 'train_stations' if the index couldn't be created.
+ *
+ * Distances are approximated by an equirectangular projection around the queried location,
+ * which is accurate to well below one percent for the radii used by near by searches.
+ *
+ * @author JSCHENK
+ */
+final class TrainStationSpatialIndex {
+
+	private static final FastLogger LOG = FastLogger.getLogger(TrainStationSpatialIndex
+			.class);
+
+	/**
+	 * Name of the R*Tree virtual table.
+	 */
+	static final String TABLE_NAME = "train_stations_rtree";
+
+	private static final String SQL_CREATE_TABLE = "CREATE VIRTUAL TABLE IF NOT EXISTS `" +
+			TABLE_NAME + "` USING rtree(`id`, `min_latitude`, `max_latitude`, `min_longitude`, " +
+			"`max_longitude`)";
+	// Room replaces rows with INSERT OR REPLACE, which won't fire delete triggers, so the insert
+	// trigger has to remove a previous entry itself
+	private static final String SQL_CREATE_INSERT_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " +
+			"`train_stations_rtree_insert` AFTER INSERT ON `train_stations` BEGIN " +
+			"DELETE FROM `" + TABLE_NAME + "` WHERE `id` = new.`id`; " +
+			"INSERT INTO `" + TABLE_NAME + "` SELECT new.`id`, new.`latitude`, new.`latitude`, " +
+			"new.`longitude`, new.`longitude` WHERE new.`latitude` IS NOT NULL AND " +
+			"new.`longitude` IS NOT NULL; END";
+	private static final String SQL_CREATE_UPDATE_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " +
+			"`train_stations_rtree_update` AFTER UPDATE ON `train_stations` BEGIN " +
+			"DELETE FROM `" + TABLE_NAME + "` WHERE `id` = old.`id`; " +
+			"INSERT INTO `" + TABLE_NAME + "` SELECT new.`id`, new.`latitude`, new.`latitude`, " +
+			"new.`longitude`, new.`longitude` WHERE new.`latitude` IS NOT NULL AND " +
+			"new.`longitude` IS NOT NULL; END";
+	private static final String SQL_CREATE_DELETE_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " +
+			"`train_stations_rtree_delete` AFTER DELETE ON `train_stations` BEGIN " +
+			"DELETE FROM `" + TABLE_NAME + "` WHERE `id` = old.`id`; END";
+	private static final String SQL_FILL_TABLE = "INSERT INTO `" + TABLE_NAME + "` SELECT `id`, " +
+			"`latitude`, `latitude`, `longitude`, `longitude` FROM `train_stations` WHERE " +
+			"`latitude` IS NOT NULL AND `longitude` IS NOT NULL";
+
+	// squared distance in degrees of latitude, longitude is scaled by cos²(latitude)
+	private static final String DISTANCE = "((latitude - ?) * (latitude - ?) + " +
+			"(longitude - ?) * (longitude - ?) * ?)";
+	private static final String WITHIN_COLUMNS = "latitude BETWEEN ? AND ? AND longitude BETWEEN " +
+			"? AND ?";
+	// the R*Tree stores 32 bit floats rounded outwards, so the exact bounds are checked as well
+	private static final String WITHIN_INDEX = "id IN (SELECT id FROM " + TABLE_NAME + " WHERE " +
+			"max_latitude >= ? AND min_latitude <= ? AND max_longitude >= ? AND min_longitude <= ?)" +
+			" AND " + WITHIN_COLUMNS;
+
+	private TrainStationSpatialIndex() {
+	}
+
+	/**
+	 * Creates the R*Tree table and its triggers if they don't exist yet and adds all train
+	 * stations with a location.
+	 *
+	 * @param database
+	 * 		The database that contains table 'train_stations'.
+	 * @return True, if the index is available, otherwise false.
+	 */
+	static boolean create(@NonNull SupportSQLiteDatabase database) {
+		try {
+			database.execSQL(SQL_CREATE_TABLE);
+		} catch (SQLException e) {
+			LOG.warn("SQLite rtree module isn't available, spatial queries will scan table " +
+					"'train_stations'.", e);
+			return false;
+		}
+		database.execSQL(SQL_CREATE_INSERT_TRIGGER);
+		database.execSQL(SQL_CREATE_UPDATE_TRIGGER);
+		database.execSQL(SQL_CREATE_DELETE_TRIGGER);
+		database.execSQL("DELETE FROM `" + TABLE_NAME + "`");
+		database.execSQL(SQL_FILL_TABLE);
+		return true;
+	}
+
+	/**
+	 * @param minLatitude
+	 * 		Southern bound of the box.
+	 * @param minLongitude
+	 * 		Western bound of the box.
+	 * @param maxLatitude
+	 * 		Northern bound of the box.
+	 * @param maxLongitude
+	 * 		Eastern bound of the box.
+	 * @param limit
+	 * 		The maximum number of train stations.
+	 * @param useIndex
+	 * 		True, if the R*Tree should be used, false to scan table 'train_stations'.
+	 * @return Query for all train stations within the box ordered by their distance to the center
+	 * of the box.
+	 */
+	@NonNull
+	static SupportSQLiteQuery boundsQuery(double minLatitude, double minLongitude,
+			double maxLatitude, double maxLongitude, int limit, boolean useIndex) {
+		double latitude = (minLatitude + maxLatitude) / 2;
+		double longitude = (minLongitude + maxLongitude) / 2;
+		String sql = "SELECT * FROM train_stations WHERE " + within(useIndex) + " ORDER BY " +
+				DISTANCE + " LIMIT ?";
+		List<Object> args = new ArrayList<>();
+		addBounds(args, minLatitude, minLongitude, maxLatitude, maxLongitude, useIndex);
+		addDistance(args, latitude, longitude);
+		args.add(limit);
+		return new SimpleSQLiteQuery(sql, args.toArray());
+	}
+
+	/**
+	 * @param latitude
+	 * 		Latitude of the center.
+	 * @param longitude
+	 * 		Longitude of the center.
+	 * @param radius
+	 * 		The radius in metres.
+	 * @param limit
+	 * 		The maximum number of train stations.
+	 * @param useIndex
+	 * 		True, if the R*Tree should be used, false to scan table 'train_stations'.
+	 * @return Query for all train stations within radius ordered by their distance to the center.
+	 */
+	@NonNull
+	static SupportSQLiteQuery radiusQuery(double latitude, double longitude, int radius,
+			int limit, boolean useIndex) {
+		double deltaLatitude = radius / GeoUtils.METERS_PER_DEGREE;
+		double deltaLongitude = radius / GeoUtils.metersPerDegreeLongitude(latitude);
+		String sql = "SELECT * FROM train_stations WHERE " + within(useIndex) + " AND " +
+				DISTANCE + " <= ? ORDER BY " + DISTANCE + " LIMIT ?";
+		List<Object> args = new ArrayList<>();
+		addBounds(args, latitude - deltaLatitude, longitude - deltaLongitude,
+				latitude + deltaLatitude, longitude + deltaLongitude, useIndex);
+		addDistance(args, latitude, longitude);
+		args.add(deltaLatitude * deltaLatitude);
+		addDistance(args, latitude, longitude);
+		args.add(limit);
+		return new SimpleSQLiteQuery(sql, args.toArray());
+	}
+
+	@NonNull
+	private static String within(boolean useIndex) {
+		return useIndex ? WITHIN_INDEX : WITHIN_COLUMNS;
+	}
+
+	private static void addBounds(@NonNull List<Object> args, double minLatitude,
+			double minLongitude, double maxLatitude, double maxLongitude, boolean useIndex) {
+		int times = useIndex ? 2 : 1;
+		for (int i = 0; i < times; i++) {
+			args.add(minLatitude);
+			args.add(maxLatitude);
+			args.add(minLongitude);
+			args.add(maxLongitude);
+		}
+	}
+
+	private static void addDistance(@NonNull List<Object> args, double latitude,
+			double longitude) {
+		double cos = Math.cos(Math.toRadians(latitude));
+		args.add(latitude);
+		args.add(latitude);
+		args.add(longitude);
+		args.add(longitude);
+		args.add(cos * cos);
+	}
+}
@@ -0,0 +1,293 @@
+package com.mytrainstation.logging;
+
+import android.support.annotation.NonNull;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.WriterAppender;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appender that hands over log events to a dedicated writer thread, so the calling thread, e.g.
+ * the main thread, doesn't wait for file I/O of the wrapped appender. Events are passed within
+ * a bounded lock free ring buffer (multiple producers, single consumer). The writer thread
+ * appends them in batches and only flushes a {@link WriterAppender} after the last event of a
+ * batch.
+ *
+ * If the ring buffer is full, events are either dropped or the calling thread waits for free
+ * space (see {@link OverflowPolicy}). Events of level {@link Level#ERROR} and above are never
+ * dropped. The number of dropped events is written as warning as soon as there is space again.
+ *
+ * Pending events could be written with {@link #flush(long)}, e.g. before the process dies of an
+ * uncaught exception.
+ *
+ * @author JSCHENK
+ */
+public class AsyncRingBufferAppender extends AppenderSkeleton {
+
+	/**
+	 * Decides what happens to an event if the ring buffer is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The event is dropped unless it is an error.
+		 */
+		DROP,
+		/**
+		 * The calling thread waits until the writer thread made space for the event.
+		 */
+		BLOCK
+	}
+
+	private static final int MAX_BATCH_SIZE = 128;
+	// a producer might miss the writer thread going to sleep, so it wakes up on its own
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+	private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+	private final Appender mAppender;
+	private final OverflowPolicy mOverflowPolicy;
+	private final int mCapacity;
+	private final int mMask;
+	private final AtomicReferenceArray<LoggingEvent> mEvents;
+	// sequence of each slot: equals the next tail if the slot is free, tail + 1 if it is filled
+	private final AtomicLongArray mSequences;
+	private final AtomicLong mTail = new AtomicLong();
+	private final AtomicLong mDroppedCount = new AtomicLong();
+	private final Thread mWriterThread;
+	// only written by the writer thread
+	private volatile long mHead;
+	private volatile long mWrittenCount;
+	private long mReportedDropCount;
+	private volatile boolean mWriterWaiting;
+	private volatile boolean mClosing;
+
+	/**
+	 * Creates the appender and starts its writer thread.
+	 *
+	 * @param appender
+	 * 		The appender that will write events on the writer thread. Will be closed with this
+	 * 		appender.
+	 * @param capacity
+	 * 		The maximum number of pending events. Has to be a power of two.
+	 * @param overflowPolicy
+	 * 		Decides what happens to an event if the maximum number of pending events is reached.
+	 */
+	public AsyncRingBufferAppender(@NonNull Appender appender, int capacity,
+			@NonNull OverflowPolicy overflowPolicy) {
+		if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity has to be a power of two: " + capacity);
+		}
+		mAppender = appender;
+		mOverflowPolicy = overflowPolicy;
+		mCapacity = capacity;
+		mMask = capacity - 1;
+		mEvents = new AtomicReferenceArray<>(capacity);
+		mSequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			mSequences.set(i, i);
+		}
+		setName("Async" + appender.getName());
+		mWriterThread = new Thread(this::writeEvents, AsyncRingBufferAppender.class
+				.getSimpleName());
+		mWriterThread.setDaemon(true);
+		mWriterThread.start();
+	}
+
+	/**
+	 * Like {@link AppenderSkeleton#doAppend(LoggingEvent)}, but without its lock, so
+	 * concurrent callers don't wait for each other.
+	 */
+	@Override
+	public void doAppend(LoggingEvent event) {
+		if (closed || !isAsSevereAsThreshold(event.getLevel())) {
+			return;
+		}
+		for (Filter filter = getFirstFilter(); filter != null; filter = filter.getNext()) {
+			int decision = filter.decide(event);
+			if (decision == Filter.DENY) {
+				return;
+			} else if (decision == Filter.ACCEPT) {
+				break;
+			}
+		}
+		append(event);
+	}
+
+	@Override
+	protected void append(LoggingEvent event) {
+		// values that depend on the calling thread or might change until the event is written
+		event.getThreadName();
+		event.getNDC();
+		event.getMDCCopy();
+		event.getRenderedMessage();
+		event.getThrowableStrRep();
+		if (offer(event)) {
+			return;
+		}
+		if (mOverflowPolicy == OverflowPolicy.DROP && !event.getLevel().isGreaterOrEqual(Level
+				.ERROR)) {
+			mDroppedCount.incrementAndGet();
+			return;
+		}
+		while (!offer(event) && !mClosing) {
+			LockSupport.unpark(mWriterThread);
+			LockSupport.parkNanos(this, FULL_PARK_NANOS);
+		}
+	}
+
+	/**
+	 * Waits until all events that were appended before are written by the wrapped appender.
+	 *
+	 * @param timeoutMillis
+	 * 		The maximum time to wait in milliseconds.
+	 * @return True, if all events were written in time, otherwise false.
+	 */
+	public boolean flush(long timeoutMillis) {
+		long target = mTail.get();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (mWrittenCount < target) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0 || !mWriterThread.isAlive()) {
+				return false;
+			}
+			LockSupport.unpark(mWriterThread);
+			LockSupport.parkNanos(this, Math.min(remaining, FULL_PARK_NANOS));
+		}
+		return true;
+	}
+
+	/**
+	 * @return The total number of events that were dropped since the ring buffer was full.
+	 */
+	public long getDroppedCount() {
+		return mDroppedCount.get();
+	}
+
+	/**
+	 * @return The wrapped appender that writes events on the writer thread.
+	 */
+	@NonNull
+	public Appender getAppender() {
+		return mAppender;
+	}
+
+	/**
+	 * Writes all pending events, stops the writer thread and closes the wrapped appender.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		mClosing = true;
+		LockSupport.unpark(mWriterThread);
+		try {
+			mWriterThread.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		mAppender.close();
+	}
+
+	@Override
+	public boolean requiresLayout() {
+		return false;
+	}
+
+	private boolean offer(@NonNull LoggingEvent event) {
+		while (true) {
+			long tail = mTail.get();
+			int index = (int) tail & mMask;
+			long sequence = mSequences.get(index);
+			if (sequence == tail) {
+				if (mTail.compareAndSet(tail, tail + 1)) {
+					mEvents.lazySet(index, event);
+					mSequences.lazySet(index, tail + 1);
+					if (mWriterWaiting) {
+						LockSupport.unpark(mWriterThread);
+					}
+					return true;
+				}
+			} else if (sequence < tail) {
+				// slot wasn't written by the writer thread yet
+				return false;
+			}
+			// otherwise another producer claimed the slot in the meantime
+		}
+	}
+
+	private LoggingEvent poll() {
+		long head = mHead;
+		int index = (int) head & mMask;
+		if (mSequences.get(index) != head + 1) {
+			return null;
+		}
+		LoggingEvent event = mEvents.get(index);
+		mEvents.lazySet(index, null);
+		mSequences.lazySet(index, head + mCapacity);
+		mHead = head + 1;
+		return event;
+	}
+
+	private void writeEvents() {
+		List<LoggingEvent> batch = new ArrayList<>(MAX_BATCH_SIZE);
+		while (true) {
+			LoggingEvent event;
+			while (batch.size() < MAX_BATCH_SIZE && (event = poll()) != null) {
+				batch.add(event);
+			}
+			if (!batch.isEmpty()) {
+				writeBatch(batch);
+				batch.clear();
+				continue;
+			}
+			if (mClosing) {
+				return;
+			}
+			mWriterWaiting = true;
+			if (mSequences.get((int) mHead & mMask) != mHead + 1) {
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+			}
+			mWriterWaiting = false;
+		}
+	}
+
+	private void writeBatch(@NonNull List<LoggingEvent> batch) {
+		long dropped = mDroppedCount.get() - mReportedDropCount;
+		if (dropped > 0) {
+			mReportedDropCount += dropped;
+			mAppender.doAppend(new LoggingEvent(AsyncRingBufferAppender.class.getName(), Logger
+					.getLogger(AsyncRingBufferAppender.class), Level.WARN, String.format(Locale
+					.ROOT, "Dropped %s log events, since the ring buffer was full", dropped),
+					null));
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			if (mAppender instanceof WriterAppender) {
+				((WriterAppender) mAppender).setImmediateFlush(i == batch.size() - 1);
+			}
+			try {
+				mAppender.doAppend(batch.get(i));
+			} catch (RuntimeException e) {
+				// the writer thread must survive a single broken event
+				getErrorHandler().error("Couldn't append log event", e, 0, batch.get(i));
+			}
+		}
+		mWrittenCount += batch.size();
+	}
+}
@@ -0,0 +1,213 @@
+package com.mytrainstation.logging;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Facade of a log4j {@link Logger} for hot paths. Messages are formatted only if their level is
+ * enabled, so a disabled log statement allocates nothing, not even for primitive arguments:
+ * <pre>
+ * LOG.atInfo().arg(latitude).arg(longitude).log("New location latitude={}, longitude={}");
+ * </pre>
+ * Each {@code {}} of the pattern is replaced by the next argument. Arguments and the message are
+ * collected within a {@link LogEntry} that is reused by the calling thread.
+ *
+ * Events of level {@link Level#DEBUG} and {@link Level#INFO} could be rate limited (see
+ * {@link #limitRate(int)}) and sampled (see {@link #sample(int)}). The number of suppressed
+ * events is appended to the next message of the logger. Warnings and errors are never
+ * suppressed.
+ *
+ * @author JSCHENK
+ */
+public final class FastLogger {
+
+	private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final Logger mLogger;
+	private volatile int mMaxEventsPerSecond;
+	private volatile int mSampleRate = 1;
+	private final AtomicLong mWindow = new AtomicLong(Long.MIN_VALUE);
+	private final AtomicInteger mWindowCount = new AtomicInteger();
+	private final AtomicLong mSampleCount = new AtomicLong();
+	private final AtomicLong mSuppressedCount = new AtomicLong();
+
+	private FastLogger(@NonNull Logger logger) {
+		mLogger = logger;
+	}
+
+	/**
+	 * @param type
+	 * 		The class whose events should be logged.
+	 * @return A new facade of the log4j logger of passed class.
+	 */
+	@NonNull
+	public static FastLogger getLogger(@NonNull Class<?> type) {
+		return new FastLogger(Logger.getLogger(type));
+	}
+
+	/**
+	 * Limits the number of logged debug and info events, e.g. of location updates. Should be
+	 * called once after the logger was created.
+	 *
+	 * @param maxEventsPerSecond
+	 * 		The maximum number of debug and info events per second or 0 if unlimited.
+	 * @return This logger.
+	 */
+	@NonNull
+	public FastLogger limitRate(int maxEventsPerSecond) {
+		mMaxEventsPerSecond = Math.max(0, maxEventsPerSecond);
+		return this;
+	}
+
+	/**
+	 * Only logs one out of passed number of debug and info events. Should be called once after
+	 * the logger was created.
+	 *
+	 * @param oneOutOf
+	 * 		The number of events of which one is logged, 1 to log all events.
+	 * @return This logger.
+	 */
+	@NonNull
+	public FastLogger sample(int oneOutOf) {
+		mSampleRate = Math.max(1, oneOutOf);
+		return this;
+	}
+
+	/**
+	 * @return True, if debug events are logged, otherwise false.
+	 */
+	public boolean isDebugEnabled() {
+		return mLogger.isDebugEnabled();
+	}
+
+	/**
+	 * @return True, if info events are logged, otherwise false.
+	 */
+	public boolean isInfoEnabled() {
+		return mLogger.isInfoEnabled();
+	}
+
+	/**
+	 * @return The entry of a debug event or a disabled entry if debug events aren't logged or
+	 * the event was suppressed.
+	 */
+	@NonNull
+	public LogEntry atDebug() {
+		return mLogger.isDebugEnabled() && admit() ? LogEntry.obtain(this, Level.DEBUG) :
+				LogEntry.DISABLED;
+	}
+
+	/**
+	 * @return The entry of an info event or a disabled entry if info events aren't logged or
+	 * the event was suppressed.
+	 */
+	@NonNull
+	public LogEntry atInfo() {
+		return mLogger.isInfoEnabled() && admit() ? LogEntry.obtain(this, Level.INFO) :
+				LogEntry.DISABLED;
+	}
+
+	/**
+	 * @return The entry of a warning or a disabled entry if warnings aren't logged.
+	 */
+	@NonNull
+	public LogEntry atWarn() {
+		return mLogger.isEnabledFor(Level.WARN) ? LogEntry.obtain(this, Level.WARN) :
+				LogEntry.DISABLED;
+	}
+
+	/**
+	 * @return The entry of an error or a disabled entry if errors aren't logged.
+	 */
+	@NonNull
+	public LogEntry atError() {
+		return mLogger.isEnabledFor(Level.ERROR) ? LogEntry.obtain(this, Level.ERROR) :
+				LogEntry.DISABLED;
+	}
+
+	/**
+	 * @param message
+	 * 		The message to log as debug event.
+	 */
+	public void debug(@NonNull String message) {
+		atDebug().log(message);
+	}
+
+	/**
+	 * @param message
+	 * 		The message to log as info event.
+	 */
+	public void info(@NonNull String message) {
+		atInfo().log(message);
+	}
+
+	/**
+	 * @param message
+	 * 		The message to log as warning.
+	 */
+	public void warn(@NonNull String message) {
+		atWarn().log(message);
+	}
+
+	/**
+	 * @param message
+	 * 		The message to log as warning.
+	 * @param cause
+	 * 		The cause of the warning or {@code null}.
+	 */
+	public void warn(@NonNull String message, @Nullable Throwable cause) {
+		atWarn().cause(cause).log(message);
+	}
+
+	/**
+	 * @param message
+	 * 		The message to log as error.
+	 * @param cause
+	 * 		The cause of the error or {@code null}.
+	 */
+	public void error(@NonNull String message, @Nullable Throwable cause) {
+		atError().cause(cause).log(message);
+	}
+
+	/**
+	 * @return The number of events that were suppressed since the last call.
+	 */
+	long takeSuppressedCount() {
+		return mSuppressedCount.get() > 0 ? mSuppressedCount.getAndSet(0) : 0;
+	}
+
+	void write(@NonNull Level level, @NonNull String message, @Nullable Throwable cause) {
+		mLogger.log(LogEntry.class.getName(), level, message, cause);
+	}
+
+	/**
+	 * @return True, if a debug or info event passes sampling and rate limit, otherwise false.
+	 */
+	private boolean admit() {
+		int sampleRate = mSampleRate;
+		if (sampleRate > 1 && mSampleCount.getAndIncrement() % sampleRate != 0) {
+			mSuppressedCount.incrementAndGet();
+			return false;
+		}
+		int maxEventsPerSecond = mMaxEventsPerSecond;
+		if (maxEventsPerSecond > 0) {
+			long window = System.nanoTime() / WINDOW_NANOS;
+			long currentWindow = mWindow.get();
+			if (window != currentWindow && mWindow.compareAndSet(currentWindow, window)) {
+				mWindowCount.set(0);
+			}
+			if (mWindowCount.incrementAndGet() > maxEventsPerSecond) {
+				mSuppressedCount.incrementAndGet();
+				return false;
+			}
+		}
+		return true;
+	}
+}
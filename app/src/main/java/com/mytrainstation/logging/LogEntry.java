@@ -0,0 +1,204 @@
+package com.mytrainstation.logging;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.apache.log4j.Level;
+
+/**
+ * Arguments of a single log event of a {@link FastLogger} that are formatted only on
+ * {@link #log(String)}. Entries are reused by their thread, so they must not be kept after
+ * {@link #log(String)} was called. Primitive arguments are stored without boxing.
+ *
+ * An entry whose event isn't logged, e.g. since its level is disabled, ignores all arguments.
+ *
+ * @author JSCHENK
+ */
+public final class LogEntry {
+
+	/**
+	 * Entry of all events that aren't logged.
+	 */
+	static final LogEntry DISABLED = new LogEntry();
+
+	private static final int MAX_ARGUMENTS = 8;
+	// larger builders aren't kept, e.g. after a large collection was logged
+	private static final int MAX_RETAINED_CAPACITY = 4096;
+	private static final String PLACEHOLDER = "{}";
+	private static final byte TYPE_LONG = 0;
+	private static final byte TYPE_DOUBLE = 1;
+	private static final byte TYPE_BOOLEAN = 2;
+	private static final byte TYPE_OBJECT = 3;
+
+	private static final ThreadLocal<LogEntry> ENTRIES = new ThreadLocal<LogEntry>() {
+		@Override
+		protected LogEntry initialValue() {
+			return new LogEntry();
+		}
+	};
+
+	private final byte[] mTypes = new byte[MAX_ARGUMENTS];
+	private final long[] mLongs = new long[MAX_ARGUMENTS];
+	private final double[] mDoubles = new double[MAX_ARGUMENTS];
+	private final Object[] mObjects = new Object[MAX_ARGUMENTS];
+	private StringBuilder mBuilder = new StringBuilder();
+	private FastLogger mLogger;
+	private Level mLevel;
+	private Throwable mCause;
+	private int mCount;
+	private boolean mInUse;
+
+	private LogEntry() {
+	}
+
+	/**
+	 * @return The entry of the calling thread or a new one if an argument logs itself while its
+	 * entry is formatted.
+	 */
+	@NonNull
+	static LogEntry obtain(@NonNull FastLogger logger, @NonNull Level level) {
+		LogEntry entry = ENTRIES.get();
+		if (entry.mInUse) {
+			entry = new LogEntry();
+		}
+		entry.mInUse = true;
+		entry.mLogger = logger;
+		entry.mLevel = level;
+		return entry;
+	}
+
+	/**
+	 * @param value
+	 * 		The next argument, also used for {@code int} values.
+	 * @return This entry.
+	 */
+	@NonNull
+	public LogEntry arg(long value) {
+		if (this != DISABLED && mCount < MAX_ARGUMENTS) {
+			mTypes[mCount] = TYPE_LONG;
+			mLongs[mCount++] = value;
+		}
+		return this;
+	}
+
+	/**
+	 * @param value
+	 * 		The next argument, also used for {@code float} values.
+	 * @return This entry.
+	 */
+	@NonNull
+	public LogEntry arg(double value) {
+		if (this != DISABLED && mCount < MAX_ARGUMENTS) {
+			mTypes[mCount] = TYPE_DOUBLE;
+			mDoubles[mCount++] = value;
+		}
+		return this;
+	}
+
+	/**
+	 * @param value
+	 * 		The next argument.
+	 * @return This entry.
+	 */
+	@NonNull
+	public LogEntry arg(boolean value) {
+		if (this != DISABLED && mCount < MAX_ARGUMENTS) {
+			mTypes[mCount] = TYPE_BOOLEAN;
+			mLongs[mCount++] = value ? 1 : 0;
+		}
+		return this;
+	}
+
+	/**
+	 * @param value
+	 * 		The next argument. Its {@link Object#toString()} will only be called if the event is
+	 * 		logged.
+	 * @return This entry.
+	 */
+	@NonNull
+	public LogEntry arg(@Nullable Object value) {
+		if (this != DISABLED && mCount < MAX_ARGUMENTS) {
+			mTypes[mCount] = TYPE_OBJECT;
+			mObjects[mCount++] = value;
+		}
+		return this;
+	}
+
+	/**
+	 * @param cause
+	 * 		The throwable that caused the event or {@code null}.
+	 * @return This entry.
+	 */
+	@NonNull
+	public LogEntry cause(@Nullable Throwable cause) {
+		if (this != DISABLED) {
+			mCause = cause;
+		}
+		return this;
+	}
+
+	/**
+	 * Formats the message and logs the event. The entry must not be used afterwards.
+	 *
+	 * @param pattern
+	 * 		The message whose placeholders {@code {}} are replaced by the arguments in order of
+	 * 		their addition. Placeholders without argument are kept.
+	 */
+	public void log(@NonNull String pattern) {
+		if (this == DISABLED) {
+			return;
+		}
+		try {
+			StringBuilder builder = mBuilder;
+			builder.setLength(0);
+			int start = 0;
+			for (int i = 0; i < mCount; i++) {
+				int placeholder = pattern.indexOf(PLACEHOLDER, start);
+				if (placeholder < 0) {
+					break;
+				}
+				builder.append(pattern, start, placeholder);
+				appendArgument(builder, i);
+				start = placeholder + PLACEHOLDER.length();
+			}
+			builder.append(pattern, start, pattern.length());
+			long suppressed = mLogger.takeSuppressedCount();
+			if (suppressed > 0) {
+				builder.append(" (suppressed ").append(suppressed).append(" similar events)");
+			}
+			mLogger.write(mLevel, builder.toString(), mCause);
+		} finally {
+			release();
+		}
+	}
+
+	private void appendArgument(@NonNull StringBuilder builder, int index) {
+		switch (mTypes[index]) {
+			case TYPE_LONG:
+				builder.append(mLongs[index]);
+				break;
+			case TYPE_DOUBLE:
+				builder.append(mDoubles[index]);
+				break;
+			case TYPE_BOOLEAN:
+				builder.append(mLongs[index] != 0);
+				break;
+			default:
+				builder.append(mObjects[index]);
+		}
+	}
+
+	private void release() {
+		for (int i = 0; i < mCount; i++) {
+			mObjects[i] = null;
+		}
+		if (mBuilder.capacity() > MAX_RETAINED_CAPACITY) {
+			mBuilder = new StringBuilder();
+		}
+		mCount = 0;
+		mCause = null;
+		mLogger = null;
+		mLevel = null;
+		mInUse = false;
+	}
+}
@@ -0,0 +1,61 @@
+package com.mytrainstation.metrics;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic counter of events, e.g. cache hits or received bytes.
+ *
+ * @author JSCHENK
+ */
+public class Counter {
+
+	private final String mName;
+	private final MetricsRegistry mRegistry;
+	private final AtomicLong mValue = new AtomicLong();
+
+	Counter(@NonNull String name, @NonNull MetricsRegistry registry) {
+		mName = name;
+		mRegistry = registry;
+	}
+
+	/**
+	 * Adds one to the counter.
+	 */
+	public void increment() {
+		add(1);
+	}
+
+	/**
+	 * @param delta
+	 * 		The value to add to the counter.
+	 */
+	public void add(long delta) {
+		if (mRegistry.isEnabled()) {
+			mValue.addAndGet(delta);
+		}
+	}
+
+	/**
+	 * @return The name of the counter.
+	 */
+	@NonNull
+	public String getName() {
+		return mName;
+	}
+
+	/**
+	 * @return The current value of the counter.
+	 */
+	public long get() {
+		return mValue.get();
+	}
+
+	/**
+	 * Sets the counter back to 0.
+	 */
+	public void reset() {
+		mValue.set(0);
+	}
+}
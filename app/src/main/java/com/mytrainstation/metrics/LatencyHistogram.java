@@ -0,0 +1,203 @@
+package com.mytrainstation.metrics;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of latencies in nanoseconds, similar to an HDR histogram: values are
+ * counted within buckets of powers of two that are linearly divided into 32 sub buckets, so
+ * each recorded value is kept with a relative error of at most about 3% over the whole range of
+ * a long. Recording only increments a few atomic counters and doesn't allocate.
+ *
+ * Usually used like this, so recording is skipped while metrics are disabled (see
+ * {@link MetricsRegistry#setEnabled(boolean)}):
+ * <pre>
+ * long start = histogram.start();
+ * ...
+ * histogram.stop(start);
+ * </pre>
+ *
+ * @author JSCHENK
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+	// returned by start() while disabled, System.nanoTime() might return 0 though
+	private static final long DISABLED = Long.MIN_VALUE;
+
+	private final String mName;
+	private final MetricsRegistry mRegistry;
+	private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong mCount = new AtomicLong();
+	private final AtomicLong mSum = new AtomicLong();
+	private final AtomicLong mMax = new AtomicLong();
+
+	LatencyHistogram(@NonNull String name, @NonNull MetricsRegistry registry) {
+		mName = name;
+		mRegistry = registry;
+	}
+
+	/**
+	 * @return The start time of a measurement that has to be passed to {@link #stop(long)}.
+	 */
+	public long start() {
+		return mRegistry.isEnabled() ? System.nanoTime() : DISABLED;
+	}
+
+	/**
+	 * Records the time since passed start time.
+	 *
+	 * @param start
+	 * 		The value returned by {@link #start()}.
+	 */
+	public void stop(long start) {
+		if (start != DISABLED) {
+			record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @param nanos
+	 * 		The latency to record. Negative values are recorded as 0.
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		mCounts.incrementAndGet(indexOf(value));
+		mCount.incrementAndGet();
+		mSum.addAndGet(value);
+		long max = mMax.get();
+		while (value > max && !mMax.compareAndSet(max, value)) {
+			max = mMax.get();
+		}
+	}
+
+	/**
+	 * @return The name of the histogram.
+	 */
+	@NonNull
+	public String getName() {
+		return mName;
+	}
+
+	/**
+	 * @return A consistent enough copy of the recorded values. Values that are recorded while
+	 * the copy is taken might be missing.
+	 */
+	@NonNull
+	public Snapshot snapshot() {
+		long[] counts = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = mCounts.get(i);
+			count += counts[i];
+		}
+		return new Snapshot(mName, counts, count, mSum.get(), mMax.get());
+	}
+
+	/**
+	 * Removes all recorded values.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			mCounts.set(i, 0);
+		}
+		mCount.set(0);
+		mSum.set(0);
+		mMax.set(0);
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+	}
+
+	/**
+	 * @return The largest value that is counted within bucket of passed index.
+	 */
+	static long highestValueOf(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/**
+	 * Recorded values of a {@link LatencyHistogram} at a point in time.
+	 */
+	public static final class Snapshot {
+
+		private final String mName;
+		private final long[] mCounts;
+		private final long mCount;
+		private final long mSum;
+		private final long mMax;
+
+		private Snapshot(@NonNull String name, @NonNull long[] counts, long count, long sum,
+				long max) {
+			mName = name;
+			mCounts = counts;
+			mCount = count;
+			mSum = sum;
+			mMax = max;
+		}
+
+		/**
+		 * @return The name of the histogram.
+		 */
+		@NonNull
+		public String getName() {
+			return mName;
+		}
+
+		/**
+		 * @return The number of recorded values.
+		 */
+		public long getCount() {
+			return mCount;
+		}
+
+		/**
+		 * @return The mean of all recorded values in nanoseconds or 0 if none was recorded.
+		 */
+		public long getMeanNanos() {
+			return mCount > 0 ? mSum / mCount : 0;
+		}
+
+		/**
+		 * @return The largest recorded value in nanoseconds.
+		 */
+		public long getMaxNanos() {
+			return mMax;
+		}
+
+		/**
+		 * @param percentile
+		 * 		The percentile between 0 and 100, e.g. 99 for the 99th percentile.
+		 * @return The value in nanoseconds that passed percentage of recorded values is smaller
+		 * than or equal to, or 0 if none was recorded.
+		 */
+		public long getPercentileNanos(double percentile) {
+			if (mCount == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * mCount));
+			long seen = 0;
+			for (int i = 0; i < mCounts.length; i++) {
+				seen += mCounts[i];
+				if (seen >= rank) {
+					return Math.min(highestValueOf(i), mMax);
+				}
+			}
+			return mMax;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package com.mytrainstation.metrics;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Registry of all {@link LatencyHistogram}s and {@link Counter}s of the app. Instrumented classes
+ * retrieve their metrics once, e.g. as static constants, so recording doesn't need any lookup:
+ * <pre>
+ * private static final LatencyHistogram LATENCY = MetricsRegistry.getInstance()
+ *         .histogram("TrainStationService.executeQuery");
+ * </pre>
+ *
+ * All metrics could be dumped as json (see {@link #writeJson(Writer)}) and are displayed by
+ * {@link com.mytrainstation.ui.diagnostics.DiagnosticsActivity}.
+ *
+ * @author JSCHENK
+ */
+public class MetricsRegistry {
+
+	private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+	private static final double[] PERCENTILES = {50, 90, 99};
+
+	// guarded by this, sorted by name to dump them in a stable order
+	private final Map<String, LatencyHistogram> mHistograms = new TreeMap<>();
+	private final Map<String, Counter> mCounters = new TreeMap<>();
+	private volatile boolean mEnabled = true;
+
+	/**
+	 * Creates a registry that is independent of the one of the app, e.g. for tests.
+	 */
+	public MetricsRegistry() {
+	}
+
+	/**
+	 * @return The registry that is shared by the whole app.
+	 */
+	@NonNull
+	public static MetricsRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param name
+	 * 		The name of the histogram, e.g. the instrumented method.
+	 * @return The histogram of passed name. Will be created if not registered yet.
+	 */
+	@NonNull
+	public synchronized LatencyHistogram histogram(@NonNull String name) {
+		LatencyHistogram histogram = mHistograms.get(name);
+		if (histogram == null) {
+			histogram = new LatencyHistogram(name, this);
+			mHistograms.put(name, histogram);
+		}
+		return histogram;
+	}
+
+	/**
+	 * @param name
+	 * 		The name of the counter.
+	 * @return The counter of passed name. Will be created if not registered yet.
+	 */
+	@NonNull
+	public synchronized Counter counter(@NonNull String name) {
+		Counter counter = mCounters.get(name);
+		if (counter == null) {
+			counter = new Counter(name, this);
+			mCounters.put(name, counter);
+		}
+		return counter;
+	}
+
+	/**
+	 * @param enabled
+	 * 		False, if metrics shouldn't record anything anymore, otherwise true. Enabled by
+	 * 		default.
+	 */
+	public void setEnabled(boolean enabled) {
+		mEnabled = enabled;
+	}
+
+	/**
+	 * @return True, if metrics are recorded, otherwise false.
+	 */
+	public boolean isEnabled() {
+		return mEnabled;
+	}
+
+	/**
+	 * @return Snapshots of all registered histograms, ordered by their name.
+	 */
+	@NonNull
+	public synchronized List<LatencyHistogram.Snapshot> getHistogramSnapshots() {
+		List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>();
+		for (LatencyHistogram histogram : mHistograms.values()) {
+			snapshots.add(histogram.snapshot());
+		}
+		return snapshots;
+	}
+
+	/**
+	 * @return All registered counters, ordered by their name.
+	 */
+	@NonNull
+	public synchronized List<Counter> getCounters() {
+		return new ArrayList<>(mCounters.values());
+	}
+
+	/**
+	 * Sets all registered metrics back to 0.
+	 */
+	public synchronized void reset() {
+		for (LatencyHistogram histogram : mHistograms.values()) {
+			histogram.reset();
+		}
+		for (Counter counter : mCounters.values()) {
+			counter.reset();
+		}
+	}
+
+	/**
+	 * Dumps all registered metrics like this:
+	 * <pre>
+	 * {"histograms":{"name":{"count":1,"mean":2,"p50":2,"p90":2,"p99":2,"max":2}},
+	 *  "counters":{"name":3}}
+	 * </pre>
+	 * Latencies are written in nanoseconds.
+	 *
+	 * @param writer
+	 * 		The writer to dump metrics to. Won't be closed.
+	 * @throws IOException
+	 * 		If passed writer failed.
+	 */
+	public void writeJson(@NonNull Writer writer) throws IOException {
+		JsonWriter json = new JsonWriter(writer);
+		json.beginObject();
+		json.name("histograms").beginObject();
+		for (LatencyHistogram.Snapshot snapshot : getHistogramSnapshots()) {
+			json.name(snapshot.getName()).beginObject();
+			json.name("count").value(snapshot.getCount());
+			json.name("mean").value(snapshot.getMeanNanos());
+			for (double percentile : PERCENTILES) {
+				json.name("p" + (int) percentile).value(snapshot.getPercentileNanos(percentile));
+			}
+			json.name("max").value(snapshot.getMaxNanos());
+			json.endObject();
+		}
+		json.endObject();
+		json.name("counters").beginObject();
+		for (Counter counter : getCounters()) {
+			json.name(counter.getName()).value(counter.get());
+		}
+		json.endObject();
+		json.endObject();
+		json.flush();
+	}
+
+	/**
+	 * @return All registered metrics as json (see {@link #writeJson(Writer)}).
+	 */
+	@NonNull
+	public String toJson() {
+		StringWriter writer = new StringWriter();
+		try {
+			writeJson(writer);
+		} catch (IOException e) {
+			// StringWriter won't throw any IOException
+			throw new IllegalStateException(e);
+		}
+		return writer.toString();
+	}
+}
@@ -2,8 +2,13 @@ package com.mytrainstation.model;
 
 import android.arch.persistence.room.ColumnInfo;
 import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.ForeignKey;
+import android.arch.persistence.room.Index;
 import android.arch.persistence.room.PrimaryKey;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mytrainstation.db.Resource;
 
 import java.util.Locale;
 
@@ -12,7 +17,10 @@ import java.util.Locale;
  *
  * @author JSCHENK
  */
-@Entity(tableName = "train_stations")
+@Entity(tableName = "train_stations",
+		foreignKeys = {@ForeignKey(entity = Resource.class, parentColumns = "hash",
+				childColumns = "picture_hash", onDelete = ForeignKey.SET_NULL)},
+		indices = {@Index("picture_url"), @Index("picture_hash")})
 public class TrainStation {
 
 	@PrimaryKey
@@ -28,6 +36,12 @@ public class TrainStation {
 	private boolean mHasSteplessAccess;
 	@ColumnInfo(name = "picture_url")
 	private String mPictureUrl;
+	@ColumnInfo(name = "latitude")
+	private Double mLatitude;
+	@ColumnInfo(name = "longitude")
+	private Double mLongitude;
+	@ColumnInfo(name = "picture_hash")
+	private String mPictureHash;
 
 	/**
 	 * Default constructor that will be used by room library.
@@ -44,6 +58,8 @@ public class TrainStation {
 		mHasParking = builder.mHasParking;
 		mHasSteplessAccess = builder.mHasSteplessAccess;
 		mPictureUrl = builder.mPictureUrl;
+		mLatitude = builder.mLatitude;
+		mLongitude = builder.mLongitude;
 	}
 
 	/**
@@ -160,6 +176,113 @@ public class TrainStation {
 		this.mPictureUrl = pictureUrl;
 	}
 
+	/**
+	 * Gets the hash of the stored picture (see {@link Resource}).
+	 *
+	 * @return The hash of the stored picture or {@code null} if the picture isn't stored yet.
+	 */
+	@Nullable
+	public String getPictureHash() {
+		return mPictureHash;
+	}
+
+	/**
+	 * Sets the hash of the stored picture.
+	 *
+	 * @param pictureHash
+	 * 		The hash of the stored picture (see {@link Resource}).
+	 */
+	public void setPictureHash(@Nullable String pictureHash) {
+		mPictureHash = pictureHash;
+	}
+
+	/**
+	 * Gets the latitude of the {@link TrainStation}.
+	 *
+	 * @return The latitude of the {@link TrainStation} or {@code null} if its location is unknown.
+	 */
+	@Nullable
+	public Double getLatitude() {
+		return mLatitude;
+	}
+
+	/**
+	 * Sets the latitude of the {@link TrainStation}.
+	 *
+	 * @param latitude
+	 * 		The latitude of the {@link TrainStation}.
+	 */
+	public void setLatitude(@Nullable Double latitude) {
+		mLatitude = latitude;
+	}
+
+	/**
+	 * Gets the longitude of the {@link TrainStation}.
+	 *
+	 * @return The longitude of the {@link TrainStation} or {@code null} if its location is
+	 * unknown.
+	 */
+	@Nullable
+	public Double getLongitude() {
+		return mLongitude;
+	}
+
+	/**
+	 * Sets the longitude of the {@link TrainStation}.
+	 *
+	 * @param longitude
+	 * 		The longitude of the {@link TrainStation}.
+	 */
+	public void setLongitude(@Nullable Double longitude) {
+		mLongitude = longitude;
+	}
+
+	/**
+	 * Gets whether the location of {@link TrainStation} is known or not.
+	 *
+	 * @return True, if latitude and longitude are known, otherwise false.
+	 */
+	public boolean hasLocation() {
+		return mLatitude != null && mLongitude != null;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		TrainStation that = (TrainStation) o;
+		return mId == that.mId
+				&& mHasWifi == that.mHasWifi
+				&& mHasParking == that.mHasParking
+				&& mHasSteplessAccess == that.mHasSteplessAccess
+				&& (mName != null ? mName.equals(that.mName) : that.mName == null)
+				&& (mPictureUrl != null ? mPictureUrl.equals(that.mPictureUrl) :
+				that.mPictureUrl == null)
+				&& (mLatitude != null ? mLatitude.equals(that.mLatitude) : that.mLatitude == null)
+				&& (mLongitude != null ? mLongitude.equals(that.mLongitude) :
+				that.mLongitude == null)
+				&& (mPictureHash != null ? mPictureHash.equals(that.mPictureHash) :
+				that.mPictureHash == null);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = mId;
+		result = 31 * result + (mName != null ? mName.hashCode() : 0);
+		result = 31 * result + (mHasWifi ? 1 : 0);
+		result = 31 * result + (mHasParking ? 1 : 0);
+		result = 31 * result + (mHasSteplessAccess ? 1 : 0);
+		result = 31 * result + (mPictureUrl != null ? mPictureUrl.hashCode() : 0);
+		result = 31 * result + (mLatitude != null ? mLatitude.hashCode() : 0);
+		result = 31 * result + (mLongitude != null ? mLongitude.hashCode() : 0);
+		result = 31 * result + (mPictureHash != null ? mPictureHash.hashCode() : 0);
+		return result;
+	}
+
 	@Override
 	public String toString() {
 		return String.format(Locale.getDefault(), "Trainstation [id=%s, name=%s, wifi=%s, " +
@@ -178,6 +301,8 @@ public class TrainStation {
 		private boolean mHasParking;
 		private boolean mHasSteplessAccess;
 		private String mPictureUrl;
+		private Double mLatitude;
+		private Double mLongitude;
 
 		/**
 		 * @param id
@@ -230,6 +355,19 @@ public class TrainStation {
 			return this;
 		}
 
+		/**
+		 * @param latitude
+		 * 		The latitude of the train station.
+		 * @param longitude
+		 * 		The longitude of the train station.
+		 * @return This instance of {@link Builder}.
+		 */
+		public Builder location(double latitude, double longitude) {
+			mLatitude = latitude;
+			mLongitude = longitude;
+			return this;
+		}
+
 		/**
 		 * @return A new instance of {@link TrainStation} with help of {@link Builder} instance.
 		 */
@@ -2,6 +2,7 @@ package com.mytrainstation.ui;
 
 import android.Manifest;
 import android.arch.lifecycle.ViewModelProviders;
+import android.arch.paging.PagedList;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -11,11 +12,13 @@ import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.SearchView;
 import android.widget.SeekBar;
@@ -23,18 +26,13 @@ import android.widget.TextView;
 
 import com.mytrainstation.Injection;
 import com.mytrainstation.R;
+import com.mytrainstation.logging.FastLogger;
 import com.mytrainstation.model.TrainStation;
 import com.mytrainstation.permissions.PermissionRequester;
 import com.mytrainstation.permissions.PermissionUtils;
 import com.mytrainstation.ui.adapter.TrainStationsAdapter;
 import com.mytrainstation.ui.settings.SettingsActivity;
 
-import org.apache.log4j.Logger;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
-
 /**
  * Main activity to show available train stations near by current location and within given
  * search radius.
@@ -44,11 +42,11 @@ import java.util.Locale;
 public class TrainStationsActivity extends AppCompatActivity implements SeekBar
 		.OnSeekBarChangeListener, PermissionRequester {
 
-	private static final Logger LOG = Logger.getLogger(TrainStationsActivity.class);
+	private static final FastLogger LOG = FastLogger.getLogger(TrainStationsActivity.class);
 
 	private TrainStationsViewModel mViewModel;
 
-	private ListView mLvTrainStations;
+	private RecyclerView mRvTrainStations;
 	private TextView mTvSearchRadius;
 	private TextView mTvEmptyList;
 	private TextView mTvLocation;
@@ -69,15 +67,19 @@ public class TrainStationsActivity extends AppCompatActivity implements SeekBar
 			actionBar.setIcon(R.mipmap.ic_launcher);
 		}
 
-		mLvTrainStations = findViewById(R.id.lv_train_stations);
-		mLvTrainStations.addHeaderView(getLayoutInflater().inflate(R.layout
-				.train_station_listview_header, mLvTrainStations, false));
-		mSbSearchRadius = mLvTrainStations.findViewById(R.id.sb_radius);
+		mRvTrainStations = findViewById(R.id.rv_train_stations);
+		mRvTrainStations.setLayoutManager(new LinearLayoutManager(this));
+		mRvTrainStations.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration
+				.VERTICAL));
+		mTrainStationAdapter = new TrainStationsAdapter(Injection.provideImageLoader
+				(getApplication()));
+		mRvTrainStations.setAdapter(mTrainStationAdapter);
+		mSbSearchRadius = findViewById(R.id.sb_radius);
 		mSbSearchRadius.setOnSeekBarChangeListener(this);
 		mSbSearchRadius.setEnabled(false);
-		mTvSearchRadius = mLvTrainStations.findViewById(R.id.tv_search_radius);
+		mTvSearchRadius = findViewById(R.id.tv_search_radius);
 		mTvEmptyList = findViewById(R.id.tv_train_station_empty_list);
-		mTvLocation = mLvTrainStations.findViewById(R.id.tv_location);
+		mTvLocation = findViewById(R.id.tv_location);
 		mPbLoadingContent = findViewById(R.id.pb_loading_content);
 
 		// init view model
@@ -110,7 +112,7 @@ public class TrainStationsActivity extends AppCompatActivity implements SeekBar
 		mViewModel.isRequestInProgress().observe(this, requestInProgress -> {
 			if (requestInProgress != null) {
 				mPbLoadingContent.setVisibility(requestInProgress ? View.VISIBLE : View.GONE);
-				mLvTrainStations.setVisibility(requestInProgress ? View.GONE : View.VISIBLE);
+				mRvTrainStations.setVisibility(requestInProgress ? View.GONE : View.VISIBLE);
 				mTvEmptyList.setVisibility(View.GONE);
 			}
 		});
@@ -121,19 +123,12 @@ public class TrainStationsActivity extends AppCompatActivity implements SeekBar
 				.ACCESS_FINE_LOCATION, PermissionUtils.REQUEST_CODE_ACCESS_FINE_LOCATION);
 	}
 
-	private void submitTrainStations(@Nullable List<TrainStation> trainStations) {
-		// if list is null we initialize an empty list while adapter could handle it instead of
-		// null
-		if (trainStations == null) {
-			trainStations = new ArrayList<>();
-		}
-		if (mTrainStationAdapter == null) {
-			mTrainStationAdapter = new TrainStationsAdapter(this, trainStations);
-			mLvTrainStations.setAdapter(mTrainStationAdapter);
-		} else {
-			mTrainStationAdapter.submitList(trainStations);
-		}
-		mTvEmptyList.setVisibility(trainStations.size() == 0 ? View.VISIBLE : View.GONE);
+	private void submitTrainStations(@Nullable PagedList<TrainStation> trainStations) {
+		// differences to the displayed list are calculated on a background thread, further
+		// pages are loaded while scrolling
+		mTrainStationAdapter.submitList(trainStations);
+		mTvEmptyList.setVisibility(trainStations == null || trainStations.isEmpty() ? View
+				.VISIBLE : View.GONE);
 	}
 
 	@Override
@@ -154,6 +149,7 @@ public class TrainStationsActivity extends AppCompatActivity implements SeekBar
 
 			@Override
 			public boolean onQueryTextChange(String newText) {
+				mViewModel.filterTrainStationsBySearchTerm(newText);
 				return true;
 			}
 		});
@@ -224,18 +220,15 @@ public class TrainStationsActivity extends AppCompatActivity implements SeekBar
 
 	@Override
 	public void performPositiveUserDecision(int requestCode) {
-		if (LOG.isInfoEnabled()) {
-			LOG.info(String.format(Locale.getDefault(), "Permission %s granted.", Manifest
-					.permission.ACCESS_FINE_LOCATION));
-		}
+		LOG.atInfo().arg(Manifest.permission.ACCESS_FINE_LOCATION).log("Permission {} granted.");
 		// by default we will use gps positioning, so we have to request location updates
 		mViewModel.startListeningForLocationUpdates();
 	}
 
 	@Override
 	public void performNegativeUserDecision(int requestCode) {
-		LOG.warn(String.format(Locale.getDefault(), "Permission %s not granted.", Manifest
-				.permission.ACCESS_FINE_LOCATION));
+		LOG.atWarn().arg(Manifest.permission.ACCESS_FINE_LOCATION).log("Permission {} not " +
+				"granted.");
 		// TODO: show snackbar to delegate user to app settings
 	}
 
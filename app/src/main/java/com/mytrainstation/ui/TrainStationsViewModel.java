@@ -5,6 +5,7 @@ import android.app.Application;
 import android.arch.lifecycle.AndroidViewModel;
 import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.MutableLiveData;
+import android.arch.paging.PagedList;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
@@ -15,17 +16,17 @@ import android.support.annotation.UiThread;
 import android.support.annotation.VisibleForTesting;
 
 import com.mytrainstation.api.TrainStationService;
+import com.mytrainstation.api.location.LocationEstimator;
 import com.mytrainstation.api.location.LocationProvider;
 import com.mytrainstation.api.location.LocationUtil;
+import com.mytrainstation.data.CoverageRegion;
+import com.mytrainstation.data.PriorityTaskScheduler;
 import com.mytrainstation.data.TrainStationRepository;
+import com.mytrainstation.logging.FastLogger;
+import com.mytrainstation.metrics.LatencyHistogram;
+import com.mytrainstation.metrics.MetricsRegistry;
 import com.mytrainstation.model.TrainStation;
-
-import org.apache.log4j.Logger;
-
-import java.util.List;
-import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import com.mytrainstation.util.GeoUtils;
 
 /**
  * View model to separate business logic from ui. Will provide all information that might be
@@ -35,7 +36,17 @@ import java.util.concurrent.Executors;
  */
 public class TrainStationsViewModel extends AndroidViewModel implements LocationListener {
 
-	private static final Logger LOG = Logger.getLogger(TrainStationsViewModel.class);
+	// location updates and searches might arrive in bursts
+	private static final FastLogger LOG = FastLogger.getLogger(TrainStationsViewModel.class)
+			.limitRate(5);
+	// time until a search by location was handed over to the repository, including its wait
+	// within the input queue
+	private static final LatencyHistogram LOCATION_SEARCH_LATENCY = MetricsRegistry
+			.getInstance().histogram("TrainStationsViewModel.searchTrainStationsByLocation");
+	// share of the search radius the estimated location has to move until a new search by
+	// location is started, most stations near by are still the same below
+	private static final double SEARCH_DISTANCE_RATIO = 0.1d;
+	private static final double MIN_SEARCH_DISTANCE_METERS = 25;
 
 	private final TrainStationRepository mTrainStationRepository;
 	private LocationProvider mLocationProvider;
@@ -44,7 +55,11 @@ public class TrainStationsViewModel extends AndroidViewModel implements Location
 	private MutableLiveData<Boolean> mGpsPositioningAvailable;
 	private MutableLiveData<String> mSearchTerm;
 	private Location mCurrentLocation;
-	private ExecutorService mExecutorService;
+	private final LocationEstimator mLocationEstimator;
+	// estimated location of the last search by location
+	private double mSearchLatitude = Double.NaN;
+	private double mSearchLongitude = Double.NaN;
+	private final PriorityTaskScheduler.TaskQueue mInputQueue;
 
 	/**
 	 * @param application
@@ -55,15 +70,24 @@ public class TrainStationsViewModel extends AndroidViewModel implements Location
 	 * 		Handles requests to {@link LocationManager} and delegate location updates to registered
 	 * 		{@link LocationListener}s if permission of
 	 * 		{@link Manifest.permission#ACCESS_FINE_LOCATION} is granted.
+	 * @param locationEstimator
+	 * 		Smooths provided locations before train stations near by are searched.
+	 * @param taskScheduler
+	 * 		The shared scheduler to hand over searches to the repository with.
 	 */
 	TrainStationsViewModel(
 			@NonNull Application application,
 			@NonNull TrainStationRepository repository,
-			@NonNull LocationProvider locationProvider) {
+			@NonNull LocationProvider locationProvider,
+			@NonNull LocationEstimator locationEstimator,
+			@NonNull PriorityTaskScheduler taskScheduler) {
 		super(application);
-		mExecutorService = Executors.newSingleThreadExecutor();
+		// searches are only submitted here, so they reach the repository in order of the input;
+		// execution and cancellation are handled by its scheduler
+		mInputQueue = taskScheduler.newQueue(PriorityTaskScheduler.Priority.INTERACTIVE, true);
 		mTrainStationRepository = repository;
 		mLocationProvider = locationProvider;
+		mLocationEstimator = locationEstimator;
 		mSearchRadius = new MutableLiveData<>();
 		mSearchTerm = new MutableLiveData<>();
 		mGpsPositioningActive = new MutableLiveData<>();
@@ -144,6 +168,7 @@ public class TrainStationsViewModel extends AndroidViewModel implements Location
 	@UiThread
 	public void setSearchRadius(int searchRadius) {
 		mSearchRadius.setValue(searchRadius);
+		mLocationProvider.setSearchRadius(searchRadius);
 	}
 
 	/**
@@ -155,13 +180,21 @@ public class TrainStationsViewModel extends AndroidViewModel implements Location
 	}
 
 	/**
-	 * @return A list of all available {@link TrainStation}s that are near by current location and
-	 * within given search radius.
+	 * @return A paged list of all available {@link TrainStation}s that are near by current
+	 * location and within given search radius or that match the search term.
 	 */
-	LiveData<List<TrainStation>> getTrainStations() {
+	LiveData<PagedList<TrainStation>> getTrainStations() {
 		return mTrainStationRepository.getTrainStations();
 	}
 
+	@Override
+	protected void onCleared() {
+		// repository is shared by the whole app (see AppComponent), so only resources of this
+		// view model are released
+		mLocationProvider.stopListeningForLocationUpdates(this);
+		mInputQueue.cancel();
+	}
+
 	@Override
 	public void onLocationChanged(Location location) {
 		checkProvidedLocation(location);
@@ -174,42 +207,76 @@ public class TrainStationsViewModel extends AndroidViewModel implements Location
 
 	@Override
 	public void onProviderEnabled(String s) {
-		if (LOG.isInfoEnabled()) {
-			LOG.info(String.format(Locale.getDefault(), "Provider %s enabled.", s));
-		}
+		LOG.atInfo().arg(s).log("Provider {} enabled.");
 	}
 
 	private void checkProvidedLocation(@Nullable Location location) {
 		if (LocationUtil.isBetterLocation(location, mCurrentLocation)) {
-			if (LOG.isInfoEnabled()) {
-				LOG.info(String.format(Locale.getDefault(), "New location provided with " +
-						"latitude=%s and longitude=%s", location.getLatitude(), location
-						.getLongitude()));
-			}
+			LOG.atInfo().arg(location.getLatitude()).arg(location.getLongitude()).log("New " +
+					"location provided with latitude={} and longitude={}");
 			mCurrentLocation = location;
+			mLocationEstimator.update(location.getTime(), location.getLatitude(), location
+					.getLongitude(), location.getAccuracy());
 			mGpsPositioningAvailable.postValue(true);
 			// we automatically enable gps positioning if available
 			mGpsPositioningActive.postValue(true);
-			searchTrainStationsByLocation();
+			if (hasEstimateMovedSignificantly()) {
+				searchTrainStationsByLocation();
+			}
 		}
 	}
 
 	/**
-	 * Start searching for train stations that are near by last location that was provided by
-	 * {@link LocationProvider} and are within given search radius that was set with
-	 * {@link #setSearchRadius(int)}.
+	 * @return True, if the estimated location moved at least {@link #SEARCH_DISTANCE_RATIO} of
+	 * the search radius since the last search by location or if there was none.
+	 */
+	private boolean hasEstimateMovedSignificantly() {
+		Integer searchRadius = mSearchRadius.getValue();
+		if (searchRadius == null || Double.isNaN(mSearchLatitude)) {
+			return true;
+		}
+		double distance = GeoUtils.distanceMeters(mSearchLatitude, mSearchLongitude,
+				mLocationEstimator.getLatitude(), mLocationEstimator.getLongitude());
+		return distance >= Math.max(MIN_SEARCH_DISTANCE_METERS, searchRadius *
+				SEARCH_DISTANCE_RATIO);
+	}
+
+	/**
+	 * Start searching for train stations that are near by the location that was estimated from
+	 * the locations provided by {@link LocationProvider} and are within given search radius that
+	 * was set with {@link #setSearchRadius(int)}.
+	 *
+	 * While the location is within the {@link CoverageRegion} of a stored result, no request is
+	 * sent and the stored result is only ordered by the distance to the location again. Once the
+	 * location nears the boundary of the region, the result of the location is prefetched in
+	 * background, while the displayed result is still valid.
 	 */
 	public void searchTrainStationsByLocation() {
 		Integer searchRadius = mSearchRadius.getValue();
-		if (searchRadius != null && mCurrentLocation != null) {
-			if (LOG.isInfoEnabled()) {
-				LOG.info(String.format(Locale.getDefault(), "Search for train stations by " +
-						"location (latitude=%s, longitude=%s, search radius=%s", mCurrentLocation
-						.getLatitude(), mCurrentLocation.getLongitude(), searchRadius));
-			}
-			mExecutorService.execute(() -> mTrainStationRepository.searchTrainStationsByLocation
-					(mCurrentLocation.getLatitude(), mCurrentLocation.getLongitude(),
-							searchRadius));
+		if (searchRadius != null && mLocationEstimator.hasEstimate()) {
+			double latitude = mLocationEstimator.getLatitude();
+			double longitude = mLocationEstimator.getLongitude();
+			mSearchLatitude = latitude;
+			mSearchLongitude = longitude;
+			LOG.atInfo().arg(latitude).arg(longitude).arg(searchRadius).log("Search for train " +
+					"stations by location (latitude={}, longitude={}, search radius={})");
+			long start = LOCATION_SEARCH_LATENCY.start();
+			mInputQueue.execute(() -> {
+				CoverageRegion region = mTrainStationRepository.findCoverageRegion(latitude,
+						longitude, searchRadius);
+				if (region != null) {
+					mTrainStationRepository.displayTrainStationsByLocation(region, latitude,
+							longitude);
+					if (region.isNearBoundary(latitude, longitude)) {
+						mTrainStationRepository.prefetchTrainStationsByLocation(region,
+								latitude, longitude);
+					}
+				} else {
+					mTrainStationRepository.searchTrainStationsByLocation(latitude, longitude,
+							searchRadius);
+				}
+				LOCATION_SEARCH_LATENCY.stop(start);
+			});
 		}
 	}
 
@@ -221,23 +288,38 @@ public class TrainStationsViewModel extends AndroidViewModel implements Location
 	public void searchTrainStationsBySearchTerm() {
 		String locationTerm = mSearchTerm.getValue();
 		if (locationTerm != null) {
-			if (LOG.isInfoEnabled()) {
-				LOG.info(String.format(Locale.getDefault(), "Search for train stations by search" +
-						" term=%s", locationTerm));
-			}
+			LOG.atInfo().arg(locationTerm).log("Search for train stations by search term={}");
 			// stop searching for location updates since it would override search results by search
 			// term.
 			setGpsPositioningIsActive(false);
-			mExecutorService.execute(() -> mTrainStationRepository.searchTrainStationsBySearchTerm
+			mInputQueue.execute(() -> mTrainStationRepository.searchTrainStationsBySearchTerm
 					(locationTerm));
 		}
 	}
 
+	/**
+	 * Displays stored train stations whose name matches passed (partial) search term without
+	 * any request to the graphql endpoint, e.g. on each keystroke.
+	 *
+	 * @param searchTerm
+	 * 		The (partial) search term to be included in train stations name.
+	 */
+	@UiThread
+	public void filterTrainStationsBySearchTerm(@NonNull String searchTerm) {
+		if (searchTerm.trim().isEmpty()) {
+			return;
+		}
+		// location updates would override the matches
+		if (Boolean.TRUE.equals(mGpsPositioningActive.getValue())) {
+			setGpsPositioningIsActive(false);
+		}
+		mInputQueue.execute(() -> mTrainStationRepository.filterTrainStationsBySearchTerm
+				(searchTerm));
+	}
+
 	@Override
 	public void onProviderDisabled(String s) {
-		if (LOG.isInfoEnabled()) {
-			LOG.info(String.format(Locale.getDefault(), "Provider %s disabled.", s));
-		}
+		LOG.atInfo().arg(s).log("Provider {} disabled.");
 	}
 
 	/**
@@ -252,10 +334,16 @@ public class TrainStationsViewModel extends AndroidViewModel implements Location
 
 	/**
 	 * Call this to stop receiving location updates. After this {@link #isGpsPositioningActive()}
-	 * will return {@code false}.
+	 * will return {@code false}. The estimated location is discarded, so the first location
+	 * after receiving updates again starts a new search by location, even if the user didn't
+	 * move meanwhile. Otherwise the displayed result of a search term would be kept.
 	 */
 	private void stopListeningForLocationUpdates() {
 		mLocationProvider.stopListeningForLocationUpdates(this);
 		mGpsPositioningActive.setValue(false);
+		mCurrentLocation = null;
+		mLocationEstimator.reset();
+		mSearchLatitude = Double.NaN;
+		mSearchLongitude = Double.NaN;
 	}
 }
@@ -5,7 +5,10 @@ import android.arch.lifecycle.ViewModel;
 import android.arch.lifecycle.ViewModelProvider;
 import android.support.annotation.NonNull;
 
+import com.mytrainstation.api.location.KalmanLocationEstimator;
+import com.mytrainstation.api.location.LocationEstimator;
 import com.mytrainstation.api.location.LocationProvider;
+import com.mytrainstation.data.PriorityTaskScheduler;
 import com.mytrainstation.data.TrainStationRepository;
 
 /**
@@ -18,20 +21,50 @@ public class ViewModelFactory implements ViewModelProvider.Factory {
 	private Application mApplication;
 	private TrainStationRepository mRepository;
 	private LocationProvider mLocationProvider;
+	private LocationEstimator mLocationEstimator;
+	private PriorityTaskScheduler mTaskScheduler;
 
 	/**
+	 * Creates a factory whose view models smooth locations with a
+	 * {@link KalmanLocationEstimator}.
+	 *
 	 * @param application
 	 * 		The application context.
 	 * @param repository
 	 * @param locationProvider
+	 * @param taskScheduler
+	 * 		The shared scheduler of the app.
 	 */
 	public ViewModelFactory(
 			@NonNull Application application,
 			@NonNull TrainStationRepository repository,
-			LocationProvider locationProvider) {
+			LocationProvider locationProvider,
+			@NonNull PriorityTaskScheduler taskScheduler) {
+		this(application, repository, locationProvider, new KalmanLocationEstimator(),
+				taskScheduler);
+	}
+
+	/**
+	 * @param application
+	 * 		The application context.
+	 * @param repository
+	 * @param locationProvider
+	 * @param locationEstimator
+	 * 		Smooths provided locations, is only used by a single view model.
+	 * @param taskScheduler
+	 * 		The shared scheduler of the app.
+	 */
+	public ViewModelFactory(
+			@NonNull Application application,
+			@NonNull TrainStationRepository repository,
+			LocationProvider locationProvider,
+			@NonNull LocationEstimator locationEstimator,
+			@NonNull PriorityTaskScheduler taskScheduler) {
 		mApplication = application;
 		mRepository = repository;
 		mLocationProvider = locationProvider;
+		mLocationEstimator = locationEstimator;
+		mTaskScheduler = taskScheduler;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -39,7 +72,8 @@ public class ViewModelFactory implements ViewModelProvider.Factory {
 	@Override
 	public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
 		if (modelClass.isAssignableFrom(TrainStationsViewModel.class)) {
-			return (T) new TrainStationsViewModel(mApplication, mRepository, mLocationProvider);
+			return (T) new TrainStationsViewModel(mApplication, mRepository, mLocationProvider,
+					mLocationEstimator, mTaskScheduler);
 		}
 		throw new IllegalArgumentException("Unknown ViewModel class");
 	}
@@ -1,106 +1,126 @@
 package com.mytrainstation.ui.adapter;
 
-import android.content.Context;
-import android.graphics.PorterDuff;
+import android.arch.paging.PagedListAdapter;
 import android.support.annotation.NonNull;
-import android.support.v4.content.ContextCompat;
+import android.support.annotation.VisibleForTesting;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.webkit.URLUtil;
-import android.webkit.WebView;
-import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.mytrainstation.R;
 import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.ui.image.ImageLoader;
 
-import java.util.List;
+import java.util.Objects;
 
 /**
- * Custom adapter that extends {@link ArrayAdapter} to display information about available
+ * Custom adapter that extends {@link PagedListAdapter} to display information about available
  * {@link TrainStation}s that are near by current location and within given search radius.
  *
+ * A new list (see {@link #submitList(android.arch.paging.PagedList)}) is compared with the
+ * current one on a background thread, so only rows of changed train stations will be bound
+ * again. Rows are identified by the EVA id of their train station, which is also used as stable
+ * id. Binding a row near the end of the list loads the next page of train stations.
+ *
+ * Pictures are loaded by {@link ImageLoader}, whose loads are cancelled if a row is recycled.
+ *
  * @author JSCHENK
  */
-public class TrainStationsAdapter extends ArrayAdapter<TrainStation> {
+public class TrainStationsAdapter extends PagedListAdapter<TrainStation, TrainStationsAdapter
+		.ViewHolder> {
 
-	private static final String HTML_MIME_TYPE = "text/html";
+	/**
+	 * Train stations are the same row if they have the same EVA id and the row only has to be
+	 * bound again if any displayed attribute changed.
+	 */
+	@VisibleForTesting
+	static final DiffUtil.ItemCallback<TrainStation> DIFF_CALLBACK = new DiffUtil
+			.ItemCallback<TrainStation>() {
+		@Override
+		public boolean areItemsTheSame(@NonNull TrainStation oldItem,
+				@NonNull TrainStation newItem) {
+			return oldItem.getId() == newItem.getId();
+		}
+
+		@Override
+		public boolean areContentsTheSame(@NonNull TrainStation oldItem,
+				@NonNull TrainStation newItem) {
+			return Objects.equals(oldItem.getName(), newItem.getName())
+					&& oldItem.hasWifi() == newItem.hasWifi()
+					&& oldItem.hasParking() == newItem.hasParking()
+					&& oldItem.hasSteplessAccess() == newItem.hasSteplessAccess()
+					&& Objects.equals(oldItem.getPictureUrl(), newItem.getPictureUrl());
+		}
+	};
+
+	private final ImageLoader mImageLoader;
 
 	/**
-	 * @param context
-	 * 		The context that will be used to inflate list item views.
-	 * @param trainStations
-	 * 		A list of available train stations. Each train station will be displayed as list view
-	 * 		entry.
+	 * @param imageLoader
+	 * 		The loader of train station pictures.
 	 */
-	public TrainStationsAdapter(@NonNull Context context,
-			@NonNull List<TrainStation> trainStations) {
-		super(context, 0, trainStations);
+	public TrainStationsAdapter(@NonNull ImageLoader imageLoader) {
+		super(DIFF_CALLBACK);
+		mImageLoader = imageLoader;
+		setHasStableIds(true);
+	}
+
+	@Override
+	public long getItemId(int position) {
+		// placeholders are disabled, so items are never null
+		return getItem(position).getId();
 	}
 
 	@NonNull
 	@Override
-	public View getView(int position, View convertView, @NonNull ViewGroup parent) {
-		TrainStation trainStation = getItem(position);
-		ViewHolder viewHolder;
-		if (convertView == null) {
-			convertView = LayoutInflater.from(getContext()).inflate(R.layout
-					.train_station_list_item, parent, false);
-			viewHolder = new ViewHolder();
-			viewHolder.mTvName = convertView.findViewById(R.id.tv_train_station_name);
-			viewHolder.mWvPicture = convertView.findViewById(R.id.wv_train_station_picture);
-			viewHolder.mIvWifi = convertView.findViewById(R.id.iv_train_station_has_wifi);
-			viewHolder.mIvParking = convertView.findViewById(R.id
-					.iv_train_station_has_parking);
-			viewHolder.mIvSteplessAccess = convertView.findViewById(R.id
-					.iv_train_station_has_stepless_access);
-			convertView.setTag(viewHolder);
-		} else {
-			viewHolder = (ViewHolder) convertView.getTag();
-		}
+	public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+		return new ViewHolder(LayoutInflater.from(parent.getContext()).inflate(R.layout
+				.train_station_list_item, parent, false));
+	}
 
-		if (trainStation != null) {
-			viewHolder.mTvName.setText(trainStation.getName());
-			viewHolder.mIvWifi.setVisibility(trainStation.hasWifi() ? View.VISIBLE : View
-					.INVISIBLE);
-			viewHolder.mIvParking.setVisibility(trainStation.hasParking() ? View.VISIBLE : View
-					.INVISIBLE);
-			//DrawableCompat.setTin
-			viewHolder.mIvSteplessAccess.setVisibility(trainStation.hasSteplessAccess() ? View
-					.VISIBLE : View.INVISIBLE);
-			String pictureUrl = trainStation.getPictureUrl();
-			boolean validUrl = URLUtil.isValidUrl(pictureUrl);
-			viewHolder.mWvPicture.setVisibility(validUrl ? View.VISIBLE : View.INVISIBLE);
-			if (validUrl) {
-				// TODO: pictures should be downloaded via AsyncTask and stored within database
-				String html = "<html><body><img src=\"" + pictureUrl + "\" " +
-						"width=\"100%\"\"/></body></html>";
-				viewHolder.mWvPicture.loadData(html, HTML_MIME_TYPE, null);
-			}
-		}
+	@Override
+	public void onBindViewHolder(@NonNull ViewHolder viewHolder, int position) {
+		TrainStation trainStation = getItem(position);
+		viewHolder.mTvName.setText(trainStation.getName());
+		viewHolder.mIvWifi.setVisibility(trainStation.hasWifi() ? View.VISIBLE : View.INVISIBLE);
+		viewHolder.mIvParking.setVisibility(trainStation.hasParking() ? View.VISIBLE : View
+				.INVISIBLE);
+		viewHolder.mIvSteplessAccess.setVisibility(trainStation.hasSteplessAccess() ? View
+				.VISIBLE : View.INVISIBLE);
+		String pictureUrl = trainStation.getPictureUrl();
+		boolean validUrl = URLUtil.isValidUrl(pictureUrl);
+		viewHolder.mIvPicture.setVisibility(validUrl ? View.VISIBLE : View.INVISIBLE);
+		mImageLoader.load(validUrl ? pictureUrl : null, viewHolder.mIvPicture);
+	}
 
-		return convertView;
+	@Override
+	public void onViewRecycled(@NonNull ViewHolder viewHolder) {
+		mImageLoader.cancel(viewHolder.mIvPicture);
 	}
 
 	/**
-	 * Updates the list of available train stations.
-	 *
-	 * @param trainStations
-	 * 		The new list of available train stations.
+	 * Holds the views of a row that displays a single {@link TrainStation}.
 	 */
-	public void submitList(@NonNull List<TrainStation> trainStations) {
-		clear();
-		addAll(trainStations);
-		notifyDataSetChanged();
-	}
+	public static class ViewHolder extends RecyclerView.ViewHolder {
 
-	private class ViewHolder {
-		private WebView mWvPicture;
-		private TextView mTvName;
-		private ImageView mIvParking;
-		private ImageView mIvWifi;
-		private ImageView mIvSteplessAccess;
+		private final ImageView mIvPicture;
+		private final TextView mTvName;
+		private final ImageView mIvParking;
+		private final ImageView mIvWifi;
+		private final ImageView mIvSteplessAccess;
+
+		private ViewHolder(@NonNull View itemView) {
+			super(itemView);
+			mIvPicture = itemView.findViewById(R.id.iv_train_station_picture);
+			mTvName = itemView.findViewById(R.id.tv_train_station_name);
+			mIvWifi = itemView.findViewById(R.id.iv_train_station_has_wifi);
+			mIvParking = itemView.findViewById(R.id.iv_train_station_has_parking);
+			mIvSteplessAccess = itemView.findViewById(R.id.iv_train_station_has_stepless_access);
+		}
 	}
 }
@@ -0,0 +1,109 @@
+package com.mytrainstation.ui.diagnostics;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import com.mytrainstation.R;
+import com.mytrainstation.metrics.Counter;
+import com.mytrainstation.metrics.LatencyHistogram;
+import com.mytrainstation.metrics.MetricsRegistry;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Activity that displays the latency histograms and counters of {@link MetricsRegistry}, e.g.
+ * to compare the latencies of searches on a device with their cache hit ratio. Recorded metrics
+ * could be shared as json.
+ *
+ * @author JSCHENK
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+
+	private static final String JSON_MIME_TYPE = "application/json";
+
+	private final MetricsRegistry mRegistry = MetricsRegistry.getInstance();
+	private TextView mTvMetrics;
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		setContentView(R.layout.diagnostics_activity);
+		mTvMetrics = findViewById(R.id.tv_metrics);
+	}
+
+	@Override
+	protected void onResume() {
+		super.onResume();
+		displayMetrics();
+	}
+
+	@Override
+	public boolean onCreateOptionsMenu(Menu menu) {
+		getMenuInflater().inflate(R.menu.diagnostics_activity_bar, menu);
+		menu.findItem(R.id.record_metrics).setChecked(mRegistry.isEnabled());
+		return true;
+	}
+
+	@Override
+	public boolean onOptionsItemSelected(MenuItem item) {
+		switch (item.getItemId()) {
+			case R.id.refresh_metrics:
+				displayMetrics();
+				return true;
+			case R.id.record_metrics:
+				item.setChecked(!item.isChecked());
+				mRegistry.setEnabled(item.isChecked());
+				return true;
+			case R.id.reset_metrics:
+				mRegistry.reset();
+				displayMetrics();
+				return true;
+			case R.id.share_metrics:
+				Intent intent = new Intent(Intent.ACTION_SEND)
+						.setType(JSON_MIME_TYPE)
+						.putExtra(Intent.EXTRA_TEXT, mRegistry.toJson());
+				startActivity(Intent.createChooser(intent, getString(R.string.diagnostics_share)));
+				return true;
+		}
+
+		return super.onOptionsItemSelected(item);
+	}
+
+	private void displayMetrics() {
+		List<LatencyHistogram.Snapshot> snapshots = mRegistry.getHistogramSnapshots();
+		List<Counter> counters = mRegistry.getCounters();
+		if (snapshots.isEmpty() && counters.isEmpty()) {
+			mTvMetrics.setText(R.string.diagnostics_no_metrics);
+			return;
+		}
+		StringBuilder text = new StringBuilder();
+		for (LatencyHistogram.Snapshot snapshot : snapshots) {
+			text.append(snapshot.getName()).append('\n');
+			text.append(String.format(Locale.getDefault(), "  n=%d mean=%s p50=%s p90=%s " +
+							"p99=%s max=%s%n%n", snapshot.getCount(),
+					formatNanos(snapshot.getMeanNanos()),
+					formatNanos(snapshot.getPercentileNanos(50)),
+					formatNanos(snapshot.getPercentileNanos(90)),
+					formatNanos(snapshot.getPercentileNanos(99)),
+					formatNanos(snapshot.getMaxNanos())));
+		}
+		for (Counter counter : counters) {
+			text.append(String.format(Locale.getDefault(), "%s=%d%n", counter.getName(), counter
+					.get()));
+		}
+		mTvMetrics.setText(text);
+	}
+
+	@NonNull
+	private static String formatNanos(long nanos) {
+		return String.format(Locale.getDefault(), "%.1fms", nanos / (double) TimeUnit
+				.MILLISECONDS.toNanos(1));
+	}
+}
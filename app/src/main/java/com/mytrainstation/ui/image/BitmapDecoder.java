@@ -0,0 +1,101 @@
+package com.mytrainstation.ui.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.FileDescriptor;
+
+/**
+ * Util class to decode pictures downsampled to the size they will be displayed with, so a
+ * picture never occupies more memory than its view needs.
+ *
+ * @author JSCHENK
+ */
+public class BitmapDecoder {
+
+	/**
+	 * @param data
+	 * 		The encoded picture.
+	 * @param requestedWidth
+	 * 		The width of the target view in pixels.
+	 * @param requestedHeight
+	 * 		The height of the target view in pixels.
+	 * @return The decoded picture that is at least as large as the requested size if the
+	 * picture allows it, or {@code null} if the picture couldn't be decoded.
+	 */
+	@Nullable
+	public static Bitmap decodeSampled(@NonNull byte[] data, int requestedWidth,
+			int requestedHeight) {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeByteArray(data, 0, data.length, options);
+		if (options.outWidth <= 0 || options.outHeight <= 0) {
+			return null;
+		}
+		options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+				requestedWidth, requestedHeight);
+		options.inJustDecodeBounds = false;
+		// pictures of train stations don't need an alpha channel
+		options.inPreferredConfig = Bitmap.Config.RGB_565;
+		return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+	}
+
+	/**
+	 * Decodes a picture directly from a file, so its encoded bytes never have to be copied into
+	 * memory.
+	 *
+	 * @param fileDescriptor
+	 * 		The descriptor of the file that contains the encoded picture. Its position will not be
+	 * 		changed.
+	 * @param requestedWidth
+	 * 		The width of the target view in pixels.
+	 * @param requestedHeight
+	 * 		The height of the target view in pixels.
+	 * @return The decoded picture that is at least as large as the requested size if the
+	 * picture allows it, or {@code null} if the picture couldn't be decoded.
+	 */
+	@Nullable
+	public static Bitmap decodeSampled(@NonNull FileDescriptor fileDescriptor, int requestedWidth,
+			int requestedHeight) {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+		if (options.outWidth <= 0 || options.outHeight <= 0) {
+			return null;
+		}
+		options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+				requestedWidth, requestedHeight);
+		options.inJustDecodeBounds = false;
+		options.inPreferredConfig = Bitmap.Config.RGB_565;
+		return BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+	}
+
+	/**
+	 * Calculates the largest power of two that keeps both dimensions of the picture at least as
+	 * large as requested.
+	 *
+	 * @param width
+	 * 		The width of the encoded picture.
+	 * @param height
+	 * 		The height of the encoded picture.
+	 * @param requestedWidth
+	 * 		The width of the target view.
+	 * @param requestedHeight
+	 * 		The height of the target view.
+	 * @return The sample size that should be used to decode the picture.
+	 */
+	public static int calculateInSampleSize(int width, int height, int requestedWidth,
+			int requestedHeight) {
+		int inSampleSize = 1;
+		if (requestedWidth <= 0 || requestedHeight <= 0) {
+			return inSampleSize;
+		}
+		while (width / (inSampleSize * 2) >= requestedWidth
+				&& height / (inSampleSize * 2) >= requestedHeight) {
+			inSampleSize *= 2;
+		}
+		return inSampleSize;
+	}
+}
@@ -0,0 +1,286 @@
+package com.mytrainstation.ui.image;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+import android.support.annotation.VisibleForTesting;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.mytrainstation.R;
+import com.mytrainstation.api.RequestHandle;
+import com.mytrainstation.db.TrainStationDatabase;
+import com.mytrainstation.logging.FastLogger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Loads pictures of train stations into {@link ImageView}s. Pictures are fetched on a bounded
+ * executor, decoded downsampled to the size of the target view (see {@link BitmapDecoder}) and
+ * kept within a memory cache that is limited by the byte size of its bitmaps. Fetched pictures
+ * are also stored as thumbnails on disk (see {@link PictureStore}), so they don't have to be
+ * fetched again after they were evicted from memory or the app was restarted.
+ *
+ * A load is bound to its view, so a recycled view cancels its previous load (see
+ * {@link #cancel(ImageView)}), which also cancels a running request.
+ *
+ * @author JSCHENK
+ */
+public class ImageLoader {
+
+	private static final FastLogger LOG = FastLogger.getLogger(ImageLoader.class);
+
+	private static final int MAX_PARALLEL_LOADS = 3;
+	// fraction of the memory class that could be used by cached bitmaps
+	private static final int MEMORY_CACHE_DIVISOR = 8;
+	private static final String PICTURE_DIRECTORY = "pictures";
+	private static final long PICTURE_QUOTA_BYTES = 20 * 1024 * 1024;
+
+	private final OkHttpClient mHttpClient;
+	private final ExecutorService mExecutor;
+	private final LruCache<String, Bitmap> mMemoryCache;
+	private final PictureStore mPictureStore;
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * @param httpClient
+	 * 		The client to fetch pictures with.
+	 * @param executor
+	 * 		The bounded executor to fetch and decode pictures on.
+	 * @param maxCacheBytes
+	 * 		The maximum number of bytes of all cached bitmaps.
+	 * @param pictureStore
+	 * 		The store of pictures on disk or {@code null} if pictures should always be fetched.
+	 */
+	@VisibleForTesting
+	public ImageLoader(@NonNull OkHttpClient httpClient, @NonNull ExecutorService executor,
+			int maxCacheBytes, @Nullable PictureStore pictureStore) {
+		mHttpClient = httpClient;
+		mExecutor = executor;
+		mPictureStore = pictureStore;
+		mMemoryCache = new LruCache<String, Bitmap>(maxCacheBytes) {
+			@Override
+			protected int sizeOf(String key, Bitmap bitmap) {
+				return bitmap.getAllocationByteCount();
+			}
+		};
+	}
+
+	/**
+	 * Creates the loader that shares its memory cache over all views. Should only be called once
+	 * by the application scoped component (see {@link com.mytrainstation.AppComponent}).
+	 *
+	 * @param context
+	 * 		The context that will be used to determine the memory class of the device and to
+	 * 		store pictures on disk.
+	 * @param httpClient
+	 * 		The client to fetch pictures with.
+	 * @param maintenanceExecutor
+	 * 		The executor to delete orphaned pictures on.
+	 * @return A new instance of {@link ImageLoader} with its own bounded executor.
+	 */
+	@NonNull
+	public static ImageLoader create(@NonNull Context context, @NonNull OkHttpClient httpClient,
+			@NonNull Executor maintenanceExecutor) {
+		ActivityManager activityManager = (ActivityManager) context.getSystemService(Context
+				.ACTIVITY_SERVICE);
+		int maxCacheBytes = activityManager.getMemoryClass() * 1024 * 1024 /
+				MEMORY_CACHE_DIVISOR;
+		PictureStore pictureStore = new PictureStore(TrainStationDatabase.getInstance(context)
+				.getResourceDao(), new File(context.getFilesDir(), PICTURE_DIRECTORY),
+				PICTURE_QUOTA_BYTES);
+		ImageLoader imageLoader = new ImageLoader(httpClient, Executors.newFixedThreadPool
+				(MAX_PARALLEL_LOADS), maxCacheBytes, pictureStore);
+		// pictures of train stations that were removed in the meantime
+		maintenanceExecutor.execute(pictureStore::collectGarbage);
+		return imageLoader;
+	}
+
+	/**
+	 * Displays the picture of passed url within passed view. A previous load of the view will be
+	 * cancelled. The view is cleared until the picture is loaded if it isn't cached yet.
+	 *
+	 * @param url
+	 * 		The url of the picture.
+	 * @param imageView
+	 * 		The view that should display the picture.
+	 */
+	@UiThread
+	public void load(@Nullable String url, @NonNull ImageView imageView) {
+		cancel(imageView);
+		if (url == null) {
+			imageView.setImageDrawable(null);
+			return;
+		}
+		int width = targetSize(imageView.getLayoutParams() != null ? imageView
+				.getLayoutParams().width : 0, imageView.getWidth());
+		int height = targetSize(imageView.getLayoutParams() != null ? imageView
+				.getLayoutParams().height : 0, imageView.getHeight());
+		String key = String.format(Locale.ROOT, "%s@%dx%d", url, width, height);
+		Bitmap bitmap = mMemoryCache.get(key);
+		if (bitmap != null) {
+			imageView.setImageBitmap(bitmap);
+			return;
+		}
+		imageView.setImageDrawable(null);
+		Load load = new Load(url, key, width, height, imageView);
+		imageView.setTag(R.id.tag_image_load, load);
+		load.mFuture = mExecutor.submit(load);
+	}
+
+	/**
+	 * Cancels the load of passed view if it is still in progress, e.g. if the view is recycled.
+	 *
+	 * @param imageView
+	 * 		The view whose load should be cancelled.
+	 */
+	@UiThread
+	public void cancel(@NonNull ImageView imageView) {
+		Object tag = imageView.getTag(R.id.tag_image_load);
+		if (tag instanceof Load) {
+			Load load = (Load) tag;
+			load.mHandle.cancel();
+			if (load.mFuture != null) {
+				load.mFuture.cancel(false);
+			}
+			imageView.setTag(R.id.tag_image_load, null);
+		}
+	}
+
+	/**
+	 * @return The memory cache of decoded pictures, e.g. to retrieve its statistics.
+	 */
+	@NonNull
+	public LruCache<String, Bitmap> getMemoryCache() {
+		return mMemoryCache;
+	}
+
+	/**
+	 * Cancels all running loads and stops the executor of this loader. Pictures won't be loaded
+	 * afterwards.
+	 */
+	public void shutdown() {
+		mExecutor.shutdownNow();
+		mMemoryCache.evictAll();
+	}
+
+	/**
+	 * @return The fixed size of the layout or the measured size of the view, or 0 if the size is
+	 * unknown and the picture shouldn't be downsampled.
+	 */
+	private static int targetSize(int layoutSize, int measuredSize) {
+		if (layoutSize > 0) {
+			return layoutSize;
+		}
+		return Math.max(measuredSize, 0);
+	}
+
+	private class Load implements Runnable {
+
+		private final String mUrl;
+		private final String mKey;
+		private final int mWidth;
+		private final int mHeight;
+		private final WeakReference<ImageView> mImageView;
+		private final RequestHandle mHandle = new RequestHandle();
+		private Future<?> mFuture;
+
+		private Load(String url, String key, int width, int height, ImageView imageView) {
+			mUrl = url;
+			mKey = key;
+			mWidth = width;
+			mHeight = height;
+			mImageView = new WeakReference<>(imageView);
+		}
+
+		@Override
+		public void run() {
+			if (mHandle.isCancelled()) {
+				return;
+			}
+			Bitmap stored = decodeStored();
+			if (stored != null) {
+				mMemoryCache.put(mKey, stored);
+				mMainHandler.post(() -> deliver(stored));
+				return;
+			}
+			Call call = mHttpClient.newCall(new Request.Builder().url(mUrl).build());
+			mHandle.addOnCancelListener(call::cancel);
+			try (Response response = call.execute()) {
+				ResponseBody body = response.body();
+				if (!response.isSuccessful() || body == null) {
+					LOG.atWarn().arg(mUrl).arg(response.code()).log("Couldn't load picture " +
+							"{} (status={}).");
+					return;
+				}
+				byte[] picture = body.bytes();
+				Bitmap bitmap = null;
+				// display the stored thumbnail, so cold and warm loads look the same
+				if (mPictureStore != null && mPictureStore.store(mUrl, picture)) {
+					bitmap = decodeStored();
+				}
+				if (bitmap == null) {
+					bitmap = BitmapDecoder.decodeSampled(picture, mWidth, mHeight);
+				}
+				if (bitmap == null) {
+					LOG.atWarn().arg(mUrl).log("Couldn't decode picture {}.");
+					return;
+				}
+				Bitmap decoded = bitmap;
+				mMemoryCache.put(mKey, decoded);
+				mMainHandler.post(() -> deliver(decoded));
+			} catch (IOException e) {
+				if (!mHandle.isCancelled()) {
+					LOG.atWarn().arg(mUrl).cause(e).log("Couldn't load picture {}.");
+				}
+			}
+		}
+
+		/**
+		 * @return The stored thumbnail decoded from its file or {@code null} if it isn't stored.
+		 */
+		@Nullable
+		private Bitmap decodeStored() {
+			if (mPictureStore == null) {
+				return null;
+			}
+			try (FileInputStream stream = mPictureStore.open(mUrl)) {
+				return stream != null ? BitmapDecoder.decodeSampled(stream.getFD(), mWidth,
+						mHeight) : null;
+			} catch (IOException e) {
+				LOG.atWarn().arg(mUrl).cause(e).log("Couldn't read stored picture {}.");
+				return null;
+			}
+		}
+
+		@UiThread
+		private void deliver(@NonNull Bitmap bitmap) {
+			ImageView imageView = mImageView.get();
+			// the view might be bound to another picture in the meantime
+			if (imageView != null && !mHandle.isCancelled() && imageView.getTag(R.id
+					.tag_image_load) == this) {
+				imageView.setTag(R.id.tag_image_load, null);
+				imageView.setImageBitmap(bitmap);
+			}
+		}
+	}
+}
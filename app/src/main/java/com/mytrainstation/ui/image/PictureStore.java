@@ -0,0 +1,280 @@
+package com.mytrainstation.ui.image;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.annotation.WorkerThread;
+
+import com.mytrainstation.db.Resource;
+import com.mytrainstation.db.ResourceDao;
+import com.mytrainstation.logging.FastLogger;
+import com.mytrainstation.util.Clock;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content addressed store of train station pictures on disk. Pictures are addressed by the
+ * SHA-256 hash of their original bytes, so a picture that is shared by several train stations
+ * is stored only once, and linked from all train stations with the same picture url (see
+ * {@link Resource}).
+ *
+ * Pictures are transcoded to a compact thumbnail when they are stored and are read back as
+ * file streams, so they could be decoded without copying them into memory. Pictures that
+ * aren't linked by any train station anymore are deleted on each write, as well as least
+ * recently accessed pictures if the size of all pictures exceeds the quota.
+ *
+ * @author JSCHENK
+ */
+public class PictureStore {
+
+	private static final FastLogger LOG = FastLogger.getLogger(PictureStore.class);
+
+	/**
+	 * Maximum width of stored thumbnails in pixels, which covers the picture of a list row on
+	 * any screen density.
+	 */
+	public static final int THUMBNAIL_WIDTH = 320;
+	/**
+	 * Maximum height of stored thumbnails in pixels.
+	 */
+	public static final int THUMBNAIL_HEIGHT = 240;
+	private static final int THUMBNAIL_QUALITY = 80;
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final ResourceDao mResourceDao;
+	private final File mDirectory;
+	private final long mQuotaBytes;
+	private final Clock mClock;
+	// guards files and rows of stored pictures against concurrent garbage collection
+	private final Object mLock = new Object();
+
+	/**
+	 * @param resourceDao
+	 * 		The DAO to store metadata and links of pictures with.
+	 * @param directory
+	 * 		The directory to store the thumbnails within. Will be created on first write.
+	 * @param quotaBytes
+	 * 		The maximum size of all stored thumbnails in bytes.
+	 */
+	public PictureStore(@NonNull ResourceDao resourceDao, @NonNull File directory,
+			long quotaBytes) {
+		this(resourceDao, directory, quotaBytes, Clock.SYSTEM);
+	}
+
+	@VisibleForTesting
+	PictureStore(@NonNull ResourceDao resourceDao, @NonNull File directory, long quotaBytes,
+			@NonNull Clock clock) {
+		mResourceDao = resourceDao;
+		mDirectory = directory;
+		mQuotaBytes = quotaBytes;
+		mClock = clock;
+	}
+
+	/**
+	 * @param pictureUrl
+	 * 		The url of the picture.
+	 * @return A stream of the stored thumbnail of passed picture url or {@code null} if it isn't
+	 * stored. The caller has to close the stream.
+	 */
+	@WorkerThread
+	@Nullable
+	public FileInputStream open(@NonNull String pictureUrl) {
+		String hash = mResourceDao.getPictureHash(pictureUrl);
+		if (hash == null) {
+			return null;
+		}
+		try {
+			// an open stream stays readable even if the file is deleted in the meantime
+			FileInputStream stream = new FileInputStream(getFile(hash));
+			mResourceDao.updateLastAccessed(hash, mClock.currentTimeMillis());
+			return stream;
+		} catch (FileNotFoundException e) {
+			LOG.atWarn().arg(hash).log("Stored picture {} is missing and will be fetched again.");
+			synchronized (mLock) {
+				mResourceDao.deleteResource(hash);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a thumbnail of passed picture, if it isn't stored yet, and links it from all train
+	 * stations with passed picture url.
+	 *
+	 * @param pictureUrl
+	 * 		The url the picture was fetched from.
+	 * @param picture
+	 * 		The encoded original picture.
+	 * @return True, if the picture is stored and linked by at least one train station, otherwise
+	 * false.
+	 */
+	@WorkerThread
+	public boolean store(@NonNull String pictureUrl, @NonNull byte[] picture) {
+		String hash = hash(picture);
+		File file = getFile(hash);
+		Resource resource;
+		synchronized (mLock) {
+			resource = file.exists() ? mResourceDao.getResource(hash) : null;
+		}
+		File thumbnail = null;
+		try {
+			if (resource == null) {
+				// transcode outside of the lock, so several pictures could be stored in parallel
+				thumbnail = File.createTempFile(hash, TEMP_FILE_SUFFIX, createDirectory());
+				resource = writeThumbnail(hash, picture, thumbnail);
+				if (resource == null) {
+					return false;
+				}
+			}
+			synchronized (mLock) {
+				if (thumbnail != null && !thumbnail.renameTo(file)) {
+					throw new IOException("Couldn't move thumbnail to " + file);
+				}
+				resource.setLastAccessed(mClock.currentTimeMillis());
+				mResourceDao.insertAndLink(resource, pictureUrl);
+				mResourceDao.updateLastAccessed(hash, resource.getLastAccessed());
+				collectGarbageLocked();
+				return mResourceDao.getResource(hash) != null;
+			}
+		} catch (IOException e) {
+			LOG.atWarn().arg(pictureUrl).cause(e).log("Couldn't store picture {}.");
+			return false;
+		} finally {
+			if (thumbnail != null && thumbnail.exists() && !thumbnail.delete()) {
+				LOG.atWarn().arg(thumbnail).log("Couldn't delete {}.");
+			}
+		}
+	}
+
+	/**
+	 * Deletes all pictures that aren't linked by any train station, and least recently
+	 * accessed pictures until the size of all pictures doesn't exceed the quota anymore.
+	 *
+	 * @return The number of bytes that were released.
+	 */
+	@WorkerThread
+	public long collectGarbage() {
+		synchronized (mLock) {
+			return collectGarbageLocked();
+		}
+	}
+
+	/**
+	 * @return The size of all stored thumbnails in bytes.
+	 */
+	@WorkerThread
+	public long getDiskUsage() {
+		return mResourceDao.getTotalSize();
+	}
+
+	/**
+	 * @param picture
+	 * 		The encoded picture.
+	 * @return The hex encoded SHA-256 hash of passed picture.
+	 */
+	@NonNull
+	public static String hash(@NonNull byte[] picture) {
+		byte[] digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256").digest(picture);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is supported by every platform.", e);
+		}
+		char[] hex = new char[digest.length * 2];
+		for (int i = 0; i < digest.length; i++) {
+			hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+			hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * @param width
+	 * 		The width of the picture.
+	 * @param height
+	 * 		The height of the picture.
+	 * @return The factor to scale the picture with, so it fits into
+	 * {@link #THUMBNAIL_WIDTH}x{@link #THUMBNAIL_HEIGHT}. Pictures are never scaled up.
+	 */
+	public static float calculateThumbnailScale(int width, int height) {
+		return Math.min(1f, Math.min((float) THUMBNAIL_WIDTH / width, (float) THUMBNAIL_HEIGHT /
+				height));
+	}
+
+	@Nullable
+	private Resource writeThumbnail(@NonNull String hash, @NonNull byte[] picture,
+			@NonNull File file) throws IOException {
+		Bitmap decoded = BitmapDecoder.decodeSampled(picture, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+		if (decoded == null) {
+			LOG.atWarn().arg(hash).log("Couldn't decode picture {}.");
+			return null;
+		}
+		float scale = calculateThumbnailScale(decoded.getWidth(), decoded.getHeight());
+		Bitmap thumbnail = decoded;
+		if (scale < 1f) {
+			thumbnail = Bitmap.createScaledBitmap(decoded, Math.max(1, Math.round(decoded
+					.getWidth() * scale)), Math.max(1, Math.round(decoded.getHeight() * scale)),
+					true);
+			decoded.recycle();
+		}
+		int width = thumbnail.getWidth();
+		int height = thumbnail.getHeight();
+		try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
+			if (!thumbnail.compress(Bitmap.CompressFormat.WEBP, THUMBNAIL_QUALITY, stream)) {
+				throw new IOException("Couldn't encode thumbnail of " + hash);
+			}
+		} finally {
+			thumbnail.recycle();
+		}
+		return new Resource(hash, file.length(), width, height, mClock.currentTimeMillis());
+	}
+
+	private long collectGarbageLocked() {
+		long releasedBytes = 0;
+		for (Resource resource : mResourceDao.getOrphanedResources()) {
+			releasedBytes += delete(resource);
+		}
+		long totalSize = mResourceDao.getTotalSize();
+		while (totalSize > mQuotaBytes) {
+			Resource resource = mResourceDao.getLeastRecentlyAccessedResource();
+			if (resource == null) {
+				break;
+			}
+			totalSize -= resource.getSize();
+			releasedBytes += delete(resource);
+		}
+		return releasedBytes;
+	}
+
+	private long delete(@NonNull Resource resource) {
+		mResourceDao.deleteResource(resource.getHash());
+		File file = getFile(resource.getHash());
+		if (file.exists() && !file.delete()) {
+			LOG.atWarn().arg(file).log("Couldn't delete {}.");
+		}
+		return resource.getSize();
+	}
+
+	@NonNull
+	private File createDirectory() throws IOException {
+		if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+			throw new IOException("Couldn't create " + mDirectory);
+		}
+		return mDirectory;
+	}
+
+	@NonNull
+	private File getFile(@NonNull String hash) {
+		return new File(mDirectory, hash + ".webp");
+	}
+}
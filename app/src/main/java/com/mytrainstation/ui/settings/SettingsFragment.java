@@ -1,9 +1,11 @@
 package com.mytrainstation.ui.settings;
 
 import android.os.Bundle;
+import android.preference.Preference;
 import android.preference.PreferenceFragment;
 
 import com.mytrainstation.R;
+import com.mytrainstation.api.offline.OfflineTrainStationService;
 
 /**
  * Fragment that extends {@link PreferenceFragment} to display app settings from
@@ -14,7 +16,8 @@ import com.mytrainstation.R;
 public class SettingsFragment extends PreferenceFragment {
 
 	/**
-	 * Preference identifier for maximum number of items that should be displayed within ui.
+	 * Preference identifier for number of items that are requested at once. Further items are
+	 * requested page by page while the list is scrolled.
 	 */
 	public static final String PREFERENCE_KEY_MAX_DISPLAYED_ITEMS =
 			"pref_key_max_train_stations_displayed";
@@ -31,12 +34,34 @@ public class SettingsFragment extends PreferenceFragment {
 	public static final String PREFERENCE_KEY_MIN_TIME_BETWEEN_LOCATION_UPDATES =
 			"pref_key_min_time_between_location_updates_millis";
 
+	/**
+	 * Preference identifier for adapting the interval of location updates to the speed of the
+	 * user and the search radius instead of the fixed minimum time and distance.
+	 */
+	public static final String PREFERENCE_KEY_ADAPTIVE_LOCATION_UPDATES =
+			"pref_key_adaptive_location_updates";
+
+	/**
+	 * Preference identifier for searching train stations near by within offline catalogue.
+	 */
+	public static final String PREFERENCE_KEY_OFFLINE_MODE = "pref_key_offline_mode";
+
+	/**
+	 * Preference identifier for the category of the offline search.
+	 */
+	private static final String PREFERENCE_KEY_OFFLINE = "pref_key_offline";
+
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 
 		// Load the preferences from an XML resource
 		addPreferencesFromResource(R.xml.preferences);
+		// the offline mode can't be used without a catalogue
+		Preference offline = findPreference(PREFERENCE_KEY_OFFLINE);
+		if (offline != null && !OfflineTrainStationService.isCatalogueAvailable(getActivity())) {
+			getPreferenceScreen().removePreference(offline);
+		}
 	}
 
 }
@@ -0,0 +1,20 @@
+package com.mytrainstation.util;
+
+/**
+ * Source of the current time. Could be replaced within tests to control time dependent
+ * behaviour like expiration of cache entries.
+ *
+ * @author JSCHENK
+ */
+public interface Clock {
+
+	/**
+	 * {@link Clock} that is backed by {@link System#currentTimeMillis()}.
+	 */
+	Clock SYSTEM = System::currentTimeMillis;
+
+	/**
+	 * @return The current time in milliseconds.
+	 */
+	long currentTimeMillis();
+}
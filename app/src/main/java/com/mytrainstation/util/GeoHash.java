@@ -0,0 +1,91 @@
+package com.mytrainstation.util;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Util class to encode coordinates as geohash. Coordinates that share the same geohash are
+ * located within the same rectangular tile, the tile size depends on the precision.
+ *
+ * @author JSCHENK
+ */
+public class GeoHash {
+
+	/**
+	 * The maximum supported precision (number of characters).
+	 */
+	public static final int MAX_PRECISION = 12;
+
+	private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+	/**
+	 * @param latitude
+	 * 		The latitude to encode.
+	 * @param longitude
+	 * 		The longitude to encode.
+	 * @param precision
+	 * 		The number of characters of the geohash (1 to {@link #MAX_PRECISION}).
+	 * @return The geohash of the tile that contains passed coordinate.
+	 */
+	@NonNull
+	public static String encode(double latitude, double longitude, int precision) {
+		if (precision < 1 || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException("Precision must be between 1 and " +
+					MAX_PRECISION);
+		}
+		double minLatitude = -90, maxLatitude = 90;
+		double minLongitude = -180, maxLongitude = 180;
+		char[] hash = new char[precision];
+		boolean evenBit = true;
+		int bit = 0;
+		int index = 0;
+		int position = 0;
+		while (position < precision) {
+			if (evenBit) {
+				double mid = (minLongitude + maxLongitude) / 2;
+				if (longitude >= mid) {
+					index = (index << 1) | 1;
+					minLongitude = mid;
+				} else {
+					index = index << 1;
+					maxLongitude = mid;
+				}
+			} else {
+				double mid = (minLatitude + maxLatitude) / 2;
+				if (latitude >= mid) {
+					index = (index << 1) | 1;
+					minLatitude = mid;
+				} else {
+					index = index << 1;
+					maxLatitude = mid;
+				}
+			}
+			evenBit = !evenBit;
+			if (++bit == 5) {
+				hash[position++] = BASE32[index];
+				bit = 0;
+				index = 0;
+			}
+		}
+		return new String(hash);
+	}
+
+	/**
+	 * @param precision
+	 * 		The number of characters of the geohash.
+	 * @return The height of a tile in degrees of latitude.
+	 */
+	public static double getTileHeightDegrees(int precision) {
+		int latitudeBits = (5 * precision) / 2;
+		return 180d / (1L << latitudeBits);
+	}
+
+	/**
+	 * @param precision
+	 * 		The number of characters of the geohash.
+	 * @return The width of a tile in degrees of longitude.
+	 */
+	public static double getTileWidthDegrees(int precision) {
+		int longitudeBits = (5 * precision + 1) / 2;
+		return 360d / (1L << longitudeBits);
+	}
+}
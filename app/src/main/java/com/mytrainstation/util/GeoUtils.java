@@ -0,0 +1,52 @@
+package com.mytrainstation.util;
+
+/**
+ * Util class that provides geographic calculations on plain latitude and longitude values.
+ *
+ * @author JSCHENK
+ */
+public class GeoUtils {
+
+	/**
+	 * Mean radius of the earth in metres.
+	 */
+	public static final double EARTH_RADIUS_METERS = 6371008.8;
+
+	/**
+	 * Length of one degree of latitude in metres.
+	 */
+	public static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180d;
+
+	/**
+	 * Calculates the great circle distance between two coordinates with help of the haversine
+	 * formula.
+	 *
+	 * @param latitude1
+	 * 		Latitude of the first coordinate.
+	 * @param longitude1
+	 * 		Longitude of the first coordinate.
+	 * @param latitude2
+	 * 		Latitude of the second coordinate.
+	 * @param longitude2
+	 * 		Longitude of the second coordinate.
+	 * @return The distance between both coordinates in metres.
+	 */
+	public static double distanceMeters(double latitude1, double longitude1, double latitude2,
+			double longitude2) {
+		double deltaLatitude = Math.toRadians(latitude2 - latitude1);
+		double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+		double a = Math.sin(deltaLatitude / 2) * Math.sin(deltaLatitude / 2)
+				+ Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+				* Math.sin(deltaLongitude / 2) * Math.sin(deltaLongitude / 2);
+		return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1d, Math.sqrt(a)));
+	}
+
+	/**
+	 * @param latitude
+	 * 		The latitude where the length should be calculated.
+	 * @return Length of one degree of longitude at passed latitude in metres.
+	 */
+	public static double metersPerDegreeLongitude(double latitude) {
+		return METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+	}
+}
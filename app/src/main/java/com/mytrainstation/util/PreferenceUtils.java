@@ -5,7 +5,7 @@ import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 
-import org.apache.log4j.Logger;
+import com.mytrainstation.logging.FastLogger;
 
 /**
  * Util class to help reading preferences and cast them to given types.
@@ -14,7 +14,7 @@ import org.apache.log4j.Logger;
  */
 public class PreferenceUtils {
 
-	private static final Logger LOG = Logger.getLogger(PreferenceUtils.class);
+	private static final FastLogger LOG = FastLogger.getLogger(PreferenceUtils.class);
 
 	/**
 	 * Tries to parse value, that is linked to {@link android.preference.Preference} with passed
@@ -36,7 +36,29 @@ public class PreferenceUtils {
 			@NonNull Context context,
 			@NonNull String preferenceKey,
 			Integer defaultValue) {
-		SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+		return getPreferenceValue(PreferenceManager.getDefaultSharedPreferences(context),
+				preferenceKey, defaultValue);
+	}
+
+	/**
+	 * Like {@link #getPreferenceValue(Context, String, Integer)}, but reads passed preferences
+	 * instead of the default ones.
+	 *
+	 * @param preferences
+	 * 		The preferences to read the value from.
+	 * @param preferenceKey
+	 * 		The key of the preference where value should be returned if available.
+	 * @param defaultValue
+	 * 		The value that should be returned if preference value with given key doesn't exist or
+	 * 		isn't set.
+	 * @return The integer value of the preference with the given key, or the default value, if
+	 * preference doesn't exist, value isn't set or value couldn't parse to {@link Integer}.
+	 */
+	@NonNull
+	public static Integer getPreferenceValue(
+			@NonNull SharedPreferences preferences,
+			@NonNull String preferenceKey,
+			Integer defaultValue) {
 		String preferenceValue = preferences.getString(preferenceKey, null);
 		if (preferenceValue == null) {
 			return defaultValue;
@@ -45,8 +67,43 @@ public class PreferenceUtils {
 		try {
 			value = Integer.parseInt(preferenceValue);
 		} catch (NumberFormatException ex) {
-			LOG.error(ex);
+			LOG.atError().arg(preferenceKey).cause(ex).log("Couldn't parse value of preference {}");
 		}
 		return value != null ? value : defaultValue;
 	}
+
+	/**
+	 * @param context
+	 * 		The context that will be used to retrieve {@link SharedPreferences}.
+	 * @param preferenceKey
+	 * 		The key of the boolean preference.
+	 * @param defaultValue
+	 * 		The value that should be returned if preference with given key isn't set.
+	 * @return The boolean value of the preference with the given key, or the default value, if
+	 * preference isn't set.
+	 */
+	public static boolean isPreferenceEnabled(
+			@NonNull Context context,
+			@NonNull String preferenceKey,
+			boolean defaultValue) {
+		return isPreferenceEnabled(PreferenceManager.getDefaultSharedPreferences(context),
+				preferenceKey, defaultValue);
+	}
+
+	/**
+	 * @param preferences
+	 * 		The preferences to read the value from.
+	 * @param preferenceKey
+	 * 		The key of the boolean preference.
+	 * @param defaultValue
+	 * 		The value that should be returned if preference with given key isn't set.
+	 * @return The boolean value of the preference with the given key, or the default value, if
+	 * preference isn't set.
+	 */
+	public static boolean isPreferenceEnabled(
+			@NonNull SharedPreferences preferences,
+			@NonNull String preferenceKey,
+			boolean defaultValue) {
+		return preferences.getBoolean(preferenceKey, defaultValue);
+	}
 }
@@ -0,0 +1,217 @@
+package com.mytrainstation.api;
+
+import android.content.Context;
+
+import com.mytrainstation.model.TrainStation;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Run tests against {@link AdaptiveChunkFetcher} with help of a local stand-in for the graphql
+ * endpoint, which fails with 'Internal Error' if more train stations than a configurable
+ * threshold are requested at once.
+ *
+ * @author JSCHENK
+ */
+public class AdaptiveChunkFetcherTest {
+
+	private static final Logger LOG = Logger.getLogger(AdaptiveChunkFetcherTest.class);
+
+	private static final Pattern COUNT = Pattern.compile("\"count\":(\\d+)");
+	private static final Pattern OFFSET = Pattern.compile("\"offset\":(\\d+)");
+	private static final String ERROR_RESPONSE = "{\"errors\":[{\"message\":\"Internal " +
+			"Error\",\"locations\":[]}],\"data\":{\"nearby\":null}}";
+	private static final int THRESHOLD = 30;
+	private static final int NUMBER_OF_STATIONS = 100;
+	private static final int PARALLEL_CHUNKS = 4;
+	private static final long BASE_DELAY_MILLIS = 100;
+	private static final long DELAY_PER_STATION_MILLIS = 2;
+
+	private MockWebServer mServer;
+	private TrainStationService mService;
+	private ExecutorService mExecutorService;
+	private volatile int mThreshold = THRESHOLD;
+
+	/**
+	 * Starts the local stand-in for the graphql endpoint.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		mServer = new MockWebServer();
+		mServer.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				String body = request.getBody().readUtf8();
+				int count = parse(COUNT, body);
+				int offset = parse(OFFSET, body);
+				if (count > mThreshold) {
+					return new MockResponse().setBody(ERROR_RESPONSE);
+				}
+				return new MockResponse().setBody(createResponse(offset, count)).setBodyDelay
+						(BASE_DELAY_MILLIS + DELAY_PER_STATION_MILLIS * count, TimeUnit
+								.MILLISECONDS);
+			}
+		});
+		mServer.start();
+		mService = new TrainStationService(mock(Context.class), mServer.url("/graphql")
+				.toString());
+		mExecutorService = Executors.newFixedThreadPool(PARALLEL_CHUNKS);
+	}
+
+	/**
+	 * Shuts down the local stand-in.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		mExecutorService.shutdownNow();
+		mServer.shutdown();
+	}
+
+	/**
+	 * Tests that {@link AdaptiveChunkFetcher#fetch(TrainStationQuery, RequestHandle)} will
+	 * return all requested train stations in order although the endpoint fails for the
+	 * requested count, and that the largest count the endpoint answers will be learned.
+	 */
+	@Test
+	public void AdaptiveChunkFetcher_fetch_learnsLargestAnsweredCount() throws IOException {
+		AdaptiveChunkFetcher fetcher = new AdaptiveChunkFetcher(mService::fetch,
+				mExecutorService);
+		TrainStationQuery query = TrainStationQuery.nearBy(51.05, 13.74, 1000,
+				NUMBER_OF_STATIONS);
+
+		for (int i = 0; i < 5; i++) {
+			assertStations(fetcher.fetch(query, new RequestHandle()), 0, NUMBER_OF_STATIONS);
+		}
+		Assert.assertThat(fetcher.getLargestSucceededCount(), is(THRESHOLD));
+		Assert.assertThat(fetcher.getSmallestFailedCount(), is(THRESHOLD + 1));
+
+		// the learned count is used right away, so no chunk fails anymore
+		long failedChunks = fetcher.getFailedChunkCount();
+		assertStations(fetcher.fetch(query.withOffset(NUMBER_OF_STATIONS), new
+				RequestHandle()), NUMBER_OF_STATIONS, NUMBER_OF_STATIONS);
+		Assert.assertThat(fetcher.getFailedChunkCount(), is(failedChunks));
+	}
+
+	/**
+	 * Tests that {@link AdaptiveChunkFetcher#fetch(TrainStationQuery, RequestHandle)} will keep
+	 * train stations that are part of several chunks only once.
+	 */
+	@Test
+	public void AdaptiveChunkFetcher_fetch_dropsDuplicateStations() throws IOException {
+		// each chunk repeats the last station of the previous chunk
+		AdaptiveChunkFetcher fetcher = new AdaptiveChunkFetcher((query, handle) -> {
+			if (query.getCount() > 10) {
+				throw new GraphQlException(Collections.singletonList("Internal Error"));
+			}
+			int offset = Math.max(0, query.getOffset() - 1);
+			return createStations(offset, query.getOffset() + query.getCount() - offset);
+		}, mExecutorService);
+
+		assertStations(fetcher.fetch(TrainStationQuery.nearBy(51.05, 13.74, 1000, 40), new
+				RequestHandle()), 0, 40);
+	}
+
+	/**
+	 * Compares the latency of a page that is fetched in parallel chunks with the same chunks
+	 * fetched one after another and with a single fetch of an endpoint without threshold.
+	 */
+	@Test
+	public void AdaptiveChunkFetcher_fetch_parallelChunksAreFasterThanSequentialChunks() throws
+			IOException {
+		AdaptiveChunkFetcher fetcher = new AdaptiveChunkFetcher(mService::fetch,
+				mExecutorService);
+		TrainStationQuery query = TrainStationQuery.nearBy(51.05, 13.74, 1000,
+				NUMBER_OF_STATIONS);
+		// learn the threshold first
+		while (fetcher.getSmallestFailedCount() != THRESHOLD + 1) {
+			fetcher.fetch(query, new RequestHandle());
+		}
+
+		long start = System.nanoTime();
+		assertStations(fetcher.fetch(query, new RequestHandle()), 0, NUMBER_OF_STATIONS);
+		long parallel = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		List<TrainStation> trainStations = new ArrayList<>();
+		for (int offset = 0; offset < NUMBER_OF_STATIONS; offset += THRESHOLD) {
+			trainStations.addAll(mService.fetch(query.withPage(offset, Math.min(THRESHOLD,
+					NUMBER_OF_STATIONS - offset)), new RequestHandle()));
+		}
+		long sequential = System.nanoTime() - start;
+		assertStations(trainStations, 0, NUMBER_OF_STATIONS);
+
+		mThreshold = Integer.MAX_VALUE;
+		start = System.nanoTime();
+		assertStations(mService.fetch(query, new RequestHandle()), 0, NUMBER_OF_STATIONS);
+		long single = System.nanoTime() - start;
+
+		LOG.info(String.format(Locale.getDefault(), "%s stations, threshold %s: parallel " +
+						"chunks=%sms, sequential chunks=%sms, single fetch without threshold=%sms",
+				NUMBER_OF_STATIONS, THRESHOLD, parallel / 1000000, sequential / 1000000, single /
+						1000000));
+		Assert.assertThat(parallel, is(lessThan(sequential)));
+	}
+
+	private static void assertStations(List<TrainStation> trainStations, int firstId,
+			int count) {
+		Assert.assertThat(trainStations.size(), is(count));
+		for (int i = 0; i < count; i++) {
+			Assert.assertThat(trainStations.get(i).getId(), is(firstId + i));
+		}
+	}
+
+	private static int parse(Pattern pattern, String body) {
+		Matcher matcher = pattern.matcher(body);
+		return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+	}
+
+	private static List<TrainStation> createStations(int offset, int count) {
+		List<TrainStation> trainStations = new ArrayList<>();
+		for (int id = offset; id < offset + count; id++) {
+			trainStations.add(new TrainStation.Builder(id, "Station " + id).build());
+		}
+		return trainStations;
+	}
+
+	/**
+	 * @return A response of {@link queries.NearByQuery} with consecutive EVA ids.
+	 */
+	private static String createResponse(int offset, int count) {
+		StringBuilder stations = new StringBuilder();
+		for (int id = offset; id < offset + count; id++) {
+			if (stations.length() > 0) {
+				stations.append(',');
+			}
+			stations.append(String.format(Locale.ROOT, "{\"__typename\":\"Station\"," +
+					"\"primaryEvaId\":%s,\"name\":\"Station %s\",\"hasWiFi\":false," +
+					"\"hasParking\":false,\"hasSteplessAccess\":\"no\",\"picture\":null}", id,
+					id));
+		}
+		return "{\"data\":{\"nearby\":{\"__typename\":\"Nearby\",\"stations\":[" + stations +
+				"]}}}";
+	}
+}
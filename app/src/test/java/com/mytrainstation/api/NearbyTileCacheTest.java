@@ -0,0 +1,136 @@
+package com.mytrainstation.api;
+
+import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.util.Clock;
+import com.mytrainstation.util.GeoUtils;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Run tests against {@link NearbyTileCache}.
+ *
+ * @author JSCHENK
+ */
+public class NearbyTileCacheTest {
+
+	private static final Logger LOG = Logger.getLogger(NearbyTileCacheTest.class);
+	private static final double START_LATITUDE = 51.0405;
+	private static final double START_LONGITUDE = 13.7320;
+	private static final int RADIUS = 2000;
+	private static final int COUNT = 20;
+
+	private long mNow;
+	private Clock mClock;
+
+	/**
+	 * Resets the time of {@link #mClock}.
+	 */
+	@Before
+	public void setUp() {
+		mNow = 0;
+		mClock = () -> mNow;
+	}
+
+	/**
+	 * Replays a walk of 20 km with a location fix every 50 metres and one every 36 seconds
+	 * (5 km/h). Every lookup that can't be answered by {@link NearbyTileCache} is counted as
+	 * network call.
+	 */
+	@Test
+	public void NearbyTileCache_replayTrack_willAnswerMostLookupsLocally() {
+		NearbyTileCache cache = new NearbyTileCache(NearbyTileCache.DEFAULT_TIME_TO_LIVE_MILLIS,
+				NearbyTileCache.DEFAULT_MAX_BYTES, NearbyTileCache.DEFAULT_MAX_OFFSET_RATIO,
+				mClock);
+		int lookups = 400;
+		int networkCalls = 0;
+		for (int i = 0; i < lookups; i++) {
+			double latitude = START_LATITUDE + i * 35d / GeoUtils.METERS_PER_DEGREE;
+			double longitude = START_LONGITUDE + i * 35d / GeoUtils.metersPerDegreeLongitude
+					(latitude);
+			if (cache.get(latitude, longitude, RADIUS, COUNT) == null) {
+				networkCalls++;
+				cache.put(latitude, longitude, RADIUS, COUNT, createTrainStations(i, COUNT));
+			}
+			mNow += 36000;
+		}
+		LOG.info(String.format(Locale.getDefault(), "Replayed %d fixes: hit ratio=%.2f," +
+				" network calls=%d, saved calls=%d", lookups, cache.getHitRatio(), networkCalls,
+				lookups - networkCalls));
+
+		Assert.assertThat(cache.getHitCount() + cache.getMissCount(), is((long) lookups));
+		Assert.assertThat(cache.getMissCount(), is((long) networkCalls));
+		Assert.assertThat(cache.getHitRatio(), greaterThan(0.8d));
+	}
+
+	/**
+	 * Tests that {@link NearbyTileCache#get(double, double, int, int)} won't answer a lookup by
+	 * a result of a different radius, a too distant location or an expired result.
+	 */
+	@Test
+	public void NearbyTileCache_get_returnNullForDifferentRadiusDistantLocationOrExpiredResult() {
+		NearbyTileCache cache = new NearbyTileCache(1000, NearbyTileCache.DEFAULT_MAX_BYTES,
+				NearbyTileCache.DEFAULT_MAX_OFFSET_RATIO, mClock);
+		cache.put(START_LATITUDE, START_LONGITUDE, RADIUS, COUNT, createTrainStations(0, 3));
+
+		Assert.assertThat(cache.get(START_LATITUDE, START_LONGITUDE, RADIUS, COUNT),
+				is(not(nullValue())));
+		Assert.assertThat(cache.get(START_LATITUDE, START_LONGITUDE, RADIUS + 1000, COUNT),
+				is(nullValue()));
+		Assert.assertThat(cache.get(START_LATITUDE + 0.01, START_LONGITUDE, RADIUS, COUNT),
+				is(nullValue()));
+		mNow = 1001;
+		Assert.assertThat(cache.get(START_LATITUDE, START_LONGITUDE, RADIUS, COUNT),
+				is(nullValue()));
+	}
+
+	/**
+	 * Tests that {@link NearbyTileCache#put(double, double, int, int, List)} will evict the least
+	 * recently used results as soon as the byte budget is exceeded.
+	 */
+	@Test
+	public void NearbyTileCache_put_willEvictLeastRecentlyUsedResultsToStayWithinBudget() {
+		List<TrainStation> trainStations = createTrainStations(0, 10);
+		long maxBytes = 3 * NearbyTileCache.estimateBytes(trainStations);
+		NearbyTileCache cache = new NearbyTileCache(NearbyTileCache.DEFAULT_TIME_TO_LIVE_MILLIS,
+				maxBytes, NearbyTileCache.DEFAULT_MAX_OFFSET_RATIO, mClock);
+		for (int i = 0; i < 3; i++) {
+			cache.put(START_LATITUDE + i, START_LONGITUDE, RADIUS, COUNT, trainStations);
+		}
+		// touch first result, so second one is least recently used
+		Assert.assertThat(cache.get(START_LATITUDE, START_LONGITUDE, RADIUS, COUNT),
+				is(not(nullValue())));
+		cache.put(START_LATITUDE + 3, START_LONGITUDE, RADIUS, COUNT, trainStations);
+
+		Assert.assertThat(cache.getEvictionCount(), is(1L));
+		Assert.assertThat(cache.getCurrentBytes(), is(lessThanOrEqualTo(maxBytes)));
+		Assert.assertThat(cache.get(START_LATITUDE + 1, START_LONGITUDE, RADIUS, COUNT),
+				is(nullValue()));
+		Assert.assertThat(cache.get(START_LATITUDE, START_LONGITUDE, RADIUS, COUNT),
+				is(not(nullValue())));
+		Assert.assertThat(cache.getCurrentBytes(), is(lessThan(maxBytes + 1)));
+	}
+
+	private List<TrainStation> createTrainStations(int offset, int count) {
+		List<TrainStation> trainStations = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			trainStations.add(new TrainStation.Builder(offset * count + i, "Station " + i)
+					.pictureUrl("http://123.de/" + i + ".jpg")
+					.build());
+		}
+		return trainStations;
+	}
+}
@@ -0,0 +1,223 @@
+package com.mytrainstation.api;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.mytrainstation.model.TrainStation;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Run tests against {@link TrainStationService} with help of a local mock graphql endpoint.
+ *
+ * @author JSCHENK
+ */
+public class TrainStationServiceTest {
+
+	private static final String SEARCH_RESPONSE = "{\"data\":{\"search\":{\"__typename\":" +
+			"\"Searchable\",\"stations\":[{\"__typename\":\"Station\",\"primaryEvaId\":1," +
+			"\"name\":\"Dresden - Hauptbahnhof\",\"hasWiFi\":true,\"hasParking\":true," +
+			"\"hasSteplessAccess\":\"yes\",\"picture\":null},{\"__typename\":\"Station\"," +
+			"\"primaryEvaId\":2,\"name\":\"Dresden - Strehlen\",\"hasWiFi\":false," +
+			"\"hasParking\":true,\"hasSteplessAccess\":\"no\",\"picture\":null}]}}}";
+	private static final String EMPTY_NEARBY_RESPONSE = "{\"data\":{\"nearby\":{" +
+			"\"__typename\":\"Nearby\",\"stations\":[]}}}";
+	private static final int NUMBER_OF_CALLERS = 5;
+
+	private MockWebServer mServer;
+	private TrainStationService mService;
+	private ExecutorService mExecutorService;
+
+	/**
+	 * Starts the local graphql endpoint and initializes {@link #mService} against it.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		mServer = new MockWebServer();
+		mServer.start();
+		mService = new TrainStationService(mock(Context.class), mServer.url("/graphql")
+				.toString());
+		mExecutorService = Executors.newFixedThreadPool(NUMBER_OF_CALLERS);
+	}
+
+	/**
+	 * Shuts down the local graphql endpoint.
+	 */
+	@After
+	public void tearDown() throws Exception {
+		mExecutorService.shutdownNow();
+		mServer.shutdown();
+	}
+
+	/**
+	 * Tests that concurrent identical calls of
+	 * {@link TrainStationService#searchTrainStations(String)} will share one request to the
+	 * graphql endpoint and all receive its result.
+	 */
+	@Test
+	public void TrainStationService_searchTrainStations_willCoalesceConcurrentIdenticalCalls()
+			throws Exception {
+		mServer.enqueue(new MockResponse().setBody(SEARCH_RESPONSE).setBodyDelay(500,
+				TimeUnit.MILLISECONDS));
+
+		List<List<TrainStation>> results = searchConcurrently("Dresden", " dresden", "DRESDEN ",
+				"Dresden", "dresden");
+
+		Assert.assertThat(mServer.getRequestCount(), is(1));
+		Assert.assertThat(mService.getExecutedRequestCount(), is(1L));
+		Assert.assertThat(mService.getCoalescedRequestCount(), is((long) NUMBER_OF_CALLERS - 1));
+		for (List<TrainStation> result : results) {
+			Assert.assertThat(result.size(), is(2));
+		}
+	}
+
+	/**
+	 * Tests that concurrent different calls of
+	 * {@link TrainStationService#searchTrainStations(String)} will be queued and executed instead
+	 * of being dropped.
+	 */
+	@Test
+	public void TrainStationService_searchTrainStations_willQueueConcurrentDifferentCalls()
+			throws Exception {
+		for (int i = 0; i < NUMBER_OF_CALLERS; i++) {
+			mServer.enqueue(new MockResponse().setBody(SEARCH_RESPONSE).setBodyDelay(100,
+					TimeUnit.MILLISECONDS));
+		}
+
+		List<List<TrainStation>> results = searchConcurrently("Dresden", "Leipzig", "Berlin",
+				"Hamburg", "Köln");
+
+		Assert.assertThat(mServer.getRequestCount(), is(NUMBER_OF_CALLERS));
+		Assert.assertThat(mService.getExecutedRequestCount(), is((long) NUMBER_OF_CALLERS));
+		Assert.assertThat(mService.getCoalescedRequestCount(), is(0L));
+		for (List<TrainStation> result : results) {
+			Assert.assertThat(result.size(), is(2));
+		}
+	}
+
+	/**
+	 * Tests that the search term is only normalized to identify the request, while the graphql
+	 * endpoint receives the term as it was entered.
+	 */
+	@Test
+	public void TrainStationService_searchTrainStations_sendsTermAsEntered() throws Exception {
+		mServer.enqueue(new MockResponse().setBody(SEARCH_RESPONSE));
+
+		mService.searchTrainStations("Dresden  Hbf");
+
+		String body = mServer.takeRequest().getBody().readUtf8();
+		Assert.assertThat(body.contains("\"searchTerm\":\"Dresden  Hbf\""), is(true));
+	}
+
+	/**
+	 * Tests that a slow request of a further page doesn't delay a search that is sent while it is
+	 * in flight, and that an empty page is told apart from a failed one.
+	 */
+	@Test
+	public void TrainStationService_searchTrainStationsOrThrow_nextPageDoesNotDelaySearch()
+			throws Exception {
+		mServer.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				if (request.getBody().clone().readUtf8().contains("\"offset\":20")) {
+					return new MockResponse().setBody(EMPTY_NEARBY_RESPONSE).setBodyDelay(1000,
+							TimeUnit.MILLISECONDS);
+				}
+				if (request.getBody().clone().readUtf8().contains("\"offset\":40")) {
+					return new MockResponse().setResponseCode(500);
+				}
+				return new MockResponse().setBody(SEARCH_RESPONSE);
+			}
+		});
+		TrainStationService service = new TrainStationService(mock(Context.class), mServer.url
+				("/graphql").toString(), new OkHttpClient(), mExecutorService, mock
+				(SharedPreferences.class), new NearbyTileCache());
+		TrainStationQuery nearBy = TrainStationQuery.nearBy(51.05, 13.74, 1000, 20);
+		Future<List<TrainStation>> nextPage = mExecutorService.submit(() -> service
+				.searchTrainStationsOrThrow(nearBy.withOffset(20), null));
+		Assert.assertThat(mServer.takeRequest(5, TimeUnit.SECONDS), is(notNullValue()));
+
+		long start = System.nanoTime();
+		Assert.assertThat(service.searchTrainStations("Dresden").size(), is(2));
+		Assert.assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(
+				500L)));
+		Assert.assertThat(nextPage.isDone(), is(false));
+		Assert.assertThat(nextPage.get(10, TimeUnit.SECONDS).isEmpty(), is(true));
+		try {
+			service.searchTrainStationsOrThrow(nearBy.withOffset(40), null);
+			Assert.fail("A failed page has to be thrown.");
+		} catch (UncheckedIOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that a search close to an earlier one is answered by the near by tile cache without
+	 * any request and that only this answer is approximate.
+	 */
+	@Test
+	public void TrainStationService_searchTrainStations_tileCacheAnswerIsApproximate() {
+		mServer.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				return new MockResponse().setBody(SEARCH_RESPONSE);
+			}
+		});
+		TrainStationService service = new TrainStationService(mock(Context.class), mServer.url
+				("/graphql").toString(), new OkHttpClient(), mExecutorService, mock
+				(SharedPreferences.class), new NearbyTileCache());
+
+		List<TrainStation> searched = service.searchTrainStations(TrainStationQuery.nearBy(51.05,
+				13.74, 1000, 20), null);
+		int requestCount = mServer.getRequestCount();
+		List<TrainStation> cached = service.searchTrainStations(TrainStationQuery.nearBy(51.0501,
+				13.74, 1000, 20), null);
+
+		Assert.assertThat(mServer.getRequestCount(), is(requestCount));
+		Assert.assertThat(cached, is(searched));
+		Assert.assertThat(service.isApproximate(searched), is(false));
+		Assert.assertThat(service.isApproximate(cached), is(true));
+	}
+
+	private List<List<TrainStation>> searchConcurrently(String... searchTerms) throws Exception {
+		CountDownLatch startSignal = new CountDownLatch(1);
+		List<Future<List<TrainStation>>> futures = new ArrayList<>();
+		for (String searchTerm : searchTerms) {
+			Callable<List<TrainStation>> call = () -> {
+				startSignal.await();
+				return mService.searchTrainStations(searchTerm);
+			};
+			futures.add(mExecutorService.submit(call));
+		}
+		startSignal.countDown();
+		List<List<TrainStation>> results = new ArrayList<>();
+		for (Future<List<TrainStation>> future : futures) {
+			results.add(future.get(10, TimeUnit.SECONDS));
+		}
+		return results;
+	}
+}
@@ -1,13 +1,12 @@
 package com.mytrainstation.api;
 
-import com.apollographql.apollo.api.Operation;
-import com.apollographql.apollo.api.Response;
 import com.mytrainstation.model.TrainStation;
 
 import org.junit.Assert;
 import org.junit.Test;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.List;
 
 import queries.NearByQuery;
@@ -16,7 +15,6 @@ import queries.SearchQuery;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
-import static org.mockito.Mockito.mock;
 
 /**
  * Run tests against {@link TrainStationServiceUtil}.
@@ -25,31 +23,29 @@ import static org.mockito.Mockito.mock;
  */
 public class TrainStationServiceUtilTest {
 
+	private static final String STATIONS = "\"stations\":[{\"__typename\":\"Station\"," +
+			"\"primaryEvaId\":1,\"name\":\"Dresden - Hauptbahnhof\",\"hasWiFi\":true," +
+			"\"hasParking\":true,\"hasSteplessAccess\":\"yes\",\"picture\":{\"__typename\":" +
+			"\"Picture\",\"url\":\"http://123.de/456.jpg\"},\"location\":{\"__typename\":" +
+			"\"Location\",\"latitude\":51.040562,\"longitude\":13.732039}},{\"__typename\":" +
+			"\"Station\",\"primaryEvaId\":2,\"name\":\"Dresden - Strehlen\",\"hasWiFi\":false," +
+			"\"hasParking\":true,\"hasSteplessAccess\":\"no\",\"picture\":{\"__typename\":" +
+			"\"Picture\",\"url\":\"http://123.de/789.jpg\"}},{\"__typename\":\"Station\"," +
+			"\"primaryEvaId\":null,\"name\":\"Without EVA id\",\"hasWiFi\":false," +
+			"\"hasParking\":false,\"hasSteplessAccess\":null,\"picture\":null}]";
+
 	/**
-	 * Tests that {@link TrainStationServiceUtil#parseResponse(Response)} will parse all available
-	 * {@link TrainStation}s from {@link Response} with {@link NearByQuery.Data}.
+	 * Tests that {@link TrainStationServiceUtil#parseResponse(java.io.Reader)} will parse all
+	 * available {@link TrainStation}s from a response of {@link NearByQuery}.
 	 */
 	@Test
 	public void
 	TrainStationServiceUtil_parseResponse_willParseNearByQueryResponseAndReturnListOfTrainStations
-	() {
-		Operation operation = mock(Operation.class);
-		NearByQuery.Station station1 = new NearByQuery.Station("Station", 1, "Dresden - " +
-				"Hauptbahnhof", true, true, "yes", new NearByQuery.Picture("Picture",
-				"http://123.de/456.jpg"));
-		NearByQuery.Station station2 = new NearByQuery.Station("Station", 2,
-				"Dresden - Strehlen", false, true, "no", new NearByQuery.Picture("Picture",
-				"http://123.de/789.jpg"));
-		ArrayList<NearByQuery.Station> stations = new ArrayList<>();
-		stations.add(station1);
-		stations.add(station2);
-		NearByQuery.Nearby nearBy = new NearByQuery.Nearby("Nearby", stations);
-		NearByQuery.Data data = new NearByQuery.Data(nearBy);
-		Response<Object> response = Response.builder(operation)
-				.data(data)
-				.build();
-
-		List<TrainStation> trainStations = TrainStationServiceUtil.parseResponse(response);
+	() throws IOException {
+		String response = "{\"data\":{\"nearby\":{\"__typename\":\"Nearby\"," + STATIONS + "}}}";
+
+		List<TrainStation> trainStations = TrainStationServiceUtil.parseResponse(new
+				StringReader(response));
 		Assert.assertThat(trainStations, is(not(nullValue())));
 		Assert.assertThat(trainStations.size(), is(2));
 
@@ -60,30 +56,18 @@ public class TrainStationServiceUtilTest {
 	}
 
 	/**
-	 * Tests that {@link TrainStationServiceUtil#parseResponse(Response)} will parse all available
-	 * {@link TrainStation}s from {@link Response} with {@link SearchQuery.Data}.
+	 * Tests that {@link TrainStationServiceUtil#parseResponse(java.io.Reader)} will parse all
+	 * available {@link TrainStation}s from a response of {@link SearchQuery}.
 	 */
 	@Test
 	public void
 	TrainStationServiceUtil_parseResponse_willParseSearchQueryResponseAndReturnListOfTrainStations
-	() {
-		Operation operation = mock(Operation.class);
-		SearchQuery.Station station1 = new SearchQuery.Station("Station", 1, "Dresden - " +
-				"Hauptbahnhof", true, true, "yes", new SearchQuery.Picture("Picture",
-				"http://123.de/456.jpg"));
-		SearchQuery.Station station2 = new SearchQuery.Station("Station", 2,
-				"Dresden - Strehlen", false, true, "no", new SearchQuery.Picture("Picture",
-				"http://123.de/789.jpg"));
-		ArrayList<SearchQuery.Station> stations = new ArrayList<>();
-		stations.add(station1);
-		stations.add(station2);
-		SearchQuery.Search search = new SearchQuery.Search("Search", stations);
-		SearchQuery.Data data = new SearchQuery.Data(search);
-		Response<Object> response = Response.builder(operation)
-				.data(data)
-				.build();
-
-		List<TrainStation> trainStations = TrainStationServiceUtil.parseResponse(response);
+	() throws IOException {
+		String response = "{\"data\":{\"search\":{\"__typename\":\"Searchable\"," + STATIONS +
+				"}}}";
+
+		List<TrainStation> trainStations = TrainStationServiceUtil.parseResponse(new
+				StringReader(response));
 		Assert.assertThat(trainStations, is(not(nullValue())));
 		Assert.assertThat(trainStations.size(), is(2));
 
@@ -93,6 +77,38 @@ public class TrainStationServiceUtilTest {
 				false, "http://123.de/789.jpg");
 	}
 
+	/**
+	 * Tests that {@link TrainStationServiceUtil#parseResponse(java.io.Reader)} will return an
+	 * empty list if response contains errors instead of data.
+	 */
+	@Test
+	public void TrainStationServiceUtil_parseResponse_returnEmptyListIfResponseContainsErrors()
+			throws IOException {
+		String response = "{\"errors\":[{\"message\":\"Internal Error\",\"locations\":[]}]," +
+				"\"data\":{\"nearby\":null}}";
+
+		List<TrainStation> trainStations = TrainStationServiceUtil.parseResponse(new
+				StringReader(response));
+		Assert.assertThat(trainStations.size(), is(0));
+	}
+
+	/**
+	 * Tests that {@link TrainStationServiceUtil#parseResponse(java.io.Reader)} will parse the
+	 * location of {@link TrainStation}s if it is part of the response.
+	 */
+	@Test
+	public void TrainStationServiceUtil_parseResponse_willParseLocationIfAvailable() throws
+			IOException {
+		String response = "{\"data\":{\"nearby\":{\"__typename\":\"Nearby\"," + STATIONS + "}}}";
+
+		List<TrainStation> trainStations = TrainStationServiceUtil.parseResponse(new
+				StringReader(response));
+		Assert.assertThat(trainStations.get(0).hasLocation(), is(true));
+		Assert.assertThat(trainStations.get(0).getLatitude(), is(51.040562));
+		Assert.assertThat(trainStations.get(0).getLongitude(), is(13.732039));
+		Assert.assertThat(trainStations.get(1).hasLocation(), is(false));
+	}
+
 	private void assertTrainStationProperties(TrainStation trainStation, Integer id, String name,
 			boolean hasWifi, boolean hasParking, boolean hasSteplessAccess, String pictureUrl) {
 		Assert.assertThat(trainStation.getId(), is(id));
@@ -102,4 +118,4 @@ public class TrainStationServiceUtilTest {
 		Assert.assertThat(trainStation.hasSteplessAccess(), is(hasSteplessAccess));
 		Assert.assertThat(trainStation.getPictureUrl(), is(pictureUrl));
 	}
-}
\ No newline at end of file
+}
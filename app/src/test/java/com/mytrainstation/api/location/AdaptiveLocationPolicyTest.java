@@ -0,0 +1,120 @@
+package com.mytrainstation.api.location;
+
+import android.location.LocationManager;
+
+import com.mytrainstation.util.GeoUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Run tests against {@link AdaptiveLocationPolicy}.
+ *
+ * @author JSCHENK
+ */
+public class AdaptiveLocationPolicyTest {
+
+	private static final long START_MILLIS = 1539588600000L;
+	private static final double LATITUDE = 51.0405;
+	private static final double LONGITUDE = 13.7320;
+	private static final float ACCURACY_METERS = 10;
+
+	/**
+	 * Tests that jitter within the accuracy of the fixes is taken as standing still, so fixes of
+	 * the passive provider are requested and none but the first fix is delivered.
+	 */
+	@Test
+	public void AdaptiveLocationPolicy_onLocationChanged_stationaryRequestsPassive() {
+		AdaptiveLocationPolicy policy = new AdaptiveLocationPolicy(2000);
+
+		Assert.assertThat(policy.onLocationChanged(START_MILLIS, LATITUDE, LONGITUDE,
+				ACCURACY_METERS), is(true));
+		Assert.assertThat(policy.getRequest().getProvider(), is(LocationManager.GPS_PROVIDER));
+		for (int i = 1; i <= 6; i++) {
+			double offset = (i % 2 == 0 ? 8 : -8) / GeoUtils.METERS_PER_DEGREE;
+			Assert.assertThat(policy.onLocationChanged(START_MILLIS + i * 10_000, LATITUDE +
+					offset, LONGITUDE, ACCURACY_METERS), is(false));
+		}
+
+		Assert.assertThat(policy.getSpeedMetersPerSecond(), is(0d));
+		Assert.assertThat(policy.getRequest().isPassive(), is(true));
+		Assert.assertThat(policy.getRequest().getIntervalMillis(), is(AdaptiveLocationPolicy
+				.STATIONARY_INTERVAL_MILLIS));
+	}
+
+	/**
+	 * Tests that the interval of gps fixes shrinks with the speed of the user, so about two
+	 * fixes are determined while the user covers the minimum distance.
+	 */
+	@Test
+	public void AdaptiveLocationPolicy_onLocationChanged_scalesIntervalToSpeed() {
+		AdaptiveLocationPolicy walking = move(new AdaptiveLocationPolicy(2000), 1.5, 10_000);
+		AdaptiveLocationPolicy driving = move(new AdaptiveLocationPolicy(2000), 20, 10_000);
+
+		Assert.assertThat(walking.getSpeedMetersPerSecond(), is(closeTo(1.5, 0.5)));
+		Assert.assertThat(driving.getSpeedMetersPerSecond(), is(closeTo(20, 1)));
+		Assert.assertThat(walking.getRequest().isPassive(), is(false));
+		Assert.assertThat(driving.getRequest().getIntervalMillis(), is(lessThan(walking
+				.getRequest().getIntervalMillis())));
+		// 1000 m at 20 m/s within two fixes, apart from the hysteresis of the first estimates
+		Assert.assertThat((double) driving.getRequest().getIntervalMillis(), is(closeTo(25_000,
+				5_000)));
+	}
+
+	/**
+	 * Tests that the minimum distance follows the search radius and that a larger radius
+	 * requests less fixes at the same speed.
+	 */
+	@Test
+	public void AdaptiveLocationPolicy_setSearchRadius_scalesDistance() {
+		AdaptiveLocationPolicy policy = move(new AdaptiveLocationPolicy(2000), 20, 5_000);
+		long intervalMillis = policy.getRequest().getIntervalMillis();
+
+		Assert.assertThat(policy.getMinDistanceMeters(), is(1000f));
+		Assert.assertThat(policy.setSearchRadius(10_000), is(true));
+		Assert.assertThat(policy.getMinDistanceMeters(), is(5000f));
+		Assert.assertThat(policy.getRequest().getIntervalMillis(), is(greaterThan(
+				intervalMillis)));
+		// a small radius must not deliver each fix
+		policy.setSearchRadius(0);
+		Assert.assertThat(policy.getMinDistanceMeters(), is(greaterThan(0f)));
+	}
+
+	/**
+	 * Tests that small variations of the speed don't change the request, which would register
+	 * location updates again.
+	 */
+	@Test
+	public void AdaptiveLocationPolicy_onLocationChanged_keepsRequestOnSmallChanges() {
+		AdaptiveLocationPolicy policy = move(new AdaptiveLocationPolicy(2000), 15, 10_000);
+		AdaptiveLocationPolicy.Request request = policy.getRequest();
+		double latitude = LATITUDE + 9 * 15 * 10 / GeoUtils.METERS_PER_DEGREE;
+		long timeMillis = START_MILLIS + 9 * 10_000;
+
+		for (int i = 0; i < 10; i++) {
+			double speed = i % 2 == 0 ? 13 : 17;
+			timeMillis += 10_000;
+			latitude += speed * 10 / GeoUtils.METERS_PER_DEGREE;
+			policy.onLocationChanged(timeMillis, latitude, LONGITUDE, ACCURACY_METERS);
+			Assert.assertThat(policy.getRequest(), is(request));
+		}
+	}
+
+	/**
+	 * Passes ten fixes of a user that moves north with passed speed.
+	 */
+	private static AdaptiveLocationPolicy move(AdaptiveLocationPolicy policy, double speed,
+			long intervalMillis) {
+		for (int i = 0; i < 10; i++) {
+			policy.onLocationChanged(START_MILLIS + i * intervalMillis, LATITUDE + i * speed *
+					intervalMillis / 1000 / GeoUtils.METERS_PER_DEGREE, LONGITUDE,
+					ACCURACY_METERS);
+		}
+		return policy;
+	}
+}
@@ -0,0 +1,94 @@
+package com.mytrainstation.api.location;
+
+import com.mytrainstation.util.GeoUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Run tests against {@link KalmanLocationEstimator}.
+ *
+ * @author JSCHENK
+ */
+public class KalmanLocationEstimatorTest {
+
+	private static final long START_MILLIS = 1539588600000L;
+	private static final double LATITUDE = 51.0405;
+	private static final double LONGITUDE = 13.7320;
+	private static final float ACCURACY_METERS = 20;
+
+	/**
+	 * Tests that the estimate of a standing user is about twice as close to the true location as
+	 * the noisy fixes and that its accuracy improves.
+	 */
+	@Test
+	public void KalmanLocationEstimator_update_smoothsStationaryJitter() {
+		KalmanLocationEstimator estimator = new KalmanLocationEstimator();
+		Random random = new Random(42);
+		double rawError = 0;
+		double estimateError = 0;
+		for (int i = 0; i < 120; i++) {
+			double latitude = LATITUDE + random.nextGaussian() * ACCURACY_METERS / GeoUtils
+					.METERS_PER_DEGREE;
+			double longitude = LONGITUDE + random.nextGaussian() * ACCURACY_METERS / GeoUtils
+					.metersPerDegreeLongitude(LATITUDE);
+			estimator.update(START_MILLIS + i * 1000, latitude, longitude, ACCURACY_METERS);
+			if (i >= 60) {
+				rawError += GeoUtils.distanceMeters(LATITUDE, LONGITUDE, latitude, longitude);
+				estimateError += GeoUtils.distanceMeters(LATITUDE, LONGITUDE, estimator
+						.getLatitude(), estimator.getLongitude());
+			}
+		}
+
+		Assert.assertThat(estimateError, is(lessThan(rawError / 2)));
+		Assert.assertThat(estimator.getAccuracy(), is(lessThan(ACCURACY_METERS / 2)));
+	}
+
+	/**
+	 * Tests that the estimate of a user moving with constant speed follows without lag and
+	 * estimates the speed.
+	 */
+	@Test
+	public void KalmanLocationEstimator_update_followsConstantVelocity() {
+		KalmanLocationEstimator estimator = new KalmanLocationEstimator();
+		Random random = new Random(42);
+		double speed = 15;
+		double latitude = LATITUDE;
+		for (int i = 0; i < 60; i++) {
+			latitude = LATITUDE + i * speed / GeoUtils.METERS_PER_DEGREE;
+			estimator.update(START_MILLIS + i * 1000, latitude + random.nextGaussian() *
+					ACCURACY_METERS / GeoUtils.METERS_PER_DEGREE, LONGITUDE, ACCURACY_METERS);
+		}
+
+		Assert.assertThat(GeoUtils.distanceMeters(latitude, LONGITUDE, estimator.getLatitude(),
+				estimator.getLongitude()), is(lessThan((double) ACCURACY_METERS / 2)));
+		Assert.assertThat(estimator.getSpeedMetersPerSecond(), is(closeTo(speed, 2)));
+	}
+
+	/**
+	 * Tests that the first fix and a fix after a long gap are taken as they are, while
+	 * {@link KalmanLocationEstimator#reset()} discards the estimate.
+	 */
+	@Test
+	public void KalmanLocationEstimator_update_startsAgainAfterGap() {
+		KalmanLocationEstimator estimator = new KalmanLocationEstimator();
+		Assert.assertThat(estimator.hasEstimate(), is(false));
+
+		estimator.update(START_MILLIS, LATITUDE, LONGITUDE, ACCURACY_METERS);
+		Assert.assertThat(estimator.getLatitude(), is(LATITUDE));
+		Assert.assertThat(estimator.getAccuracy(), is(ACCURACY_METERS));
+		estimator.update(START_MILLIS + 60 * 60 * 1000, LATITUDE + 0.1, LONGITUDE,
+				ACCURACY_METERS);
+		Assert.assertThat(estimator.getLatitude(), is(LATITUDE + 0.1));
+
+		estimator.reset();
+		Assert.assertThat(estimator.hasEstimate(), is(false));
+		Assert.assertThat(Double.isNaN(estimator.getLatitude()), is(true));
+	}
+}
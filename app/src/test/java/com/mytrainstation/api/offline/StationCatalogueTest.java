@@ -0,0 +1,132 @@
+package com.mytrainstation.api.offline;
+
+import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.util.GeoUtils;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+
+/**
+ * Run tests against {@link StationCatalogue} by comparing its results with a brute force search
+ * over all stations.
+ *
+ * @author JSCHENK
+ */
+public class StationCatalogueTest {
+
+	private static final int NUMBER_OF_STATIONS = 5000;
+	private static final int NUMBER_OF_QUERIES = 200;
+
+	private final Random mRandom = new Random(42);
+	private StationCatalogue mCatalogue;
+
+	/**
+	 * Creates a catalogue of random stations around Dresden.
+	 */
+	@Before
+	public void setUp() {
+		StationCatalogue.Builder builder = new StationCatalogue.Builder();
+		for (int i = 0; i < NUMBER_OF_STATIONS; i++) {
+			builder.add(i, "Station " + i, 50.5 + mRandom.nextDouble(), 13.2 + mRandom
+					.nextDouble() * 1.5, mRandom.nextBoolean(), mRandom.nextBoolean(), mRandom
+					.nextBoolean());
+		}
+		mCatalogue = builder.build();
+	}
+
+	/**
+	 * Tests that {@link StationCatalogue#searchWithinRadius(double, double, double, int,
+	 * StationCatalogue.SearchResult)} will find the same stations as a brute force search.
+	 */
+	@Test
+	public void StationCatalogue_searchWithinRadius_findsSameStationsAsBruteForce() {
+		StationCatalogue.SearchResult result = new StationCatalogue.SearchResult();
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			double latitude = 50.4 + mRandom.nextDouble() * 1.2;
+			double longitude = 13.1 + mRandom.nextDouble() * 1.7;
+			int radius = 1000 + mRandom.nextInt(20000);
+			int maxCount = 1 + mRandom.nextInt(30);
+
+			mCatalogue.searchWithinRadius(latitude, longitude, radius, maxCount, result);
+			double[] expected = bruteForceDistances(latitude, longitude, radius, maxCount);
+			assertDistances(result, expected);
+		}
+	}
+
+	/**
+	 * Tests that {@link StationCatalogue#searchNearest(double, double, int,
+	 * StationCatalogue.SearchResult)} will find the same stations as a brute force search, even
+	 * for locations outside of the catalogue.
+	 */
+	@Test
+	public void StationCatalogue_searchNearest_findsSameStationsAsBruteForce() {
+		StationCatalogue.SearchResult result = new StationCatalogue.SearchResult();
+		for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+			double latitude = 49.5 + mRandom.nextDouble() * 3;
+			double longitude = 12 + mRandom.nextDouble() * 4;
+			int k = 1 + mRandom.nextInt(30);
+
+			mCatalogue.searchNearest(latitude, longitude, k, result);
+			double[] expected = bruteForceDistances(latitude, longitude, Double.POSITIVE_INFINITY,
+					k);
+			assertDistances(result, expected);
+		}
+	}
+
+	/**
+	 * Tests that {@link StationCatalogueReader#read(java.io.Reader)} will read all valid lines
+	 * and {@link OfflineTrainStationService} will return the stations within radius ordered by
+	 * their distance.
+	 */
+	@Test
+	public void OfflineTrainStationService_searchTrainStations_returnsNearestStationsOfCatalogue()
+			throws IOException {
+		String catalogue = "# id;name;latitude;longitude;wifi;parking;steplessAccess\n" +
+				"8010085;Dresden Hbf;51.040562;13.732039;1;1;1\n" +
+				"8010089;Dresden-Neustadt;51.065903;13.740135;1;0;1\n" +
+				"invalid line\n" +
+				"8013456;Dresden-Strehlen;51.026052;13.774451;0;1;0\n" +
+				"8010205;Leipzig Hbf;51.345459;12.381722;1;1;1\n";
+		OfflineTrainStationService service = new OfflineTrainStationService
+				(StationCatalogueReader.read(new StringReader(catalogue)), 2);
+
+		List<TrainStation> trainStations = service.searchTrainStations(51.04, 13.73, 10000);
+		Assert.assertThat(trainStations.size(), is(2));
+		Assert.assertThat(trainStations.get(0).getName(), is("Dresden Hbf"));
+		Assert.assertThat(trainStations.get(0).hasWifi(), is(true));
+		Assert.assertThat(trainStations.get(1).getName(), is("Dresden-Neustadt"));
+		Assert.assertThat(trainStations.get(1).hasParking(), is(false));
+	}
+
+	private double[] bruteForceDistances(double latitude, double longitude, double radius,
+			int maxCount) {
+		double[] distances = new double[mCatalogue.size()];
+		int size = 0;
+		for (int i = 0; i < mCatalogue.size(); i++) {
+			double distance = GeoUtils.distanceMeters(latitude, longitude, mCatalogue
+					.getLatitude(i), mCatalogue.getLongitude(i));
+			if (distance <= radius) {
+				distances[size++] = distance;
+			}
+		}
+		double[] sorted = Arrays.copyOf(distances, size);
+		Arrays.sort(sorted);
+		return Arrays.copyOf(sorted, Math.min(maxCount, size));
+	}
+
+	private void assertDistances(StationCatalogue.SearchResult result, double[] expected) {
+		Assert.assertThat(result.size(), is(expected.length));
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertThat(result.getDistance(i), is(expected[i]));
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.mytrainstation.data;
+
+import com.mytrainstation.api.TrainStationQuery;
+import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.util.GeoUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+
+/**
+ * Run tests against {@link CoverageRegion}.
+ *
+ * @author JSCHENK
+ */
+public class CoverageRegionTest {
+
+	private static final double LATITUDE = 51.0405;
+	private static final double LONGITUDE = 13.7320;
+	private static final int RADIUS = 2000;
+
+	/**
+	 * Tests that a complete result covers the search radius, while an incomplete one only
+	 * covers the distance of its farthest train station until further pages extend it.
+	 */
+	@Test
+	public void CoverageRegion_extend_coversFarthestStationUntilComplete() {
+		TrainStationQuery query = TrainStationQuery.nearBy(LATITUDE, LONGITUDE, RADIUS, 2);
+		List<TrainStation> firstPage = Arrays.asList(createStation(1, 300), createStation(2,
+				800));
+
+		CoverageRegion incomplete = CoverageRegion.create(query, firstPage, false, 0.5);
+		Assert.assertThat(incomplete.getCoveredRadius(), is(closeTo(800, 1)));
+		Assert.assertThat(incomplete.getRadius(), is(closeTo(400, 1)));
+
+		CoverageRegion extended = incomplete.extend(Arrays.asList(createStation(3, 1200),
+				createStation(4, 1500)), false);
+		Assert.assertThat(extended.getCoveredRadius(), is(closeTo(1500, 1)));
+		Assert.assertThat(extended.extend(Collections.singletonList(createStation(5, 1900)),
+				true).getCoveredRadius(), is((double) RADIUS));
+		Assert.assertThat(CoverageRegion.create(query, Collections.singletonList(createStation
+				(1, 300)), true, 0.5).getCoveredRadius(), is((double) RADIUS));
+	}
+
+	/**
+	 * Tests that locations within the share of the covered radius are contained and that the
+	 * outer part of the region is near by its boundary.
+	 */
+	@Test
+	public void CoverageRegion_contains_withinShareOfCoveredRadius() {
+		CoverageRegion region = CoverageRegion.create(TrainStationQuery.nearBy(LATITUDE,
+				LONGITUDE, RADIUS, 20), Collections.emptyList(), true, 0.5);
+
+		Assert.assertThat(region.contains(north(500), LONGITUDE), is(true));
+		Assert.assertThat(region.isNearBoundary(north(500), LONGITUDE), is(false));
+		Assert.assertThat(region.contains(north(900), LONGITUDE), is(true));
+		Assert.assertThat(region.isNearBoundary(north(900), LONGITUDE), is(true));
+		Assert.assertThat(region.contains(north(1100), LONGITUDE), is(false));
+	}
+
+	private static TrainStation createStation(int id, double distanceNorth) {
+		return new TrainStation.Builder(id, "Station " + id).location(north(distanceNorth),
+				LONGITUDE).build();
+	}
+
+	private static double north(double meters) {
+		return LATITUDE + meters / GeoUtils.METERS_PER_DEGREE;
+	}
+}
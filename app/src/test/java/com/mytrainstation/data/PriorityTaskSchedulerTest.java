@@ -0,0 +1,191 @@
+package com.mytrainstation.data;
+
+import com.mytrainstation.data.PriorityTaskScheduler.Priority;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Run tests against {@link PriorityTaskScheduler}.
+ *
+ * @author JSCHENK
+ */
+public class PriorityTaskSchedulerTest {
+
+	private static final Logger LOG = Logger.getLogger(PriorityTaskSchedulerTest.class);
+
+	private static final int WORKERS = 4;
+	private static final long PREFETCH_MILLIS = 50;
+	private static final int INTERACTIVE_TASKS = 10;
+	private static final long INTERACTIVE_INTERVAL_MILLIS = 30;
+	private static final long MAX_INTERACTIVE_WAIT_MILLIS = 50;
+
+	private PriorityTaskScheduler mScheduler;
+
+	/**
+	 * Creates the scheduler under test.
+	 */
+	@Before
+	public void setUp() {
+		mScheduler = new PriorityTaskScheduler(WORKERS);
+	}
+
+	/**
+	 * Shuts down the scheduler under test.
+	 */
+	@After
+	public void tearDown() {
+		mScheduler.shutdownNow();
+	}
+
+	/**
+	 * Saturates the prefetch lane and tests that interactive tasks still start right away, while
+	 * a single thread executor lets them wait for all prefetches that were submitted before.
+	 */
+	@Test
+	public void PriorityTaskScheduler_execute_interactiveTasksDontWaitForSaturatedPrefetchLane()
+			throws InterruptedException {
+		PriorityTaskScheduler.TaskQueue prefetchQueue = mScheduler.newQueue(Priority.PREFETCH,
+				false);
+		PriorityTaskScheduler.TaskQueue interactiveQueue = mScheduler.newQueue(Priority
+				.INTERACTIVE, true);
+		for (int i = 0; i < Priority.PREFETCH.getCapacity(); i++) {
+			prefetchQueue.execute(() -> sleep(PREFETCH_MILLIS));
+		}
+		long scheduler = measureMaxWait(interactiveQueue);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			for (int i = 0; i < Priority.PREFETCH.getCapacity(); i++) {
+				executor.execute(() -> sleep(PREFETCH_MILLIS));
+			}
+			long singleThread = measureMaxWait(executor);
+
+			LOG.info(String.format(Locale.getDefault(), "max interactive wait behind %s " +
+							"prefetches: scheduler=%sms, single thread=%sms, prefetch lane %s",
+					Priority.PREFETCH.getCapacity(), scheduler, singleThread, mScheduler
+							.getStats(Priority.PREFETCH)));
+			Assert.assertThat(scheduler, is(lessThan(MAX_INTERACTIVE_WAIT_MILLIS)));
+			Assert.assertThat(singleThread, is(greaterThan(PREFETCH_MILLIS)));
+		} finally {
+			executor.shutdownNow();
+		}
+		Assert.assertThat(mScheduler.getStats(Priority.INTERACTIVE).getMaxWaitNanos(), is
+				(lessThan(TimeUnit.MILLISECONDS.toNanos(MAX_INTERACTIVE_WAIT_MILLIS))));
+		Assert.assertThat(mScheduler.getStats(Priority.PREFETCH).getMaxQueueDepth(), is
+				(greaterThan(Priority.PREFETCH.getCapacity() - WORKERS)));
+	}
+
+	/**
+	 * Tests that tasks of a serial queue run one after another in order of their submission.
+	 */
+	@Test
+	public void PriorityTaskScheduler_execute_serialQueueKeepsOrder() throws InterruptedException {
+		PriorityTaskScheduler.TaskQueue queue = mScheduler.newQueue(Priority.BACKGROUND_REFRESH,
+				true);
+		List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+		AtomicInteger running = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(20);
+		for (int i = 0; i < 20; i++) {
+			int task = i;
+			queue.execute(() -> {
+				Assert.assertThat(running.incrementAndGet(), is(1));
+				sleep(5);
+				order.add(task);
+				running.decrementAndGet();
+				done.countDown();
+			});
+		}
+		Assert.assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+		for (int i = 0; i < 20; i++) {
+			Assert.assertThat(order.get(i), is(i));
+		}
+	}
+
+	/**
+	 * Tests that a cancelled queue drops its queued tasks and ignores further ones, and that a
+	 * full lane rejects tasks.
+	 */
+	@Test
+	public void PriorityTaskScheduler_cancel_dropsQueuedTasksAndFullLaneRejects() throws
+			InterruptedException {
+		PriorityTaskScheduler.TaskQueue queue = mScheduler.newQueue(Priority.MAINTENANCE, true);
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		queue.execute(() -> {
+			runs.incrementAndGet();
+			started.countDown();
+			sleep(10000);
+		});
+		Assert.assertThat(started.await(5, TimeUnit.SECONDS), is(true));
+		for (int i = 0; i < Priority.MAINTENANCE.getCapacity(); i++) {
+			queue.execute(runs::incrementAndGet);
+		}
+		try {
+			queue.execute(runs::incrementAndGet);
+			Assert.fail("Task beyond capacity should be rejected");
+		} catch (RejectedExecutionException e) {
+			Assert.assertThat(mScheduler.getStats(Priority.MAINTENANCE).getRejectedCount(), is
+					(1L));
+		}
+
+		queue.cancel();
+		queue.execute(runs::incrementAndGet);
+		PriorityTaskScheduler.LaneStats stats = mScheduler.getStats(Priority.MAINTENANCE);
+		Assert.assertThat(stats.getQueueDepth(), is(0));
+		Assert.assertThat(stats.getCancelledCount(), is((long) Priority.MAINTENANCE
+				.getCapacity()));
+		Assert.assertThat(runs.get(), is(1));
+	}
+
+	/**
+	 * @return The longest time in milliseconds between submission and start of interactive
+	 * tasks that are submitted in intervals.
+	 */
+	private static long measureMaxWait(Executor executor) throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(INTERACTIVE_TASKS);
+		long[] maxWait = new long[1];
+		for (int i = 0; i < INTERACTIVE_TASKS; i++) {
+			long submitted = System.nanoTime();
+			executor.execute(() -> {
+				long wait = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitted);
+				synchronized (maxWait) {
+					maxWait[0] = Math.max(maxWait[0], wait);
+				}
+				done.countDown();
+			});
+			Thread.sleep(INTERACTIVE_INTERVAL_MILLIS);
+		}
+		done.await(PREFETCH_MILLIS * Priority.PREFETCH.getCapacity() * 2, TimeUnit.MILLISECONDS);
+		synchronized (maxWait) {
+			return maxWait[0];
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
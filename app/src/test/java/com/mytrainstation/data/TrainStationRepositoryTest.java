@@ -0,0 +1,732 @@
+package com.mytrainstation.data;
+
+import android.arch.core.executor.testing.InstantTaskExecutorRule;
+import android.arch.paging.DataSource;
+import android.arch.paging.PagedList;
+import android.content.Context;
+
+import com.mytrainstation.api.RequestHandle;
+import com.mytrainstation.api.TrainStationQuery;
+import com.mytrainstation.api.TrainStationService;
+import com.mytrainstation.db.ListDataSource;
+import com.mytrainstation.db.QueryResult;
+import com.mytrainstation.db.TrainStationDao;
+import com.mytrainstation.db.TrainStationDiff;
+import com.mytrainstation.db.TrainStationLocalCache;
+import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.util.Clock;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Run tests against {@link TrainStationRepository} with a service that answers with random
+ * latency.
+ *
+ * @author JSCHENK
+ */
+public class TrainStationRepositoryTest {
+
+	private static final int NUMBER_OF_ROUNDS = 5;
+	private static final int INPUTS_PER_ROUND = 40;
+	private static final int MAX_LATENCY_MILLIS = 30;
+	private static final int BYTES_PER_MILLISECOND = 100;
+	private static final long RESPONSE_DELAY_MILLIS = 500;
+	private static final int PAGE_SIZE = 20;
+
+	/**
+	 * Executes LiveData updates synchronously.
+	 */
+	@Rule
+	public InstantTaskExecutorRule mInstantTaskExecutorRule = new InstantTaskExecutorRule();
+
+	private final Random mRandom = new Random(42);
+	private TrainStationService mService;
+	private TrainStationDao mDao;
+	private AtomicReference<List<TrainStation>> mInsertedTrainStations;
+	private AtomicInteger mInsertCount;
+
+	/**
+	 * Initializes a service whose requests take a random time, honour cancellation and answer
+	 * with a single train station that is named like the query.
+	 */
+	@Before
+	public void setUp() {
+		mService = mock(TrainStationService.class);
+		when(mService.createNearByQuery(anyDouble(), anyDouble(), anyInt())).thenAnswer(
+				invocation -> TrainStationQuery.nearBy(invocation.getArgument(0), invocation
+						.getArgument(1), invocation.getArgument(2), 10));
+		when(mService.searchTrainStations(any(TrainStationQuery.class), any(RequestHandle.class)))
+				.thenAnswer(invocation -> {
+					TrainStationQuery query = invocation.getArgument(0);
+					RequestHandle handle = invocation.getArgument(1);
+					int latency = 1 + mRandom.nextInt(MAX_LATENCY_MILLIS);
+					for (int i = 0; i < latency; i++) {
+						if (handle.isCancelled()) {
+							throw new CancellationException();
+						}
+						Thread.sleep(1);
+						handle.addReceivedBytes(BYTES_PER_MILLISECOND);
+					}
+					return Collections.singletonList(new TrainStation.Builder(0, query.toString())
+							.build());
+				});
+
+		mInsertedTrainStations = new AtomicReference<>();
+		mInsertCount = new AtomicInteger();
+		mDao = mock(TrainStationDao.class);
+		when(mDao.replaceQueryResult(any(), any(), anyInt(), anyInt())).thenAnswer(invocation -> {
+			List<TrainStation> trainStations = invocation.getArgument(1);
+			mInsertedTrainStations.set(trainStations);
+			mInsertCount.incrementAndGet();
+			return TrainStationDiff.calculate(Collections.emptyList(), trainStations);
+		});
+		when(mDao.getTrainStationsByName(anyString())).thenReturn(ListDataSource.factory(
+				Collections.emptyList()));
+		when(mDao.getTrainStationsByDistance(anyString(), anyDouble(), anyDouble(), anyInt()))
+				.thenReturn(ListDataSource.factory(Collections.emptyList()));
+	}
+
+	/**
+	 * Tests that after rapid searches by location and search term the local cache always
+	 * contains the result of the last search, while superseded searches were cancelled.
+	 */
+	@Test
+	public void TrainStationRepository_search_localCacheWillAlwaysMatchLastInput()
+			throws Exception {
+		for (int round = 0; round < NUMBER_OF_ROUNDS; round++) {
+			ExecutorService executorService = Executors.newCachedThreadPool();
+			LatestRequestScheduler scheduler = new LatestRequestScheduler(executorService);
+			TrainStationRepository repository = new TrainStationRepository(mService, new
+					TrainStationLocalCache(mDao, Runnable::run), scheduler);
+			mInsertCount.set(0);
+
+			TrainStationQuery lastInput = null;
+			for (int i = 0; i < INPUTS_PER_ROUND; i++) {
+				if (mRandom.nextBoolean()) {
+					// few different radii, so identical searches will be submitted as well
+					int radius = 1000 * (1 + mRandom.nextInt(3));
+					repository.searchTrainStationsByLocation(51.05, 13.74, radius);
+					lastInput = TrainStationQuery.nearBy(51.05, 13.74, radius, 10);
+				} else {
+					String searchTerm = "Dresden " + mRandom.nextInt(3);
+					repository.searchTrainStationsBySearchTerm(searchTerm);
+					lastInput = TrainStationQuery.search(searchTerm);
+				}
+				Thread.sleep(mRandom.nextInt(MAX_LATENCY_MILLIS / 3));
+			}
+			executorService.shutdown();
+			Assert.assertThat(executorService.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+			Assert.assertThat(mInsertedTrainStations.get().get(0).getName(), is(lastInput
+					.toString()));
+			Assert.assertThat(repository.isRequestInProgress().getValue(), is(false));
+			Assert.assertThat(scheduler.getCompletedCount(), is((long) mInsertCount.get()));
+			Assert.assertThat(scheduler.getCancelledCount(), is(greaterThan(0L)));
+			Assert.assertThat(scheduler.getCompletedCount() + scheduler.getCancelledCount() +
+					scheduler.getDiscardedCount(), is(lessThanOrEqualTo((long) INPUTS_PER_ROUND)));
+			Assert.assertThat(scheduler.getWastedBytes(), is(greaterThan(0L)));
+		}
+	}
+
+	/**
+	 * Tests that the stored result of a previous search will be displayed immediately without
+	 * any request and that a stale result will be displayed immediately as well, while it is
+	 * refreshed in background.
+	 */
+	@Test
+	public void TrainStationRepository_search_displaysStoredResultsWithoutNetworkLatency()
+			throws Exception {
+		MockWebServer server = new MockWebServer();
+		server.start();
+		ExecutorService executorService = Executors.newCachedThreadPool();
+		try {
+			AtomicLong time = new AtomicLong(1000);
+			Clock clock = time::get;
+			TrainStationRepository repository = new TrainStationRepository(new
+					TrainStationService(mock(Context.class), server.url("/graphql").toString()),
+					new TrainStationLocalCache(createInMemoryDao(), Runnable::run, clock), new
+					LatestRequestScheduler(executorService));
+			BlockingQueue<List<TrainStation>> displayed = new LinkedBlockingQueue<>();
+			repository.getTrainStations().observeForever(displayed::add);
+
+			server.enqueue(createSearchResponse("Dresden - Hauptbahnhof"));
+			server.enqueue(createSearchResponse("Leipzig - Hauptbahnhof"));
+			long start = System.nanoTime();
+			repository.searchTrainStationsBySearchTerm("Dresden");
+			assertDisplayed(displayed.poll(5, TimeUnit.SECONDS), "Dresden - Hauptbahnhof");
+			Assert.assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(
+					greaterThan(RESPONSE_DELAY_MILLIS - 1)));
+			repository.searchTrainStationsBySearchTerm("Leipzig");
+			assertDisplayed(displayed.poll(5, TimeUnit.SECONDS), "Leipzig - Hauptbahnhof");
+
+			// fresh result is displayed before search returns and won't be requested again
+			start = System.nanoTime();
+			repository.searchTrainStationsBySearchTerm(" dresden");
+			assertDisplayed(displayed.poll(), "Dresden - Hauptbahnhof");
+			Assert.assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(
+					lessThan(RESPONSE_DELAY_MILLIS)));
+			Assert.assertThat(server.getRequestCount(), is(2));
+
+			// stale result is displayed immediately as well and refreshed afterwards
+			time.addAndGet(TimeUnit.MINUTES.toMillis(11));
+			server.enqueue(createSearchResponse("Leipzig - Messe"));
+			repository.searchTrainStationsBySearchTerm("Leipzig");
+			assertDisplayed(displayed.poll(), "Leipzig - Hauptbahnhof");
+			assertDisplayed(displayed.poll(5, TimeUnit.SECONDS), "Leipzig - Messe");
+			Assert.assertThat(server.getRequestCount(), is(3));
+
+			// an unchanged refresh isn't emitted again
+			time.addAndGet(TimeUnit.MINUTES.toMillis(11));
+			server.enqueue(createSearchResponse("Leipzig - Messe"));
+			repository.searchTrainStationsBySearchTerm("Leipzig");
+			Assert.assertThat(displayed.poll(2 * RESPONSE_DELAY_MILLIS, TimeUnit.MILLISECONDS) ==
+					null, is(true));
+			Assert.assertThat(server.getRequestCount(), is(4));
+		} finally {
+			executorService.shutdownNow();
+			server.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that a search term without stored result is requested, although stored train
+	 * stations of previous searches match it. These are displayed until the result is received
+	 * and kept if the request fails.
+	 */
+	@Test
+	public void TrainStationRepository_searchBySearchTerm_requestsTermDespiteLocalMatches()
+			throws Exception {
+		MockWebServer server = new MockWebServer();
+		server.start();
+		ExecutorService executorService = Executors.newCachedThreadPool();
+		try {
+			TrainStationRepository repository = new TrainStationRepository(new
+					TrainStationService(mock(Context.class), server.url("/graphql").toString()),
+					new TrainStationLocalCache(createInMemoryDao(), Runnable::run), new
+					LatestRequestScheduler(executorService));
+			BlockingQueue<List<TrainStation>> displayed = new LinkedBlockingQueue<>();
+			repository.getTrainStations().observeForever(displayed::add);
+			server.enqueue(createSearchResponse("Dresden - Hauptbahnhof"));
+			repository.searchTrainStationsBySearchTerm("Dresden");
+			assertDisplayed(displayed.poll(5, TimeUnit.SECONDS), "Dresden - Hauptbahnhof");
+
+			server.enqueue(createSearchResponse("Leipzig - Hauptbahnhof"));
+			repository.searchTrainStationsBySearchTerm("Hauptbahnhof");
+			assertDisplayed(displayed.poll(), "Dresden - Hauptbahnhof");
+			assertDisplayed(displayed.poll(5, TimeUnit.SECONDS), "Leipzig - Hauptbahnhof");
+			Assert.assertThat(server.getRequestCount(), is(2));
+
+			server.enqueue(new MockResponse().setResponseCode(500));
+			repository.searchTrainStationsBySearchTerm("Leipzig");
+			assertDisplayed(displayed.poll(), "Leipzig - Hauptbahnhof");
+			Assert.assertThat(displayed.poll(2 * RESPONSE_DELAY_MILLIS, TimeUnit.MILLISECONDS) ==
+					null, is(true));
+			Assert.assertThat(server.getRequestCount(), is(3));
+		} finally {
+			executorService.shutdownNow();
+			server.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that further pages of a result near by a location are requested as soon as the end
+	 * of the displayed list is loaded and that they are appended to the displayed list, until a
+	 * page isn't full anymore.
+	 */
+	@Test
+	public void TrainStationRepository_searchByLocation_appendsPagesUntilLastPage()
+			throws Exception {
+		List<TrainStation> nearBy = new ArrayList<>();
+		for (int id = 0; id < 2 * PAGE_SIZE + 5; id++) {
+			nearBy.add(new TrainStation.Builder(id, "Station " + id).build());
+		}
+		List<TrainStationQuery> requests = new CopyOnWriteArrayList<>();
+		TrainStationService service = mock(TrainStationService.class);
+		when(service.createNearByQuery(anyDouble(), anyDouble(), anyInt())).thenAnswer(
+				invocation -> TrainStationQuery.nearBy(invocation.getArgument(0), invocation
+						.getArgument(1), invocation.getArgument(2), PAGE_SIZE));
+		Answer<List<TrainStation>> answer = invocation -> {
+			TrainStationQuery query = invocation.getArgument(0);
+			requests.add(query);
+			int start = Math.min(query.getOffset(), nearBy.size());
+			return new ArrayList<>(nearBy.subList(start, Math.min(start + query.getCount(),
+					nearBy.size())));
+		};
+		when(service.searchTrainStations(any(TrainStationQuery.class), any(RequestHandle.class)))
+				.thenAnswer(answer);
+		when(service.searchTrainStationsOrThrow(any(TrainStationQuery.class), any(RequestHandle
+				.class))).thenAnswer(answer);
+		ExecutorService executorService = Executors.newCachedThreadPool();
+		try {
+			TrainStationRepository repository = new TrainStationRepository(service, new
+					TrainStationLocalCache(createInMemoryDao(), Runnable::run), new
+					LatestRequestScheduler(executorService));
+			BlockingQueue<PagedList<TrainStation>> displayed = new LinkedBlockingQueue<>();
+			repository.getTrainStations().observeForever(displayed::add);
+
+			repository.searchTrainStationsByLocation(51.05, 13.74, 1000);
+			PagedList<TrainStation> trainStations = displayed.poll(5, TimeUnit.SECONDS);
+			Assert.assertThat(trainStations.size(), is(PAGE_SIZE));
+			trainStations.loadAround(trainStations.size() - 1);
+			trainStations = displayed.poll(5, TimeUnit.SECONDS);
+			Assert.assertThat(trainStations.size(), is(2 * PAGE_SIZE));
+			trainStations.loadAround(trainStations.size() - 1);
+			trainStations = displayed.poll(5, TimeUnit.SECONDS);
+			Assert.assertThat(trainStations.snapshot(), is(nearBy));
+
+			// last page wasn't full, so no further page is requested
+			trainStations.loadAround(trainStations.size() - 1);
+			Assert.assertThat(displayed.poll(RESPONSE_DELAY_MILLIS, TimeUnit.MILLISECONDS) ==
+					null, is(true));
+			Assert.assertThat(requests.size(), is(3));
+			Assert.assertThat(requests.get(2).getOffset(), is(2 * PAGE_SIZE));
+			Assert.assertThat(requests.get(2).getFingerprint(), is(requests.get(0)
+					.getFingerprint()));
+			Assert.assertThat(repository.isRequestInProgress().getValue(), is(false));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	/**
+	 * Tests that no further page is requested after a first page that isn't full or after an
+	 * empty page, while a failed page is requested again on next display of the result.
+	 */
+	@Test
+	public void TrainStationRepository_searchByLocation_stopsPagingAtShortOrEmptyPage()
+			throws Exception {
+		List<TrainStationQuery> requests = new CopyOnWriteArrayList<>();
+		AtomicBoolean failNextPage = new AtomicBoolean(true);
+		TrainStationService service = mock(TrainStationService.class);
+		when(service.createNearByQuery(anyDouble(), anyDouble(), anyInt())).thenAnswer(
+				invocation -> TrainStationQuery.nearBy(invocation.getArgument(0), invocation
+						.getArgument(1), invocation.getArgument(2), PAGE_SIZE));
+		Answer<List<TrainStation>> answer = invocation -> {
+			TrainStationQuery query = invocation.getArgument(0);
+			requests.add(query);
+			if (query.getOffset() > 0) {
+				if (query.getLatitude() == 51.07 && failNextPage.getAndSet(false)) {
+					throw new UncheckedIOException(new IOException("Connection reset"));
+				}
+				return new ArrayList<>();
+			}
+			// a short result near by the second location, full first pages otherwise
+			List<TrainStation> trainStations = new ArrayList<>();
+			int count = query.getLatitude() == 51.06 ? PAGE_SIZE / 2 : PAGE_SIZE;
+			for (int id = 0; id < count; id++) {
+				trainStations.add(new TrainStation.Builder(id, "Station " + id).build());
+			}
+			return trainStations;
+		};
+		when(service.searchTrainStations(any(TrainStationQuery.class), any(RequestHandle.class)))
+				.thenAnswer(answer);
+		when(service.searchTrainStationsOrThrow(any(TrainStationQuery.class), any(RequestHandle
+				.class))).thenAnswer(answer);
+		ExecutorService executorService = Executors.newCachedThreadPool();
+		try {
+			TrainStationRepository repository = new TrainStationRepository(service, new
+					TrainStationLocalCache(createInMemoryDao(), Runnable::run), new
+					LatestRequestScheduler(executorService));
+			BlockingQueue<PagedList<TrainStation>> displayed = new LinkedBlockingQueue<>();
+			repository.getTrainStations().observeForever(displayed::add);
+
+			// full first page followed by an empty one
+			displayAndLoadEnd(repository, displayed, 51.05);
+			awaitRequests(requests, 2);
+			// short first page
+			displayAndLoadEnd(repository, displayed, 51.06);
+			// the empty page was the end of the result
+			displayAndLoadEnd(repository, displayed, 51.05);
+			// failed next page is requested again
+			displayAndLoadEnd(repository, displayed, 51.07);
+			awaitRequests(requests, 5);
+			displayAndLoadEnd(repository, displayed, 51.06);
+			displayAndLoadEnd(repository, displayed, 51.07);
+			awaitRequests(requests, 6);
+			Thread.sleep(RESPONSE_DELAY_MILLIS);
+
+			List<String> requested = new ArrayList<>();
+			for (TrainStationQuery request : requests) {
+				requested.add(request.getLatitude() + "@" + request.getOffset());
+			}
+			Assert.assertThat(requested, contains("51.05@0", "51.05@20", "51.06@0", "51.07@0",
+					"51.07@20", "51.07@20"));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	/**
+	 * Tests that the last page is stored with the result, so another repository on the same
+	 * database, e.g. after a restart, doesn't request further pages of it.
+	 */
+	@Test
+	public void TrainStationRepository_searchByLocation_storesCompletionWithResult()
+			throws Exception {
+		List<TrainStationQuery> requests = new CopyOnWriteArrayList<>();
+		TrainStationService service = mock(TrainStationService.class);
+		when(service.createNearByQuery(anyDouble(), anyDouble(), anyInt())).thenAnswer(
+				invocation -> TrainStationQuery.nearBy(invocation.getArgument(0), invocation
+						.getArgument(1), invocation.getArgument(2), PAGE_SIZE));
+		Answer<List<TrainStation>> answer = invocation -> {
+			TrainStationQuery query = invocation.getArgument(0);
+			requests.add(query);
+			List<TrainStation> trainStations = new ArrayList<>();
+			for (int id = 0; query.getOffset() == 0 && id < PAGE_SIZE; id++) {
+				trainStations.add(new TrainStation.Builder(id, "Station " + id).build());
+			}
+			return trainStations;
+		};
+		when(service.searchTrainStations(any(TrainStationQuery.class), any(RequestHandle.class)))
+				.thenAnswer(answer);
+		when(service.searchTrainStationsOrThrow(any(TrainStationQuery.class), any(RequestHandle
+				.class))).thenAnswer(answer);
+		ExecutorService executorService = Executors.newCachedThreadPool();
+		try {
+			TrainStationDao dao = createInMemoryDao();
+			TrainStationRepository repository = new TrainStationRepository(service, new
+					TrainStationLocalCache(dao, Runnable::run), new LatestRequestScheduler(
+					executorService));
+			BlockingQueue<PagedList<TrainStation>> displayed = new LinkedBlockingQueue<>();
+			repository.getTrainStations().observeForever(displayed::add);
+			displayAndLoadEnd(repository, displayed, 51.05);
+			awaitRequests(requests, 2);
+			String fingerprint = requests.get(0).getFingerprint();
+			long timeout = System.currentTimeMillis() + 5000;
+			while (!dao.getQueryResult(fingerprint).isComplete() && System.currentTimeMillis()
+					< timeout) {
+				Thread.sleep(10);
+			}
+
+			TrainStationRepository restarted = new TrainStationRepository(service, new
+					TrainStationLocalCache(dao, Runnable::run), new LatestRequestScheduler(
+					executorService));
+			BlockingQueue<PagedList<TrainStation>> redisplayed = new LinkedBlockingQueue<>();
+			restarted.getTrainStations().observeForever(redisplayed::add);
+			displayAndLoadEnd(restarted, redisplayed, 51.05);
+			Thread.sleep(RESPONSE_DELAY_MILLIS);
+			Assert.assertThat(requests.size(), is(2));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	/**
+	 * Tests that an approximate first page of the near by tile cache is stored as complete
+	 * result without a coverage region, so neither further pages are requested by its offsets
+	 * nor are locations near by answered by it.
+	 */
+	@Test
+	public void TrainStationRepository_searchByLocation_doesNotPageApproximateResult()
+			throws Exception {
+		List<TrainStationQuery> requests = new CopyOnWriteArrayList<>();
+		List<List<TrainStation>> approximate = new CopyOnWriteArrayList<>();
+		TrainStationService service = mock(TrainStationService.class);
+		when(service.createNearByQuery(anyDouble(), anyDouble(), anyInt())).thenAnswer(
+				invocation -> TrainStationQuery.nearBy(invocation.getArgument(0), invocation
+						.getArgument(1), invocation.getArgument(2), PAGE_SIZE));
+		Answer<List<TrainStation>> answer = invocation -> {
+			TrainStationQuery query = invocation.getArgument(0);
+			requests.add(query);
+			List<TrainStation> trainStations = new ArrayList<>();
+			for (int id = 0; id < PAGE_SIZE; id++) {
+				trainStations.add(new TrainStation.Builder(query.getOffset() + id, "Station " +
+						id).build());
+			}
+			if (query.getOffset() == 0) {
+				approximate.add(trainStations);
+			}
+			return trainStations;
+		};
+		when(service.searchTrainStations(any(TrainStationQuery.class), any(RequestHandle.class)))
+				.thenAnswer(answer);
+		when(service.searchTrainStationsOrThrow(any(TrainStationQuery.class), any(RequestHandle
+				.class))).thenAnswer(answer);
+		when(service.isApproximate(any())).thenAnswer(invocation -> approximate.stream()
+				.anyMatch(trainStations -> trainStations == invocation.getArgument(0)));
+		ExecutorService executorService = Executors.newCachedThreadPool();
+		try {
+			TrainStationDao dao = createInMemoryDao();
+			TrainStationRepository repository = new TrainStationRepository(service, new
+					TrainStationLocalCache(dao, Runnable::run), new LatestRequestScheduler(
+					executorService));
+			BlockingQueue<PagedList<TrainStation>> displayed = new LinkedBlockingQueue<>();
+			repository.getTrainStations().observeForever(displayed::add);
+
+			displayAndLoadEnd(repository, displayed, 51.05);
+			Thread.sleep(RESPONSE_DELAY_MILLIS);
+
+			Assert.assertThat(requests.size(), is(1));
+			Assert.assertThat(dao.getQueryResult(requests.get(0).getFingerprint()).isComplete(),
+					is(true));
+			Assert.assertThat(repository.findCoverageRegion(51.05, 13.74, 1000) == null, is(
+					true));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	/**
+	 * Tests that a page that is received after another result was displayed is still appended
+	 * to its stored result.
+	 */
+	@Test
+	public void TrainStationRepository_searchByLocation_appendsPageReceivedAfterOtherDisplay()
+			throws Exception {
+		CountDownLatch pageRequested = new CountDownLatch(1);
+		CountDownLatch answerPage = new CountDownLatch(1);
+		TrainStationService service = mock(TrainStationService.class);
+		when(service.createNearByQuery(anyDouble(), anyDouble(), anyInt())).thenAnswer(
+				invocation -> TrainStationQuery.nearBy(invocation.getArgument(0), invocation
+						.getArgument(1), invocation.getArgument(2), PAGE_SIZE));
+		Answer<List<TrainStation>> answer = invocation -> {
+			TrainStationQuery query = invocation.getArgument(0);
+			if (query.getOffset() > 0) {
+				pageRequested.countDown();
+				answerPage.await(5, TimeUnit.SECONDS);
+			}
+			List<TrainStation> trainStations = new ArrayList<>();
+			for (int id = query.getOffset(); id < query.getOffset() + PAGE_SIZE; id++) {
+				trainStations.add(new TrainStation.Builder(id, "Station " + id).build());
+			}
+			return trainStations;
+		};
+		when(service.searchTrainStations(any(TrainStationQuery.class), any(RequestHandle.class)))
+				.thenAnswer(answer);
+		when(service.searchTrainStationsOrThrow(any(TrainStationQuery.class), any(RequestHandle
+				.class))).thenAnswer(answer);
+		ExecutorService executorService = Executors.newCachedThreadPool();
+		try {
+			TrainStationDao dao = createInMemoryDao();
+			TrainStationRepository repository = new TrainStationRepository(service, new
+					TrainStationLocalCache(dao, Runnable::run), new LatestRequestScheduler(
+					executorService));
+			BlockingQueue<PagedList<TrainStation>> displayed = new LinkedBlockingQueue<>();
+			repository.getTrainStations().observeForever(displayed::add);
+
+			displayAndLoadEnd(repository, displayed, 51.05);
+			Assert.assertThat(pageRequested.await(5, TimeUnit.SECONDS), is(true));
+			// local matches are displayed while the page is loading
+			repository.filterTrainStationsBySearchTerm("Dresden");
+			answerPage.countDown();
+
+			String fingerprint = service.createNearByQuery(51.05, 13.74, 1000).getFingerprint();
+			long timeout = System.currentTimeMillis() + 5000;
+			while (dao.getQueryResultSize(fingerprint) < 2 * PAGE_SIZE && System
+					.currentTimeMillis() < timeout) {
+				Thread.sleep(10);
+			}
+			Assert.assertThat(dao.getQueryResultSize(fingerprint), is(2 * PAGE_SIZE));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	/**
+	 * Tests that a prefetched result is stored, although the result of the region the user is
+	 * about to leave is displayed again meanwhile, and that further locations within the region
+	 * don't request it again.
+	 */
+	@Test
+	public void TrainStationRepository_prefetchByLocation_storesResultWhileRegionIsDisplayed()
+			throws Exception {
+		CountDownLatch answerPrefetch = new CountDownLatch(1);
+		List<TrainStationQuery> requests = new CopyOnWriteArrayList<>();
+		TrainStationService service = mock(TrainStationService.class);
+		when(service.createNearByQuery(anyDouble(), anyDouble(), anyInt())).thenAnswer(
+				invocation -> TrainStationQuery.nearBy(invocation.getArgument(0), invocation
+						.getArgument(1), invocation.getArgument(2), PAGE_SIZE));
+		when(service.searchTrainStations(any(TrainStationQuery.class), any(RequestHandle.class)))
+				.thenAnswer(invocation -> {
+					TrainStationQuery query = invocation.getArgument(0);
+					requests.add(query);
+					if (query.getLatitude() != 51.05) {
+						answerPrefetch.await(5, TimeUnit.SECONDS);
+					}
+					// a complete result covers the search radius
+					return Collections.singletonList(new TrainStation.Builder(requests.size(),
+							"Station " + requests.size()).build());
+				});
+		ExecutorService executorService = Executors.newCachedThreadPool();
+		try {
+			TrainStationRepository repository = new TrainStationRepository(service, new
+					TrainStationLocalCache(createInMemoryDao(), Runnable::run), new
+					LatestRequestScheduler(executorService));
+			BlockingQueue<PagedList<TrainStation>> displayed = new LinkedBlockingQueue<>();
+			repository.getTrainStations().observeForever(displayed::add);
+			repository.searchTrainStationsByLocation(51.05, 13.74, 1000);
+			Assert.assertThat(displayed.poll(5, TimeUnit.SECONDS).size(), is(1));
+
+			// region covers 500 m, its outer quarter is near by the boundary
+			CoverageRegion region = repository.findCoverageRegion(51.054, 13.74, 1000);
+			Assert.assertThat(region.isNearBoundary(51.054, 13.74), is(true));
+			repository.displayTrainStationsByLocation(region, 51.054, 13.74);
+			repository.prefetchTrainStationsByLocation(region, 51.054, 13.74);
+			awaitRequests(requests, 2);
+			repository.displayTrainStationsByLocation(region, 51.0541, 13.74);
+			repository.prefetchTrainStationsByLocation(region, 51.0541, 13.74);
+			answerPrefetch.countDown();
+
+			long timeout = System.currentTimeMillis() + 5000;
+			CoverageRegion prefetched = repository.findCoverageRegion(51.054, 13.74, 1000);
+			while (prefetched == region && System.currentTimeMillis() < timeout) {
+				Thread.sleep(10);
+				prefetched = repository.findCoverageRegion(51.054, 13.74, 1000);
+			}
+			Assert.assertThat(prefetched.getQuery().getLatitude(), is(51.054));
+			Assert.assertThat(requests.size(), is(2));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	private static void displayAndLoadEnd(TrainStationRepository repository,
+			BlockingQueue<PagedList<TrainStation>> displayed, double latitude) throws
+			InterruptedException {
+		repository.searchTrainStationsByLocation(latitude, 13.74, 1000);
+		PagedList<TrainStation> trainStations = displayed.poll(5, TimeUnit.SECONDS);
+		trainStations.loadAround(trainStations.size() - 1);
+	}
+
+	private static void awaitRequests(List<TrainStationQuery> requests, int count) throws
+			InterruptedException {
+		long timeout = System.currentTimeMillis() + 5000;
+		while (requests.size() < count && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * @return A DAO that keeps query results in memory. Displayed sources of a result are
+	 * invalidated if it changes. Room would invalidate the sources of other results as well,
+	 * which only emits their unchanged train stations again.
+	 */
+	private TrainStationDao createInMemoryDao() {
+		Map<String, QueryResult> queryResults = new ConcurrentHashMap<>();
+		Map<String, List<TrainStation>> trainStations = new ConcurrentHashMap<>();
+		Map<String, List<DataSource<Integer, TrainStation>>> sources = new
+				ConcurrentHashMap<>();
+		TrainStationDao dao = mock(TrainStationDao.class);
+		when(dao.getQueryResult(anyString())).thenAnswer(invocation -> queryResults.get(
+				invocation.getArgument(0)));
+		when(dao.getQueryResultSize(anyString())).thenAnswer(invocation -> trainStations
+				.getOrDefault(invocation.getArgument(0), Collections.emptyList()).size());
+		when(dao.getAllTrainStations()).thenAnswer(invocation -> {
+			List<TrainStation> allTrainStations = new ArrayList<>();
+			for (List<TrainStation> result : trainStations.values()) {
+				allTrainStations.addAll(result);
+			}
+			return allTrainStations;
+		});
+		when(dao.getTrainStationsByName(anyString())).thenAnswer(invocation -> createFactory(
+				trainStations, sources, invocation.getArgument(0)));
+		when(dao.getTrainStationsByDistance(anyString(), anyDouble(), anyDouble(), anyInt()))
+				.thenAnswer(invocation -> createFactory(trainStations, sources, invocation
+						.getArgument(0)));
+		when(dao.replaceQueryResult(any(), any(), anyInt(), anyInt())).thenAnswer(invocation -> {
+			QueryResult queryResult = invocation.getArgument(0);
+			List<TrainStation> result = invocation.getArgument(1);
+			queryResults.put(queryResult.getFingerprint(), queryResult);
+			List<TrainStation> stored = trainStations.put(queryResult.getFingerprint(), new
+					ArrayList<>(result));
+			if (result.equals(stored)) {
+				return TrainStationDiff.calculate(result, result);
+			}
+			invalidate(sources, queryResult.getFingerprint());
+			return TrainStationDiff.calculate(Collections.emptyList(), result);
+		});
+		when(dao.appendToQueryResult(anyString(), any(), anyBoolean(), anyInt(), anyInt()))
+				.thenAnswer(invocation -> {
+					List<TrainStation> page = invocation.getArgument(1);
+					trainStations.get(invocation.<String>getArgument(0)).addAll(page);
+					queryResults.get(invocation.<String>getArgument(0)).setComplete(invocation
+							.getArgument(2));
+					if (!page.isEmpty()) {
+						invalidate(sources, invocation.getArgument(0));
+					}
+					return TrainStationDiff.calculate(Collections.emptyList(), page);
+				});
+		return dao;
+	}
+
+	/**
+	 * Invalidates the created sources of passed result, like room does on any write.
+	 */
+	private static void invalidate(Map<String, List<DataSource<Integer, TrainStation>>> sources,
+			String fingerprint) {
+		List<DataSource<Integer, TrainStation>> invalidated = sources.remove(fingerprint);
+		if (invalidated != null) {
+			for (DataSource<Integer, TrainStation> source : invalidated) {
+				source.invalidate();
+			}
+		}
+	}
+
+	private static DataSource.Factory<Integer, TrainStation> createFactory(
+			Map<String, List<TrainStation>> trainStations,
+			Map<String, List<DataSource<Integer, TrainStation>>> sources, String fingerprint) {
+		return new DataSource.Factory<Integer, TrainStation>() {
+			@Override
+			public DataSource<Integer, TrainStation> create() {
+				DataSource<Integer, TrainStation> source = new ListDataSource<>(trainStations
+						.getOrDefault(fingerprint, Collections.emptyList()));
+				sources.computeIfAbsent(fingerprint, key -> new CopyOnWriteArrayList<>()).add(
+						source);
+				return source;
+			}
+		};
+	}
+
+	private MockResponse createSearchResponse(String name) {
+		return new MockResponse().setBody("{\"data\":{\"search\":{\"stations\":[{" +
+				"\"primaryEvaId\":1,\"name\":\"" + name + "\",\"hasWiFi\":true," +
+				"\"hasParking\":true,\"hasSteplessAccess\":\"yes\",\"picture\":null}]}}}")
+				.setBodyDelay(RESPONSE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	private void assertDisplayed(List<TrainStation> trainStations, String name) {
+		Assert.assertThat(trainStations.size(), is(1));
+		Assert.assertThat(trainStations.get(0).getName(), is(name));
+	}
+}
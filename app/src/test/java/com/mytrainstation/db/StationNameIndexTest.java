@@ -0,0 +1,102 @@
+package com.mytrainstation.db;
+
+import com.mytrainstation.model.TrainStation;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+
+/**
+ * Run tests against {@link StationNameIndex}.
+ *
+ * @author JSCHENK
+ */
+public class StationNameIndexTest {
+
+	private StationNameIndex mIndex;
+
+	/**
+	 * Creates an index of some train stations.
+	 */
+	@Before
+	public void setUp() {
+		mIndex = StationNameIndex.build(Arrays.asList(
+				createTrainStation(1, "München Hbf"),
+				createTrainStation(2, "München-Pasing"),
+				createTrainStation(3, "Mühldorf (Oberbay)"),
+				createTrainStation(4, "Düsseldorf Hbf"),
+				createTrainStation(5, "Garmisch-Partenkirchen"),
+				createTrainStation(6, "Gießen"),
+				createTrainStation(7, "Münchenbernsdorf"),
+				createTrainStation(8, "Dresden Hbf")));
+	}
+
+	/**
+	 * Tests that {@link StationNameIndex#normalize(String)} will map umlauts, their
+	 * transliteration and their base letter to the same text.
+	 */
+	@Test
+	public void StationNameIndex_normalize_mapsUmlautsAndTransliterationToSameText() {
+		Assert.assertThat(StationNameIndex.normalize("München"), is("munchen"));
+		Assert.assertThat(StationNameIndex.normalize("Muenchen"), is("munchen"));
+		Assert.assertThat(StationNameIndex.normalize("munchen"), is("munchen"));
+		Assert.assertThat(StationNameIndex.normalize("Gießen"), is("giessen"));
+		Assert.assertThat(StationNameIndex.normalize(" Mühldorf (Oberbay) "),
+				is("muhldorf oberbay"));
+	}
+
+	/**
+	 * Tests that {@link StationNameIndex#search(String, int)} will find the same train stations
+	 * for all spellings of an umlaut.
+	 */
+	@Test
+	public void StationNameIndex_search_matchesAllSpellingsOfUmlauts() {
+		List<Integer> expected = Arrays.asList(1, 2, 7);
+		Assert.assertThat(ids(mIndex.search("München", 10)), is(expected));
+		Assert.assertThat(ids(mIndex.search("Muenchen", 10)), is(expected));
+		Assert.assertThat(ids(mIndex.search("munchen", 10)), is(expected));
+		Assert.assertThat(ids(mIndex.search("giessen", 10)), is(Arrays.asList(6)));
+	}
+
+	/**
+	 * Tests that {@link StationNameIndex#search(String, int)} will match prefixes of each word
+	 * and rank exact word matches and shorter names first.
+	 */
+	@Test
+	public void StationNameIndex_search_matchesPrefixesRankedByExactMatchAndLength() {
+		Assert.assertThat(ids(mIndex.search("mü", 10)), is(Arrays.asList(1, 2, 3, 7)));
+		Assert.assertThat(ids(mIndex.search("hbf", 10)), is(Arrays.asList(8, 1, 4)));
+		Assert.assertThat(ids(mIndex.search("part", 10)), is(Arrays.asList(5)));
+		Assert.assertThat(ids(mIndex.search("mü", 2)), is(Arrays.asList(1, 2)));
+	}
+
+	/**
+	 * Tests that {@link StationNameIndex#search(String, int)} will only return train stations
+	 * that match each word of the search term.
+	 */
+	@Test
+	public void StationNameIndex_search_matchesAllWordsOfSearchTerm() {
+		Assert.assertThat(ids(mIndex.search("Hbf Mue", 10)), is(Arrays.asList(1)));
+		Assert.assertThat(ids(mIndex.search("münchen pas", 10)), is(Arrays.asList(2)));
+		Assert.assertThat(ids(mIndex.search("berlin", 10)).isEmpty(), is(true));
+		Assert.assertThat(ids(mIndex.search(" - ", 10)).isEmpty(), is(true));
+	}
+
+	private List<Integer> ids(List<TrainStation> trainStations) {
+		List<Integer> ids = new ArrayList<>();
+		for (TrainStation trainStation : trainStations) {
+			ids.add(trainStation.getId());
+		}
+		return ids;
+	}
+
+	private TrainStation createTrainStation(int id, String name) {
+		return new TrainStation.Builder(id, name).build();
+	}
+}
@@ -0,0 +1,98 @@
+package com.mytrainstation.db;
+
+import com.mytrainstation.model.TrainStation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+
+/**
+ * Run tests against {@link TrainStationDiff}.
+ *
+ * @author JSCHENK
+ */
+public class TrainStationDiffTest {
+
+	/**
+	 * Tests that {@link TrainStationDiff#calculate(java.util.List, java.util.List)} will only
+	 * contain disappeared ids as well as new and changed train stations.
+	 */
+	@Test
+	public void TrainStationDiff_calculate_containsOnlyRemovedAndChangedTrainStations() {
+		TrainStation unchanged = new TrainStation.Builder(1, "Dresden - Hauptbahnhof").hasWifi(true)
+				.build();
+		TrainStation removed = new TrainStation.Builder(2, "Dresden - Strehlen").build();
+		TrainStation changed = new TrainStation.Builder(3, "Dresden - Neustadt").build();
+		TrainStation changedUpdate = new TrainStation.Builder(3, "Dresden - Neustadt")
+				.hasParking(true).build();
+		TrainStation added = new TrainStation.Builder(4, "Dresden - Mitte").build();
+
+		TrainStationDiff diff = TrainStationDiff.calculate(Arrays.asList(unchanged, removed,
+				changed), Arrays.asList(unchanged, changedUpdate, added));
+		Assert.assertThat(diff.getRemovedIds(), contains(2));
+		Assert.assertThat(diff.getChangedTrainStations(), contains(changedUpdate, added));
+		Assert.assertThat(diff.getWriteCount(), is(3));
+	}
+
+	/**
+	 * Tests that {@link TrainStationDiff#calculate(java.util.List, java.util.List)} will be empty
+	 * if stored train stations already match the new ones.
+	 */
+	@Test
+	public void TrainStationDiff_calculate_isEmptyIfNothingChanged() {
+		TrainStation trainStation = new TrainStation.Builder(1, "Dresden - Hauptbahnhof")
+				.pictureUrl("http://123.de/456.jpg").build();
+		TrainStation equalTrainStation = new TrainStation.Builder(1, "Dresden - Hauptbahnhof")
+				.pictureUrl("http://123.de/456.jpg").build();
+
+		Assert.assertThat(TrainStationDiff.calculate(Collections.singletonList(trainStation),
+				Collections.singletonList(equalTrainStation)).isEmpty(), is(true));
+	}
+
+	/**
+	 * Tests that {@link TrainStationDiff#calculate(java.util.List, java.util.List)} will keep the
+	 * stored picture of a train station only if its picture url didn't change.
+	 */
+	@Test
+	public void TrainStationDiff_calculate_keepsStoredPictureOfUnchangedPictureUrl() {
+		TrainStation stored = new TrainStation.Builder(1, "Dresden - Hauptbahnhof")
+				.pictureUrl("http://123.de/456.jpg").build();
+		stored.setPictureHash("abc");
+		TrainStation storedOther = new TrainStation.Builder(2, "Dresden - Neustadt")
+				.pictureUrl("http://123.de/789.jpg").build();
+		storedOther.setPictureHash("def");
+		TrainStation unchanged = new TrainStation.Builder(1, "Dresden - Hauptbahnhof")
+				.pictureUrl("http://123.de/456.jpg").build();
+		TrainStation changed = new TrainStation.Builder(2, "Dresden - Neustadt")
+				.pictureUrl("http://123.de/012.jpg").build();
+
+		TrainStationDiff diff = TrainStationDiff.calculate(Arrays.asList(stored, storedOther),
+				Arrays.asList(unchanged, changed));
+		Assert.assertThat(unchanged.getPictureHash(), is("abc"));
+		Assert.assertThat(changed.getPictureHash() == null, is(true));
+		Assert.assertThat(diff.getChangedTrainStations(), contains(changed));
+	}
+
+	/**
+	 * Tests that {@link TrainStationDiff#withLinks(java.util.List, java.util.List)} isn't empty
+	 * if an unchanged train station was linked to or unlinked from a result.
+	 */
+	@Test
+	public void TrainStationDiff_withLinks_containsLinkedAndUnlinkedTrainStations() {
+		TrainStation trainStation = new TrainStation.Builder(1, "Dresden - Hauptbahnhof").build();
+		TrainStationDiff unchanged = TrainStationDiff.calculate(Collections.singletonList(
+				trainStation), Collections.singletonList(trainStation));
+
+		Assert.assertThat(unchanged.withLinks(Collections.emptyList(), Collections.emptyList())
+				.isEmpty(), is(true));
+		Assert.assertThat(unchanged.withLinks(Collections.emptyList(), Collections.singletonList(
+				trainStation)).getChangedTrainStations(), contains(trainStation));
+		Assert.assertThat(unchanged.withLinks(Collections.singletonList(2), Collections
+				.emptyList()).getRemovedIds(), contains(2));
+	}
+}
@@ -0,0 +1,152 @@
+package com.mytrainstation.logging;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+
+/**
+ * Run tests against {@link AsyncRingBufferAppender}.
+ *
+ * @author JSCHENK
+ */
+public class AsyncRingBufferAppenderTest {
+
+	private static final Logger LOGGER = Logger.getLogger(AsyncRingBufferAppenderTest.class);
+	private static final int CAPACITY = 16;
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	private final RecordingAppender mRecordingAppender = new RecordingAppender();
+	private AsyncRingBufferAppender mAppender;
+
+	/**
+	 * Closes the appender under test.
+	 */
+	@After
+	public void tearDown() {
+		mRecordingAppender.mWriteAllowed.countDown();
+		mAppender.close();
+	}
+
+	/**
+	 * Appends events of several threads and tests that all are written in order of each thread
+	 * after a flush.
+	 */
+	@Test
+	public void AsyncRingBufferAppender_flush_writesAllEventsInOrderOfEachThread() throws
+			InterruptedException {
+		mAppender = new AsyncRingBufferAppender(mRecordingAppender, CAPACITY,
+				AsyncRingBufferAppender.OverflowPolicy.BLOCK);
+		mRecordingAppender.mWriteAllowed.countDown();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					mAppender.doAppend(event(Level.INFO, String.valueOf(i)));
+				}
+			}, "producer-" + t);
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertThat(mAppender.flush(TIMEOUT_MILLIS), is(true));
+
+		Map<String, Integer> lastIndices = new HashMap<>();
+		for (LoggingEvent event : mRecordingAppender.mEvents) {
+			int index = Integer.parseInt(event.getRenderedMessage());
+			Integer last = lastIndices.put(event.getThreadName(), index);
+			Assert.assertThat(index, is(last == null ? 0 : last + 1));
+		}
+		Assert.assertThat(mRecordingAppender.mEvents.size(), is(4000));
+		Assert.assertThat(mAppender.getDroppedCount(), is(0L));
+	}
+
+	/**
+	 * Blocks the writer thread, fills the ring buffer and tests that further events are dropped
+	 * unless they are errors, and that the number of dropped events is written afterwards.
+	 */
+	@Test
+	public void AsyncRingBufferAppender_append_dropsEventsIfFull() throws InterruptedException {
+		mAppender = new AsyncRingBufferAppender(mRecordingAppender, CAPACITY,
+				AsyncRingBufferAppender.OverflowPolicy.DROP);
+		mAppender.doAppend(event(Level.INFO, "taken"));
+		Assert.assertThat(mRecordingAppender.mWriteStarted.await(TIMEOUT_MILLIS, TimeUnit
+				.MILLISECONDS), is(true));
+		for (int i = 0; i < CAPACITY; i++) {
+			mAppender.doAppend(event(Level.INFO, "queued"));
+		}
+		mAppender.doAppend(event(Level.INFO, "dropped"));
+		mAppender.doAppend(event(Level.DEBUG, "dropped"));
+		Assert.assertThat(mAppender.getDroppedCount(), is(2L));
+
+		Thread error = new Thread(() -> mAppender.doAppend(event(Level.ERROR, "error")));
+		error.start();
+		// the error waits for free space
+		error.join(100);
+		Assert.assertThat(error.isAlive(), is(true));
+		mRecordingAppender.mWriteAllowed.countDown();
+		error.join(TIMEOUT_MILLIS);
+		Assert.assertThat(mAppender.flush(TIMEOUT_MILLIS), is(true));
+
+		List<String> messages = new ArrayList<>();
+		for (LoggingEvent event : mRecordingAppender.mEvents) {
+			messages.add(event.getRenderedMessage());
+		}
+		Assert.assertThat(messages.size(), is(CAPACITY + 3));
+		Assert.assertThat(messages.contains("dropped"), is(false));
+		Assert.assertThat(messages.get(messages.size() - 1), is("error"));
+		Assert.assertThat(messages.contains("Dropped 2 log events, since the ring buffer was " +
+				"full"), is(true));
+	}
+
+	private static LoggingEvent event(Level level, String message) {
+		return new LoggingEvent(AsyncRingBufferAppenderTest.class.getName(), LOGGER, level,
+				message, null);
+	}
+
+	/**
+	 * Appender that records events and waits for permission before its first write.
+	 */
+	private static class RecordingAppender extends AppenderSkeleton {
+
+		private final List<LoggingEvent> mEvents = Collections.synchronizedList(new
+				ArrayList<>());
+		private final CountDownLatch mWriteStarted = new CountDownLatch(1);
+		private final CountDownLatch mWriteAllowed = new CountDownLatch(1);
+
+		@Override
+		protected void append(LoggingEvent event) {
+			mWriteStarted.countDown();
+			try {
+				mWriteAllowed.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			mEvents.add(event);
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public boolean requiresLayout() {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.mytrainstation.logging;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
+/**
+ * Run tests against {@link FastLogger} and {@link LogEntry}.
+ *
+ * @author JSCHENK
+ */
+public class FastLoggerTest {
+
+	private final RecordingAppender mAppender = new RecordingAppender();
+	private Logger mLogger;
+
+	/**
+	 * Records all events of the logger under test.
+	 */
+	@Before
+	public void setUp() {
+		mLogger = Logger.getLogger(FastLoggerTest.class);
+		mLogger.setAdditivity(false);
+		mLogger.setLevel(Level.DEBUG);
+		mLogger.addAppender(mAppender);
+	}
+
+	/**
+	 * Removes the recording appender.
+	 */
+	@After
+	public void tearDown() {
+		mLogger.removeAllAppenders();
+		mLogger.setLevel(null);
+	}
+
+	/**
+	 * Tests that placeholders are replaced by arguments of each type in order, and that
+	 * placeholders without argument are kept.
+	 */
+	@Test
+	public void LogEntry_log_replacesPlaceholdersInOrder() {
+		FastLogger logger = FastLogger.getLogger(FastLoggerTest.class);
+		IOException cause = new IOException();
+		logger.atWarn().arg(52.5).arg(13).arg(true).arg("text").arg((Object) null).cause(cause)
+				.log("a={}, b={}, c={}, d={}, e={}, f={}");
+		logger.atInfo().log("no arguments {}");
+
+		Assert.assertThat(mAppender.mEvents.size(), is(2));
+		LoggingEvent warning = mAppender.mEvents.get(0);
+		Assert.assertThat(warning.getLevel(), is(Level.WARN));
+		Assert.assertThat(warning.getRenderedMessage(), is("a=52.5, b=13, c=true, d=text, " +
+				"e=null, f={}"));
+		Assert.assertThat(warning.getThrowableInformation().getThrowable(), is(sameInstance(
+				(Throwable) cause)));
+		Assert.assertThat(mAppender.mEvents.get(1).getRenderedMessage(), is("no arguments {}"));
+		Assert.assertThat(mAppender.mEvents.get(1).getThrowableInformation(), is(nullValue()));
+	}
+
+	/**
+	 * Tests that a disabled level returns the shared disabled entry, which logs nothing.
+	 */
+	@Test
+	public void FastLogger_atDebug_returnsDisabledEntryIfLevelIsDisabled() {
+		mLogger.setLevel(Level.INFO);
+		FastLogger logger = FastLogger.getLogger(FastLoggerTest.class);
+
+		LogEntry entry = logger.atDebug();
+		Assert.assertThat(entry, is(sameInstance(LogEntry.DISABLED)));
+		entry.arg(1).arg("ignored").log("{} {}");
+		Assert.assertThat(mAppender.mEvents.size(), is(0));
+	}
+
+	/**
+	 * Tests that rate limited and sampled loggers suppress info events, but never warnings, and
+	 * report the number of suppressed events with their next message.
+	 */
+	@Test
+	public void FastLogger_atInfo_suppressesEventsOverRateLimitAndSampling() {
+		FastLogger limited = FastLogger.getLogger(FastLoggerTest.class).limitRate(3);
+		for (int i = 0; i < 10; i++) {
+			limited.atInfo().arg(i).log("event {}");
+		}
+		limited.atWarn().log("warning");
+		Assert.assertThat(mAppender.getMessages().toString(), is("[event 0, event 1, event 2, " +
+				"warning (suppressed 7 similar events)]"));
+
+		mAppender.mEvents.clear();
+		FastLogger sampled = FastLogger.getLogger(FastLoggerTest.class).sample(4);
+		for (int i = 0; i < 10; i++) {
+			sampled.atDebug().arg(i).log("event {}");
+		}
+		Assert.assertThat(mAppender.getMessages().toString(), is("[event 0, event 4 " +
+				"(suppressed 3 similar events), event 8 (suppressed 3 similar events)]"));
+	}
+
+	/**
+	 * Appender that records all events.
+	 */
+	private static class RecordingAppender extends AppenderSkeleton {
+
+		private final List<LoggingEvent> mEvents = new ArrayList<>();
+
+		private List<String> getMessages() {
+			List<String> messages = new ArrayList<>();
+			for (LoggingEvent event : mEvents) {
+				messages.add(event.getRenderedMessage());
+			}
+			return messages;
+		}
+
+		@Override
+		protected void append(LoggingEvent event) {
+			mEvents.add(event);
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public boolean requiresLayout() {
+			return false;
+		}
+	}
+}
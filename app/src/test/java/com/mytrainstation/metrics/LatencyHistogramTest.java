@@ -0,0 +1,118 @@
+package com.mytrainstation.metrics;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Run tests against {@link LatencyHistogram} and {@link MetricsRegistry}.
+ *
+ * @author JSCHENK
+ */
+public class LatencyHistogramTest {
+
+	// 1/32 of the lowest value of a bucket
+	private static final double MAX_RELATIVE_ERROR = 1.0 / 32;
+
+	private MetricsRegistry mRegistry;
+
+	/**
+	 * Creates a registry that is independent of the one of the app.
+	 */
+	@Before
+	public void setUp() {
+		mRegistry = new MetricsRegistry();
+	}
+
+	/**
+	 * Tests that each value is counted within a bucket whose highest value differs at most by
+	 * 1/32 from it over the whole range of a long.
+	 */
+	@Test
+	public void LatencyHistogram_indexOf_keepsRelativeError() {
+		for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+			long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+			Assert.assertThat(highest, is(greaterThanOrEqualTo(value)));
+			Assert.assertThat((double) (highest - value) / value, is(lessThanOrEqualTo
+					(MAX_RELATIVE_ERROR)));
+		}
+		Assert.assertThat(LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(Long
+				.MAX_VALUE)), is(Long.MAX_VALUE));
+	}
+
+	/**
+	 * Records 1 to 1000 milliseconds and tests percentiles, mean and max of the snapshot.
+	 */
+	@Test
+	public void LatencyHistogram_snapshot_providesPercentiles() {
+		LatencyHistogram histogram = mRegistry.histogram("latency");
+		for (int millis = 1000; millis > 0; millis--) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+		Assert.assertThat(snapshot.getCount(), is(1000L));
+		Assert.assertThat(snapshot.getMaxNanos(), is(TimeUnit.MILLISECONDS.toNanos(1000)));
+		Assert.assertThat(snapshot.getMeanNanos(), is(TimeUnit.MICROSECONDS.toNanos(500500)));
+		assertPercentile(snapshot, 50, 500);
+		assertPercentile(snapshot, 90, 900);
+		assertPercentile(snapshot, 99, 990);
+		Assert.assertThat(snapshot.getPercentileNanos(100), is(snapshot.getMaxNanos()));
+	}
+
+	/**
+	 * Tests that nothing is recorded while metrics are disabled.
+	 */
+	@Test
+	public void LatencyHistogram_stop_skipsRecordingWhileDisabled() {
+		LatencyHistogram histogram = mRegistry.histogram("latency");
+		Counter counter = mRegistry.counter("events");
+		mRegistry.setEnabled(false);
+		histogram.stop(histogram.start());
+		counter.increment();
+		Assert.assertThat(histogram.snapshot().getCount(), is(0L));
+		Assert.assertThat(counter.get(), is(0L));
+
+		mRegistry.setEnabled(true);
+		histogram.stop(histogram.start());
+		counter.increment();
+		Assert.assertThat(histogram.snapshot().getCount(), is(1L));
+		Assert.assertThat(counter.get(), is(1L));
+	}
+
+	/**
+	 * Tests that registered metrics are shared by name and dumped as json.
+	 */
+	@Test
+	public void MetricsRegistry_toJson_dumpsAllMetrics() {
+		mRegistry.histogram("latency").record(TimeUnit.MILLISECONDS.toNanos(5));
+		mRegistry.counter("hits").add(3);
+		mRegistry.counter("hits").increment();
+		Assert.assertThat(mRegistry.histogram("latency").snapshot().getCount(), is(1L));
+
+		String json = mRegistry.toJson();
+		Assert.assertThat(json, containsString("\"histograms\":{\"latency\":{\"count\":1," +
+				"\"mean\":5000000,"));
+		Assert.assertThat(json, containsString("\"max\":5000000}"));
+		Assert.assertThat(json, containsString("\"counters\":{\"hits\":4}"));
+
+		mRegistry.reset();
+		Assert.assertThat(mRegistry.toJson(), is("{\"histograms\":{\"latency\":{\"count\":0," +
+				"\"mean\":0,\"p50\":0,\"p90\":0,\"p99\":0,\"max\":0}},\"counters\":{\"hits\":0}}"));
+	}
+
+	private static void assertPercentile(LatencyHistogram.Snapshot snapshot, double percentile,
+			long expectedMillis) {
+		double expected = TimeUnit.MILLISECONDS.toNanos(expectedMillis);
+		Assert.assertThat((double) snapshot.getPercentileNanos(percentile), is(closeTo(expected,
+				expected * MAX_RELATIVE_ERROR)));
+	}
+}
@@ -0,0 +1,423 @@
+package com.mytrainstation.replay;
+
+import android.location.LocationManager;
+import android.support.annotation.NonNull;
+
+import com.mytrainstation.util.GeoUtils;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Recorded or synthetic route of location fixes ordered by their time. Tracks could be read
+ * from GPX ({@code trkpt} elements) or NMEA ({@code RMC} sentences, with accuracy of matching
+ * {@code GGA} sentences) or be built along waypoints with {@link Builder}.
+ *
+ * @author JSCHENK
+ */
+public class LocationTrack {
+
+	/**
+	 * Accuracy of fixes without information about their precision.
+	 */
+	public static final float DEFAULT_ACCURACY_METERS = 10f;
+	// user equivalent range error, that turns a horizontal dilution of precision into metres
+	private static final float METERS_PER_HDOP = 5f;
+	private static final DateTimeFormatter NMEA_DATE = DateTimeFormatter.ofPattern("ddMMyy",
+			Locale.ROOT);
+	private static final DateTimeFormatter NMEA_TIME = DateTimeFormatter.ofPattern(
+			"HHmmss[.S][S][S]", Locale.ROOT);
+
+	private final List<Fix> mFixes;
+
+	private LocationTrack(@NonNull List<Fix> fixes) {
+		List<Fix> sorted = new ArrayList<>(fixes);
+		sorted.sort(Comparator.comparingLong(Fix::getTimeMillis));
+		mFixes = Collections.unmodifiableList(sorted);
+	}
+
+	/**
+	 * @param input
+	 * 		The GPX document.
+	 * @return A track of all track points of passed document. Track points without time will be
+	 * ignored.
+	 * @throws IOException
+	 * 		If document couldn't be read or parsed.
+	 */
+	@NonNull
+	public static LocationTrack parseGpx(@NonNull InputStream input) throws IOException {
+		List<Fix> fixes = new ArrayList<>();
+		try {
+			SAXParserFactory.newInstance().newSAXParser().parse(input, new GpxHandler(fixes));
+		} catch (ParserConfigurationException | SAXException | DateTimeParseException e) {
+			throw new IOException("Couldn't parse GPX document", e);
+		}
+		return new LocationTrack(fixes);
+	}
+
+	/**
+	 * @param reader
+	 * 		The NMEA sentences, one per line.
+	 * @return A track of all valid {@code RMC} sentences. Sentences with wrong checksum will be
+	 * ignored.
+	 * @throws IOException
+	 * 		If sentences couldn't be read.
+	 */
+	@NonNull
+	public static LocationTrack parseNmea(@NonNull Reader reader) throws IOException {
+		Map<String, String[]> positions = new HashMap<>();
+		Map<String, Float> accuracies = new HashMap<>();
+		BufferedReader lines = new BufferedReader(reader);
+		String line;
+		while ((line = lines.readLine()) != null) {
+			String[] fields = splitSentence(line.trim());
+			if (fields == null || fields[0].length() != 5) {
+				continue;
+			}
+			String type = fields[0].substring(2);
+			if ("RMC".equals(type) && fields.length > 9 && "A".equals(fields[2])) {
+				positions.put(fields[9] + fields[1], fields);
+			} else if ("GGA".equals(type) && fields.length > 8 && !fields[8].isEmpty()) {
+				accuracies.put(fields[1], Float.parseFloat(fields[8]) * METERS_PER_HDOP);
+			}
+		}
+		List<Fix> fixes = new ArrayList<>();
+		for (String[] fields : positions.values()) {
+			long timeMillis = LocalTime.parse(fields[1], NMEA_TIME).atDate(LocalDate.parse
+					(fields[9], NMEA_DATE)).toInstant(ZoneOffset.UTC).toEpochMilli();
+			fixes.add(new Fix(timeMillis, parseCoordinate(fields[3], fields[4]), parseCoordinate
+					(fields[5], fields[6]), accuracies.getOrDefault(fields[1],
+					DEFAULT_ACCURACY_METERS)));
+		}
+		return new LocationTrack(fixes);
+	}
+
+	/**
+	 * @return The fields of passed sentence without leading {@code $} or {@code null} if it
+	 * isn't a sentence or its checksum doesn't match.
+	 */
+	private static String[] splitSentence(@NonNull String sentence) {
+		if (!sentence.startsWith("$")) {
+			return null;
+		}
+		int checksumStart = sentence.indexOf('*');
+		String data = sentence.substring(1, checksumStart >= 0 ? checksumStart : sentence
+				.length());
+		if (checksumStart >= 0) {
+			int checksum = 0;
+			for (int i = 0; i < data.length(); i++) {
+				checksum ^= data.charAt(i);
+			}
+			try {
+				if (checksum != Integer.parseInt(sentence.substring(checksumStart + 1), 16)) {
+					return null;
+				}
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return data.split(",", -1);
+	}
+
+	/**
+	 * @return The decimal degrees of passed NMEA coordinate ({@code dddmm.mmmm}).
+	 */
+	private static double parseCoordinate(@NonNull String value, @NonNull String hemisphere) {
+		double raw = Double.parseDouble(value);
+		double degrees = Math.floor(raw / 100);
+		double coordinate = degrees + (raw - degrees * 100) / 60;
+		return "S".equals(hemisphere) || "W".equals(hemisphere) ? -coordinate : coordinate;
+	}
+
+	/**
+	 * @return All fixes of the track ordered by their time.
+	 */
+	@NonNull
+	public List<Fix> getFixes() {
+		return mFixes;
+	}
+
+	/**
+	 * @return The time between the first and the last fix.
+	 */
+	public long getDurationMillis() {
+		return mFixes.isEmpty() ? 0 : mFixes.get(mFixes.size() - 1).getTimeMillis() - mFixes
+				.get(0).getTimeMillis();
+	}
+
+	/**
+	 * A single location fix of a track.
+	 */
+	public static final class Fix {
+
+		private final long mTimeMillis;
+		private final double mLatitude;
+		private final double mLongitude;
+		private final float mAccuracy;
+
+		/**
+		 * @param timeMillis
+		 * 		The UTC time of the fix in milliseconds since epoch.
+		 * @param latitude
+		 * 		The latitude in degrees.
+		 * @param longitude
+		 * 		The longitude in degrees.
+		 * @param accuracy
+		 * 		The estimated horizontal accuracy in metres.
+		 */
+		public Fix(long timeMillis, double latitude, double longitude, float accuracy) {
+			mTimeMillis = timeMillis;
+			mLatitude = latitude;
+			mLongitude = longitude;
+			mAccuracy = accuracy;
+		}
+
+		/**
+		 * @return The UTC time of the fix in milliseconds since epoch.
+		 */
+		public long getTimeMillis() {
+			return mTimeMillis;
+		}
+
+		/**
+		 * @return The latitude in degrees.
+		 */
+		public double getLatitude() {
+			return mLatitude;
+		}
+
+		/**
+		 * @return The longitude in degrees.
+		 */
+		public double getLongitude() {
+			return mLongitude;
+		}
+
+		/**
+		 * @return The estimated horizontal accuracy in metres.
+		 */
+		public float getAccuracy() {
+			return mAccuracy;
+		}
+
+		/**
+		 * @return The provider of all replayed fixes.
+		 */
+		@NonNull
+		public String getProvider() {
+			return LocationManager.GPS_PROVIDER;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "Fix [time=%s, latitude=%s, longitude=%s, " +
+					"accuracy=%s]", mTimeMillis, mLatitude, mLongitude, mAccuracy);
+		}
+	}
+
+	/**
+	 * Builds a synthetic track, e.g. of a commuter who waits at a station and travels to the
+	 * next one. Fixes are emitted at a fixed interval and could be disturbed by gaussian noise.
+	 */
+	public static class Builder {
+
+		private final long mIntervalMillis;
+		private final List<Fix> mFixes = new ArrayList<>();
+		private long mTimeMillis;
+		private double mLatitude = Double.NaN;
+		private double mLongitude = Double.NaN;
+		private double mNoiseMeters;
+		private Random mRandom = new Random(0);
+
+		/**
+		 * @param startMillis
+		 * 		The time of the first fix.
+		 * @param intervalMillis
+		 * 		The time between two fixes.
+		 */
+		public Builder(long startMillis, long intervalMillis) {
+			if (intervalMillis <= 0) {
+				throw new IllegalArgumentException("Interval has to be positive: " +
+						intervalMillis);
+			}
+			mTimeMillis = startMillis;
+			mIntervalMillis = intervalMillis;
+		}
+
+		/**
+		 * @param noiseMeters
+		 * 		The standard deviation of the position of following fixes, which will be their
+		 * 		accuracy as well.
+		 * @param seed
+		 * 		The seed of the noise, equal seeds build equal tracks.
+		 * @return This builder.
+		 */
+		@NonNull
+		public Builder setNoise(double noiseMeters, long seed) {
+			mNoiseMeters = noiseMeters;
+			mRandom = new Random(seed);
+			return this;
+		}
+
+		/**
+		 * Adds the first fix at passed location.
+		 *
+		 * @return This builder.
+		 */
+		@NonNull
+		public Builder startAt(double latitude, double longitude) {
+			if (!mFixes.isEmpty()) {
+				throw new IllegalStateException("Track already started.");
+			}
+			mLatitude = latitude;
+			mLongitude = longitude;
+			addFix();
+			return this;
+		}
+
+		/**
+		 * Adds fixes at the current location.
+		 *
+		 * @param durationMillis
+		 * 		The time to stay at the current location.
+		 * @return This builder.
+		 */
+		@NonNull
+		public Builder dwell(long durationMillis) {
+			checkStarted();
+			for (long elapsed = mIntervalMillis; elapsed <= durationMillis; elapsed +=
+					mIntervalMillis) {
+				mTimeMillis += mIntervalMillis;
+				addFix();
+			}
+			return this;
+		}
+
+		/**
+		 * Adds fixes along the straight line from the current to passed location.
+		 *
+		 * @param speedMetersPerSecond
+		 * 		The constant speed of the movement.
+		 * @return This builder.
+		 */
+		@NonNull
+		public Builder moveTo(double latitude, double longitude, double speedMetersPerSecond) {
+			checkStarted();
+			double startLatitude = mLatitude;
+			double startLongitude = mLongitude;
+			double durationMillis = GeoUtils.distanceMeters(startLatitude, startLongitude,
+					latitude, longitude) / speedMetersPerSecond * 1000;
+			long steps = (long) Math.ceil(durationMillis / mIntervalMillis);
+			for (long step = 1; step <= steps; step++) {
+				double fraction = Math.min(1d, step * mIntervalMillis / durationMillis);
+				mLatitude = startLatitude + (latitude - startLatitude) * fraction;
+				mLongitude = startLongitude + (longitude - startLongitude) * fraction;
+				mTimeMillis += mIntervalMillis;
+				addFix();
+			}
+			mLatitude = latitude;
+			mLongitude = longitude;
+			return this;
+		}
+
+		/**
+		 * @return A new track of all added fixes.
+		 */
+		@NonNull
+		public LocationTrack build() {
+			return new LocationTrack(mFixes);
+		}
+
+		private void checkStarted() {
+			if (mFixes.isEmpty()) {
+				throw new IllegalStateException("Track has to be started first.");
+			}
+		}
+
+		private void addFix() {
+			double latitude = mLatitude + mRandom.nextGaussian() * mNoiseMeters / GeoUtils
+					.METERS_PER_DEGREE;
+			double longitude = mLongitude + mRandom.nextGaussian() * mNoiseMeters / GeoUtils
+					.metersPerDegreeLongitude(mLatitude);
+			mFixes.add(new Fix(mTimeMillis, latitude, longitude, mNoiseMeters > 0 ? (float)
+					mNoiseMeters : DEFAULT_ACCURACY_METERS));
+		}
+	}
+
+	/**
+	 * Collects {@code trkpt} elements with their {@code time} and {@code hdop} children.
+	 */
+	private static class GpxHandler extends DefaultHandler {
+
+		private final List<Fix> mFixes;
+		private final StringBuilder mText = new StringBuilder();
+		private boolean mInTrackPoint;
+		private double mLatitude;
+		private double mLongitude;
+		private Long mTimeMillis;
+		private float mAccuracy;
+
+		private GpxHandler(@NonNull List<Fix> fixes) {
+			mFixes = fixes;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName,
+				Attributes attributes) {
+			mText.setLength(0);
+			if ("trkpt".equals(qName)) {
+				mInTrackPoint = true;
+				mLatitude = Double.parseDouble(attributes.getValue("lat"));
+				mLongitude = Double.parseDouble(attributes.getValue("lon"));
+				mTimeMillis = null;
+				mAccuracy = DEFAULT_ACCURACY_METERS;
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			mText.append(ch, start, length);
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			if (!mInTrackPoint) {
+				return;
+			}
+			String text = mText.toString().trim();
+			if ("time".equals(qName)) {
+				mTimeMillis = OffsetDateTime.parse(text).toInstant().toEpochMilli();
+			} else if ("hdop".equals(qName)) {
+				mAccuracy = Float.parseFloat(text) * METERS_PER_HDOP;
+			} else if ("trkpt".equals(qName)) {
+				mInTrackPoint = false;
+				if (mTimeMillis != null) {
+					mFixes.add(new Fix(mTimeMillis, mLatitude, mLongitude, mAccuracy));
+				}
+			}
+		}
+	}
+}
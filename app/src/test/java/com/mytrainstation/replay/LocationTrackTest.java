@@ -0,0 +1,108 @@
+package com.mytrainstation.replay;
+
+import com.mytrainstation.util.GeoUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Run tests against {@link LocationTrack}.
+ *
+ * @author JSCHENK
+ */
+public class LocationTrackTest {
+
+	// 2018-10-15T07:30:00Z
+	private static final long START_MILLIS = 1539588600000L;
+	private static final double EPSILON = 1e-9;
+
+	/**
+	 * Tests that track points of a GPX document are read with their time and accuracy, ordered
+	 * by time, and that points without time are ignored.
+	 */
+	@Test
+	public void LocationTrack_parseGpx_readsTrackPoints() throws Exception {
+		String gpx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+				"<gpx version=\"1.1\" creator=\"test\" " +
+				"xmlns=\"http://www.topografix.com/GPX/1/1\">" +
+				"<trk><name>Commute</name><trkseg>" +
+				"<trkpt lat=\"51.0410\" lon=\"13.7330\"><time>2018-10-15T09:30:05+02:00</time>" +
+				"</trkpt>" +
+				"<trkpt lat=\"51.0400\" lon=\"13.7320\"><ele>112.0</ele>" +
+				"<time>2018-10-15T07:30:00Z</time><hdop>1.2</hdop></trkpt>" +
+				"<trkpt lat=\"51.0420\" lon=\"13.7340\"></trkpt>" +
+				"</trkseg></trk></gpx>";
+
+		List<LocationTrack.Fix> fixes = LocationTrack.parseGpx(new ByteArrayInputStream(gpx
+				.getBytes(StandardCharsets.UTF_8))).getFixes();
+
+		Assert.assertThat(fixes.size(), is(2));
+		Assert.assertThat(fixes.get(0).getTimeMillis(), is(START_MILLIS));
+		Assert.assertThat(fixes.get(0).getLatitude(), is(closeTo(51.04, EPSILON)));
+		Assert.assertThat(fixes.get(0).getLongitude(), is(closeTo(13.732, EPSILON)));
+		Assert.assertThat((double) fixes.get(0).getAccuracy(), is(closeTo(6, 1e-6)));
+		Assert.assertThat(fixes.get(1).getTimeMillis(), is(START_MILLIS + 5000));
+		Assert.assertThat(fixes.get(1).getAccuracy(), is(LocationTrack.DEFAULT_ACCURACY_METERS));
+	}
+
+	/**
+	 * Tests that valid RMC sentences are read with the accuracy of the GGA sentence of the same
+	 * time, while sentences with wrong checksum or without valid fix are ignored.
+	 */
+	@Test
+	public void LocationTrack_parseNmea_readsValidSentences() throws Exception {
+		String nmea = "$GPGGA,073000.00,5102.4000,N,01344.1000,E,1,08,0.9,120.0,M,46.9,M,,*60\n" +
+				"$GPRMC,073000.00,A,5102.4000,N,01344.1000,E,0.5,90.0,151018,,,A*6B\n" +
+				"$GPRMC,073001.00,A,5102.4100,N,01344.1200,E,0.5,90.0,151018,,,A*00\n" +
+				"$GNRMC,073002,A,3351.6000,S,15112.6000,E,0.5,90.0,151018,,,A*47\n" +
+				"$GPRMC,073003.00,V,5102.4100,N,01344.1200,E,0.5,90.0,151018,,,A*7C\n" +
+				"not a sentence\n";
+
+		List<LocationTrack.Fix> fixes = LocationTrack.parseNmea(new StringReader(nmea))
+				.getFixes();
+
+		Assert.assertThat(fixes.size(), is(2));
+		Assert.assertThat(fixes.get(0).getTimeMillis(), is(START_MILLIS));
+		Assert.assertThat(fixes.get(0).getLatitude(), is(closeTo(51.04, EPSILON)));
+		Assert.assertThat(fixes.get(0).getLongitude(), is(closeTo(13.735, EPSILON)));
+		Assert.assertThat((double) fixes.get(0).getAccuracy(), is(closeTo(4.5, 1e-6)));
+		Assert.assertThat(fixes.get(1).getTimeMillis(), is(START_MILLIS + 2000));
+		Assert.assertThat(fixes.get(1).getLatitude(), is(closeTo(-33.86, EPSILON)));
+		Assert.assertThat(fixes.get(1).getLongitude(), is(closeTo(151.21, EPSILON)));
+		Assert.assertThat(fixes.get(1).getAccuracy(), is(LocationTrack.DEFAULT_ACCURACY_METERS));
+	}
+
+	/**
+	 * Tests that a synthetic track emits a fix each interval, moves with the requested speed
+	 * and ends at the last waypoint.
+	 */
+	@Test
+	public void LocationTrack_builder_movesAlongWaypoints() {
+		double distance = GeoUtils.distanceMeters(51.04, 13.73, 51.05, 13.73);
+		LocationTrack track = new LocationTrack.Builder(START_MILLIS, 1000)
+				.startAt(51.04, 13.73)
+				.dwell(10_000)
+				.moveTo(51.05, 13.73, 10)
+				.build();
+
+		List<LocationTrack.Fix> fixes = track.getFixes();
+		long moveMillis = (long) Math.ceil(distance / 10) * 1000;
+		Assert.assertThat(track.getDurationMillis(), is(10_000 + moveMillis));
+		Assert.assertThat(fixes.size(), is((int) (track.getDurationMillis() / 1000) + 1));
+		Assert.assertThat(fixes.get(10).getLatitude(), is(51.04));
+		Assert.assertThat(fixes.get(fixes.size() - 1).getLatitude(), is(closeTo(51.05,
+				EPSILON)));
+		// halfway after half of the time
+		Assert.assertThat(Math.abs(GeoUtils.distanceMeters(51.04, 13.73, fixes.get(10 + (int)
+				(moveMillis / 2000)).getLatitude(), 13.73) - distance / 2), is(lessThan(10d)));
+	}
+}
@@ -0,0 +1,227 @@
+package com.mytrainstation.replay;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Everything that happened while a {@link LocationTrack} was replayed by
+ * {@link TrackReplayer}, in order of occurrence. Recordings of equal tracks and settings are
+ * equal, so they could be compared within tests.
+ *
+ * @author JSCHENK
+ */
+public class ReplayRecording {
+
+	/**
+	 * Types of recorded events.
+	 */
+	public enum EventType {
+		/**
+		 * A fix was determined by the location provider, because the minimum time of the
+		 * requested location updates passed.
+		 */
+		LOCATION_FIX,
+		/**
+		 * A fix passed the throttling of location updates and was delivered to the listener.
+		 */
+		LOCATION_UPDATE,
+		/**
+		 * A delivered fix was better than the current location and started a search.
+		 */
+		SEARCH,
+		/**
+		 * A query was sent to the graphql endpoint.
+		 */
+		NETWORK_QUERY,
+		/**
+		 * A search was answered by the near by tile cache of the service.
+		 */
+		TILE_CACHE_HIT,
+		/**
+		 * A search was answered by a fresh result of the local cache, without any query.
+		 */
+		LOCAL_CACHE_HIT,
+		/**
+		 * A search was answered by a fresh stored result whose coverage region contains the
+		 * location, which was only ordered by distance again.
+		 */
+		COVERAGE_HIT,
+		/**
+		 * A search within a coverage region was near by its boundary, so the result of the
+		 * location is prefetched in background without displaying it, unless one is already
+		 * prefetched for the region.
+		 */
+		PREFETCH,
+		/**
+		 * A new list of train stations was published to the ui.
+		 */
+		UI_EMISSION
+	}
+
+	private final List<Event> mEvents = new ArrayList<>();
+	private final Map<EventType, Integer> mCounts = new EnumMap<>(EventType.class);
+
+	synchronized void add(@NonNull Event event) {
+		mEvents.add(event);
+		mCounts.merge(event.mType, 1, Integer::sum);
+	}
+
+	/**
+	 * @return All events in order of occurrence.
+	 */
+	@NonNull
+	public synchronized List<Event> getEvents() {
+		return Collections.unmodifiableList(new ArrayList<>(mEvents));
+	}
+
+	/**
+	 * @param type
+	 * 		The type of the requested events.
+	 * @return All events of passed type in order of occurrence.
+	 */
+	@NonNull
+	public synchronized List<Event> getEvents(@NonNull EventType type) {
+		List<Event> events = new ArrayList<>();
+		for (Event event : mEvents) {
+			if (event.mType == type) {
+				events.add(event);
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * @param type
+	 * 		The type of the counted events.
+	 * @return The number of events of passed type.
+	 */
+	public synchronized int getCount(@NonNull EventType type) {
+		return mCounts.getOrDefault(type, 0);
+	}
+
+	@Override
+	public synchronized boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		return mEvents.equals(((ReplayRecording) o).getEvents());
+	}
+
+	@Override
+	public synchronized int hashCode() {
+		return mEvents.hashCode();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format(Locale.ROOT, "ReplayRecording %s", mCounts);
+	}
+
+	/**
+	 * A single recorded event.
+	 */
+	public static final class Event {
+
+		private final EventType mType;
+		private final long mTimeMillis;
+		private final double mLatitude;
+		private final double mLongitude;
+		private final int mCount;
+
+		/**
+		 * @param type
+		 * 		The type of the event.
+		 * @param timeMillis
+		 * 		The virtual time of the event.
+		 * @param latitude
+		 * 		The latitude of the fix or query that caused the event.
+		 * @param longitude
+		 * 		The longitude of the fix or query that caused the event.
+		 * @param count
+		 * 		The number of train stations of the event, e.g. of a query or a published list.
+		 */
+		Event(@NonNull EventType type, long timeMillis, double latitude, double longitude,
+				int count) {
+			mType = type;
+			mTimeMillis = timeMillis;
+			mLatitude = latitude;
+			mLongitude = longitude;
+			mCount = count;
+		}
+
+		/**
+		 * @return The type of the event.
+		 */
+		@NonNull
+		public EventType getType() {
+			return mType;
+		}
+
+		/**
+		 * @return The virtual time of the event.
+		 */
+		public long getTimeMillis() {
+			return mTimeMillis;
+		}
+
+		/**
+		 * @return The latitude of the fix or query that caused the event.
+		 */
+		public double getLatitude() {
+			return mLatitude;
+		}
+
+		/**
+		 * @return The longitude of the fix or query that caused the event.
+		 */
+		public double getLongitude() {
+			return mLongitude;
+		}
+
+		/**
+		 * @return The number of train stations of the event or 0, if the event has none.
+		 */
+		public int getCount() {
+			return mCount;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Event event = (Event) o;
+			return mType == event.mType && mTimeMillis == event.mTimeMillis && Double.compare
+					(mLatitude, event.mLatitude) == 0 && Double.compare(mLongitude, event
+					.mLongitude) == 0 && mCount == event.mCount;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = mType.hashCode();
+			result = 31 * result + Long.hashCode(mTimeMillis);
+			result = 31 * result + Double.hashCode(mLatitude);
+			result = 31 * result + Double.hashCode(mLongitude);
+			result = 31 * result + mCount;
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%s [time=%s, latitude=%s, longitude=%s, " +
+					"count=%s]", mType, mTimeMillis, mLatitude, mLongitude, mCount);
+		}
+	}
+}
@@ -0,0 +1,596 @@
+package com.mytrainstation.replay;
+
+import android.app.Application;
+import android.arch.core.executor.testing.InstantTaskExecutorRule;
+import android.arch.lifecycle.Observer;
+import android.arch.paging.PagedList;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Location;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.mytrainstation.api.NearbyTileCache;
+import com.mytrainstation.api.RequestHandle;
+import com.mytrainstation.api.TrainStationQuery;
+import com.mytrainstation.api.TrainStationService;
+import com.mytrainstation.api.location.AdaptiveLocationPolicy;
+import com.mytrainstation.api.location.KalmanLocationEstimator;
+import com.mytrainstation.api.location.LatestFixEstimator;
+import com.mytrainstation.api.location.LocationEstimator;
+import com.mytrainstation.api.location.LocationProvider;
+import com.mytrainstation.data.CoverageRegion;
+import com.mytrainstation.data.LatestRequestScheduler;
+import com.mytrainstation.data.PriorityTaskScheduler;
+import com.mytrainstation.data.TrainStationRepository;
+import com.mytrainstation.db.ListDataSource;
+import com.mytrainstation.db.QueryResult;
+import com.mytrainstation.db.TrainStationDao;
+import com.mytrainstation.db.TrainStationDiff;
+import com.mytrainstation.db.TrainStationLocalCache;
+import com.mytrainstation.model.TrainStation;
+import com.mytrainstation.replay.ReplayRecording.Event;
+import com.mytrainstation.replay.ReplayRecording.EventType;
+import com.mytrainstation.ui.TrainStationsViewModel;
+import com.mytrainstation.ui.ViewModelFactory;
+import com.mytrainstation.ui.settings.SettingsFragment;
+import com.mytrainstation.util.GeoUtils;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replays a {@link LocationTrack} through the location path of the app on a
+ * {@link VirtualClock}: fixes are throttled like {@link LocationProvider} requests them from
+ * the location manager, either with fixed minimum time and distance or adaptive by
+ * {@link AdaptiveLocationPolicy}, and delivered to
+ * {@link TrainStationsViewModel#onLocationChanged(Location)}, whose searches run through the
+ * real repository, local cache, service and {@link NearbyTileCache} against a local graphql
+ * endpoint with train stations on a regular grid.
+ *
+ * Each fix is processed completely before the next one is delivered, so the returned
+ * {@link ReplayRecording} only depends on the track and the settings of the replayer. The
+ * speed-up only paces the replay in wall-clock time, e.g. to watch it. LiveData has to be
+ * updated synchronously, e.g. with {@link InstantTaskExecutorRule}.
+ *
+ * A track contains a fix per interval of the receiver, while the location provider only
+ * determines a fix after the minimum time of the request passed. Fixes of other apps, that
+ * the passive provider would receive, aren't replayed.
+ *
+ * @author JSCHENK
+ */
+public class TrackReplayer {
+
+	/**
+	 * Default search radius of the view model.
+	 */
+	public static final int DEFAULT_SEARCH_RADIUS_METERS = 2000;
+	private static final long IDLE_TIMEOUT_MILLIS = 10_000;
+	// distance between two train stations of the endpoint, roughly 1 km
+	private static final double GRID_DEGREES = 0.01;
+
+	private long mMinTimeMillis = LocationProvider.MIN_TIME_BETWEEN_LOCATION_UPDATES_MILLIS;
+	private float mMinDistanceMeters = LocationProvider
+			.MIN_DISTANCE_BETWEEN_LOCATION_UPDATES_METERS;
+	private int mSearchRadius = DEFAULT_SEARCH_RADIUS_METERS;
+	@Nullable
+	private Integer mMaxDisplayedItems;
+	private long mTileCacheTimeToLiveMillis = NearbyTileCache.DEFAULT_TIME_TO_LIVE_MILLIS;
+	private double mTileCacheMaxOffsetRatio = NearbyTileCache.DEFAULT_MAX_OFFSET_RATIO;
+	private double mCoverageRatio = TrainStationRepository.DEFAULT_COVERAGE_RATIO;
+	private double mSpeedUp = Double.POSITIVE_INFINITY;
+	private boolean mAdaptiveLocationUpdates;
+	private boolean mLocationSmoothing = true;
+
+	/**
+	 * @param minTimeMillis
+	 * 		The minimum time between two delivered location updates.
+	 * @param minDistanceMeters
+	 * 		The minimum distance between two delivered location updates.
+	 * @return This replayer.
+	 */
+	@NonNull
+	public TrackReplayer setThrottling(long minTimeMillis, float minDistanceMeters) {
+		mMinTimeMillis = minTimeMillis;
+		mMinDistanceMeters = minDistanceMeters;
+		return this;
+	}
+
+	/**
+	 * @param adaptiveLocationUpdates
+	 * 		True, to throttle fixes by {@link AdaptiveLocationPolicy} instead of the fixed
+	 * 		minimum time and distance.
+	 * @return This replayer.
+	 */
+	@NonNull
+	public TrackReplayer setAdaptiveLocationUpdates(boolean adaptiveLocationUpdates) {
+		mAdaptiveLocationUpdates = adaptiveLocationUpdates;
+		return this;
+	}
+
+	/**
+	 * @param locationSmoothing
+	 * 		True (default), if the view model smooths delivered fixes with a
+	 * 		{@link KalmanLocationEstimator}, otherwise it searches at the latest fix.
+	 * @return This replayer.
+	 */
+	@NonNull
+	public TrackReplayer setLocationSmoothing(boolean locationSmoothing) {
+		mLocationSmoothing = locationSmoothing;
+		return this;
+	}
+
+	/**
+	 * @param searchRadius
+	 * 		The search radius of the view model in metres.
+	 * @return This replayer.
+	 */
+	@NonNull
+	public TrackReplayer setSearchRadius(int searchRadius) {
+		mSearchRadius = searchRadius;
+		return this;
+	}
+
+	/**
+	 * @param maxDisplayedItems
+	 * 		The page size that is set within app settings.
+	 * @return This replayer.
+	 */
+	@NonNull
+	public TrackReplayer setMaxDisplayedItems(int maxDisplayedItems) {
+		mMaxDisplayedItems = maxDisplayedItems;
+		return this;
+	}
+
+	/**
+	 * @param timeToLiveMillis
+	 * 		The time after that results of the tile cache expire.
+	 * @param maxOffsetRatio
+	 * 		The ratio of the search radius a location may differ from a cached one, 0 disables
+	 * 		the cache.
+	 * @return This replayer.
+	 */
+	@NonNull
+	public TrackReplayer setTileCache(long timeToLiveMillis, double maxOffsetRatio) {
+		mTileCacheTimeToLiveMillis = timeToLiveMillis;
+		mTileCacheMaxOffsetRatio = maxOffsetRatio;
+		return this;
+	}
+
+	/**
+	 * @param coverageRatio
+	 * 		The share of the covered radius of a result that is taken as its coverage region, 0
+	 * 		disables coverage regions.
+	 * @return This replayer.
+	 */
+	@NonNull
+	public TrackReplayer setCoverageRatio(double coverageRatio) {
+		mCoverageRatio = coverageRatio;
+		return this;
+	}
+
+	/**
+	 * @param speedUp
+	 * 		The factor virtual time passes faster than wall-clock time or
+	 * 		{@link Double#POSITIVE_INFINITY} (default) to replay as fast as possible.
+	 * @return This replayer.
+	 */
+	@NonNull
+	public TrackReplayer setSpeedUp(double speedUp) {
+		if (!(speedUp > 0)) {
+			throw new IllegalArgumentException("Speed-up has to be positive: " + speedUp);
+		}
+		mSpeedUp = speedUp;
+		return this;
+	}
+
+	/**
+	 * Replays passed track with fresh caches.
+	 *
+	 * @param track
+	 * 		The track to replay.
+	 * @return All location updates, searches, network queries, cache hits and ui emissions
+	 * caused by the track.
+	 */
+	@NonNull
+	public ReplayRecording replay(@NonNull LocationTrack track) throws IOException,
+			InterruptedException {
+		ReplayRecording recording = new ReplayRecording();
+		if (track.getFixes().isEmpty()) {
+			return recording;
+		}
+		Replay replay = new Replay(recording, new VirtualClock(track.getFixes().get(0)
+				.getTimeMillis()));
+		MockWebServer server = new MockWebServer();
+		server.setDispatcher(new GridDispatcher(replay));
+		server.start();
+		OkHttpClient httpClient = new OkHttpClient.Builder().build();
+		ExecutorService chunkExecutor = Executors.newFixedThreadPool(TrainStationService
+				.MAX_PARALLEL_CHUNKS);
+		PriorityTaskScheduler taskScheduler = new PriorityTaskScheduler(2);
+		try {
+			Application application = mock(Application.class);
+			NearbyTileCache tileCache = new NearbyTileCache(mTileCacheTimeToLiveMillis,
+					NearbyTileCache.DEFAULT_MAX_BYTES, mTileCacheMaxOffsetRatio, replay.mClock);
+			TrainStationService service = new RecordingService(replay, application, server.url
+					("/graphql").toString(), httpClient, chunkExecutor, createPreferences(),
+					tileCache);
+			// requests run on the input queue of the view model, so a fix is processed
+			// completely as soon as its queue is idle
+			TrainStationRepository repository = new RecordingRepository(replay, service, new
+					RecordingLocalCache(replay, createInMemoryDao()), mCoverageRatio);
+			LocationEstimator locationEstimator = mLocationSmoothing ? new
+					KalmanLocationEstimator() : new LatestFixEstimator();
+			TrainStationsViewModel viewModel = new ViewModelFactory(application, repository,
+					mock(LocationProvider.class), locationEstimator, taskScheduler).create
+					(TrainStationsViewModel.class);
+			viewModel.setSearchRadius(mSearchRadius);
+			Observer<PagedList<TrainStation>> observer = trainStations -> replay.record(EventType
+					.UI_EMISSION, trainStations != null ? trainStations.size() : 0);
+			repository.getTrainStations().observeForever(observer);
+
+			AdaptiveLocationPolicy policy = new AdaptiveLocationPolicy(mSearchRadius);
+			LocationTrack.Fix lastDetermined = null;
+			LocationTrack.Fix lastDelivered = null;
+			for (LocationTrack.Fix fix : track.getFixes()) {
+				pace(replay.mClock.currentTimeMillis(), fix.getTimeMillis());
+				replay.mClock.setTimeMillis(fix.getTimeMillis());
+				long minTimeMillis = mAdaptiveLocationUpdates ? policy.getRequest()
+						.getIntervalMillis() : mMinTimeMillis;
+				if (lastDetermined != null && fix.getTimeMillis() - lastDetermined
+						.getTimeMillis() < minTimeMillis) {
+					continue;
+				}
+				lastDetermined = fix;
+				replay.mCurrentFix = fix;
+				replay.record(EventType.LOCATION_FIX, 0);
+				boolean delivered = mAdaptiveLocationUpdates ? policy.onLocationChanged(fix
+						.getTimeMillis(), fix.getLatitude(), fix.getLongitude(), fix
+						.getAccuracy()) : isDelivered(fix, lastDelivered);
+				if (!delivered) {
+					continue;
+				}
+				lastDelivered = fix;
+				replay.record(EventType.LOCATION_UPDATE, 0);
+				viewModel.onLocationChanged(createLocation(fix));
+				awaitIdle(taskScheduler);
+			}
+			repository.getTrainStations().removeObserver(observer);
+		} finally {
+			taskScheduler.shutdownNow();
+			chunkExecutor.shutdownNow();
+			httpClient.dispatcher().executorService().shutdown();
+			httpClient.connectionPool().evictAll();
+			server.shutdown();
+		}
+		return recording;
+	}
+
+	/**
+	 * Filters determined fixes like the location manager does for the minimum distance that was
+	 * requested by {@link LocationProvider}.
+	 */
+	private boolean isDelivered(@NonNull LocationTrack.Fix fix,
+			@Nullable LocationTrack.Fix lastDelivered) {
+		return lastDelivered == null || GeoUtils.distanceMeters(fix.getLatitude(), fix
+				.getLongitude(), lastDelivered.getLatitude(), lastDelivered.getLongitude()) >=
+				mMinDistanceMeters;
+	}
+
+	private void pace(long fromMillis, long toMillis) throws InterruptedException {
+		if (!Double.isInfinite(mSpeedUp) && toMillis > fromMillis) {
+			Thread.sleep((long) ((toMillis - fromMillis) / mSpeedUp));
+		}
+	}
+
+	private static void awaitIdle(@NonNull PriorityTaskScheduler taskScheduler) throws
+			InterruptedException {
+		long deadline = System.currentTimeMillis() + IDLE_TIMEOUT_MILLIS;
+		while (true) {
+			PriorityTaskScheduler.LaneStats stats = taskScheduler.getStats(PriorityTaskScheduler
+					.Priority.INTERACTIVE);
+			if (stats.getQueueDepth() == 0 && stats.getRunningCount() == 0) {
+				return;
+			}
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("Fix wasn't processed within " +
+						IDLE_TIMEOUT_MILLIS + " ms: " + stats);
+			}
+			Thread.sleep(1);
+		}
+	}
+
+	@NonNull
+	private static Location createLocation(@NonNull LocationTrack.Fix fix) {
+		Location location = mock(Location.class);
+		when(location.getTime()).thenReturn(fix.getTimeMillis());
+		when(location.getLatitude()).thenReturn(fix.getLatitude());
+		when(location.getLongitude()).thenReturn(fix.getLongitude());
+		when(location.getAccuracy()).thenReturn(fix.getAccuracy());
+		when(location.getProvider()).thenReturn(fix.getProvider());
+		return location;
+	}
+
+	@NonNull
+	private SharedPreferences createPreferences() {
+		SharedPreferences preferences = mock(SharedPreferences.class);
+		when(preferences.getBoolean(anyString(), anyBoolean())).thenAnswer(invocation ->
+				invocation.getArgument(1));
+		if (mMaxDisplayedItems != null) {
+			when(preferences.getString(eq(SettingsFragment.PREFERENCE_KEY_MAX_DISPLAYED_ITEMS),
+					any())).thenReturn(String.valueOf(mMaxDisplayedItems));
+		}
+		return preferences;
+	}
+
+	/**
+	 * @return A DAO that keeps query results in memory.
+	 */
+	@NonNull
+	private static TrainStationDao createInMemoryDao() {
+		Map<String, QueryResult> queryResults = new ConcurrentHashMap<>();
+		Map<String, List<TrainStation>> trainStations = new ConcurrentHashMap<>();
+		TrainStationDao dao = mock(TrainStationDao.class);
+		when(dao.getQueryResult(anyString())).thenAnswer(invocation -> queryResults.get(
+				invocation.getArgument(0)));
+		when(dao.getQueryResultSize(anyString())).thenAnswer(invocation -> trainStations
+				.getOrDefault(invocation.getArgument(0), Collections.emptyList()).size());
+		when(dao.getTrainStationsByDistance(anyString(), anyDouble(), anyDouble(), anyInt()))
+				.thenAnswer(invocation -> {
+					double latitude = invocation.getArgument(1);
+					double longitude = invocation.getArgument(2);
+					int radius = invocation.getArgument(3);
+					List<TrainStation> withinRadius = new ArrayList<>();
+					for (TrainStation trainStation : trainStations.getOrDefault(invocation
+							.getArgument(0), Collections.<TrainStation>emptyList())) {
+						if (!trainStation.hasLocation() || GeoUtils.distanceMeters(latitude,
+								longitude, trainStation.getLatitude(), trainStation
+										.getLongitude()) <= radius) {
+							withinRadius.add(trainStation);
+						}
+					}
+					return ListDataSource.factory(withinRadius);
+				});
+		when(dao.replaceQueryResult(any(), any(), anyInt(), anyInt())).thenAnswer(invocation -> {
+			QueryResult queryResult = invocation.getArgument(0);
+			List<TrainStation> result = invocation.getArgument(1);
+			queryResults.put(queryResult.getFingerprint(), queryResult);
+			trainStations.put(queryResult.getFingerprint(), new ArrayList<>(result));
+			return TrainStationDiff.calculate(Collections.emptyList(), result);
+		});
+		return dao;
+	}
+
+	/**
+	 * State of a single replay.
+	 */
+	private static class Replay {
+
+		private final ReplayRecording mRecording;
+		private final VirtualClock mClock;
+		private volatile LocationTrack.Fix mCurrentFix;
+
+		private Replay(@NonNull ReplayRecording recording, @NonNull VirtualClock clock) {
+			mRecording = recording;
+			mClock = clock;
+		}
+
+		/**
+		 * Records an event at the location of the current fix.
+		 */
+		private void record(@NonNull EventType type, int count) {
+			record(type, mCurrentFix.getLatitude(), mCurrentFix.getLongitude(), count);
+		}
+
+		private void record(@NonNull EventType type, double latitude, double longitude,
+				int count) {
+			mRecording.add(new Event(type, mClock.currentTimeMillis(), latitude, longitude,
+					count));
+		}
+	}
+
+	/**
+	 * Records searches that were answered by the tile cache.
+	 */
+	private static class RecordingService extends TrainStationService {
+
+		private final Replay mReplay;
+
+		private RecordingService(@NonNull Replay replay, @NonNull Context context,
+				@NonNull String serverUrl, @NonNull OkHttpClient httpClient,
+				@NonNull ExecutorService chunkExecutor, @NonNull SharedPreferences preferences,
+				@NonNull NearbyTileCache nearbyTileCache) {
+			super(context, serverUrl, httpClient, chunkExecutor, preferences, nearbyTileCache);
+			mReplay = replay;
+		}
+
+		@NonNull
+		@Override
+		public List<TrainStation> searchTrainStations(@NonNull TrainStationQuery query,
+				@Nullable RequestHandle handle) {
+			long hitCount = getNearbyTileCache().getHitCount();
+			List<TrainStation> trainStations = super.searchTrainStations(query, handle);
+			if (getNearbyTileCache().getHitCount() > hitCount) {
+				mReplay.record(EventType.TILE_CACHE_HIT, query.getLatitude(), query
+						.getLongitude(), trainStations.size());
+			}
+			return trainStations;
+		}
+	}
+
+	/**
+	 * Records searches by location, prefetches and searches that were answered within the
+	 * coverage region of a stored result.
+	 */
+	private static class RecordingRepository extends TrainStationRepository {
+
+		private final Replay mReplay;
+
+		private RecordingRepository(@NonNull Replay replay, @NonNull TrainStationService service,
+				@NonNull TrainStationLocalCache localCache, double coverageRatio) {
+			super(service, localCache, new LatestRequestScheduler(Runnable::run),
+					coverageRatio);
+			mReplay = replay;
+		}
+
+		@Override
+		public void searchTrainStationsByLocation(double latitude, double longitude,
+				int radius) {
+			mReplay.record(EventType.SEARCH, latitude, longitude, 0);
+			super.searchTrainStationsByLocation(latitude, longitude, radius);
+		}
+
+		@Override
+		public void prefetchTrainStationsByLocation(@NonNull CoverageRegion region,
+				double latitude, double longitude) {
+			mReplay.record(EventType.PREFETCH, latitude, longitude, 0);
+			super.prefetchTrainStationsByLocation(region, latitude, longitude);
+		}
+
+		@Override
+		public void displayTrainStationsByLocation(@NonNull CoverageRegion region,
+				double latitude, double longitude) {
+			mReplay.record(EventType.COVERAGE_HIT, latitude, longitude, 0);
+			super.displayTrainStationsByLocation(region, latitude, longitude);
+		}
+	}
+
+	/**
+	 * Records searches that were answered by a fresh stored result.
+	 */
+	private static class RecordingLocalCache extends TrainStationLocalCache {
+
+		private final Replay mReplay;
+
+		private RecordingLocalCache(@NonNull Replay replay, @NonNull TrainStationDao dao) {
+			super(dao, Runnable::run, replay.mClock);
+			mReplay = replay;
+		}
+
+		@Override
+		public boolean isStale(@NonNull QueryResult queryResult) {
+			boolean stale = super.isStale(queryResult);
+			if (!stale) {
+				mReplay.record(EventType.LOCAL_CACHE_HIT, 0);
+			}
+			return stale;
+		}
+	}
+
+	/**
+	 * Answers near by queries with train stations on a regular grid and records each query.
+	 */
+	private static class GridDispatcher extends Dispatcher {
+
+		private final Replay mReplay;
+		private final JsonParser mParser = new JsonParser();
+
+		private GridDispatcher(@NonNull Replay replay) {
+			mReplay = replay;
+		}
+
+		@Override
+		public MockResponse dispatch(RecordedRequest request) {
+			JsonObject variables = mParser.parse(request.getBody().readUtf8()).getAsJsonObject()
+					.getAsJsonObject("variables");
+			double latitude = variables.get("latitude").getAsDouble();
+			double longitude = variables.get("longitude").getAsDouble();
+			List<double[]> stations = findStations(latitude, longitude, variables.get("radius")
+					.getAsInt());
+			int offset = Math.min(variables.get("offset").getAsInt(), stations.size());
+			stations = stations.subList(offset, Math.min(offset + variables.get("count")
+					.getAsInt(), stations.size()));
+			mReplay.record(EventType.NETWORK_QUERY, latitude, longitude, stations.size());
+			try {
+				return new MockResponse().setHeader("Content-Type", "application/json; " +
+						"charset=utf-8").setBody(writeResponse(stations));
+			} catch (IOException e) {
+				return new MockResponse().setResponseCode(500);
+			}
+		}
+
+		/**
+		 * @return The grid points within passed radius, ordered by their distance.
+		 */
+		@NonNull
+		private static List<double[]> findStations(double latitude, double longitude,
+				int radius) {
+			double latitudeDelta = radius / GeoUtils.METERS_PER_DEGREE;
+			double longitudeDelta = radius / GeoUtils.metersPerDegreeLongitude(latitude);
+			List<double[]> stations = new ArrayList<>();
+			for (long row = (long) Math.ceil((latitude - latitudeDelta) / GRID_DEGREES); row <=
+					Math.floor((latitude + latitudeDelta) / GRID_DEGREES); row++) {
+				for (long column = (long) Math.ceil((longitude - longitudeDelta) /
+						GRID_DEGREES); column <= Math.floor((longitude + longitudeDelta) /
+						GRID_DEGREES); column++) {
+					double distance = GeoUtils.distanceMeters(latitude, longitude, row *
+							GRID_DEGREES, column * GRID_DEGREES);
+					if (distance <= radius) {
+						stations.add(new double[]{row, column, distance});
+					}
+				}
+			}
+			stations.sort((first, second) -> Double.compare(first[2], second[2]));
+			return stations;
+		}
+
+		@NonNull
+		private static Buffer writeResponse(@NonNull List<double[]> stations) throws
+				IOException {
+			Buffer buffer = new Buffer();
+			try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(buffer.outputStream(),
+					StandardCharsets.UTF_8))) {
+				writer.beginObject().name("data").beginObject().name("nearby").beginObject();
+				writer.name("stations").beginArray();
+				for (double[] station : stations) {
+					int row = (int) station[0];
+					int column = (int) station[1];
+					writer.beginObject();
+					writer.name("primaryEvaId").value(row * 100_000L + column);
+					writer.name("name").value(String.format(Locale.ROOT, "Station %s/%s", row,
+							column));
+					writer.name("hasWiFi").value(true);
+					writer.name("hasParking").value(false);
+					writer.name("hasSteplessAccess").value("yes");
+					writer.name("picture").nullValue();
+					writer.name("location").beginObject()
+							.name("latitude").value(row * GRID_DEGREES)
+							.name("longitude").value(column * GRID_DEGREES)
+							.endObject();
+					writer.endObject();
+				}
+				writer.endArray();
+				writer.endObject().endObject().endObject();
+			}
+			return buffer;
+		}
+	}
+}
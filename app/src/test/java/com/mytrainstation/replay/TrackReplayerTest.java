@@ -0,0 +1,233 @@
+package com.mytrainstation.replay;
+
+import android.arch.core.executor.testing.InstantTaskExecutorRule;
+
+import com.mytrainstation.api.NearbyTileCache;
+import com.mytrainstation.replay.ReplayRecording.EventType;
+import com.mytrainstation.util.GeoUtils;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Run tests against {@link TrackReplayer} that compare throttling and caching settings with
+ * the commute of {@link #createCommute()}.
+ *
+ * @author JSCHENK
+ */
+public class TrackReplayerTest {
+
+	private static final Logger LOG = Logger.getLogger(TrackReplayerTest.class);
+
+	// 2018-10-15T07:30:00Z
+	private static final long START_MILLIS = 1539588600000L;
+	private static final double HAUPTBAHNHOF_LATITUDE = 51.0405;
+	private static final double HAUPTBAHNHOF_LONGITUDE = 13.7320;
+	private static final double NEUSTADT_LATITUDE = 51.0654;
+	private static final double NEUSTADT_LONGITUDE = 13.7410;
+	private static final double SPEED_METERS_PER_SECOND = 15;
+	private static final double WALKING_METERS_PER_SECOND = 1.4;
+	private static final double TRAIN_METERS_PER_SECOND = 40;
+
+	/**
+	 * Executes LiveData updates synchronously.
+	 */
+	@Rule
+	public InstantTaskExecutorRule mInstantTaskExecutorRule = new InstantTaskExecutorRule();
+
+	/**
+	 * Tests that replaying the same track with the same settings records the same events and
+	 * that each search and each answer within a coverage region is displayed, while prefetched
+	 * results aren't.
+	 */
+	@Test
+	public void TrackReplayer_replay_isDeterministic() throws Exception {
+		ReplayRecording first = new TrackReplayer().replay(createCommute());
+		ReplayRecording second = new TrackReplayer().replay(createCommute());
+
+		Assert.assertThat(first.getCount(EventType.NETWORK_QUERY), is(greaterThan(0)));
+		Assert.assertThat(first.getCount(EventType.UI_EMISSION), is(first.getCount(EventType
+				.SEARCH) + first.getCount(EventType.COVERAGE_HIT)));
+		Assert.assertThat(second.getEvents(), is(first.getEvents()));
+	}
+
+	/**
+	 * Tests that a larger minimum distance between location updates delivers less updates and
+	 * sends less queries along the same track. The tile cache is disabled, since it answers
+	 * more of the closer searches.
+	 */
+	@Test
+	public void TrackReplayer_replay_largerMinDistanceSendsLessQueries() throws Exception {
+		LocationTrack track = createCommute();
+		ReplayRecording fine = new TrackReplayer().setThrottling(10_000, 50).setTileCache(
+				NearbyTileCache.DEFAULT_TIME_TO_LIVE_MILLIS, 0).replay(track);
+		ReplayRecording coarse = new TrackReplayer().setThrottling(10_000, 500).setTileCache(
+				NearbyTileCache.DEFAULT_TIME_TO_LIVE_MILLIS, 0).replay(track);
+
+		Assert.assertThat(coarse.getCount(EventType.LOCATION_UPDATE), is(lessThan(fine.getCount
+				(EventType.LOCATION_UPDATE))));
+		Assert.assertThat(coarse.getCount(EventType.NETWORK_QUERY), is(lessThan(fine.getCount
+				(EventType.NETWORK_QUERY))));
+	}
+
+	/**
+	 * Tests that the tile cache answers searches close to earlier ones, so less queries are sent
+	 * while the same number of results is displayed. Coverage regions are disabled, since they
+	 * answer the closer searches before the tile cache does.
+	 */
+	@Test
+	public void TrackReplayer_replay_tileCacheAnswersCloseSearches() throws Exception {
+		LocationTrack track = createCommute();
+		long timeToLiveMillis = TimeUnit.MINUTES.toMillis(30);
+		ReplayRecording uncached = new TrackReplayer().setTileCache(timeToLiveMillis, 0)
+				.setCoverageRatio(0).replay(track);
+		ReplayRecording cached = new TrackReplayer().setTileCache(timeToLiveMillis,
+				NearbyTileCache.DEFAULT_MAX_OFFSET_RATIO).setCoverageRatio(0).replay(track);
+
+		Assert.assertThat(uncached.getCount(EventType.TILE_CACHE_HIT), is(0));
+		Assert.assertThat(cached.getCount(EventType.TILE_CACHE_HIT), is(greaterThan(0)));
+		Assert.assertThat(cached.getCount(EventType.NETWORK_QUERY) + cached.getCount(EventType
+				.TILE_CACHE_HIT), is(uncached.getCount(EventType.NETWORK_QUERY)));
+		Assert.assertThat(cached.getCount(EventType.UI_EMISSION), is(uncached.getCount
+				(EventType.UI_EMISSION)));
+	}
+
+	/**
+	 * Tests that adaptive location updates determine less fixes and send less queries than the
+	 * default fixed throttling on a walk, a drive and a train ride, each with a wait at start
+	 * and destination.
+	 */
+	@Test
+	public void TrackReplayer_replay_adaptiveLocationUpdatesReduceFixesAndQueries() throws
+			Exception {
+		assertAdaptiveReduction("walking", createTrip(WALKING_METERS_PER_SECOND, 0.02));
+		assertAdaptiveReduction("driving", createTrip(SPEED_METERS_PER_SECOND, 0.1));
+		assertAdaptiveReduction("train", createTrip(TRAIN_METERS_PER_SECOND, 0.3));
+	}
+
+	private static void assertAdaptiveReduction(String name, LocationTrack track) throws
+			Exception {
+		ReplayRecording fixed = new TrackReplayer().replay(track);
+		ReplayRecording adaptive = new TrackReplayer().setAdaptiveLocationUpdates(true).replay
+				(track);
+		LOG.info(String.format(Locale.getDefault(), "%s, %s min: fixed %s fixes, %s updates, " +
+						"%s queries; adaptive %s fixes, %s updates, %s queries", name,
+				TimeUnit.MILLISECONDS.toMinutes(track.getDurationMillis()), fixed.getCount
+						(EventType.LOCATION_FIX), fixed.getCount(EventType.LOCATION_UPDATE),
+				fixed.getCount(EventType.NETWORK_QUERY), adaptive.getCount(EventType
+						.LOCATION_FIX), adaptive.getCount(EventType.LOCATION_UPDATE), adaptive
+						.getCount(EventType.NETWORK_QUERY)));
+
+		Assert.assertThat(name, adaptive.getCount(EventType.LOCATION_FIX), is(lessThan(fixed
+				.getCount(EventType.LOCATION_FIX))));
+		Assert.assertThat(name, adaptive.getCount(EventType.NETWORK_QUERY), is(lessThan(fixed
+				.getCount(EventType.NETWORK_QUERY))));
+		Assert.assertThat(name, adaptive.getCount(EventType.UI_EMISSION), is(greaterThan(1)));
+	}
+
+	/**
+	 * Tests that smoothing the jitter of a user who waits at a station starts less searches,
+	 * while a moving user is still followed.
+	 */
+	@Test
+	public void TrackReplayer_replay_locationSmoothingSuppressesJitter() throws Exception {
+		LocationTrack track = new LocationTrack.Builder(START_MILLIS, 1000)
+				.setNoise(60, 42)
+				.startAt(HAUPTBAHNHOF_LATITUDE, HAUPTBAHNHOF_LONGITUDE)
+				.dwell(TimeUnit.MINUTES.toMillis(20))
+				.moveTo(NEUSTADT_LATITUDE, NEUSTADT_LONGITUDE, SPEED_METERS_PER_SECOND)
+				.build();
+		// every fix is delivered, the view model has to filter the jitter itself
+		ReplayRecording raw = new TrackReplayer().setThrottling(1000, 0).setLocationSmoothing(
+				false).replay(track);
+		ReplayRecording smoothed = new TrackReplayer().setThrottling(1000, 0).replay(track);
+		LOG.info(String.format(Locale.getDefault(), "%s fixes: raw %s searches, %s queries; " +
+						"smoothed %s searches, %s queries", raw.getCount(EventType
+						.LOCATION_UPDATE), raw.getCount(EventType.SEARCH), raw.getCount(EventType
+						.NETWORK_QUERY), smoothed.getCount(EventType.SEARCH), smoothed.getCount
+						(EventType.NETWORK_QUERY)));
+
+		Assert.assertThat(smoothed.getCount(EventType.SEARCH), is(lessThan(raw.getCount
+				(EventType.SEARCH))));
+		// the last search or answer within a coverage region is close to the destination
+		ReplayRecording.Event last = null;
+		for (ReplayRecording.Event event : smoothed.getEvents()) {
+			if (event.getType() == EventType.SEARCH || event.getType() == EventType
+					.COVERAGE_HIT) {
+				last = event;
+			}
+		}
+		Assert.assertThat(GeoUtils.distanceMeters(last.getLatitude(), last.getLongitude(),
+				NEUSTADT_LATITUDE, NEUSTADT_LONGITUDE), is(lessThan(500d)));
+	}
+
+	/**
+	 * Tests that coverage regions answer searches along the commute and the trips without any
+	 * query, while the same number of results is displayed.
+	 */
+	@Test
+	public void TrackReplayer_replay_coverageRegionsSkipQueries() throws Exception {
+		assertCoverageReduction("commute", createCommute());
+		assertCoverageReduction("walking", createTrip(WALKING_METERS_PER_SECOND, 0.02));
+		assertCoverageReduction("driving", createTrip(SPEED_METERS_PER_SECOND, 0.1));
+	}
+
+	private static void assertCoverageReduction(String name, LocationTrack track) throws
+			Exception {
+		ReplayRecording uncovered = new TrackReplayer().setCoverageRatio(0).replay(track);
+		ReplayRecording covered = new TrackReplayer().replay(track);
+		LOG.info(String.format(Locale.getDefault(), "%s: without coverage %s searches, %s " +
+						"queries; with coverage %s searches, %s queries, %s answered locally, " +
+						"%s prefetches", name, uncovered.getCount(EventType.SEARCH), uncovered
+						.getCount(EventType.NETWORK_QUERY), covered.getCount(EventType.SEARCH),
+				covered.getCount(EventType.NETWORK_QUERY), covered.getCount(EventType
+						.COVERAGE_HIT), covered.getCount(EventType.PREFETCH)));
+
+		Assert.assertThat(name, uncovered.getCount(EventType.COVERAGE_HIT), is(0));
+		Assert.assertThat(name, covered.getCount(EventType.COVERAGE_HIT), is(greaterThan(0)));
+		Assert.assertThat(name, covered.getCount(EventType.SEARCH) + covered.getCount(EventType
+				.COVERAGE_HIT), is(uncovered.getCount(EventType.SEARCH)));
+		Assert.assertThat(name, covered.getCount(EventType.NETWORK_QUERY), is(lessThan(uncovered
+				.getCount(EventType.NETWORK_QUERY))));
+		Assert.assertThat(name, covered.getCount(EventType.UI_EMISSION), is(uncovered.getCount
+				(EventType.UI_EMISSION)));
+	}
+
+	/**
+	 * @return A trip north-east of Dresden Hauptbahnhof with passed speed and a wait of five
+	 * minutes at start and destination, with a fix per second.
+	 */
+	private static LocationTrack createTrip(double speed, double degrees) {
+		return new LocationTrack.Builder(START_MILLIS, 1000)
+				.setNoise(5, 42)
+				.startAt(HAUPTBAHNHOF_LATITUDE, HAUPTBAHNHOF_LONGITUDE)
+				.dwell(TimeUnit.MINUTES.toMillis(5))
+				.moveTo(HAUPTBAHNHOF_LATITUDE + degrees, HAUPTBAHNHOF_LONGITUDE + degrees, speed)
+				.dwell(TimeUnit.MINUTES.toMillis(5))
+				.build();
+	}
+
+	/**
+	 * @return A commute from Dresden Hauptbahnhof to Dresden-Neustadt and back, with a wait at
+	 * each station and a fix per second.
+	 */
+	private static LocationTrack createCommute() {
+		return new LocationTrack.Builder(START_MILLIS, 1000)
+				.setNoise(5, 42)
+				.startAt(HAUPTBAHNHOF_LATITUDE, HAUPTBAHNHOF_LONGITUDE)
+				.dwell(TimeUnit.MINUTES.toMillis(2))
+				.moveTo(NEUSTADT_LATITUDE, NEUSTADT_LONGITUDE, SPEED_METERS_PER_SECOND)
+				.dwell(TimeUnit.MINUTES.toMillis(2))
+				.moveTo(HAUPTBAHNHOF_LATITUDE, HAUPTBAHNHOF_LONGITUDE, SPEED_METERS_PER_SECOND)
+				.build();
+	}
+}
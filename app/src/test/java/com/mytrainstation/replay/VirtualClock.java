@@ -0,0 +1,39 @@
+package com.mytrainstation.replay;
+
+import com.mytrainstation.util.Clock;
+
+/**
+ * {@link Clock} whose time only changes if it is set explicitly, e.g. to the time of each
+ * replayed location fix.
+ *
+ * @author JSCHENK
+ */
+public class VirtualClock implements Clock {
+
+	private volatile long mTimeMillis;
+
+	/**
+	 * @param timeMillis
+	 * 		The initial time in milliseconds.
+	 */
+	public VirtualClock(long timeMillis) {
+		mTimeMillis = timeMillis;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return mTimeMillis;
+	}
+
+	/**
+	 * @param timeMillis
+	 * 		The new time in milliseconds, which must not be before the current time.
+	 */
+	public void setTimeMillis(long timeMillis) {
+		if (timeMillis < mTimeMillis) {
+			throw new IllegalArgumentException("Virtual time must not go back from " +
+					mTimeMillis + " to " + timeMillis);
+		}
+		mTimeMillis = timeMillis;
+	}
+}
@@ -0,0 +1,108 @@
+package com.mytrainstation.ui;
+
+import android.app.Application;
+import android.arch.core.executor.testing.InstantTaskExecutorRule;
+import android.location.Location;
+import android.location.LocationManager;
+
+import com.mytrainstation.api.location.KalmanLocationEstimator;
+import com.mytrainstation.api.location.LocationProvider;
+import com.mytrainstation.data.PriorityTaskScheduler;
+import com.mytrainstation.data.TrainStationRepository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Run tests against {@link TrainStationsViewModel}.
+ *
+ * @author JSCHENK
+ */
+public class TrainStationsViewModelTest {
+
+	private static final double LATITUDE = 51.0405;
+	private static final double LONGITUDE = 13.7320;
+	private static final int RADIUS = 2000;
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	/**
+	 * Executes LiveData updates synchronously.
+	 */
+	@Rule
+	public InstantTaskExecutorRule mInstantTaskExecutorRule = new InstantTaskExecutorRule();
+
+	private PriorityTaskScheduler mTaskScheduler;
+	private TrainStationRepository mRepository;
+	private TrainStationsViewModel mViewModel;
+
+	@Before
+	public void setUp() {
+		mTaskScheduler = new PriorityTaskScheduler(2);
+		mRepository = mock(TrainStationRepository.class);
+		mViewModel = new TrainStationsViewModel(mock(Application.class), mRepository, mock
+				(LocationProvider.class), new KalmanLocationEstimator(), mTaskScheduler);
+		mViewModel.setSearchRadius(RADIUS);
+	}
+
+	@After
+	public void tearDown() {
+		mTaskScheduler.shutdownNow();
+	}
+
+	/**
+	 * Tests that the first location after gps positioning was activated again starts a search by
+	 * location, although the user didn't move since the last one, so the result of a search term
+	 * isn't kept.
+	 */
+	@Test
+	public void TrainStationsViewModel_setGpsPositioningIsActive_searchesOnFirstLocationAgain() {
+		mViewModel.onLocationChanged(createLocation(0));
+		verify(mRepository, timeout(TIMEOUT_MILLIS)).searchTrainStationsByLocation(eq(LATITUDE),
+				eq(LONGITUDE), eq(RADIUS));
+
+		mViewModel.setGpsPositioningIsActive(false);
+		mViewModel.setGpsPositioningIsActive(true);
+		mViewModel.onLocationChanged(createLocation(30_000));
+
+		verify(mRepository, timeout(TIMEOUT_MILLIS).times(2)).searchTrainStationsByLocation
+				(anyDouble(), anyDouble(), anyInt());
+	}
+
+	/**
+	 * Tests that a location of the same place doesn't start another search while gps
+	 * positioning stays active.
+	 */
+	@Test
+	public void TrainStationsViewModel_onLocationChanged_skipsSearchOfSamePlace() throws
+			Exception {
+		mViewModel.onLocationChanged(createLocation(0));
+		mViewModel.onLocationChanged(createLocation(30_000));
+
+		verify(mRepository, timeout(TIMEOUT_MILLIS)).searchTrainStationsByLocation(anyDouble(),
+				anyDouble(), anyInt());
+		Thread.sleep(100);
+		verify(mRepository, times(1)).searchTrainStationsByLocation(anyDouble(), anyDouble(),
+				anyInt());
+	}
+
+	private static Location createLocation(long timeMillis) {
+		Location location = mock(Location.class);
+		when(location.getTime()).thenReturn(timeMillis);
+		when(location.getLatitude()).thenReturn(LATITUDE);
+		when(location.getLongitude()).thenReturn(LONGITUDE);
+		when(location.getAccuracy()).thenReturn(10f);
+		when(location.getProvider()).thenReturn(LocationManager.GPS_PROVIDER);
+		return location;
+	}
+}
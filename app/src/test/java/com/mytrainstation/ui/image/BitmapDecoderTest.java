@@ -0,0 +1,37 @@
+package com.mytrainstation.ui.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+
+/**
+ * Run tests against {@link BitmapDecoder}.
+ *
+ * @author JSCHENK
+ */
+public class BitmapDecoderTest {
+
+	/**
+	 * Tests that {@link BitmapDecoder#calculateInSampleSize(int, int, int, int)} will return the
+	 * largest power of two that keeps both dimensions at least as large as requested.
+	 */
+	@Test
+	public void BitmapDecoder_calculateInSampleSize_keepsBothDimensionsAtLeastAsRequested() {
+		// 1920x1080 picture within a view of 350x196 pixels
+		Assert.assertThat(BitmapDecoder.calculateInSampleSize(1920, 1080, 350, 196), is(4));
+		// height limits the sample size
+		Assert.assertThat(BitmapDecoder.calculateInSampleSize(1920, 400, 350, 196), is(2));
+		Assert.assertThat(BitmapDecoder.calculateInSampleSize(300, 200, 350, 196), is(1));
+		Assert.assertThat(BitmapDecoder.calculateInSampleSize(700, 392, 350, 196), is(2));
+	}
+
+	/**
+	 * Tests that {@link BitmapDecoder#calculateInSampleSize(int, int, int, int)} won't downsample
+	 * if the size of the target view is unknown.
+	 */
+	@Test
+	public void BitmapDecoder_calculateInSampleSize_doesNotDownsampleForUnknownSize() {
+		Assert.assertThat(BitmapDecoder.calculateInSampleSize(1920, 1080, 0, 0), is(1));
+	}
+}
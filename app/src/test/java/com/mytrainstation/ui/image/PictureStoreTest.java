@@ -0,0 +1,39 @@
+package com.mytrainstation.ui.image;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+
+/**
+ * Run tests against {@link PictureStore}.
+ *
+ * @author JSCHENK
+ */
+public class PictureStoreTest {
+
+	/**
+	 * Tests that {@link PictureStore#hash(byte[])} will return the hex encoded SHA-256 hash, so
+	 * equal pictures are addressed by the same hash.
+	 */
+	@Test
+	public void PictureStore_hash_returnsHexEncodedSha256() {
+		Assert.assertThat(PictureStore.hash("abc".getBytes(StandardCharsets.US_ASCII)),
+				is("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"));
+		Assert.assertThat(PictureStore.hash(new byte[]{1, 2, 3}), is(PictureStore.hash(new
+				byte[]{1, 2, 3})));
+	}
+
+	/**
+	 * Tests that {@link PictureStore#calculateThumbnailScale(int, int)} will fit pictures into
+	 * the thumbnail size without scaling them up.
+	 */
+	@Test
+	public void PictureStore_calculateThumbnailScale_fitsPictureWithoutScalingUp() {
+		Assert.assertThat(PictureStore.calculateThumbnailScale(1920, 1080), is(1f / 6));
+		Assert.assertThat(PictureStore.calculateThumbnailScale(640, 960), is(0.25f));
+		Assert.assertThat(PictureStore.calculateThumbnailScale(160, 120), is(1f));
+	}
+}
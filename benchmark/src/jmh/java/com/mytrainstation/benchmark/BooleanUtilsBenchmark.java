@@ -0,0 +1,38 @@
+package com.mytrainstation.benchmark;
+
+import com.mytrainstation.util.BooleanUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of {@link BooleanUtils#tryParseYesNoString(String)}, which is called for
+ * each flag of each parsed train station.
+ *
+ * @author JSCHENK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BooleanUtilsBenchmark {
+
+	// values as returned by the api, mixed case and invalid ones
+	private static final int VALUES = 8;
+	private final String[] mValues = {"yes", "no", "YES", "No", "unknown", "", null, "yes"};
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void tryParseYesNoString(Blackhole blackhole) {
+		for (String value : mValues) {
+			blackhole.consume(BooleanUtils.tryParseYesNoString(value));
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.mytrainstation.benchmark;
+
+import com.mytrainstation.api.location.KalmanLocationEstimator;
+import com.mytrainstation.api.location.LatestFixEstimator;
+import com.mytrainstation.api.location.LocationEstimator;
+import com.mytrainstation.util.GeoUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of {@link LocationEstimator#update}, which is called for each location
+ * update of the view model, and its allocations, which should be none.
+ *
+ * Estimates a noisy synthetic trace of a user who waits, walks, rides a train and waits again,
+ * with a fix per second and jittering accuracies. The unsmoothed {@link LatestFixEstimator}
+ * is the baseline of the {@link KalmanLocationEstimator}.
+ *
+ * @author JSCHENK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocationEstimatorBenchmark {
+
+	private static final int FIXES = 1024;
+	private static final double LATITUDE = 51.0405;
+	private static final double LONGITUDE = 13.7320;
+
+	@Param({"kalman", "latest"})
+	private String mEstimator;
+
+	private final long[] mTimes = new long[FIXES];
+	private final double[] mLatitudes = new double[FIXES];
+	private final double[] mLongitudes = new double[FIXES];
+	private final float[] mAccuracies = new float[FIXES];
+	private LocationEstimator mLocationEstimator;
+
+	/**
+	 * Creates the estimator and the noisy trace.
+	 */
+	@Setup
+	public void setUp() {
+		mLocationEstimator = "kalman".equals(mEstimator) ? new KalmanLocationEstimator() : new
+				LatestFixEstimator();
+		Random random = new Random(42);
+		double north = 0;
+		for (int i = 0; i < FIXES; i++) {
+			// waiting, walking, riding a train and waiting again
+			double speed = i < FIXES / 4 ? 0 : i < FIXES / 2 ? 1.4 : i < FIXES * 3 / 4 ? 30 : 0;
+			north += speed;
+			mTimes[i] = 1_500_000_000_000L + i * 1000L;
+			mAccuracies[i] = 5 + random.nextFloat() * 25;
+			mLatitudes[i] = LATITUDE + (north + random.nextGaussian() * mAccuracies[i]) /
+					GeoUtils.METERS_PER_DEGREE;
+			mLongitudes[i] = LONGITUDE + random.nextGaussian() * mAccuracies[i] / GeoUtils
+					.metersPerDegreeLongitude(LATITUDE);
+		}
+	}
+
+	/**
+	 * @return The sum of the estimated latitudes, so JIT can't eliminate the updates.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public double update() {
+		mLocationEstimator.reset();
+		double latitudes = 0;
+		for (int i = 0; i < FIXES; i++) {
+			mLocationEstimator.update(mTimes[i], mLatitudes[i], mLongitudes[i], mAccuracies[i]);
+			latitudes += mLocationEstimator.getLatitude();
+		}
+		return latitudes;
+	}
+}
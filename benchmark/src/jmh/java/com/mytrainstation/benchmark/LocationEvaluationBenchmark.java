@@ -0,0 +1,73 @@
+package com.mytrainstation.benchmark;
+
+import com.mytrainstation.api.location.LocationRanking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of {@link LocationRanking#isBetterFix}, which decides for each location
+ * update of {@code LocationUtil#isBetterLocation} whether it replaces the current best fix.
+ *
+ * Evaluates a recorded-like stream of gps and network fixes with jittering times and
+ * accuracies, so all branches of the decision are taken.
+ *
+ * @author JSCHENK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocationEvaluationBenchmark {
+
+	private static final int FIXES = 1024;
+	private static final String[] PROVIDERS = {"gps", "network", "fused", null};
+
+	private final long[] mTimes = new long[FIXES];
+	private final float[] mAccuracies = new float[FIXES];
+	private final String[] mProviders = new String[FIXES];
+
+	/**
+	 * Creates the evaluated fixes.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		long time = 1_500_000_000_000L;
+		for (int i = 0; i < FIXES; i++) {
+			// mostly newer fixes, some delayed and some after a gap of several minutes
+			time += random.nextInt(10) == 0 ? random.nextInt(300_000) - 150_000 : random
+					.nextInt(5_000);
+			mTimes[i] = time;
+			mAccuracies[i] = 5 + random.nextFloat() * 500;
+			mProviders[i] = PROVIDERS[random.nextInt(PROVIDERS.length)];
+		}
+	}
+
+	/**
+	 * @return The number of fixes that replaced the current best fix, so JIT can't eliminate
+	 * the evaluation.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(FIXES)
+	public int isBetterFix() {
+		int best = 0;
+		int replaced = 0;
+		for (int i = 1; i < FIXES; i++) {
+			if (LocationRanking.isBetterFix(mTimes[i], mAccuracies[i], mProviders[i],
+					mTimes[best], mAccuracies[best], mProviders[best])) {
+				best = i;
+				replaced++;
+			}
+		}
+		return replaced;
+	}
+}
@@ -0,0 +1,112 @@
+package com.mytrainstation.benchmark;
+
+import com.mytrainstation.logging.FastLogger;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time and allocations of a log statement with primitive arguments, like the location
+ * updates of {@link com.mytrainstation.ui.TrainStationsViewModel}, with {@link FastLogger} and
+ * with {@link String#format} on a log4j {@link Logger}. Allocated bytes per statement are
+ * reported by the gc profiler as {@code gc.alloc.rate.norm} and should be 0 for
+ * {@link #fastLogger()} while debug events are disabled.
+ *
+ * Enabled events are passed to an appender that discards them, so only the cost of formatting
+ * and of the log4j event is measured.
+ *
+ * @author JSCHENK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoggingAllocationBenchmark {
+
+	private static final FastLogger FAST_LOG = FastLogger.getLogger(
+			LoggingAllocationBenchmark.class);
+	private static final Logger LOG = Logger.getLogger(LoggingAllocationBenchmark.class);
+
+	@Param({"false", "true"})
+	public boolean mDebugEnabled;
+
+	private double mLatitude = 52.5250839;
+	private double mLongitude = 13.369402;
+	private int mRadius = 2000;
+
+	/**
+	 * Enables or disables debug events of the measured logger.
+	 */
+	@Setup
+	public void setUp() {
+		LOG.removeAllAppenders();
+		LOG.setAdditivity(false);
+		LOG.setLevel(mDebugEnabled ? Level.DEBUG : Level.INFO);
+		LOG.addAppender(new AppenderSkeleton() {
+			@Override
+			protected void append(LoggingEvent event) {
+				// discard
+			}
+
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public boolean requiresLayout() {
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Removes the discarding appender.
+	 */
+	@TearDown
+	public void tearDown() {
+		LOG.removeAllAppenders();
+	}
+
+	/**
+	 * Logs with deferred formatting.
+	 */
+	@Benchmark
+	public void fastLogger() {
+		FAST_LOG.atDebug().arg(mLatitude).arg(mLongitude).arg(mRadius).log("Search for train " +
+				"stations by location (latitude={}, longitude={}, search radius={})");
+	}
+
+	/**
+	 * Logs like the app did before, without checking the level first.
+	 */
+	@Benchmark
+	public void stringFormat() {
+		LOG.debug(String.format(Locale.getDefault(), "Search for train stations by location " +
+				"(latitude=%s, longitude=%s, search radius=%s)", mLatitude, mLongitude, mRadius));
+	}
+
+	/**
+	 * Logs like the app did before, after checking the level.
+	 */
+	@Benchmark
+	public void guardedStringFormat() {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug(String.format(Locale.getDefault(), "Search for train stations by " +
+					"location (latitude=%s, longitude=%s, search radius=%s)", mLatitude,
+					mLongitude, mRadius));
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.mytrainstation.benchmark;
+
+import com.mytrainstation.logging.AsyncRingBufferAppender;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.FileAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a single log call on the calling thread, while the log file is
+ * written synchronously by a {@link FileAppender} or asynchronously by an
+ * {@link AsyncRingBufferAppender} with either overflow policy. Uses the layout and the immediate
+ * flush of the app (see {@link com.mytrainstation.Log4jHelper}).
+ *
+ * Log calls are issued back to back, so the ring buffer is full most of the time. Latencies of
+ * {@code ASYNC_BLOCK} therefore converge to the throughput of the writer thread, while the app
+ * logs far less frequently and usually finds free space.
+ *
+ * @author JSCHENK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoggingLatencyBenchmark {
+
+	private static final String FILE_PATTERN = "%p  %d  %t  %c  %m%n";
+	private static final int CAPACITY = 1024;
+
+	@Param({"SYNC", "ASYNC_DROP", "ASYNC_BLOCK"})
+	public String mAppenderType;
+
+	private File mLogFile;
+	private Appender mAppender;
+	private Logger mLogger;
+
+	/**
+	 * Creates the logger that writes into a temporary file with the appender under test.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		mLogFile = File.createTempFile("benchmark", ".log");
+		FileAppender fileAppender = new FileAppender(new PatternLayout(FILE_PATTERN), mLogFile
+				.getPath());
+		fileAppender.setImmediateFlush(true);
+		switch (mAppenderType) {
+			case "ASYNC_DROP":
+				mAppender = new AsyncRingBufferAppender(fileAppender, CAPACITY,
+						AsyncRingBufferAppender.OverflowPolicy.DROP);
+				break;
+			case "ASYNC_BLOCK":
+				mAppender = new AsyncRingBufferAppender(fileAppender, CAPACITY,
+						AsyncRingBufferAppender.OverflowPolicy.BLOCK);
+				break;
+			default:
+				mAppender = fileAppender;
+		}
+		mLogger = Logger.getLogger(LoggingLatencyBenchmark.class);
+		mLogger.removeAllAppenders();
+		mLogger.setAdditivity(false);
+		mLogger.setLevel(Level.DEBUG);
+		mLogger.addAppender(mAppender);
+	}
+
+	/**
+	 * Closes the appender under test and deletes the log file.
+	 */
+	@TearDown
+	public void tearDown() {
+		mLogger.removeAllAppenders();
+		mAppender.close();
+		if (!mLogFile.delete()) {
+			mLogFile.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Logs a message of the size of a typical location update.
+	 */
+	@Benchmark
+	public void logInfo() {
+		mLogger.info("New location provided with latitude=52.5250839 and longitude=13.369402");
+	}
+}
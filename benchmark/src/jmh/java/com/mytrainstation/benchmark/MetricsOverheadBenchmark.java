@@ -0,0 +1,81 @@
+package com.mytrainstation.benchmark;
+
+import com.mytrainstation.api.TrainStationServiceUtil;
+import com.mytrainstation.metrics.LatencyHistogram;
+import com.mytrainstation.metrics.MetricsRegistry;
+import com.mytrainstation.model.TrainStation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of recording metrics (see {@link MetricsRegistry}) on the instrumented
+ * {@link TrainStationServiceUtil#parseResponse} by comparing its average time while metrics are
+ * enabled and disabled. The response has the size of a single page, so the overhead is not
+ * hidden by parsing a large response. The bare cost of a single measurement is reported by
+ * {@link #recordLatency()}.
+ *
+ * @author JSCHENK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsOverheadBenchmark {
+
+	@Param({"true", "false"})
+	public boolean mMetricsEnabled;
+
+	@Param({"20"})
+	public int mStationCount;
+
+	private String mResponse;
+	private LatencyHistogram mHistogram;
+
+	/**
+	 * Creates the response that is parsed by each invocation and enables or disables metrics.
+	 */
+	@Setup
+	public void setUp() {
+		mResponse = ResponsePayloads.create(ResponsePayloads.NEARBY, mStationCount);
+		mHistogram = MetricsRegistry.getInstance().histogram("MetricsOverheadBenchmark");
+		MetricsRegistry.getInstance().setEnabled(mMetricsEnabled);
+	}
+
+	/**
+	 * Enables metrics again for further benchmarks of the same fork.
+	 */
+	@TearDown
+	public void tearDown() {
+		MetricsRegistry.getInstance().setEnabled(true);
+	}
+
+	/**
+	 * @return The parsed train stations, so JIT can't eliminate parsing.
+	 */
+	@Benchmark
+	public List<TrainStation> parseResponse() throws IOException {
+		return TrainStationServiceUtil.parseResponse(new StringReader(mResponse));
+	}
+
+	/**
+	 * @return The start time of the measurement, so JIT can't eliminate it.
+	 */
+	@Benchmark
+	public long recordLatency() {
+		long start = mHistogram.start();
+		mHistogram.stop(start);
+		return start;
+	}
+}
@@ -0,0 +1,79 @@
+package com.mytrainstation.benchmark;
+
+import com.mytrainstation.api.TrainStationServiceUtil;
+import com.mytrainstation.model.TrainStation;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput and allocations of {@link TrainStationServiceUtil#parseResponse} for
+ * responses of several sizes.
+ *
+ * Allocated bytes per station are reported by the gc profiler as {@code gc.alloc.rate.norm}
+ * divided by {@link #mStationCount}. The auxiliary counter {@code stations} reports the number
+ * of parsed stations per second.
+ *
+ * @author JSCHENK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParseResponseBenchmark {
+
+	@Param({ResponsePayloads.NEARBY, ResponsePayloads.SEARCH})
+	public String mRootField;
+
+	// a nearby search, a large search result and a full catalogue
+	@Param({"20", "500", "5000"})
+	public int mStationCount;
+
+	private String mResponse;
+
+	/**
+	 * Counts parsed stations, so throughput is also reported per station.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class StationCounter {
+
+		public long stations;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			stations = 0;
+		}
+	}
+
+	/**
+	 * Creates the response that is parsed by each invocation.
+	 */
+	@Setup
+	public void setUp() {
+		mResponse = ResponsePayloads.create(mRootField, mStationCount);
+	}
+
+	/**
+	 * @return The parsed train stations, so JIT can't eliminate parsing.
+	 */
+	@Benchmark
+	public List<TrainStation> parseResponse(StationCounter counter) throws IOException {
+		List<TrainStation> trainStations = TrainStationServiceUtil.parseResponse(new
+				StringReader(mResponse));
+		counter.stations += trainStations.size();
+		return trainStations;
+	}
+}
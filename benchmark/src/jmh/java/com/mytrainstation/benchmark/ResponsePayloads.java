@@ -0,0 +1,53 @@
+package com.mytrainstation.benchmark;
+
+import java.util.Locale;
+
+/**
+ * Creates synthetic responses of the graphql endpoint that are used as input for benchmarks.
+ *
+ * @author JSCHENK
+ */
+final class ResponsePayloads {
+
+	/**
+	 * Root field of responses of {@code NearByQuery}.
+	 */
+	static final String NEARBY = "nearby";
+	/**
+	 * Root field of responses of {@code SearchQuery}.
+	 */
+	static final String SEARCH = "search";
+
+	private ResponsePayloads() {
+	}
+
+	/**
+	 * @param rootField
+	 * 		Either {@link #NEARBY} or {@link #SEARCH}.
+	 * @param stationCount
+	 * 		The number of stations within the response.
+	 * @return A json response like it would be sent by the graphql endpoint.
+	 */
+	static String create(String rootField, int stationCount) {
+		StringBuilder builder = new StringBuilder(stationCount * 320);
+		builder.append("{\"data\":{\"").append(rootField).append("\":{\"__typename\":\"")
+				.append(NEARBY.equals(rootField) ? "Nearby" : "Searchable")
+				.append("\",\"stations\":[");
+		for (int i = 0; i < stationCount; i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			builder.append(String.format(Locale.ROOT, "{\"__typename\":\"Station\"," +
+							"\"primaryEvaId\":%d,\"name\":\"Station %d - Hauptbahnhof\"," +
+							"\"hasWiFi\":%b,\"hasParking\":%b,\"hasSteplessAccess\":\"%s\"," +
+							"\"picture\":{\"__typename\":\"Picture\"," +
+							"\"url\":\"https://api.railway-stations.org/photos/de/%d.jpg\"}," +
+							"\"location\":{\"__typename\":\"Location\",\"latitude\":%.6f," +
+							"\"longitude\":%.6f}}",
+					8000000 + i, i, i % 2 == 0, i % 3 == 0, i % 4 == 0 ? "no" : "yes", i,
+					47.3 + (i % 1000) * 0.0077, 5.9 + (i / 1000 % 1000) * 0.0091));
+		}
+		builder.append("]}}}");
+		return builder.toString();
+	}
+}
@@ -0,0 +1,120 @@
+package com.mytrainstation.benchmark;
+
+import com.mytrainstation.api.offline.StationCatalogue;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures latency of radius and k nearest queries against a {@link StationCatalogue} of
+ * synthetic stations spread over Germany. The auxiliary counter {@code footprintKilobytes}
+ * reports the estimated memory footprint of the catalogue, allocations per query are reported by
+ * the gc profiler as {@code gc.alloc.rate.norm}.
+ *
+ * @author JSCHENK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StationCatalogueBenchmark {
+
+	private static final double MIN_LATITUDE = 47.3;
+	private static final double MAX_LATITUDE = 55.0;
+	private static final double MIN_LONGITUDE = 5.9;
+	private static final double MAX_LONGITUDE = 15.0;
+	private static final int NUMBER_OF_QUERY_LOCATIONS = 1024;
+
+	@Param({"100000"})
+	public int mStationCount;
+
+	@Param({"2000", "10000", "50000"})
+	public int mRadius;
+
+	@Param({"10"})
+	public int mMaxCount;
+
+	private StationCatalogue mCatalogue;
+	private final StationCatalogue.SearchResult mSearchResult = new StationCatalogue
+			.SearchResult();
+	private final double[] mLatitudes = new double[NUMBER_OF_QUERY_LOCATIONS];
+	private final double[] mLongitudes = new double[NUMBER_OF_QUERY_LOCATIONS];
+	private int mNextLocation;
+
+	/**
+	 * Reports the estimated memory footprint of the catalogue with the results.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint {
+
+		// jmh resets public counter fields after setup, so the value is reported by a method
+		private long mFootprintKilobytes;
+
+		@Setup(Level.Iteration)
+		public void setUp(StationCatalogueBenchmark benchmark) {
+			mFootprintKilobytes = benchmark.mCatalogue.estimateMemoryBytes() / 1024;
+		}
+
+		public long footprintKilobytes() {
+			return mFootprintKilobytes;
+		}
+	}
+
+	/**
+	 * Creates the catalogue and the query locations.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		StationCatalogue.Builder builder = new StationCatalogue.Builder();
+		for (int i = 0; i < mStationCount; i++) {
+			builder.add(i, "Station " + i, randomLatitude(random), randomLongitude(random), random
+					.nextBoolean(), random.nextBoolean(), random.nextBoolean());
+		}
+		mCatalogue = builder.build();
+		for (int i = 0; i < NUMBER_OF_QUERY_LOCATIONS; i++) {
+			mLatitudes[i] = randomLatitude(random);
+			mLongitudes[i] = randomLongitude(random);
+		}
+	}
+
+	@Benchmark
+	public int searchWithinRadius(Footprint footprint) {
+		int location = nextLocation();
+		mCatalogue.searchWithinRadius(mLatitudes[location], mLongitudes[location], mRadius,
+				mMaxCount, mSearchResult);
+		return mSearchResult.size();
+	}
+
+	@Benchmark
+	public int searchNearest(Footprint footprint) {
+		int location = nextLocation();
+		mCatalogue.searchNearest(mLatitudes[location], mLongitudes[location], mMaxCount,
+				mSearchResult);
+		return mSearchResult.size();
+	}
+
+	private int nextLocation() {
+		mNextLocation = (mNextLocation + 1) & (NUMBER_OF_QUERY_LOCATIONS - 1);
+		return mNextLocation;
+	}
+
+	private static double randomLatitude(Random random) {
+		return MIN_LATITUDE + random.nextDouble() * (MAX_LATITUDE - MIN_LATITUDE);
+	}
+
+	private static double randomLongitude(Random random) {
+		return MIN_LONGITUDE + random.nextDouble() * (MAX_LONGITUDE - MIN_LONGITUDE);
+	}
+}
@@ -0,0 +1,95 @@
+package com.mytrainstation.benchmark;
+
+import com.mytrainstation.db.StationNameIndex;
+import com.mytrainstation.model.TrainStation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures latency of {@link StationNameIndex#search(String, int)} per keystroke, i.e. for each
+ * prefix of some typed search terms, over a corpus of synthetic german station names.
+ *
+ * @author JSCHENK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StationNameIndexBenchmark {
+
+	private static final String[] PREFIXES = {"", "", "", "Bad ", "Neu-", "Alt-", "Klein ",
+			"Groß "};
+	private static final String[] STEMS = {"München", "Düsseldorf", "Gießen", "Lüneburg",
+			"Köln", "Nürnberg", "Würzburg", "Fürth", "Göttingen", "Mühlhausen", "Saarbrücken",
+			"Osnabrück", "Dresden", "Leipzig", "Berlin", "Hamburg", "Bremen", "Hannover",
+			"Kassel", "Erfurt", "Münster", "Lübeck", "Tübingen", "Bückeburg", "Zwickau",
+			"Görlitz", "Brück", "Jülich", "Düren", "Öhringen"};
+	private static final String[] SUFFIXES = {" Hbf", " Süd", " Nord", "-West", " Ost",
+			" Mitte", " (Main)", "-Pasing", " Bf", " Flughafen", " Messe", " Zoo", " Gbf",
+			" Stadt", " Hafen"};
+	private static final String[] TYPED_TERMS = {"Muenchen Hbf", "Düssel", "lüneburg süd",
+			"Bad Gi", "Koeln Messe", "groß bru"};
+	// number of prefixes of all typed terms
+	private static final int KEYSTROKES = 55;
+	private static final int LIMIT = 50;
+
+	@Param({"6000"})
+	public int mStationCount;
+
+	private List<TrainStation> mTrainStations;
+	private StationNameIndex mIndex;
+	private final List<String> mKeystrokes = new ArrayList<>();
+
+	/**
+	 * Creates the index and the search term of each keystroke.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		mTrainStations = new ArrayList<>(mStationCount);
+		for (int id = 0; id < mStationCount; id++) {
+			String name = PREFIXES[random.nextInt(PREFIXES.length)] + STEMS[random.nextInt(STEMS
+					.length)] + SUFFIXES[random.nextInt(SUFFIXES.length)];
+			mTrainStations.add(new TrainStation.Builder(id, name).build());
+		}
+		mIndex = StationNameIndex.build(mTrainStations);
+		for (String term : TYPED_TERMS) {
+			for (int length = 1; length <= term.length(); length++) {
+				mKeystrokes.add(term.substring(0, length));
+			}
+		}
+		if (mKeystrokes.size() != KEYSTROKES) {
+			throw new IllegalStateException("Expected " + KEYSTROKES + " keystrokes, but was " +
+					mKeystrokes.size());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYSTROKES)
+	public void searchPerKeystroke(Blackhole blackhole) {
+		for (String keystroke : mKeystrokes) {
+			blackhole.consume(mIndex.search(keystroke, LIMIT));
+		}
+	}
+
+	/**
+	 * The index is rebuilt after each stored search result.
+	 */
+	@Benchmark
+	public StationNameIndex build() {
+		return StationNameIndex.build(mTrainStations);
+	}
+}
@@ -0,0 +1,53 @@
+package com.mytrainstation.benchmark;
+
+import com.mytrainstation.model.TrainStation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput and allocations of {@link TrainStation.Builder}, which builds each parsed
+ * train station.
+ *
+ * @author JSCHENK
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrainStationBuilderBenchmark {
+
+	// fields aren't constant, so JIT can't fold the built station
+	private int mId = 8000261;
+	private String mName = "München Hbf";
+	private String mPictureUrl = "https://api.example.com/pictures/8000261.jpg";
+	private double mLatitude = 48.140229;
+	private double mLongitude = 11.558339;
+
+	/**
+	 * @return A train station with all fields set.
+	 */
+	@Benchmark
+	public TrainStation build() {
+		return new TrainStation.Builder(mId, mName)
+				.hasWifi(true)
+				.hasParking(false)
+				.hasSteplessAccess(true)
+				.pictureUrl(mPictureUrl)
+				.location(mLatitude, mLongitude)
+				.build();
+	}
+
+	/**
+	 * @return A train station with name only, like the ones of the name index.
+	 */
+	@Benchmark
+	public TrainStation buildNameOnly() {
+		return new TrainStation.Builder(mId, mName).build();
+	}
+}